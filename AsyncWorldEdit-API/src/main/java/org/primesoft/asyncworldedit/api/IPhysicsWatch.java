@@ -66,6 +66,43 @@ public interface IPhysicsWatch {
      */
     void removeLocation(String worldName, BlockVector3 location);
 
+    /**
+     * Add new watched location
+     *
+     * @param worldName The world name
+     * @param x
+     * @param y
+     * @param z
+     */
+    default void addLocation(String worldName, int x, int y, int z) {
+        addLocation(worldName, BlockVector3.at(x, y, z));
+    }
+
+    /**
+     * Remove watched location
+     *
+     * @param worldName the world name
+     * @param x
+     * @param y
+     * @param z
+     */
+    default void removeLocation(String worldName, int x, int y, int z) {
+        removeLocation(worldName, BlockVector3.at(x, y, z));
+    }
+
+    /**
+     * Remove multiple watched locations
+     *
+     * @param worldName the world name
+     * @param locations the x, y, z location triplets
+     * @param count number of locations
+     */
+    default void removeLocations(String worldName, int[] locations, int count) {
+        for (int i = 0, pos = 0; i < count; i++, pos += 3) {
+            removeLocation(worldName, locations[pos], locations[pos + 1], locations[pos + 2]);
+        }
+    }
+
     
     /**
      * Enable the physics watcher
@@ -89,7 +89,7 @@ public interface IBlockPlacerPlayer {
     int getNextJobId();
 
     /**
-     * Get block entries queue
+     * Get a snapshot of the block entries queue
      *
      * @return
      */
@@ -44,6 +44,7 @@ import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.utils.IAction;
 import org.primesoft.asyncworldedit.api.utils.IFunc;
@@ -184,6 +185,56 @@ public interface ITaskDispatcher {
      * @param action
      */    
     <T> T queueFastOperation(IFunc<T> action);
+
+    /**
+     * Perform a bulk action for a set of chunks. The chunks are kept loaded
+     * while the action runs. If any of the chunks is not loaded the missing 
+     * chunks are loaded and the action is performed in a single dispatcher
+     * run (on the main thread).
+     *
+     * @param world
+     * @param chunks
+     * @param action
+     * @return the future completed when the action finishes
+     */
+    default CompletableFuture<Void> performSafeBatch(IWorld world, Collection<BlockVector2> chunks, IAction action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return performSafeBatch(world, chunks, () -> {
+            action.execute();
+            return null;
+        });
+    }
+
+    /**
+     * Perform a bulk action for a set of chunks. The chunks are kept loaded
+     * while the action runs. If any of the chunks is not loaded the missing 
+     * chunks are loaded and the action is performed in a single dispatcher
+     * run (on the main thread).
+     *
+     * @param <T>
+     * @param world
+     * @param chunks
+     * @param action
+     * @return the future completed with the action result
+     */
+    default <T> CompletableFuture<T> performSafeBatch(IWorld world, Collection<BlockVector2> chunks, IFunc<T> action) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (action == null) {
+            result.complete(null);
+            return result;
+        }
+
+        try {
+            result.complete(performSafeChunk(world != null ? world.getUUID() : this, action, world, chunks));
+        } catch (Exception ex) {
+            result.completeExceptionally(ex);
+        }
+
+        return result;
+    }
     
 
     /**
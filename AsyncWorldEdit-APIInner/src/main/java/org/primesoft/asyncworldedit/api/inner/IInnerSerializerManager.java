@@ -37,7 +37,10 @@ package org.primesoft.asyncworldedit.api.inner;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
 import java.util.stream.Stream;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
 import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 
@@ -56,8 +59,86 @@ public interface IInnerSerializerManager extends ISerializerManager {
      */
     IUndoEntry load(IChunkCacheStream stream) throws IOException;
 
+    /**
+     * Read the undo file header
+     *
+     * @param stream
+     * @return The undo file format
+     * @throws IOException
+     */
+    int readHeader(IChunkCacheStream stream) throws IOException;
+
+    /**
+     * Open the undo file for reading, small enough files are memory mapped
+     *
+     * @param stream the undo file
+     * @return
+     * @throws IOException
+     */
+    IChunkCacheStream openFileStream(RandomAccessFile stream) throws IOException;
+
+    /**
+     * Get the undo data stream for the undo file format
+     *
+     * @param stream the undo file stream (positioned after the header)
+     * @param format the undo file format
+     * @return
+     * @throws IOException
+     */
+    IChunkCacheStream openDataStream(IChunkCacheStream stream, int format) throws IOException;
+
+    /**
+     * Release the undo data stream resources
+     *
+     * @param stream
+     */
+    void closeDataStream(IChunkCacheStream stream);
+
+    /**
+     * Load the undo data from stream
+     *
+     * @param stream
+     * @param format the undo file format
+     * @param storage the undo file memory storage
+     * @return
+     * @throws IOException
+     */
+    IUndoEntry load(IChunkCacheStream stream, int format, IMemoryStorage storage) throws IOException;
+
+    /**
+     * Get all the undo data files (from the undo files manifest)
+     * @return
+     * @throws IOException 
+     */
     Stream<File> getUndoFiles() throws IOException;
     
+    /**
+     * Get the undo data files created before (or at) the timestamp, 
+     * the oldest files first
+     * @param timestamp
+     * @return 
+     */
+    Stream<File> getUndoFiles(long timestamp);
+    
+    /**
+     * Remove the deleted undo file from the undo files manifest
+     * @param file 
+     */
+    void removeUndoFile(File file);
+    
+    /**
+     * Get the size of the closed undo files owned by the player
+     * @param player
+     * @return Size in bytes
+     */
+    long getUndoSize(UUID player);
+    
+    /**
+     * Get the size of all the closed undo files
+     * @return Size in bytes
+     */
+    long getUndoSize();
+    
     /**
      * Try to get the timestamp of the undo file
      * @param file
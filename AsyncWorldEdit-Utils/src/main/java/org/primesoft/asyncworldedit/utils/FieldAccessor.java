@@ -0,0 +1,319 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Field access resolved once to method handles. The primitive getters and
+ * setters do not box the value.
+ *
+ * @param <T> the field type (the wrapper type for primitive fields)
+ * @author SBPrime
+ */
+public final class FieldAccessor<T> {
+
+    /**
+     * Create the field accessor
+     *
+     * @param <T>
+     * @param field the field
+     * @param fieldClass the field type
+     * @param message the error message
+     * @return the accessor or null if the field is not accessible
+     */
+    public static <T> FieldAccessor<T> create(Field field, Class<T> fieldClass, String message) {
+        if (field == null) {
+            return null;
+        }
+
+        try {
+            field.setAccessible(true);
+
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final boolean isStatic = Modifier.isStatic(field.getModifiers());
+
+            MethodHandle getter = lookup.unreflectGetter(field);
+            MethodHandle setter;
+            try {
+                setter = lookup.unreflectSetter(field);
+            } catch (IllegalAccessException ex) {
+                //Static final field
+                setter = null;
+            }
+
+            if (isStatic) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                setter = setter != null ? MethodHandles.dropArguments(setter, 0, Object.class) : null;
+            }
+
+            return new FieldAccessor<>(field, fieldClass, getter, setter, message);
+        } catch (IllegalAccessException | RuntimeException ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: security exception.", message));
+        }
+
+        return null;
+    }
+
+    private final Field m_field;
+
+    private final Class<T> m_fieldClass;
+
+    private final String m_message;
+
+    /**
+     * The getter: (Object)Object
+     */
+    private final MethodHandle m_get;
+
+    /**
+     * The setter: (Object, Object)void
+     */
+    private final MethodHandle m_set;
+
+    /**
+     * The getter with the field type: (Object)field type
+     */
+    private final MethodHandle m_getTyped;
+
+    /**
+     * The setter with the field type: (Object, field type)void
+     */
+    private final MethodHandle m_setTyped;
+
+    private FieldAccessor(Field field, Class<T> fieldClass,
+            MethodHandle getter, MethodHandle setter, String message) {
+        final Class<?> type = field.getType();
+
+        m_field = field;
+        m_fieldClass = (Class<T>) MethodType.methodType(fieldClass).wrap().returnType();
+        m_message = message;
+
+        m_getTyped = getter.asType(MethodType.methodType(type, Object.class));
+        m_get = getter.asType(MethodType.methodType(Object.class, Object.class));
+
+        if (setter != null) {
+            m_setTyped = setter.asType(MethodType.methodType(void.class, Object.class, type));
+            m_set = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        } else {
+            m_setTyped = null;
+            m_set = null;
+        }
+    }
+
+    public Field getField() {
+        return m_field;
+    }
+
+    /**
+     * Get the field value
+     *
+     * @param instance the object (null for static fields)
+     * @return the value or null if unable to get the value
+     */
+    public T get(Object instance) {
+        try {
+            return m_fieldClass.cast((Object) m_get.invokeExact(instance));
+        } catch (ClassCastException ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version, unable to cast result.", m_message));
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return null;
+    }
+
+    /**
+     * Set the field value
+     *
+     * @param instance the object (null for static fields)
+     * @param value
+     * @return true if the value was set
+     */
+    public boolean set(Object instance, T value) {
+        if (m_set == null) {
+            printReadOnly();
+            return false;
+        }
+
+        try {
+            m_set.invokeExact(instance, (Object) value);
+            return true;
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the int field value
+     *
+     * @param instance
+     * @return the value or 0 if unable to get the value
+     */
+    public int getInt(Object instance) {
+        try {
+            return (int) m_getTyped.invokeExact(instance);
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Set the int field value
+     *
+     * @param instance
+     * @param value
+     * @return true if the value was set
+     */
+    public boolean setInt(Object instance, int value) {
+        if (m_setTyped == null) {
+            printReadOnly();
+            return false;
+        }
+
+        try {
+            m_setTyped.invokeExact(instance, value);
+            return true;
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the long field value
+     *
+     * @param instance
+     * @return the value or 0 if unable to get the value
+     */
+    public long getLong(Object instance) {
+        try {
+            return (long) m_getTyped.invokeExact(instance);
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Set the long field value
+     *
+     * @param instance
+     * @param value
+     * @return true if the value was set
+     */
+    public boolean setLong(Object instance, long value) {
+        if (m_setTyped == null) {
+            printReadOnly();
+            return false;
+        }
+
+        try {
+            m_setTyped.invokeExact(instance, value);
+            return true;
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the boolean field value
+     *
+     * @param instance
+     * @return the value or false if unable to get the value
+     */
+    public boolean getBoolean(Object instance) {
+        try {
+            return (boolean) m_getTyped.invokeExact(instance);
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    /**
+     * Set the boolean field value
+     *
+     * @param instance
+     * @param value
+     * @return true if the value was set
+     */
+    public boolean setBoolean(Object instance, boolean value) {
+        if (m_setTyped == null) {
+            printReadOnly();
+            return false;
+        }
+
+        try {
+            m_setTyped.invokeExact(instance, value);
+            return true;
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    private void printReadOnly() {
+        ExceptionHelper.printException(new IllegalAccessException(m_field.toString()),
+                String.format("%1$s: security exception, the field is read only.", m_message));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Method call resolved once to a method handle.
+ *
+ * @author SBPrime
+ */
+public final class MethodAccessor {
+
+    /**
+     * Create the method accessor
+     *
+     * @param method the method
+     * @param message the error message
+     * @return the accessor or null if the method is not accessible
+     */
+    public static MethodAccessor create(Method method, String message) {
+        if (method == null) {
+            return null;
+        }
+
+        try {
+            method.setAccessible(true);
+
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+
+            return new MethodAccessor(method, handle, message);
+        } catch (IllegalAccessException | RuntimeException ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: security exception.", message));
+        }
+
+        return null;
+    }
+
+    private final Method m_method;
+
+    private final String m_message;
+
+    /**
+     * The method handle: (Object, Object[])Object
+     */
+    private final MethodHandle m_invoke;
+
+    private MethodAccessor(Method method, MethodHandle handle, String message) {
+        final int params = handle.type().parameterCount();
+
+        m_method = method;
+        m_message = message;
+        m_invoke = handle.asType(handle.type().generic())
+                .asSpreader(Object[].class, params - 1);
+    }
+
+    public Method getMethod() {
+        return m_method;
+    }
+
+    /**
+     * Invoke the method
+     *
+     * @param instance the object (null for static methods)
+     * @param args the method arguments
+     * @return true if the method was invoked
+     */
+    public boolean invoke(Object instance, Object... args) {
+        try {
+            final Object ignored = (Object) m_invoke.invokeExact(instance, args);
+            return true;
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return false;
+    }
+
+    /**
+     * Invoke the method and get the result
+     *
+     * @param <T>
+     * @param instance the object (null for static methods)
+     * @param resultClass the result type
+     * @param args the method arguments
+     * @return the method result or null if unable to invoke the method
+     */
+    public <T> T call(Object instance, Class<T> resultClass, Object... args) {
+        try {
+            return resultClass.cast((Object) m_invoke.invokeExact(instance, args));
+        } catch (ClassCastException ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version, unable to cast result.", m_message));
+        } catch (Throwable ex) {
+            ExceptionHelper.printException(ex, String.format("%1$s: unsupported version.", m_message));
+        }
+
+        return null;
+    }
+}
@@ -395,6 +395,44 @@ public class Reflection {
         return null;
     }
 
+    /**
+     * Find the field and resolve it to a cached accessor
+     * @param <T>
+     * @param c
+     * @param fieldType the exact field type
+     * @param fieldName
+     * @param message
+     * @return the accessor or null if not found
+     */
+    public static <T> FieldAccessor<T> findTypedFieldAccessor(Class<?> c, Class<T> fieldType, String fieldName, String message) {
+        return FieldAccessor.create(findTypedField(c, fieldType, fieldName, message), fieldType, message);
+    }
+
+    /**
+     * Find the field and resolve it to a cached accessor
+     * @param <T>
+     * @param c
+     * @param fieldClass the field value class
+     * @param fieldName
+     * @param message
+     * @return the accessor or null if not found
+     */
+    public static <T> FieldAccessor<T> findFieldAccessor(Class<?> c, Class<T> fieldClass, String fieldName, String message) {
+        return FieldAccessor.create(findField(c, fieldName, message), fieldClass, message);
+    }
+
+    /**
+     * Find the method and resolve it to a cached accessor
+     * @param c
+     * @param methodName
+     * @param message
+     * @param paramTypes
+     * @return the accessor or null if not found
+     */
+    public static MethodAccessor findMethodAccessor(Class<?> c, String methodName, String message, Class<?>... paramTypes) {
+        return MethodAccessor.create(findMethod(c, methodName, message, paramTypes), message);
+    }
+
     public static Constructor<?> findConstructor(Class<?> c, String message, Class<?>... paramTypes) {
         try {
             return c.getDeclaredConstructor(paramTypes);
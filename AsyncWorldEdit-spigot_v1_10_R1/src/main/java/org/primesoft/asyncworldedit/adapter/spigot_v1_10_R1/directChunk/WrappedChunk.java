@@ -49,7 +49,6 @@ package org.primesoft.asyncworldedit.adapter.spigot_v1_10_R1.directChunk;
 
 import com.sk89q.worldedit.BlockVector2D;
 import gnu.trove.map.hash.TObjectIntHashMap;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -84,6 +83,7 @@ import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.platform.bukkit.directChunk.BaseBukkitWrappedChunk;
 import org.primesoft.asyncworldedit.utils.InOutParam;
 import org.primesoft.asyncworldedit.utils.PositionHelper;
+import org.primesoft.asyncworldedit.utils.FieldAccessor;
 import org.primesoft.asyncworldedit.utils.Reflection;
 
 /**
@@ -92,21 +92,21 @@ import org.primesoft.asyncworldedit.utils.Reflection;
  */
 public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
 
-    private static final Field s_fMaxHeight;
+    private static final FieldAccessor<int[]> s_fMaxHeight;
 
-    private static final Field s_fGaps;
+    private static final FieldAccessor<boolean[]> s_fGaps;
 
     /**
      * This field does not need to be copied use removeEntities and
      * removeEntities
      */
-    private static final Field s_fEntitiesLoaded;
+    private static final FieldAccessor<Boolean> s_fEntitiesLoaded;
 
-    private static final Field s_fRecalculateGaps;
-    private static final Field s_fEntityCount;
-    private static final Field s_fUnknown1;
-    private static final Field s_fUnknown2;
-    private static final Field s_fUnknown3;
+    private static final FieldAccessor<Boolean> s_fRecalculateGaps;
+    private static final FieldAccessor<Object> s_fEntityCount;
+    private static final FieldAccessor<Boolean> s_fUnknown1;
+    private static final FieldAccessor<Boolean> s_fUnknown2;
+    private static final FieldAccessor<Integer> s_fUnknown3;
 
     private static final boolean s_initialized;
 
@@ -117,16 +117,16 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
     static {
         Class<?> cChunk = Chunk.class;
 
-        s_fMaxHeight = Reflection.findTypedField(cChunk, int[].class, "h", "Unable to find the MaxHeight \"h\" field");
-        s_fGaps = Reflection.findTypedField(cChunk, boolean[].class, "i", "Unable to find the Gaps \"i\" field");
-        s_fEntitiesLoaded = Reflection.findTypedField(cChunk, boolean.class, "j", "Unable to find the EntitiesLoaded \"j\" field");
-        s_fEntityCount = Reflection.findField(cChunk, "entityCount", "Unable to find the entityCount field");
-        s_fRecalculateGaps = Reflection.findTypedField(cChunk, boolean.class, "m", "Unable to find the recalculate gaps \"m\" field");
+        s_fMaxHeight = Reflection.findTypedFieldAccessor(cChunk, int[].class, "h", "Unable to find the MaxHeight \"h\" field");
+        s_fGaps = Reflection.findTypedFieldAccessor(cChunk, boolean[].class, "i", "Unable to find the Gaps \"i\" field");
+        s_fEntitiesLoaded = Reflection.findTypedFieldAccessor(cChunk, boolean.class, "j", "Unable to find the EntitiesLoaded \"j\" field");
+        s_fEntityCount = Reflection.findFieldAccessor(cChunk, Object.class, "entityCount", "Unable to find the entityCount field");
+        s_fRecalculateGaps = Reflection.findTypedFieldAccessor(cChunk, boolean.class, "m", "Unable to find the recalculate gaps \"m\" field");
 
-        s_fUnknown1 = Reflection.findTypedField(cChunk, boolean.class, "s", "Unable to find the unknown \"s\" field");
-        s_fUnknown2 = Reflection.findTypedField(cChunk, boolean.class, "t", "Unable to find the unknown \"t\" field");
+        s_fUnknown1 = Reflection.findTypedFieldAccessor(cChunk, boolean.class, "s", "Unable to find the unknown \"s\" field");
+        s_fUnknown2 = Reflection.findTypedFieldAccessor(cChunk, boolean.class, "t", "Unable to find the unknown \"t\" field");
 
-        s_fUnknown3 = Reflection.findTypedField(cChunk, int.class, "x", "Unable to find the unknown \"x\" field");
+        s_fUnknown3 = Reflection.findTypedFieldAccessor(cChunk, int.class, "x", "Unable to find the unknown \"x\" field");
 
         s_initialized = s_fMaxHeight != null
                 && s_fGaps != null && s_fEntitiesLoaded != null
@@ -150,8 +150,8 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
         Chunk chunk = bukkitChunk.getHandle();
         ChunkSection[] dChunkSection = chunk.getSections();
         byte[] dBiomeData = chunk.getBiomeIndex();
-        int[] dMaxHeight = Reflection.get(chunk, int[].class, s_fMaxHeight, "Unable to get data");
-        boolean[] dGaps = Reflection.get(chunk, boolean[].class, s_fGaps, "Unable to get data");
+        int[] dMaxHeight = s_fMaxHeight.get(chunk);
+        boolean[] dGaps = s_fGaps.get(chunk);
         int[] dHeightMap = chunk.r();
 
         List<TileEntity> dTileEntities = new LinkedList<TileEntity>(chunk.getTileEntities().values());
@@ -159,10 +159,10 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
         boolean dDone = chunk.isDone();
         boolean dLit = chunk.v();
 
-        boolean dQ = Reflection.get(chunk, Boolean.class, s_fUnknown1, "Unable to get data");
-        boolean dR = Reflection.get(chunk, Boolean.class, s_fUnknown2, "Unable to get data");
+        boolean dQ = s_fUnknown1.getBoolean(chunk);
+        boolean dR = s_fUnknown2.getBoolean(chunk);
         long dU = chunk.w();
-        int dV = Reflection.get(chunk, Integer.class, s_fUnknown3, "Unable to get data");
+        int dV = s_fUnknown3.getInt(chunk);
 
         ChunkData result = new ChunkData();
 
@@ -261,9 +261,9 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
         }
         if (setUnknown) {
             chunk.c(cData.getUnknownU());
-            Reflection.set(chunk, s_fUnknown1, cData.getUnknownQ(), "Unable to set data");
-            Reflection.set(chunk, s_fUnknown2, cData.getUnknownR(), "Unable to set data");
-            Reflection.set(chunk, s_fUnknown3, cData.getUnknownV(), "Unable to set data");
+            s_fUnknown1.setBoolean(chunk, cData.getUnknownQ());
+            s_fUnknown2.setBoolean(chunk, cData.getUnknownR());
+            s_fUnknown3.setInt(chunk, cData.getUnknownV());
         }
         if (setTileEntities) {
             addTileEntities(world, locX, locZ, data, chunk);
@@ -284,7 +284,7 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
 
     private void removeAllEntities(Chunk chunk) {
         //Clear all entities
-        Object o = Reflection.get(chunk, s_fEntityCount, "Unable to get entity count");
+        Object o = s_fEntityCount.get(chunk);
         TObjectIntHashMap<Class> entityCount = o instanceof TObjectIntHashMap
                 ? (TObjectIntHashMap<Class>) o : null;
         if (entityCount != null) {
@@ -309,7 +309,7 @@ public class WrappedChunk extends BaseBukkitWrappedChunk<CraftChunk> {
             return;
         }
         
-        Reflection.set(chunk, s_fEntitiesLoaded, true, "Unable to set entities loaded flag");
+        s_fEntitiesLoaded.setBoolean(chunk, true);
         chunk.world.b(chunk.tileEntities.values());
         for (List<Entity> slice : chunk.getEntitySlices()) {
             List<Entity> toAdd = new ArrayList();
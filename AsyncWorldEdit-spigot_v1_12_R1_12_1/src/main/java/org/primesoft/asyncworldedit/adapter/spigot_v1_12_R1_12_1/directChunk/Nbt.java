@@ -67,7 +67,6 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -98,6 +97,7 @@ import org.primesoft.asyncworldedit.api.directChunk.ISerializedEntity;
 import org.primesoft.asyncworldedit.api.directChunk.ISerializedTileEntity;
 import org.primesoft.asyncworldedit.directChunk.NBTType;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.MethodAccessor;
 import org.primesoft.asyncworldedit.utils.Reflection;
 
 /**
@@ -108,8 +108,8 @@ public class Nbt {
 
     private static final NBTReadLimiter s_limiter = NBTReadLimiter.a;
 
-    private static final Method s_mWrite;
-    private static final Method s_mLoad;
+    private static final MethodAccessor s_mWrite;
+    private static final MethodAccessor s_mLoad;
 
     private static final Constructor<NBTTagEnd> s_tagEnd;
 
@@ -122,9 +122,9 @@ public class Nbt {
     static {
         Class<?> cNbtTagCompound = NBTTagCompound.class;
 
-        s_mLoad = Reflection.findMethod(cNbtTagCompound, "load", "Unable to find load method",
+        s_mLoad = Reflection.findMethodAccessor(cNbtTagCompound, "load", "Unable to find load method",
                 DataInput.class, int.class, NBTReadLimiter.class);
-        s_mWrite = Reflection.findMethod(cNbtTagCompound, "write", "Unable to find write method",
+        s_mWrite = Reflection.findMethodAccessor(cNbtTagCompound, "write", "Unable to find write method",
                 DataOutput.class);
 
         s_tagEnd = (Constructor<NBTTagEnd>) Reflection.findConstructor(NBTTagEnd.class, "Unable to get NBTTagEnd constructor");
@@ -317,8 +317,7 @@ public class Nbt {
         }
         ByteArrayOutputStream bs = new ByteArrayOutputStream();
         DataOutput out = new DataOutputStream(bs);
-        if (!Reflection.invoke(nbt, s_mWrite, "Unable to write NTB data to stream",
-                out)) {
+        if (!s_mWrite.invoke(nbt, out)) {
             return null;
         }
 
@@ -335,8 +334,7 @@ public class Nbt {
         ByteArrayInputStream bs = new ByteArrayInputStream(data);
         DataInput in = new DataInputStream(bs);
         NBTTagCompound nbt = new NBTTagCompound();
-        Reflection.invoke(nbt, s_mLoad, "Unable to read NTB data from stream",
-                in, (int) 0, s_limiter);
+        s_mLoad.invoke(nbt, in, (int) 0, s_limiter);
 
         if (!s_initialized) {
             return null;
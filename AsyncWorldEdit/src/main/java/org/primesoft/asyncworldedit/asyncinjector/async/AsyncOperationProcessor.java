@@ -71,6 +71,7 @@ import org.primesoft.asyncworldedit.injector.utils.ExceptionOperationAction;
 import org.primesoft.asyncworldedit.injector.utils.OperationAction;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.utils.InOutParam;
+import org.primesoft.asyncworldedit.utils.LatencyStats;
 import org.primesoft.asyncworldedit.utils.Pair;
 import org.primesoft.asyncworldedit.utils.Reflection;
 import org.primesoft.asyncworldedit.utils.SchedulerUtils;
@@ -105,6 +106,16 @@ public class AsyncOperationProcessor implements IOperationProcessor {
      */
     private final IClassScanner m_classScanner;
 
+    /**
+     * The operation validation and class scan time
+     */
+    private final LatencyStats m_scanStats = new LatencyStats();
+
+    /**
+     * The operation dispatch time (from the WorldEdit call to the queued async task)
+     */
+    private final LatencyStats m_dispatchStats = new LatencyStats();
+
     public AsyncOperationProcessor(IAsyncWorldEditCore aweCore) {
         m_aweCore = aweCore;
         m_schedule = aweCore.getPlatform().getScheduler();
@@ -112,9 +123,28 @@ public class AsyncOperationProcessor implements IOperationProcessor {
         m_classScanner = m_aweCore.getPlatform().getClassScanner();
     }
 
+    /**
+     * Get the operation validation and class scan time statistics
+     *
+     * @return
+     */
+    public LatencyStats getScanStats() {
+        return m_scanStats;
+    }
+
+    /**
+     * Get the operation dispatch time statistics
+     *
+     * @return
+     */
+    public LatencyStats getDispatchStats() {
+        return m_dispatchStats;
+    }
+
     @Override
     public <TException extends Exception> void process(final Operation op,
             final ExceptionOperationAction<TException> action) throws TException {
+        final long start = System.nanoTime();
         InOutParam<String> operationName = InOutParam.Out();
 
         if (!StackValidator.isVaild(operationName) || !OperationValidator.isValid(op)) {
@@ -126,6 +156,7 @@ public class AsyncOperationProcessor implements IOperationProcessor {
          * What to do if scanner finds multiple different edit sessions?
          */
         List<IClassScannerResult> sessions = m_classScanner.scan(new Class<?>[]{AsyncEditSession.class, Region.class}, op);
+        m_scanStats.record(System.nanoTime() - start);
         if (!validate(sessions)) {
             action.execute(op);
             return;
@@ -170,10 +201,12 @@ public class AsyncOperationProcessor implements IOperationProcessor {
                 }
             }
         });
+        recordDispatch(name, start);
     }
 
     @Override
     public void process(final Operation op, final OperationAction action) {
+        final long start = System.nanoTime();
         InOutParam<String> operationName = InOutParam.Out();
 
         if (!StackValidator.isVaild(operationName) || !OperationValidator.isValid(op)) {
@@ -186,6 +219,7 @@ public class AsyncOperationProcessor implements IOperationProcessor {
          * What to do if scanner finds multiple different edit sessions?
          */
         List<IClassScannerResult> sessions = m_classScanner.scan(new Class<?>[]{AsyncEditSession.class, Region.class}, op);
+        m_scanStats.record(System.nanoTime() - start);
 
         if (!validate(sessions)) {
             action.execute(op);
@@ -231,6 +265,22 @@ public class AsyncOperationProcessor implements IOperationProcessor {
             }
         }
         );
+        recordDispatch(name, start);
+    }
+
+    /**
+     * Record the operation dispatch time
+     *
+     * @param name
+     * @param start
+     */
+    private void recordDispatch(String name, long start) {
+        final long time = System.nanoTime() - start;
+        m_dispatchStats.record(time);
+
+        if (ConfigProvider.messages().debugLevel().isAtLeast(DebugLevel.DEBUG)) {
+            log(String.format("* Operation %1$s dispatched in %2$.3fms (%3$s)", name, time / 1000000.0, m_dispatchStats));
+        }
     }
 
     /**
@@ -110,6 +110,11 @@ public abstract class ClassScanner implements IClassScanner {
     
     private IClassScannerEntry[] m_blackList = new IClassScannerEntry[0];
     
+    /**
+     * The scan information for each class (cleared when the filters change)
+     */
+    private final Map<Class<?>, ClassInfo> m_classInfo = new ConcurrentHashMap<>();
+    
     /**
      * Is the class scanner initialized
      */
@@ -122,6 +127,7 @@ public abstract class ClassScanner implements IClassScanner {
     @Override
     public IClassScanner initialize() {
         m_blackList = getBlackList();
+        m_classInfo.clear();
         m_isInitialized = true;
         return this;
     }
@@ -209,10 +215,8 @@ public abstract class ClassScanner implements IClassScanner {
                                 }
                             }
 
-                            if (isPrimitive(ct) || 
-                                isBlackList(ct) ||
-                                isStatic(f.getField()) ||
-                                isBlackList(cClass, f.getField()) ||
+                            if (!f.canFollow() ||
+                                getClassInfo(ct).isSkipped() ||
                                 Objects.equals(t, entry.getParent()))
                             {
                                 if (debugOn) {
@@ -279,25 +283,20 @@ public abstract class ClassScanner implements IClassScanner {
     private Iterable<ScannerQueueEntry> unpack(Class<?> oClass, Object o) {
         HashSet<ScannerQueueEntry> result = new HashSet<>();
 
-        if (isPrimitive(oClass) || isBlackList(oClass)) {
+        final ClassInfo info = getClassInfo(oClass);
+        if (info.isSkipped()) {
             return result;
         }
 
-        if (oClass.isArray()) {
-            Class<?> componenClass = oClass;
-            while (componenClass.isArray()) {
-                componenClass = componenClass.getComponentType();
-            }
-            if (!isPrimitive(componenClass) && !isBlackList(componenClass)) {
-                for (Object t : (Object[]) o) {
-                    if (t != null) {
-                        result.add(new ScannerQueueEntry(t, o, null));
-                    }
+        if (info.m_scanArray) {
+            for (Object t : (Object[]) o) {
+                if (t != null) {
+                    result.add(new ScannerQueueEntry(t, o, null));
                 }
             }
         }
 
-        if (Iterable.class.isAssignableFrom(oClass)) {
+        if (info.m_scanIterable) {
             for (Object t : (Iterable<Object>) o) {
                 if (t != null) {
                     result.add(new ScannerQueueEntry(t, o, null));
@@ -305,27 +304,118 @@ public abstract class ClassScanner implements IClassScanner {
             }
         }
 
-        for (Field f : getAllFields(oClass)) {
-            boolean restore = !f.isAccessible();
-            if (restore) {
-                f.setAccessible(true);
-            }
+        final Field[] fields = info.m_fields;
+        final boolean[] canFollow = info.m_canFollow;
+        for (int i = 0; i < fields.length; i++) {
+            final Field f = fields[i];
             try {
                 Object t = f.get(o);
                 if (t != null) {
-                    result.add(new ScannerQueueEntry(t, o, f));
+                    result.add(new ScannerQueueEntry(t, o, f, canFollow[i]));
                 }
             } catch (IllegalArgumentException ex) {
             } catch (IllegalAccessException ex) {
             }
+        }
+        return result;
+    }
 
-            if (restore) {
-                f.setAccessible(false);
-            }
+    /**
+     * Get the cached class scan information
+     *
+     * @param oClass
+     * @return
+     */
+    private ClassInfo getClassInfo(Class<?> oClass) {
+        ClassInfo result = m_classInfo.get(oClass);
+        if (result == null) {
+            result = new ClassInfo(oClass);
+            m_classInfo.put(oClass, result);
         }
+
         return result;
     }
 
+    /**
+     * The class scan information: is the class scanned and the accessible
+     * fields. This removes the black list and filter checks and the field
+     * lookup from the scan of each object.
+     */
+    private class ClassInfo {
+
+        /**
+         * The class is a primitive or black listed
+         */
+        private final boolean m_isSkipped;
+
+        /**
+         * Scan the array items
+         */
+        private final boolean m_scanArray;
+
+        /**
+         * Scan the iterable items
+         */
+        private final boolean m_scanIterable;
+
+        /**
+         * All class fields (accessible)
+         */
+        private final Field[] m_fields;
+
+        /**
+         * Can the field value be scanned
+         */
+        private final boolean[] m_canFollow;
+
+        ClassInfo(Class<?> oClass) {
+            m_isSkipped = isPrimitive(oClass) || isBlackList(oClass);
+
+            if (m_isSkipped) {
+                m_scanArray = false;
+                m_scanIterable = false;
+                m_fields = new Field[0];
+                m_canFollow = new boolean[0];
+                return;
+            }
+
+            boolean scanArray = false;
+            if (oClass.isArray()) {
+                Class<?> componenClass = oClass;
+                while (componenClass.isArray()) {
+                    componenClass = componenClass.getComponentType();
+                }
+                scanArray = !isPrimitive(componenClass) && !isBlackList(componenClass);
+            }
+            m_scanArray = scanArray;
+            m_scanIterable = Iterable.class.isAssignableFrom(oClass);
+
+            List<Field> fields = new ArrayList<>();
+            List<Boolean> canFollow = new ArrayList<>();
+            for (Field f : getAllFields(oClass)) {
+                try {
+                    f.setAccessible(true);
+                } catch (RuntimeException ex) {
+                    //Field not accessible
+                    continue;
+                }
+
+                fields.add(f);
+                canFollow.add(!isStatic(f) && !isBlackList(oClass, f));
+            }
+
+            m_fields = fields.toArray(new Field[0]);
+            m_canFollow = new boolean[m_fields.length];
+            for (int i = 0; i < m_canFollow.length; i++) {
+                m_canFollow[i] = canFollow.get(i);
+            }
+        }
+
+        boolean isSkipped() {
+            return m_isSkipped;
+        }
+    }
+
     private boolean isBlackList(Class<?> oClass) {
         return isBlackList(oClass, null);
     }
@@ -416,6 +506,7 @@ public abstract class ClassScanner implements IClassScanner {
         }
         
         m_filters.put(filter, ITEM);
+        m_classInfo.clear();
     }
 
     @Override
@@ -425,6 +516,7 @@ public abstract class ClassScanner implements IClassScanner {
         }
         
         m_filters.remove(filter);
+        m_classInfo.clear();
     }
 
     private boolean isStatic(Field f) {
@@ -438,5 +530,6 @@ public abstract class ClassScanner implements IClassScanner {
     @Override
     public void loadConfig() {
         m_configurableFilter.loadConfig();
+        m_classInfo.clear();
     }    
 }
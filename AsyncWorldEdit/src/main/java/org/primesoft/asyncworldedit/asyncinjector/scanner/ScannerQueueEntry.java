@@ -59,8 +59,19 @@ public class ScannerQueueEntry {
     private final Object m_value;
     private final Class<?> m_valueClass;
     private final Field m_field;
+    private final boolean m_canFollow;
 
     public ScannerQueueEntry(Object value, Object parent, Field field) {
+        this(value, parent, field, true);
+    }
+
+    /**
+     * @param value
+     * @param parent
+     * @param field
+     * @param canFollow can the value be scanned (the field is not static or black listed)
+     */
+    public ScannerQueueEntry(Object value, Object parent, Field field, boolean canFollow) {
         /*
          * String sParent = parent == null ? 
          *        "null:null" : (parent.hashCode() + ":" + parent.getClass().getName());
@@ -73,6 +84,7 @@ public class ScannerQueueEntry {
         m_value = value;
         m_valueClass = value != null ? value.getClass() : null;
         m_field = field;
+        m_canFollow = canFollow;
     }
 
     public Object getParent() {
@@ -90,4 +102,8 @@ public class ScannerQueueEntry {
     public Field getField() {
         return m_field;
     }
+
+    public boolean canFollow() {
+        return m_canFollow;
+    }
 }
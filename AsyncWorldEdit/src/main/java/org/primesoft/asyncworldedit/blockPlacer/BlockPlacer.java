@@ -50,6 +50,8 @@ package org.primesoft.asyncworldedit.blockPlacer;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerListener;
 import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
 import org.primesoft.asyncworldedit.blockPlacer.entries.JobEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.UndoJob;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
@@ -61,6 +63,8 @@ import org.primesoft.asyncworldedit.worldedit.CancelabeEditSession;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import static org.primesoft.asyncworldedit.LoggerProvider.log;
 import org.primesoft.asyncworldedit.api.IPhysicsWatch;
@@ -77,14 +81,15 @@ import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.utils.IAsyncCommand;
 import org.primesoft.asyncworldedit.api.worldedit.ICancelabeEditSession;
 import org.primesoft.asyncworldedit.api.worldedit.IThreadSafeEditSession;
-import org.primesoft.asyncworldedit.configuration.ConfigMemory;
 import org.primesoft.asyncworldedit.configuration.ConfigRenderer;
 import org.primesoft.asyncworldedit.configuration.DebugLevel;
 import org.primesoft.asyncworldedit.core.AwePlatform;
 import org.primesoft.asyncworldedit.events.JobAddedEvent;
 import org.primesoft.asyncworldedit.events.JobRemovedEvent;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
-import org.primesoft.asyncworldedit.utils.GCUtils;
+import org.primesoft.asyncworldedit.utils.IMemoryPressureListener;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
 
 /**
  *
@@ -94,14 +99,48 @@ public class BlockPlacer implements IBlockPlacer {
     private final static Object INSTANCE = new Object();
 
     /**
-     * Bukkit scheduler
+     * The minimum number of entries fetched from one player queue at once
+     * (when the batch is shared between many players)
      */
-    private final IScheduler m_scheduler;
+    final static int MIN_PLAYER_BATCH = 16;
+    
+    /**
+     * Block placer entries order (world and chunk)
+     */
+    private final static Comparator<IBlockPlacerEntry> CHUNK_ORDER = (a, b) -> {
+        final IBlockPlacerLocationEntry la = (IBlockPlacerLocationEntry) a;
+        final IBlockPlacerLocationEntry lb = (IBlockPlacerLocationEntry) b;
+        
+        final String wa = la.getWorldName();
+        final String wb = lb.getWorldName();
+        if (wa != wb) {
+            if (wa == null) {
+                return -1;
+            } else if (wb == null) {
+                return 1;
+            }
+            
+            int result = wa.compareTo(wb);
+            if (result != 0) {
+                return result;
+            }
+        }
+        
+        final BlockVector3 va = la.getLocation();
+        final BlockVector3 vb = lb.getLocation();
+        
+        int result = Integer.compare(va.getBlockX() >> 4, vb.getBlockX() >> 4);
+        if (result != 0) {
+            return result;
+        }
+        
+        return Integer.compare(va.getBlockZ() >> 4, vb.getBlockZ() >> 4);
+    };
 
     /**
-     * MTA mutex
+     * Bukkit scheduler
      */
-    private final Object m_mutex = new Object();
+    private final IScheduler m_scheduler;
 
     /**
      * The physics watcher
@@ -116,17 +155,22 @@ public class BlockPlacer implements IBlockPlacer {
     /**
      * Logged events queue (per player)
      */
-    private final HashMap<IPlayerEntry, BlockPlacerPlayer> m_blocks;
+    private final ConcurrentMap<IPlayerEntry, BlockPlacerPlayer> m_blocks;
 
     /**
      * All locked queues
      */
-    private final HashSet<IPlayerEntry> m_lockedQueues;
+    private final Set<IPlayerEntry> m_lockedQueues;
+    
+    /**
+     * Number of entries on all the player queues
+     */
+    private final AtomicInteger m_globalQueueSize;
 
     /**
      * Is the global queue locked
      */
-    private boolean m_globalQueueLocked;
+    private volatile boolean m_globalQueueLocked;
 
     /**
      * Global queue max size
@@ -138,16 +182,6 @@ public class BlockPlacer implements IBlockPlacer {
      */
     private int m_queueMaxSizeSoft;
 
-    /**
-     * Minimum free memory
-     */
-    private long m_minMemoryHard;
-
-    /**
-     * Minimum free memory
-     */
-    private long m_minMemorySoft;
-
     /**
      * Talk interval
      */
@@ -190,11 +224,41 @@ public class BlockPlacer implements IBlockPlacer {
      */
     private final Object m_globalWaitMutex = new Object();
 
+    /**
+     * Unlocks the global queue when the memory pressure drops
+     */
+    private final IMemoryPressureListener m_memoryListener = this::onMemoryPressureChanged;
+
     /**
      * The blocks placer interval
      */
     private long m_interval;
     
+    /**
+     * Number of entries fetched from a player queue at once
+     */
+    private int m_batchSize;
+    
+    /**
+     * Average number of blocks placed in one run
+     */
+    private double m_blocksPerRun;
+    
+    /**
+     * Apply the block changes using chunk writes
+     */
+    private boolean m_chunkApply;
+    
+    /**
+     * The chunk apply stage
+     */
+    private final ChunkApplyStage m_chunkApplyStage;
+
+    /**
+     * The block set operations fetched from the block set buffers
+     */
+    private final BlockSetBatch m_blockBatch = new BlockSetBatch();
+    
     /**
      * Is the blocks placer paused
      *
@@ -233,15 +297,18 @@ public class BlockPlacer implements IBlockPlacer {
         m_jobAddedListeners = new ConcurrentHashMap<>();
         m_lastRunTime = System.currentTimeMillis();
         m_runNumber = 0;
-        m_blocks = new HashMap<>();
-        m_lockedQueues = new HashSet<>();
+        m_blocks = new ConcurrentHashMap<>();
+        m_lockedQueues = ConcurrentHashMap.newKeySet();
+        m_globalQueueSize = new AtomicInteger(0);
         m_scheduler = aweCore.getPlatform().getScheduler();
         m_progressDisplay = aweCore.getProgressDisplayManager();        
 
         m_physicsWatcher = aweCore.getPhysicsWatcher();
         m_taskDispatcher = aweCore.getTaskDispatcher();
+        m_chunkApplyStage = new ChunkApplyStage(aweCore, m_physicsWatcher);
         
         loadConfig();
+        MemoryMonitor.addListener(m_memoryListener);
     }
 
     /**
@@ -256,11 +323,8 @@ public class BlockPlacer implements IBlockPlacer {
         m_talkInterval = rConfig.getQueueTalkInterval();
         m_queueMaxSizeHard = rConfig.getQueueMaxSizeHard();
         m_queueMaxSizeSoft = rConfig.getQueueMaxSizeSoft();
-        
-        ConfigMemory mConfig = ConfigProvider.memory();
-        
-        m_minMemoryHard = mConfig.getMinMemoryHard() * 1000;
-        m_minMemorySoft = mConfig.getMinMemorySoft() * 1000;
+        m_batchSize = rConfig.getBatchSize();
+        m_chunkApply = rConfig.isChunkApplyEnabled();
 
         if (m_task != null) {
             m_task.queueStop();
@@ -318,20 +382,21 @@ public class BlockPlacer implements IBlockPlacer {
         boolean talk = false;
         final List<IJobEntry> jobsToCancel = new ArrayList<>();
         //Number of blocks placed for player        
-        final Map<IPermissionGroup, Set<IPlayerEntry>> groups;
-
-        synchronized (m_mutex) {
-            groups = m_blocks.keySet().stream()
-                    .collect(Collectors.groupingBy(
-                            i -> i.getPermissionGroup(), 
-                            Collectors.toSet())
-                    );
-        }
+        final Map<IPermissionGroup, Set<IPlayerEntry>> groups = m_blocks.keySet().stream()
+                .collect(Collectors.groupingBy(
+                        i -> i.getPermissionGroup(), 
+                        Collectors.toSet())
+                );
         
         m_runNumber++;
         if (m_runNumber > m_talkInterval) {
             m_runNumber = 0;
             talk = true;
+            
+            if (ConfigProvider.messages().debugLevel().isAtLeast(DebugLevel.DEBUG)) {
+                log(String.format("[BP STATS] Mode: %1$s\tBatch size: %2$s\tBlocks per run: %3$.2f",
+                        m_batchSize > 1 ? (m_chunkApply ? "chunk" : "batch") : "single", m_batchSize, m_blocksPerRun));
+            }
         }
 
         if (task.isShutingDown()) {
@@ -356,18 +421,10 @@ public class BlockPlacer implements IBlockPlacer {
         boolean blockPlaced = !groups.isEmpty() && processQueue(processedGroups, blocksPlaced, jobsToCancel);
 
         if (m_globalQueueLocked) {
-            boolean unlock = GCUtils.getTotalAvailableMemory() >= m_minMemorySoft;
+            boolean unlock = MemoryMonitor.getLevel() == MemoryPressure.Normal;
 
             if (blockPlaced) {
-                int globalSize = 0;
-
-                synchronized (m_mutex) {
-                    for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
-                        globalSize += queueEntry.getValue().getQueue().size();
-                    }
-                }
-
-                unlock &= (globalSize < m_queueMaxSizeSoft);
+                unlock &= (m_globalQueueSize.get() < m_queueMaxSizeSoft);
             }
 
             if (unlock) {
@@ -376,19 +433,15 @@ public class BlockPlacer implements IBlockPlacer {
                 }
 
                 m_globalQueueLocked = false;
-            } else if (!blockPlaced) {
-                GCUtils.GC();
             }
         }
 
-        synchronized (m_mutex) {
-            for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
-                IPlayerEntry playerEntry = queueEntry.getKey();
-                BlockPlacerPlayer entry = queueEntry.getValue();
-                Integer cnt = blocksPlaced.get(playerEntry);
+        for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
+            IPlayerEntry playerEntry = queueEntry.getKey();
+            BlockPlacerPlayer entry = queueEntry.getValue();
+            Integer cnt = blocksPlaced.get(playerEntry);
 
-                showProgress(playerEntry, entry, cnt != null ? cnt : 0, timeDelte, talk);
-            }
+            showProgress(playerEntry, entry, cnt != null ? cnt : 0, timeDelte, talk);
         }
 
         for (IJobEntry job : jobsToCancel) {
@@ -400,10 +453,7 @@ public class BlockPlacer implements IBlockPlacer {
     }
 
     private void runOnShutdown() {
-        IPlayerEntry[] entries;
-        synchronized (m_mutex) {
-            entries = m_blocks.keySet().toArray(new IPlayerEntry[0]);
-        }
+        IPlayerEntry[] entries = m_blocks.keySet().toArray(new IPlayerEntry[0]);
         
         for (IPlayerEntry pe : entries) {
             Object mutex = pe.getWaitMutex();
@@ -423,28 +473,57 @@ public class BlockPlacer implements IBlockPlacer {
             final HashMap<IPlayerEntry, Integer> blocksPlaced, final List<IJobEntry> jobsToCancel) {        
         long startTime = System.currentTimeMillis();
         int blocks = 0;
+        int batches = 0;
+        int chunks = 0;
         
         boolean demanding = false;
+        
+        final int batchSize = m_batchSize;
+        final boolean chunkApply = m_chunkApply && batchSize > 1;
+        final List<IBlockPlacerEntry> batch = new ArrayList<>(batchSize);
+        final BlockSetBatch blockBatch = m_blockBatch;
 
         int pos = 0;
         while (! groups.isEmpty()) {
             BlockPlacerGroup group = groups.get(pos);
             int maxTime = group.getRendererTime();
             int maxBlocksCount = group.getRendererBlocks();
+            int maxEntries = maxBlocksCount == -1 ? batchSize 
+                    : Math.max(1, Math.min(batchSize, maxBlocksCount - blocks + 1));
             
-            IBlockPlacerEntry entry;
-            synchronized (m_mutex) {
-                entry = fetchEntry(group, blocksPlaced, jobsToCancel);
-            }
+            batch.clear();
+            blockBatch.clear();
+            fetchEntries(group, maxEntries, batch, blockBatch, blocksPlaced, jobsToCancel);
 
-            if (entry == null) {
+            if (batch.isEmpty() && blockBatch.isEmpty()) {
                 groups.remove(group);
             } else {
-                entry.process(this);
-                blocks++;
+                if (batch.size() > 1) {
+                    sortByChunk(batch);
+                }
                 
+                boolean isDemanding = false;
+                if (!blockBatch.isEmpty()) {
+                    blockBatch.sortByChunk();
+                    if (chunkApply) {
+                        chunks += m_chunkApplyStage.process(blockBatch);
+                    } else {
+                        blockBatch.applyAll(m_physicsWatcher);
+                    }
+                } else if (chunkApply) {
+                    for (IBlockPlacerEntry entry : batch) {
+                        isDemanding |= entry.isDemanding();
+                    }
+                    chunks += m_chunkApplyStage.process(this, batch);
+                } else {
+                    for (IBlockPlacerEntry entry : batch) {
+                        entry.process(this);
+                        isDemanding |= entry.isDemanding();
+                    }
+                }
+                blocks += batch.size() + blockBatch.size();
+                batches++;
                 
-                boolean isDemanding = entry.isDemanding();
                 demanding |= isDemanding;
                 
                 long now = System.currentTimeMillis();
@@ -463,58 +542,153 @@ public class BlockPlacer implements IBlockPlacer {
                 pos = 0;
             }
         }
+        
+        blockBatch.clear();
+        m_chunkApplyStage.flush();
+        updateBlocksPerRun(blocks);
 
         if (ConfigProvider.messages().debugLevel().isAtLeast(DebugLevel.TRACE)) {
             log("[BP RUN] Blocks placed: " + blocks + 
+                "\tBatches: " + batches +
+                "\tChunks: " + chunks +
+                "\tMode: " + (chunkApply ? "chunk" : (batchSize > 1 ? "batch" : "single")) +
                 "\tTime: " + (System.currentTimeMillis() - startTime) + 
                 "\tIs demanding task: " + (demanding ? "Y" : "N"));
         }
         return blocks > 0;
     }
+    
+    /**
+     * Sort the fetched entries by chunk. Entries placed in the same
+     * chunk keep their order, the last entry is not moved if it
+     * is not a location entry (it ends the batch).
+     *
+     * @param batch 
+     */
+    static void sortByChunk(final List<IBlockPlacerEntry> batch) {
+        final int size = batch.size();
+        final boolean hasBarrier = !(batch.get(size - 1) instanceof IBlockPlacerLocationEntry);
+        final List<IBlockPlacerEntry> toSort = hasBarrier ? batch.subList(0, size - 1) : batch;
+        
+        if (toSort.size() > 1) {
+            toSort.sort(CHUNK_ORDER);
+        }
+    }
+    
+    /**
+     * Update the average number of blocks placed in one run
+     *
+     * @param blocks 
+     */
+    private void updateBlocksPerRun(int blocks) {
+        int samples = ConfigProvider.renderer().bpsAveragePoints();
+        if (samples < 1) {
+            return;
+        }
+        
+        m_blocksPerRun = (m_blocksPerRun * (samples - 1) + blocks) / samples;
+    }
+    
+    /**
+     * Get the average number of blocks placed in one block placer run
+     *
+     * @return 
+     */
+    public double getBlocksPerRun() {
+        return m_blocksPerRun;
+    }
+    
+    /**
+     * Get the number of entries fetched from the player queue at once
+     *
+     * @return 
+     */
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    /**
+     * Get the number of entries fetched from one player queue at once.
+     * The batch is shared between the players in the permission group so
+     * one player does not take the whole batch before the round robin
+     * moves to the next player.
+     *
+     * @param batchSize the batch size
+     * @param players number of players in the permission group
+     * @return 
+     */
+    static int getPlayerBatch(int batchSize, int players) {
+        if (players <= 1) {
+            return batchSize;
+        }
+
+        return Math.max(Math.min(batchSize, MIN_PLAYER_BATCH), batchSize / players);
+    }
 
     /**
-     * Fetch next entry that is going to be processed in this run
+     * Fetch next entries that are going to be processed in this run.
+     * The player queues are only locked against other consumers
+     * (job cancel and purge), producers never block the block placer.
+     * All the entries are fetched from one job segment of the player queue
+     * (round robin), the fetch ends on entries that are not location entries 
+     * or are demanding. The block set operations are fetched from one block 
+     * set buffer at a time.
      *
-     * @param playerNames list of all players
-     * @param seqNumber sequence number in player names (everyone is treated
-     * equally)
+     * @param permissionGroup the permission group to process
+     * @param maxEntries maximum number of entries to fetch
+     * @param result the fetched entries
+     * @param blockResult the fetched block set operations
      * @param blocksPlaced number of blocks placed for player
      * @param jobsToCancel jobs to cancel
-     * @return fatched block
      */
-    private IBlockPlacerEntry fetchEntry(final BlockPlacerGroup permissionGroup,
+    private void fetchEntries(final BlockPlacerGroup permissionGroup,
+            final int maxEntries,
+            final List<IBlockPlacerEntry> result,
+            final BlockSetBatch blockResult,
             final HashMap<IPlayerEntry, Integer> blocksPlaced,
             final List<IJobEntry> jobsToCancel) {
         if (permissionGroup == null) {
-            return null;
+            return;
         }
         
         IPlayerEntry[] playerEntries = permissionGroup.getPlayers();        
         if (playerEntries == null || playerEntries.length == 0) {
-            return null;
+            return;
         }
 
         int keyPos = permissionGroup.getSeqNumber() % playerEntries.length;
-        IBlockPlacerEntry result = null;
         IPlayerEntry resultPlayer = null;
+        int fetched = 0;
+        final int playerBatch = getPlayerBatch(maxEntries, playerEntries.length);
 
-        for (int retry = playerEntries.length; result == null && retry > 0; retry--) {
+        for (int retry = playerEntries.length; fetched == 0 && retry > 0; retry--) {
             final IPlayerEntry player = playerEntries[keyPos];
             final BlockPlacerPlayer playerEntry = m_blocks.get(player);
             if (playerEntry != null) {
-                Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                synchronized (queue) {
-                    if (!queue.isEmpty()) {
-                        IBlockPlacerEntry entry = queue.poll();
-                        if (entry != null) {
-                            result = entry;
+                final int maxFetch = permissionGroup.getBlocksLeft(player, playerBatch);
+                synchronized (playerEntry.getMutex()) {
+                    if (playerEntry.getQueueSize() > 0) {
+                        final BlockPlacerSegment segment = playerEntry.nextSegment();
+                        final int drained = segment != null
+                                ? playerEntry.drainBlocks(segment, blockResult, Math.min(maxFetch, BlockSetBatch.MAX_SIZE)) : 0;
+                        fetched = drained;
+                        
+                        IBlockPlacerEntry entry;
+                        while (segment != null && drained == 0 && fetched < maxFetch 
+                                && (entry = playerEntry.poll(segment)) != null) {
+                            result.add(entry);
+                            fetched++;
+                            
+                            if (entry.isDemanding() || !(entry instanceof IBlockPlacerLocationEntry)) {
+                                break;
+                            }
+                        }
+                        
+                        if (fetched > 0) {
+                            m_globalQueueSize.addAndGet(-fetched);
                             resultPlayer = player;
 
-                            if (blocksPlaced.containsKey(player)) {
-                                blocksPlaced.put(player, blocksPlaced.get(player) + 1);
-                            } else {
-                                blocksPlaced.put(player, 1);
-                            }
+                            blocksPlaced.merge(player, fetched, Integer::sum);
                         }
                     } else {
                         for (IJobEntry job : playerEntry.getJobs()) {
@@ -532,12 +706,11 @@ public class BlockPlacer implements IBlockPlacer {
                     }
                 }
 
-                final int size = queue.size();
+                final int size = playerEntry.getQueueSize();
                 if (size < permissionGroup.getQueueSoftLimit()) {
                     unlockQueue(player, true);
                 }
-                if (size == 0 && !playerEntry.hasJobs()) {
-                    m_blocks.remove(playerEntries[keyPos]);
+                if (size == 0 && !playerEntry.hasJobs() && removePlayer(player, playerEntry, false)) {
                     if (player.getMessaging(MessageSystem.BAR)) {
                         hideProgressBar(player, playerEntry);
                     }
@@ -548,8 +721,65 @@ public class BlockPlacer implements IBlockPlacer {
             keyPos = (keyPos + 1) % playerEntries.length;
         }
 
-        permissionGroup.updateProgress(keyPos, resultPlayer);
-        return result;
+        permissionGroup.updateProgress(keyPos, resultPlayer, fetched);
+    }
+
+    /**
+     * Remove the player entry from the queues. The entry is removed only if
+     * it is empty, entries that are being filled by producers are left
+     * untouched.
+     *
+     * @param player
+     * @param playerEntry
+     * @param ignoreJobs remove the entry even if it has jobs
+     * @return true if the entry was removed
+     */
+    private boolean removePlayer(final IPlayerEntry player, final BlockPlacerPlayer playerEntry,
+            final boolean ignoreJobs) {
+        final boolean[] removed = new boolean[]{false};
+
+        m_blocks.computeIfPresent(player, (pe, entry) -> {
+            if (entry != playerEntry
+                    || (!ignoreJobs && entry.hasJobs())
+                    || !entry.tryRetire()) {
+                return entry;
+            }
+
+            removed[0] = true;
+            return null;
+        });
+
+        return removed[0];
+    }
+
+    /**
+     * Get the player entry that accepts new entries
+     *
+     * @param player
+     * @return
+     */
+    private BlockPlacerPlayer getPlayerEntry(final IPlayerEntry player) {
+        return m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe));
+    }
+
+    /**
+     * Handle the memory pressure change, the global queue is unlocked
+     * as soon as the GC frees enough memory
+     *
+     * @param oldLevel
+     * @param newLevel
+     */
+    private void onMemoryPressureChanged(MemoryPressure oldLevel, MemoryPressure newLevel) {
+        if (newLevel != MemoryPressure.Normal || !m_globalQueueLocked
+                || m_globalQueueSize.get() >= m_queueMaxSizeSoft) {
+            return;
+        }
+
+        synchronized (m_globalWaitMutex) {
+            m_globalWaitMutex.notifyAll();
+        }
+
+        m_globalQueueLocked = false;
     }
 
     /**
@@ -557,11 +787,9 @@ public class BlockPlacer implements IBlockPlacer {
      */
     public void stop() {
         m_task.stop();
+        MemoryMonitor.removeListener(m_memoryListener);
 
-        BlockPlacerPlayer[] entries;
-        synchronized (m_mutex) {
-            entries = m_blocks.values().toArray(new BlockPlacerPlayer[0]);
-        }
+        BlockPlacerPlayer[] entries = m_blocks.values().toArray(new BlockPlacerPlayer[0]);
 
         for (BlockPlacerPlayer pe : entries) {
             for (IJobEntry je : pe.getJobs()) {
@@ -584,12 +812,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public int getJobId(IPlayerEntry player) {
-        final BlockPlacerPlayer playerEntry;
-        synchronized (m_mutex) {
-            playerEntry = m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe));
-        }
-
-        return playerEntry.getNextJobId();
+        return getPlayerEntry(player).getNextJobId();
     }
 
     /**
@@ -601,13 +824,11 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IJobEntry getJob(IPlayerEntry player, int jobId) {
-        synchronized (m_mutex) {
-            BlockPlacerPlayer playerEntry = m_blocks.get(player);
-            if (playerEntry == null) {
-                return null;
-            }
-            return playerEntry.getJob(jobId);
+        BlockPlacerPlayer playerEntry = m_blocks.get(player);
+        if (playerEntry == null) {
+            return null;
         }
+        return playerEntry.getJob(jobId);
     }
 
     /**
@@ -619,13 +840,19 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public boolean addJob(IPlayerEntry player, IJobEntry job) {
-        final boolean result;
+        final boolean[] added = new boolean[]{false};
 
-        synchronized (m_mutex) {
-            result = m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe))
-                    .addJob(job, false);
-        }
+        //Add the job while holding the map entry so the player entry is not retired in the meantime
+        m_blocks.compute(player, (pe, entry) -> {
+            if (entry == null) {
+                entry = new BlockPlacerPlayer(pe);
+            }
+
+            added[0] = entry.addJob(job, false);
+            return entry;
+        });
 
+        final boolean result = added[0];
         if (result) {
             m_jobAddedListeners.keySet().forEach(listener -> listener.jobAdded(job));
             
@@ -651,6 +878,91 @@ public class BlockPlacer implements IBlockPlacer {
             return false;
         }
 
+        final boolean isJob = entry instanceof JobEntry;
+        if (!waitForQueue(player, isJob)) {
+            return false;
+        }
+
+        if (isJob) {
+            //Register the job before it is visible to the block placer
+            m_blocks.compute(player, (pe, e) -> {
+                if (e == null) {
+                    e = new BlockPlacerPlayer(pe);
+                }
+
+                e.addJob((JobEntry) entry, true);
+                e.offer(entry);
+                return e;
+            });
+        } else {
+            //The physics lock needs to be in place before the block placer can see the entry
+            if (entry instanceof IBlockPlacerLocationEntry) {
+                IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
+                String worldName = bpEntry.getWorldName();
+                if (worldName != null) {
+                    m_physicsWatcher.addLocation(worldName, bpEntry.getLocation());
+                }
+            }
+
+            BlockPlacerPlayer target = getPlayerEntry(player);
+            while (!target.offer(entry)) {
+                //The player entry was retired by the block placer
+                target = getPlayerEntry(player);
+            }
+        }
+        m_globalQueueSize.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Add block set operation to perform in async mode. The block is stored
+     * in the job block set buffer, no block placer entry is created.
+     *
+     * @param player the player
+     * @param jobId the job ID
+     * @param target the block set target
+     * @param x
+     * @param y
+     * @param z
+     * @param block the new block
+     * @param mode the set block mode (IBlockSetTarget.MODE_*)
+     * @return
+     */
+    public boolean addBlock(final IPlayerEntry player, final int jobId, final IBlockSetTarget target,
+            final int x, final int y, final int z, final BlockStateHolder block, final int mode) {
+        if (player == null) {
+            return false;
+        }
+
+        if (!waitForQueue(player, false)) {
+            return false;
+        }
+
+        //The physics lock needs to be in place before the block placer can see the block
+        final String worldName = target.getTargetWorldName();
+        if (worldName != null) {
+            m_physicsWatcher.addLocation(worldName, x, y, z);
+        }
+
+        BlockPlacerPlayer playerEntry = getPlayerEntry(player);
+        while (!playerEntry.offerBlock(jobId, target, x, y, z, block, mode)) {
+            //The player entry was retired by the block placer
+            playerEntry = getPlayerEntry(player);
+        }
+        m_globalQueueSize.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Wait until the player is allowed to add new entries to the queue
+     *
+     * @param player
+     * @param isJob is the entry a job entry
+     * @return false if the entry should not be added
+     */
+    private boolean waitForQueue(final IPlayerEntry player, final boolean isJob) {
         boolean isMain = m_taskDispatcher.isMainTask();
 
         boolean retry = false;
@@ -680,85 +992,52 @@ public class BlockPlacer implements IBlockPlacer {
                 }
             }
 
-            synchronized (m_mutex) {
-                final BlockPlacerPlayer playerEntry = 
-                        m_blocks.computeIfAbsent(player, pe -> new BlockPlacerPlayer(pe));
-
-                if (m_lockedQueues.contains(player) && !(entry instanceof JobEntry)) {
-                    waitOn = player.getWaitMutex();
-                    retry = true;
-                    continue;
-                }
+            final BlockPlacerPlayer playerEntry = getPlayerEntry(player);
 
-                final Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                final boolean bypassGlobal = (player.isAllowed(Permission.QUEUE_BYPASS) && !ConfigProvider.permission().isQueueBypassDisabled())
-                        || entry instanceof JobEntry;
-                final boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS) || entry instanceof JobEntry;
-                final IPermissionGroup group = player.getPermissionGroup();
-                int globalSize = 0;
-                for (Map.Entry<IPlayerEntry, BlockPlacerPlayer> queueEntry : m_blocks.entrySet()) {
-                    globalSize += queueEntry.getValue().getQueue().size();
-                }
+            if (m_lockedQueues.contains(player) && !isJob) {
+                waitOn = player.getWaitMutex();
+                retry = true;
+                continue;
+            }
 
-                long memAvailable = GCUtils.getTotalAvailableMemory();
+            final boolean bypassGlobal = (player.isAllowed(Permission.QUEUE_BYPASS) && !ConfigProvider.permission().isQueueBypassDisabled())
+                    || isJob;
+            final boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS) || isJob;
+            final IPermissionGroup group = player.getPermissionGroup();
+            final int globalSize = m_globalQueueSize.get();
 
-                boolean queueFull = m_queueMaxSizeHard > 0 && globalSize > m_queueMaxSizeHard;
-                boolean memLow = m_minMemoryHard > 0 && memAvailable < m_minMemoryHard;
+            boolean queueFull = m_queueMaxSizeHard > 0 && globalSize > m_queueMaxSizeHard;
+            boolean memLow = MemoryMonitor.getLevel() == MemoryPressure.Hard;
 
-                if ((queueFull || memLow) && !bypassGlobal) {
-                    if (!playerEntry.isInformed()) {
-                        playerEntry.setInformed(true);
+            if ((queueFull || memLow) && !bypassGlobal) {
+                if (!playerEntry.isInformed()) {
+                    playerEntry.setInformed(true);
 
-                        if (queueFull) {
-                            player.say(MessageType.BLOCK_PLACER_GLOBAL_QUEUE_FULL.format());
-                        } else if (memLow) {
-                            player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
-                        }
+                    if (queueFull) {
+                        player.say(MessageType.BLOCK_PLACER_GLOBAL_QUEUE_FULL.format());
+                    } else if (memLow) {
+                        player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
                     }
-
-                    waitOn = m_globalWaitMutex;
-                    m_globalQueueLocked = true;
-                    retry = true;
-
-                    continue;
                 }
 
-                if (playerEntry.isInformed()) {
-                    playerEntry.setInformed(false);
-                }
-
-                boolean wait;
-                synchronized (queue) {
-                    if (queue.size() >= group.getQueueHardLimit() && !bypass) {
-                        wait = true;
-                    } else {
-                        queue.add(entry);
-                        wait = false;
-                    }
-                }
+                waitOn = m_globalWaitMutex;
+                m_globalQueueLocked = true;
+                retry = true;
 
-                if (wait) {
-                    if (!m_lockedQueues.contains(player)) {
-                        m_lockedQueues.add(player);
-                        player.say(MessageType.BLOCK_PLACER_QUEUE_FULL.format());
-                    }
+                continue;
+            }
 
-                    waitOn = player.getWaitMutex();
-                    retry = true;
-                    continue;
-                }
+            if (playerEntry.isInformed()) {
+                playerEntry.setInformed(false);
+            }
 
-                if (entry instanceof IBlockPlacerLocationEntry) {
-                    IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                    String worldName = bpEntry.getWorldName();
-                    if (worldName != null) {
-                        m_physicsWatcher.addLocation(worldName, bpEntry.getLocation());
-                    }
-                }
-                if (entry instanceof JobEntry) {
-                    playerEntry.addJob((JobEntry) entry, true);
+            if (playerEntry.getQueueSize() >= group.getQueueHardLimit() && !bypass) {
+                if (m_lockedQueues.add(player)) {
+                    player.say(MessageType.BLOCK_PLACER_QUEUE_FULL.format());
                 }
 
+                waitOn = player.getWaitMutex();
+                retry = true;
             }
         } while (retry);
 
@@ -816,74 +1095,88 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public int cancelJob(IPlayerEntry player, int jobId) {
-        int newSize, result;
-        final BlockPlacerPlayer playerEntry;
-        Queue<IBlockPlacerEntry> queue = null;
-        IJobEntry job = null;
-        synchronized (m_mutex) {
-            playerEntry = m_blocks.get(player);
-            if (playerEntry == null) {
-                return 0;
-            }
-            job = playerEntry.getJob(jobId);
-            if (job instanceof UndoJob) {
-                player.say(MessageType.BLOCK_PLACER_CANCEL_UNDO.format());
-                return 0;
-            }
+        final BlockPlacerPlayer playerEntry = m_blocks.get(player);
+        if (playerEntry == null) {
+            return 0;
+        }
 
-            queue = playerEntry.getQueue();
+        final IJobEntry job = playerEntry.getJob(jobId);
+        if (job instanceof UndoJob) {
+            player.say(MessageType.BLOCK_PLACER_CANCEL_UNDO.format());
+            return 0;
+        }
 
-            if (job != null) {
-                playerEntry.removeJob(job);
-                onJobRemoved(job);
-            }
+        if (job != null) {
+            playerEntry.removeJob(job);
+            onJobRemoved(job);
         }
 
         waitForJob(job);
 
-        synchronized (m_mutex) {
-            Queue<IBlockPlacerEntry> filtered = new ArrayDeque<>();
-            if (queue != null) {
-                synchronized (queue) {
-                    //TODO: Optimize this for undo
-                    for (IBlockPlacerEntry entry : queue) {
-                        if (entry.getJobId() == jobId) {
-                            if (entry instanceof IBlockPlacerLocationEntry) {
-                                IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                                String worldName = bpEntry.getWorldName();
-                                if (worldName != null) {
-                                    m_physicsWatcher.removeLocation(worldName, bpEntry.getLocation());
-                                }
-                            } else if (entry instanceof JobEntry) {
-                                JobEntry jobEntry = (JobEntry) entry;
-                                playerEntry.removeJob(jobEntry);
-                                onJobRemoved(jobEntry);
-                            }
-                        } else {
-                            filtered.add(entry);
-                        }
-                    }
-                }
+        //The job segment is detached at once, the entries are removed outside the lock
+        final Queue<IBlockPlacerEntry> entries;
+        synchronized (playerEntry.getMutex()) {
+            entries = playerEntry.dropSegment(jobId);
+        }
 
-                newSize = filtered.size();
-                result = queue.size() - filtered.size();
-            } else {
-                newSize = 0;
-                result = 0;
+        final PhysicsLockRelease locks = new PhysicsLockRelease(m_physicsWatcher);
+        final int result = removeEntries(playerEntry, entries, locks);
+        locks.release();
+
+        playerEntry.entriesRemoved(result);
+        m_globalQueueSize.addAndGet(-result);
+
+        final int newSize = playerEntry.getQueueSize();
+        IPermissionGroup group = player.getPermissionGroup();
+        if (newSize == 0 && removePlayer(player, playerEntry, true)) {
+            if (player.getMessaging(MessageSystem.BAR)) {
+                hideProgressBar(player, playerEntry);
             }
-            IPermissionGroup group = player.getPermissionGroup();
-            if (newSize > 0) {
-                playerEntry.updateQueue(filtered);
-            } else if (newSize == 0) {
-                m_blocks.remove(player);
-                if (player.getMessaging(MessageSystem.BAR)) {
-                    hideProgressBar(player, playerEntry);
-                }
+        }
+        if (newSize == 0 || newSize < group.getQueueSoftLimit()) {
+            unlockQueue(player, newSize != 0);
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove the detached queue entries, the physics locks are collected
+     * and need to be released by the caller
+     *
+     * @param playerEntry
+     * @param entries the entries to remove
+     * @param locks the physics locks to release
+     * @return number of removed operations
+     */
+    private int removeEntries(final BlockPlacerPlayer playerEntry,
+            final Queue<IBlockPlacerEntry> entries, final PhysicsLockRelease locks) {
+        if (entries == null) {
+            return 0;
+        }
+
+        int result = 0;
+        for (IBlockPlacerEntry entry : entries) {
+            if (entry instanceof BlockSetBuffer) {
+                result += ((BlockSetBuffer) entry).discard(locks);
+                continue;
             }
-            if (newSize == 0 || newSize < group.getQueueSoftLimit()) {
-                unlockQueue(player, newSize != 0);
+
+            result++;
+
+            if (entry instanceof IBlockPlacerLocationEntry) {
+                IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
+                String worldName = bpEntry.getWorldName();
+                if (worldName != null) {
+                    locks.add(worldName, bpEntry.getLocation());
+                }
+            } else if (entry instanceof JobEntry) {
+                JobEntry jobEntry = (JobEntry) entry;
+                playerEntry.removeJob(jobEntry);
+                onJobRemoved(jobEntry);
             }
         }
+
         return result;
     }
 
@@ -896,39 +1189,34 @@ public class BlockPlacer implements IBlockPlacer {
     @Override
     public int purge(IPlayerEntry player) {
         int result = 0;
-        synchronized (m_mutex) {
-            final BlockPlacerPlayer playerEntry = m_blocks.get(player);
-            if (playerEntry != null) {
-                Queue<IBlockPlacerEntry> queue = playerEntry.getQueue();
-                synchronized (queue) {
-                    for (IBlockPlacerEntry entry : queue) {
-                        if (entry instanceof IBlockPlacerLocationEntry) {
-                            IBlockPlacerLocationEntry bpEntry = (IBlockPlacerLocationEntry) entry;
-                            String name = bpEntry.getWorldName();
-                            if (name != null) {
-                                m_physicsWatcher.removeLocation(name, bpEntry.getLocation());
-                            }
-                        } else if (entry instanceof JobEntry) {
-                            JobEntry jobEntry = (JobEntry) entry;
-                            playerEntry.removeJob(jobEntry);
-                            onJobRemoved(jobEntry);
-                        }
-                    }
-                }
+        final BlockPlacerPlayer playerEntry = m_blocks.get(player);
+        if (playerEntry != null) {
+            final List<Queue<IBlockPlacerEntry>> segments;
+            synchronized (playerEntry.getMutex()) {
+                segments = playerEntry.dropSegments();
+            }
 
-                IJobEntry[] jobs = playerEntry.getJobs();
-                for (IJobEntry job : jobs) {
-                    playerEntry.removeJob(job.getJobId());
-                    onJobRemoved(job);
-                }
-                result = queue.size();
-                m_blocks.remove(player);                
-                if (player.getMessaging(MessageSystem.BAR)) {
-                    hideProgressBar(player, playerEntry);
-                }
+            final PhysicsLockRelease locks = new PhysicsLockRelease(m_physicsWatcher);
+            for (Queue<IBlockPlacerEntry> entries : segments) {
+                result += removeEntries(playerEntry, entries, locks);
+            }
+            locks.release();
+
+            playerEntry.entriesRemoved(result);
+            m_globalQueueSize.addAndGet(-result);
+
+            IJobEntry[] jobs = playerEntry.getJobs();
+            for (IJobEntry job : jobs) {
+                playerEntry.removeJob(job.getJobId());
+                onJobRemoved(job);
+            }
+            
+            removePlayer(player, playerEntry, true);
+            if (player.getMessaging(MessageSystem.BAR)) {
+                hideProgressBar(player, playerEntry);
             }
-            unlockQueue(player, false);
         }
+        unlockQueue(player, false);
 
         return result;
     }
@@ -941,10 +1229,8 @@ public class BlockPlacer implements IBlockPlacer {
     @Override
     public int purgeAll() {
         int result = 0;
-        synchronized (m_mutex) {
-            for (IPlayerEntry user : getAllPlayers()) {
-                result += purge(user);
-            }
+        for (IPlayerEntry user : getAllPlayers()) {
+            result += purge(user);
         }
 
         return result;
@@ -957,9 +1243,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IPlayerEntry[] getAllPlayers() {
-        synchronized (m_mutex) {
-            return m_blocks.keySet().toArray(new IPlayerEntry[0]);
-        }
+        return m_blocks.keySet().toArray(new IPlayerEntry[0]);
     }
 
     /**
@@ -970,9 +1254,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public IBlockPlacerPlayer getPlayerEvents(IPlayerEntry player) {
-        synchronized (m_mutex) {
-            return m_blocks.get(player);
-        }
+        return m_blocks.get(player);
     }
 
     /**
@@ -982,10 +1264,7 @@ public class BlockPlacer implements IBlockPlacer {
      * @return
      */
     public String getPlayerMessage(IPlayerEntry player) {
-        final BlockPlacerPlayer entry;
-        synchronized (m_mutex) {
-            entry = m_blocks.get(player);
-        }
+        final BlockPlacerPlayer entry = m_blocks.get(player);
 
         boolean bypass = player.isAllowed(Permission.QUEUE_BYPASS);
         IPermissionGroup group = player.getPermissionGroup();
@@ -1027,10 +1306,7 @@ public class BlockPlacer implements IBlockPlacer {
      */
     @Override
     public void removeJob(final IPlayerEntry player, IJobEntry jobEntry) {
-        BlockPlacerPlayer playerEntry;
-        synchronized (m_mutex) {
-            playerEntry = m_blocks.get(player);
-        }
+        BlockPlacerPlayer playerEntry = m_blocks.get(player);
 
         if (playerEntry != null) {
             playerEntry.removeJob(jobEntry);
@@ -1137,11 +1413,10 @@ public class BlockPlacer implements IBlockPlacer {
      * @param player
      */
     private void unlockQueue(final IPlayerEntry player, boolean talk) {
-        if (m_lockedQueues.contains(player)) {
+        if (m_lockedQueues.remove(player)) {
             if (talk) {
                 player.say(MessageType.BLOCK_PLACER_QUEUE_UNLOCKED.format());
             }
-            m_lockedQueues.remove(player);
 
             Object mutex = player.getWaitMutex();
             synchronized (mutex) {
@@ -100,6 +100,17 @@ public class BlockPlacerGroup {
      * @param pe
      */
     public void updateProgress(int keyPos, IPlayerEntry pe) {
+        updateProgress(keyPos, pe, 1);
+    }
+
+    /**
+     * Set new sequence number and update player blocks left
+     *
+     * @param keyPos
+     * @param pe
+     * @param blocks number of blocks placed for the player
+     */
+    public void updateProgress(int keyPos, IPlayerEntry pe, int blocks) {
         m_seqNumber = keyPos;
         if (pe == null) {
             return;
@@ -110,7 +121,7 @@ public class BlockPlacerGroup {
             return;
         }
         
-        cnt--;
+        cnt -= blocks;
         if (cnt <= 0) {
             m_players.remove(pe);            
         } else {
@@ -118,6 +129,22 @@ public class BlockPlacerGroup {
         }
     }
 
+    /**
+     * Get the number of blocks the player can place
+     *
+     * @param pe
+     * @param max the maximum value to return
+     * @return
+     */
+    public int getBlocksLeft(IPlayerEntry pe, int max) {
+        Integer cnt = m_players.getOrDefault(pe, 0);
+        if (cnt == INFINITE) {
+            return max;
+        }
+        
+        return Math.max(1, Math.min(cnt, max));
+    }
+
     public int getQueueSoftLimit() {
         return m_permGroup.getQueueSoftLimit();
     }
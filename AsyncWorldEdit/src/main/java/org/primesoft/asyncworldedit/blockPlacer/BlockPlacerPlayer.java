@@ -47,14 +47,17 @@
  */
 package org.primesoft.asyncworldedit.blockPlacer;
 
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerPlayer;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
 import org.primesoft.asyncworldedit.api.blockPlacer.ICountProvider;
@@ -76,9 +79,25 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
     private final Map<ICountProvider, Object> m_otherCountSources = new ConcurrentHashMap<>();
 
     /**
-     * The queue
+     * The queue segments (one per job)
      */
-    private Queue<IBlockPlacerEntry> m_queue;
+    private final ConcurrentMap<Integer, BlockPlacerSegment> m_segments = new ConcurrentHashMap<>();
+    
+    /**
+     * Number of entries on the queue, -1 when the entry is retired
+     */
+    private final AtomicInteger m_queueSize = new AtomicInteger(0);
+    
+    /**
+     * The consumers mutex (block placer, job cancel and purge)
+     */
+    private final Object m_mutex = new Object();
+    
+    /**
+     * The job ID of the last processed segment
+     */
+    private int m_lastJobId = Integer.MIN_VALUE;
+    
     /**
      * Current block placing speed (blocks per second)
      */
@@ -112,7 +131,6 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
      */
     public BlockPlacerPlayer(IPlayerEntry player) {
         m_player = player;
-        m_queue = new LinkedList<>();
         m_speed = 0;
         m_jobs = new ConcurrentHashMap<>();
     }
@@ -138,13 +156,18 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
     }
 
     /**
-     * Get block entries queue
+     * Get a snapshot of the block entries queue
      *
      * @return
      */
     @Override
     public Queue<IBlockPlacerEntry> getQueue() {
-        return m_queue;
+        final Queue<IBlockPlacerEntry> result = new ArrayDeque<>();
+        for (BlockPlacerSegment segment : m_segments.values()) {
+            result.addAll(segment.getQueue());
+        }
+        
+        return result;
     }
 
     /**
@@ -154,7 +177,240 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
      */
     @Override
     public void updateQueue(Queue<IBlockPlacerEntry> newQueue) {
-        m_queue = newQueue;
+        synchronized (m_mutex) {
+            dropSegments();
+            
+            int size = 0;
+            for (IBlockPlacerEntry entry : newQueue) {
+                size += entry instanceof BlockSetBuffer ? ((BlockSetBuffer) entry).size() : 1;
+                
+                while (!getSegment(entry.getJobId()).offer(entry)) {
+                    Thread.yield();
+                }
+            }
+            
+            m_queueSize.set(size);
+        }
+    }
+    
+    /**
+     * The consumers mutex, needs to be held when entries are removed 
+     * from the queue
+     *
+     * @return
+     */
+    Object getMutex() {
+        return m_mutex;
+    }
+    
+    /**
+     * Get the queue segment that accepts new entries
+     *
+     * @param jobId
+     * @return
+     */
+    private BlockPlacerSegment getSegment(int jobId) {
+        return m_segments.computeIfAbsent(jobId, BlockPlacerSegment::new);
+    }
+    
+    /**
+     * Reserve place for a new entry
+     *
+     * @return false if the player entry was retired
+     */
+    private boolean reserve() {
+        int size;
+        do {
+            size = m_queueSize.get();
+            if (size < 0) {
+                return false;
+            }
+        } while (!m_queueSize.compareAndSet(size, size + 1));
+        
+        return true;
+    }
+    
+    /**
+     * Add entry to the job queue segment. This method does not block and can be
+     * called by multiple producers at once.
+     *
+     * @param entry
+     * @return false if the player entry was retired and a new entry needs to be used
+     */
+    boolean offer(IBlockPlacerEntry entry) {
+        if (!reserve()) {
+            return false;
+        }
+        
+        final int jobId = entry.getJobId();
+        while (!getSegment(jobId).offer(entry)) {
+            //The segment is being closed
+            Thread.yield();
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Add block set operation to the job block set buffer. This method does 
+     * not create any objects as long as the open buffer has free space.
+     *
+     * @param jobId
+     * @param target
+     * @param x
+     * @param y
+     * @param z
+     * @param block
+     * @param mode
+     * @return false if the player entry was retired and a new entry needs to be used
+     */
+    boolean offerBlock(int jobId, IBlockSetTarget target, 
+            int x, int y, int z, BlockStateHolder block, int mode) {
+        if (!reserve()) {
+            return false;
+        }
+        
+        while (!getSegment(jobId).offerBlock(target, x, y, z, block, mode, m_player)) {
+            //The segment is being closed
+            Thread.yield();
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Get the next queue segment to process. The segments are processed in 
+     * round robin (job ID order), the empty segments of finished jobs 
+     * are removed. Needs to be called while holding the consumers mutex.
+     *
+     * @return the segment or null if there is nothing to process
+     */
+    BlockPlacerSegment nextSegment() {
+        final int lastJobId = m_lastJobId;
+        BlockPlacerSegment first = null;
+        BlockPlacerSegment next = null;
+        
+        for (BlockPlacerSegment segment : m_segments.values()) {
+            final int jobId = segment.getJobId();
+            
+            if (!segment.hasWork()) {
+                if (!m_jobs.containsKey(jobId) && segment.tryClose()) {
+                    m_segments.remove(jobId, segment);
+                }
+                continue;
+            }
+            
+            if (first == null || jobId < first.getJobId()) {
+                first = segment;
+            }
+            if (jobId > lastJobId && (next == null || jobId < next.getJobId())) {
+                next = segment;
+            }
+        }
+        
+        final BlockPlacerSegment result = next != null ? next : first;
+        if (result != null) {
+            m_lastJobId = result.getJobId();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get the next entry from the queue segment
+     *
+     * @param segment
+     * @return the entry or null if the segment is empty or
+     * the block set buffer is on the segment head
+     */
+    IBlockPlacerEntry poll(BlockPlacerSegment segment) {
+        final IBlockPlacerEntry result = segment.poll();
+        if (result != null) {
+            m_queueSize.decrementAndGet();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Move the block set operations from the block set buffer on the segment
+     * head to the batch
+     *
+     * @param segment
+     * @param batch
+     * @param max maximum number of blocks
+     * @return number of blocks moved to the batch
+     */
+    int drainBlocks(BlockPlacerSegment segment, BlockSetBatch batch, int max) {
+        final int result = segment.drainBlocks(batch, max);
+        if (result > 0) {
+            m_queueSize.addAndGet(-result);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Detach the job queue segment, the segment does not accept new entries.
+     * The removed entries need to be reported using entriesRemoved.
+     * Needs to be called while holding the consumers mutex.
+     *
+     * @param jobId
+     * @return the segment entries or null if there is no segment for the job
+     */
+    Queue<IBlockPlacerEntry> dropSegment(int jobId) {
+        final BlockPlacerSegment segment = m_segments.remove(jobId);
+        
+        return segment != null ? segment.close() : null;
+    }
+    
+    /**
+     * Detach all the queue segments.
+     * The removed entries need to be reported using entriesRemoved.
+     * Needs to be called while holding the consumers mutex.
+     *
+     * @return the entries of all the segments
+     */
+    List<Queue<IBlockPlacerEntry>> dropSegments() {
+        final List<Queue<IBlockPlacerEntry>> result = new ArrayList<>();
+        for (Integer jobId : m_segments.keySet()) {
+            final Queue<IBlockPlacerEntry> entries = dropSegment(jobId);
+            if (entries != null) {
+                result.add(entries);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Inform the entry that entries were removed directly from the queue
+     *
+     * @param count
+     */
+    void entriesRemoved(int count) {
+        if (count > 0) {
+            m_queueSize.addAndGet(-count);
+        }
+    }
+    
+    /**
+     * Get the number of entries on the queue
+     *
+     * @return
+     */
+    int getQueueSize() {
+        return Math.max(0, m_queueSize.get());
+    }
+    
+    /**
+     * Retire the player entry, no new entries are going to be accepted.
+     * Only empty entries can be retired.
+     *
+     * @return true if the entry was retired
+     */
+    boolean tryRetire() {
+        return m_queueSize.compareAndSet(0, -1);
     }
 
     /**
@@ -337,12 +593,12 @@ public class BlockPlacerPlayer implements IBlockPlacerPlayer {
 
     @Override
     public boolean hasBlocks() {
-        return !m_queue.isEmpty() || m_otherCountSources.keySet().stream().anyMatch(i -> i.getCount() > 0);
+        return m_queueSize.get() > 0 || m_otherCountSources.keySet().stream().anyMatch(i -> i.getCount() > 0);
     }
 
     @Override
     public int getOperationCount() {
-        return m_queue.size() + m_otherCountSources.keySet().stream().mapToInt(ICountProvider::getCount).sum();
+        return getQueueSize() + m_otherCountSources.keySet().stream().mapToInt(ICountProvider::getCount).sum();
     }
 
     @Override
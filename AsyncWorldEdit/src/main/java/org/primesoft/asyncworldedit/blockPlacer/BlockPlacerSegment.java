@@ -0,0 +1,313 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ * The part of the player queue that contains the entries of a single job.
+ * Producers add the entries without locking, the segment can be closed
+ * and detached from the player queue at once (job cancel).
+ *
+ * @author SBPrime
+ */
+final class BlockPlacerSegment {
+
+    /**
+     * The job ID
+     */
+    private final int m_jobId;
+
+    /**
+     * The segment entries
+     */
+    private final Queue<IBlockPlacerEntry> m_queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The block set buffer that accepts new blocks (the last entry on the queue)
+     */
+    private final AtomicReference<BlockSetBuffer> m_openBuffer = new AtomicReference<>();
+
+    /**
+     * Number of producers adding entries
+     */
+    private final AtomicInteger m_writers = new AtomicInteger(0);
+
+    /**
+     * Is the segment closed for producers
+     */
+    private volatile boolean m_isClosed;
+
+    BlockPlacerSegment(int jobId) {
+        m_jobId = jobId;
+    }
+
+    /**
+     * The job ID
+     *
+     * @return
+     */
+    int getJobId() {
+        return m_jobId;
+    }
+
+    /**
+     * The segment entries
+     *
+     * @return
+     */
+    Queue<IBlockPlacerEntry> getQueue() {
+        return m_queue;
+    }
+
+    /**
+     * Add entry to the segment. This method does not block and can be
+     * called by multiple producers at once.
+     *
+     * @param entry
+     * @return false if the segment is closed
+     */
+    boolean offer(IBlockPlacerEntry entry) {
+        if (!enter()) {
+            return false;
+        }
+
+        try {
+            //The blocks added after this entry need to be placed after it
+            sealOpenBuffer();
+            m_queue.add(entry);
+            return true;
+        } finally {
+            m_writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Add block set operation to the segment block set buffer. This method
+     * does not create any objects as long as the open buffer has free space.
+     *
+     * @param target
+     * @param x
+     * @param y
+     * @param z
+     * @param block
+     * @param mode
+     * @param player
+     * @return false if the segment is closed
+     */
+    boolean offerBlock(IBlockSetTarget target,
+            int x, int y, int z, BlockStateHolder block, int mode, IPlayerEntry player) {
+        if (!enter()) {
+            return false;
+        }
+
+        try {
+            while (true) {
+                final BlockSetBuffer buffer = m_openBuffer.get();
+                if (buffer != null && buffer.isOwner(m_jobId, target)
+                        && buffer.add(x, y, z, block, mode)) {
+                    return true;
+                }
+
+                //The buffer needs to be on the queue before other producers can use it
+                final BlockSetBuffer newBuffer = new BlockSetBuffer(m_jobId, target, player);
+                m_queue.add(newBuffer);
+
+                if (m_openBuffer.compareAndSet(buffer, newBuffer)) {
+                    if (buffer != null) {
+                        buffer.seal();
+                    }
+                } else {
+                    newBuffer.seal();
+                }
+            }
+        } finally {
+            m_writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the next entry from the segment
+     *
+     * @return the entry or null if the segment is empty or
+     * the block set buffer is on the segment head
+     */
+    IBlockPlacerEntry poll() {
+        IBlockPlacerEntry result;
+        while ((result = m_queue.peek()) instanceof BlockSetBuffer) {
+            if (!((BlockSetBuffer) result).isDone()) {
+                return null;
+            }
+
+            m_queue.poll();
+        }
+
+        if (result != null) {
+            m_queue.poll();
+        }
+
+        return result;
+    }
+
+    /**
+     * Move the block set operations from the block set buffer on the
+     * segment head to the batch
+     *
+     * @param batch
+     * @param max maximum number of blocks
+     * @return number of blocks moved to the batch
+     */
+    int drainBlocks(BlockSetBatch batch, int max) {
+        final BlockSetBuffer buffer = peekBuffer();
+
+        return buffer != null ? buffer.drain(batch, max) : 0;
+    }
+
+    /**
+     * Has the segment any entries or blocks to process
+     *
+     * @return
+     */
+    boolean hasWork() {
+        final IBlockPlacerEntry head = removeDoneBuffers();
+        if (head instanceof BlockSetBuffer) {
+            return ((BlockSetBuffer) head).size() > 0;
+        }
+
+        return head != null;
+    }
+
+    /**
+     * Close the segment, no new entries are accepted. 
+     * The method waits for the producers that are adding entries.
+     *
+     * @return the segment entries
+     */
+    Queue<IBlockPlacerEntry> close() {
+        m_isClosed = true;
+        while (m_writers.get() != 0) {
+            Thread.yield();
+        }
+
+        sealOpenBuffer();
+        return m_queue;
+    }
+
+    /**
+     * Try to close the empty segment
+     *
+     * @return true if the segment was empty and is closed
+     */
+    boolean tryClose() {
+        close();
+        if (removeDoneBuffers() == null) {
+            return true;
+        }
+
+        m_isClosed = false;
+        return false;
+    }
+
+    /**
+     * Register a producer
+     *
+     * @return false if the segment is closed
+     */
+    private boolean enter() {
+        m_writers.incrementAndGet();
+        if (m_isClosed) {
+            m_writers.decrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Stop adding blocks to the open block set buffer
+     */
+    private void sealOpenBuffer() {
+        final BlockSetBuffer buffer = m_openBuffer.getAndSet(null);
+        if (buffer != null) {
+            buffer.seal();
+        }
+    }
+
+    /**
+     * Remove the drained buffers from the segment head
+     *
+     * @return the segment head
+     */
+    private IBlockPlacerEntry removeDoneBuffers() {
+        IBlockPlacerEntry head;
+        while ((head = m_queue.peek()) instanceof BlockSetBuffer
+                && ((BlockSetBuffer) head).isDone()) {
+            m_queue.poll();
+        }
+
+        return head;
+    }
+
+    /**
+     * Get the block set buffer from the segment head, the drained
+     * buffers are removed from the segment
+     *
+     * @return the buffer or null if the head is not a block set buffer
+     */
+    private BlockSetBuffer peekBuffer() {
+        final IBlockPlacerEntry head = removeDoneBuffers();
+
+        return head instanceof BlockSetBuffer ? (BlockSetBuffer) head : null;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+
+/**
+ * The block set operations drained from one block set buffer.
+ * The batch is reused by the block placer between the runs.
+ *
+ * @author SBPrime
+ */
+final class BlockSetBatch {
+
+    /**
+     * Number of bits used to store the block index in the chunk order
+     */
+    private final static int INDEX_BITS = 20;
+
+    /**
+     * The block index mask
+     */
+    private final static long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    /**
+     * The maximum number of blocks in the batch
+     */
+    final static int MAX_SIZE = 1 << INDEX_BITS;
+
+    /**
+     * The job ID
+     */
+    private int m_jobId;
+
+    /**
+     * The block set target
+     */
+    private IBlockSetTarget m_target;
+
+    /**
+     * The player
+     */
+    private IPlayerEntry m_player;
+
+    /**
+     * The packed block positions
+     */
+    private long[] m_positions = new long[0];
+
+    /**
+     * The blocks
+     */
+    private BlockStateHolder[] m_blocks = new BlockStateHolder[0];
+
+    /**
+     * The set block modes
+     */
+    private byte[] m_modes = new byte[0];
+
+    /**
+     * The block processing order (chunk key and block index)
+     */
+    private long[] m_order = new long[0];
+
+    /**
+     * Is the processing order sorted by chunk
+     */
+    private boolean m_isSorted;
+
+    /**
+     * Number of blocks
+     */
+    private int m_size;
+
+    void setOwner(int jobId, IBlockSetTarget target, IPlayerEntry player) {
+        m_jobId = jobId;
+        m_target = target;
+        m_player = player;
+    }
+
+    void add(long position, BlockStateHolder block, byte mode) {
+        if (m_size == m_positions.length) {
+            final int capacity = Math.max(64, m_size * 2);
+            m_positions = Arrays.copyOf(m_positions, capacity);
+            m_blocks = Arrays.copyOf(m_blocks, capacity);
+            m_modes = Arrays.copyOf(m_modes, capacity);
+        }
+
+        m_positions[m_size] = position;
+        m_blocks[m_size] = block;
+        m_modes[m_size] = mode;
+        m_size++;
+        m_isSorted = false;
+    }
+
+    int getJobId() {
+        return m_jobId;
+    }
+
+    IBlockSetTarget getTarget() {
+        return m_target;
+    }
+
+    IPlayerEntry getPlayer() {
+        return m_player;
+    }
+
+    int size() {
+        return m_size;
+    }
+
+    boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * Get the block index for the n-th processed block
+     *
+     * @param n
+     * @return
+     */
+    int index(int n) {
+        return m_isSorted ? (int) (m_order[n] & INDEX_MASK) : n;
+    }
+
+    int getX(int idx) {
+        return BlockSetBuffer.unpackX(m_positions[idx]);
+    }
+
+    int getY(int idx) {
+        return BlockSetBuffer.unpackY(m_positions[idx]);
+    }
+
+    int getZ(int idx) {
+        return BlockSetBuffer.unpackZ(m_positions[idx]);
+    }
+
+    BlockStateHolder getBlock(int idx) {
+        return m_blocks[idx];
+    }
+
+    int getMode(int idx) {
+        return m_modes[idx];
+    }
+
+    /**
+     * Get the chunk key of the n-th processed block
+     *
+     * @param n
+     * @return
+     */
+    long getChunkKey(int n) {
+        final long pos = m_positions[index(n)];
+        return ((long) (BlockSetBuffer.unpackX(pos) >> 4) << 32) | ((BlockSetBuffer.unpackZ(pos) >> 4) & 0xffffffffL);
+    }
+
+    /**
+     * Sort the processing order by chunk, blocks placed in the same
+     * chunk keep their order
+     */
+    void sortByChunk() {
+        if (m_size < 2) {
+            return;
+        }
+
+        if (m_order.length < m_size) {
+            m_order = new long[m_positions.length];
+        }
+
+        for (int i = 0; i < m_size; i++) {
+            final long pos = m_positions[i];
+            final long cx = (BlockSetBuffer.unpackX(pos) >> 4) & 0x3fffff;
+            final long cz = (BlockSetBuffer.unpackZ(pos) >> 4) & 0x3fffff;
+
+            m_order[i] = (cx << (INDEX_BITS + 22)) | (cz << INDEX_BITS) | i;
+        }
+
+        Arrays.sort(m_order, 0, m_size);
+        m_isSorted = true;
+    }
+
+    /**
+     * Apply the block and release the physics lock
+     *
+     * @param idx the block index
+     * @param physicsWatch
+     * @return
+     */
+    boolean apply(int idx, IPhysicsWatch physicsWatch) {
+        final long pos = m_positions[idx];
+        final int x = BlockSetBuffer.unpackX(pos);
+        final int y = BlockSetBuffer.unpackY(pos);
+        final int z = BlockSetBuffer.unpackZ(pos);
+
+        try {
+            return m_target.applyBlock(m_player, BlockVector3.at(x, y, z), m_blocks[idx], m_modes[idx]);
+        } catch (Exception ex) {
+            ExceptionHelper.printException(ex, "Error while processing extent function.");
+            return false;
+        } finally {
+            final String worldName = m_target.getTargetWorldName();
+            if (worldName != null) {
+                physicsWatch.removeLocation(worldName, x, y, z);
+            }
+        }
+    }
+
+    /**
+     * Apply all the blocks in the processing order
+     *
+     * @param physicsWatch
+     */
+    void applyAll(IPhysicsWatch physicsWatch) {
+        for (int i = 0; i < m_size; i++) {
+            apply(index(i), physicsWatch);
+        }
+    }
+
+    /**
+     * Remove all blocks from the batch
+     */
+    void clear() {
+        Arrays.fill(m_blocks, 0, m_size, null);
+        m_size = 0;
+        m_isSorted = false;
+        m_target = null;
+        m_player = null;
+    }
+}
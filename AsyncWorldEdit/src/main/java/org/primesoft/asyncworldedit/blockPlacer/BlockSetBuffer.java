@@ -0,0 +1,420 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ * Struct of arrays ring buffer containing the queued block set operations
+ * of one job. The buffer is placed on the player queue once and the blocks
+ * are appended to it (packed position, block palette id and set mode) 
+ * without creating any objects. The block placer drains the blocks directly
+ * from the buffer, the buffer is removed from the queue when it is sealed
+ * and empty.
+ *
+ * @author SBPrime
+ */
+final class BlockSetBuffer implements IBlockPlacerEntry {
+
+    /**
+     * The initial buffer capacity
+     */
+    private final static int INITIAL_CAPACITY = 64;
+
+    /**
+     * The maximum buffer capacity
+     */
+    final static int MAX_CAPACITY = 4096;
+
+    /**
+     * Pack the block position
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3ffffff) << 38) | ((long) (z & 0x3ffffff) << 12) | (y & 0xfff);
+    }
+
+    static int unpackX(long pos) {
+        return (int) (pos >> 38);
+    }
+
+    static int unpackY(long pos) {
+        return (int) (pos << 52 >> 52);
+    }
+
+    static int unpackZ(long pos) {
+        return (int) (pos << 26 >> 38);
+    }
+
+    /**
+     * The job ID
+     */
+    private final int m_jobId;
+
+    /**
+     * The block set target
+     */
+    private final IBlockSetTarget m_target;
+
+    /**
+     * The player
+     */
+    private final IPlayerEntry m_player;
+
+    /**
+     * The packed block positions
+     */
+    private long[] m_positions;
+
+    /**
+     * The block palette ids
+     */
+    private int[] m_blocks;
+
+    /**
+     * The set block modes
+     */
+    private byte[] m_modes;
+
+    /**
+     * Index of the first block
+     */
+    private int m_head;
+
+    /**
+     * Number of blocks in the buffer
+     */
+    private int m_size;
+
+    /**
+     * No new blocks are accepted
+     */
+    private boolean m_isSealed;
+
+    /**
+     * The blocks palette
+     */
+    private BlockStateHolder[] m_palette;
+
+    /**
+     * Number of palette entries
+     */
+    private int m_paletteSize;
+
+    /**
+     * The palette ids
+     */
+    private final IdentityHashMap<BlockStateHolder, Integer> m_paletteIds;
+
+    /**
+     * The last added block
+     */
+    private BlockStateHolder m_lastBlock;
+
+    /**
+     * The last added block palette id
+     */
+    private int m_lastBlockId;
+
+    BlockSetBuffer(int jobId, IBlockSetTarget target, IPlayerEntry player) {
+        m_jobId = jobId;
+        m_target = target;
+        m_player = player;
+
+        m_positions = new long[INITIAL_CAPACITY];
+        m_blocks = new int[INITIAL_CAPACITY];
+        m_modes = new byte[INITIAL_CAPACITY];
+        m_palette = new BlockStateHolder[INITIAL_CAPACITY];
+        m_paletteIds = new IdentityHashMap<>();
+    }
+
+    @Override
+    public int getJobId() {
+        return m_jobId;
+    }
+
+    @Override
+    public boolean isDemanding() {
+        return false;
+    }
+
+    /**
+     * Apply all the blocks from the buffer (the block placer drains 
+     * the buffer directly)
+     *
+     * @param bp
+     * @return
+     */
+    @Override
+    public boolean process(IBlockPlacer bp) {
+        final BlockSetBatch batch = new BlockSetBatch();
+        final IPhysicsWatch physicsWatch = ((BlockPlacer) bp).getPhysicsWatcher();
+        while (drain(batch, MAX_CAPACITY) > 0) {
+            batch.applyAll(physicsWatch);
+            batch.clear();
+        }
+
+        return true;
+    }
+
+    /**
+     * Is the buffer owned by the job and target
+     *
+     * @param jobId
+     * @param target
+     * @return
+     */
+    boolean isOwner(int jobId, IBlockSetTarget target) {
+        return m_jobId == jobId && m_target == target;
+    }
+
+    /**
+     * Add block to the buffer
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param block
+     * @param mode
+     * @return false if the buffer is sealed or full
+     */
+    synchronized boolean add(int x, int y, int z, BlockStateHolder block, int mode) {
+        if (m_isSealed) {
+            return false;
+        }
+
+        if (m_size == m_positions.length) {
+            if (m_size == MAX_CAPACITY) {
+                return false;
+            }
+
+            grow();
+        }
+
+        final int id = getPaletteId(block);
+        if (id < 0) {
+            return false;
+        }
+
+        final int idx = (m_head + m_size) & (m_positions.length - 1);
+        m_positions[idx] = pack(x, y, z);
+        m_blocks[idx] = id;
+        m_modes[idx] = (byte) mode;
+        m_size++;
+
+        return true;
+    }
+
+    /**
+     * Move up to max blocks from the buffer to the batch
+     *
+     * @param batch
+     * @param max
+     * @return number of moved blocks
+     */
+    synchronized int drain(BlockSetBatch batch, int max) {
+        final int cnt = Math.min(max, m_size);
+        if (cnt == 0) {
+            return 0;
+        }
+
+        batch.setOwner(m_jobId, m_target, m_player);
+
+        final int mask = m_positions.length - 1;
+        int idx = m_head;
+        for (int i = 0; i < cnt; i++) {
+            batch.add(m_positions[idx], m_palette[m_blocks[idx]], m_modes[idx]);
+            idx = (idx + 1) & mask;
+        }
+
+        m_head = idx;
+        m_size -= cnt;
+        if (m_size == 0) {
+            m_head = 0;
+            clearPalette();
+        }
+
+        return cnt;
+    }
+
+    /**
+     * Seal the buffer and remove all the blocks
+     *
+     * @param locks collects the locked blocks to release
+     * @return number of removed blocks
+     */
+    synchronized int discard(PhysicsLockRelease locks) {
+        final int result = m_size;
+        final String worldName = m_target.getTargetWorldName();
+
+        m_isSealed = true;
+
+        if (worldName != null) {
+            final int mask = m_positions.length - 1;
+            for (int i = 0, idx = m_head; i < result; i++, idx = (idx + 1) & mask) {
+                final long pos = m_positions[idx];
+                locks.add(worldName, unpackX(pos), unpackY(pos), unpackZ(pos));
+            }
+        }
+
+        m_head = 0;
+        m_size = 0;
+        clearPalette();
+
+        return result;
+    }
+
+    /**
+     * Stop accepting new blocks
+     */
+    synchronized void seal() {
+        m_isSealed = true;
+    }
+
+    /**
+     * Is the buffer sealed and all the blocks were drained
+     *
+     * @return
+     */
+    synchronized boolean isDone() {
+        return m_isSealed && m_size == 0;
+    }
+
+    /**
+     * Number of blocks in the buffer
+     *
+     * @return
+     */
+    synchronized int size() {
+        return m_size;
+    }
+
+    /**
+     * Get the block palette id
+     *
+     * @param block
+     * @return the id or -1 if the palette is full
+     */
+    private int getPaletteId(BlockStateHolder block) {
+        if (block == m_lastBlock && block != null) {
+            return m_lastBlockId;
+        }
+
+        final Integer id = m_paletteIds.get(block);
+        final int result;
+        if (id != null) {
+            result = id;
+        } else {
+            if (m_paletteSize == MAX_CAPACITY) {
+                return -1;
+            }
+
+            if (m_paletteSize == m_palette.length) {
+                m_palette = Arrays.copyOf(m_palette, m_palette.length * 2);
+            }
+
+            result = m_paletteSize++;
+            m_palette[result] = block;
+            m_paletteIds.put(block, result);
+        }
+
+        m_lastBlock = block;
+        m_lastBlockId = result;
+
+        return result;
+    }
+
+    /**
+     * Remove all palette entries (the buffer needs to be empty)
+     */
+    private void clearPalette() {
+        if (m_paletteSize == 0) {
+            return;
+        }
+
+        Arrays.fill(m_palette, 0, m_paletteSize, null);
+        m_paletteSize = 0;
+        m_paletteIds.clear();
+        m_lastBlock = null;
+    }
+
+    /**
+     * Double the buffer capacity
+     */
+    private void grow() {
+        final int oldCapacity = m_positions.length;
+        final int newCapacity = oldCapacity * 2;
+
+        final long[] positions = new long[newCapacity];
+        final int[] blocks = new int[newCapacity];
+        final byte[] modes = new byte[newCapacity];
+
+        final int tail = oldCapacity - m_head;
+        System.arraycopy(m_positions, m_head, positions, 0, tail);
+        System.arraycopy(m_blocks, m_head, blocks, 0, tail);
+        System.arraycopy(m_modes, m_head, modes, 0, tail);
+        System.arraycopy(m_positions, 0, positions, tail, m_head);
+        System.arraycopy(m_blocks, 0, blocks, tail, m_head);
+        System.arraycopy(m_modes, 0, modes, tail, m_head);
+
+        m_positions = positions;
+        m_blocks = blocks;
+        m_modes = modes;
+        m_head = 0;
+    }
+}
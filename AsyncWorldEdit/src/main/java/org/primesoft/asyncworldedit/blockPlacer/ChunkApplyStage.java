@@ -0,0 +1,593 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.primesoft.asyncworldedit.api.IChunk;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.directChunk.IChangesetChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IBlockRelighter;
+import org.primesoft.asyncworldedit.api.inner.IInnerDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+
+/**
+ * The block placer chunk apply stage. Consecutive block changes
+ * placed in the same chunk without notifying the neighbours are written 
+ * to the chunk using one direct chunk API changeset. Each block is checked
+ * and logged using the block set target (BlocksHub) the same way as when
+ * the block is placed one by one. The changed chunks are send to the 
+ * players once per block placer run (see flush). All other entries 
+ * are processed one by one.
+ * 
+ * @author SBPrime
+ */
+class ChunkApplyStage {
+    /**
+     * Minimum number of blocks in one chunk that are applied using the
+     * chunk changeset
+     */
+    private final static int MIN_BLOCKS = 2;
+
+    /**
+     * Number of the block positions in one chunk
+     */
+    private final static int CHUNK_POSITIONS = 0x10000;
+
+    /**
+     * The AWE core
+     */
+    private final IAsyncWorldEditCore m_aweCore;
+
+    /**
+     * The physics watcher
+     */
+    private final IPhysicsWatch m_physicsWatcher;
+
+    /**
+     * The chunks changed in this block placer run
+     */
+    private final Map<ChunkKey, IWrappedChunk> m_dirtyChunks = new LinkedHashMap<>();
+
+    /**
+     * The positions (in chunk) of the blocks in the current chunk group.
+     * Only the bits set by the group are cleared when the group ends.
+     */
+    private final long[] m_groupPositions = new long[CHUNK_POSITIONS >> 6];
+
+    /**
+     * The old blocks of the current chunk group (null - block not changed)
+     */
+    private BlockStateHolder[] m_oldBlocks = new BlockStateHolder[0];
+
+    /**
+     * The locations of the changed blocks in the current chunk group
+     */
+    private BlockVector3[] m_locations = new BlockVector3[0];
+
+    ChunkApplyStage(IAsyncWorldEditCore aweCore, IPhysicsWatch physicsWatcher) {
+        m_aweCore = aweCore;
+        m_physicsWatcher = physicsWatcher;
+    }
+
+    /**
+     * Process the chunk ordered entries
+     *
+     * @param bp the block placer
+     * @param batch the entries to process
+     * @return number of chunks written using the changeset
+     */
+    int process(IBlockPlacer bp, List<IBlockPlacerEntry> batch) {
+        final IInnerDirectChunkAPI dcApi = m_aweCore.getInnerDirectChunkAPI();
+        final int size = batch.size();
+
+        int chunks = 0;
+        int pos = 0;
+        while (pos < size) {
+            final int end = dcApi == null ? pos + 1 : findChunkEnd(batch, pos);
+
+            if (end - pos >= MIN_BLOCKS && apply(dcApi, batch, pos, end)) {
+                chunks++;
+            } else {
+                for (int i = pos; i < end; i++) {
+                    batch.get(i).process(bp);
+                }
+            }
+
+            pos = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Process the chunk ordered block set operations
+     *
+     * @param batch the block set operations to process
+     * @return number of chunks written using the changeset
+     */
+    int process(BlockSetBatch batch) {
+        final IInnerDirectChunkAPI dcApi = m_aweCore.getInnerDirectChunkAPI();
+        final IWorld world = batch.getTarget().getTargetWorld();
+        final int size = batch.size();
+
+        if (dcApi == null || world == null) {
+            batch.applyAll(m_physicsWatcher);
+            return 0;
+        }
+
+        int chunks = 0;
+        int pos = 0;
+        while (pos < size) {
+            final int end = findChunkEnd(batch, pos);
+
+            if (end - pos >= MIN_BLOCKS && apply(dcApi, world, batch, pos, end)) {
+                chunks++;
+            } else {
+                for (int i = pos; i < end; i++) {
+                    batch.apply(batch.index(i), m_physicsWatcher);
+                }
+            }
+
+            pos = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Send the chunks changed in this block placer run to the players
+     */
+    void flush() {
+        if (m_dirtyChunks.isEmpty()) {
+            return;
+        }
+
+        for (IWrappedChunk wrappedChunk : m_dirtyChunks.values()) {
+            try {
+                wrappedChunk.sendChunkUpdate();
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Error while sending chunk update.");
+            }
+        }
+        m_dirtyChunks.clear();
+    }
+
+    /**
+     * Get the position of the block in the chunk. Blocks outside 
+     * of the 0-255 height range may share the position, this only
+     * ends the chunk group early.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    private static int getChunkPosition(int x, int y, int z) {
+        return ((y & 0xff) << 8) | ((z & 0xf) << 4) | (x & 0xf);
+    }
+
+    /**
+     * Mark the position as changed in the current chunk group
+     *
+     * @param position
+     * @return false if the position was already changed
+     */
+    private boolean addPosition(int position) {
+        final int word = position >>> 6;
+        final long bit = 1L << position;
+        final long value = m_groupPositions[word];
+        if ((value & bit) != 0) {
+            return false;
+        }
+
+        m_groupPositions[word] = value | bit;
+        return true;
+    }
+
+    /**
+     * Clear the position changed in the current chunk group
+     *
+     * @param position
+     */
+    private void removePosition(int position) {
+        m_groupPositions[position >>> 6] &= ~(1L << position);
+    }
+
+    /**
+     * Find the end of the entries placed in the same chunk. The group
+     * ends on the first block that notifies the neighbours or is placed
+     * on a position already changed in the group.
+     *
+     * @param batch
+     * @param start
+     * @return
+     */
+    private int findChunkEnd(List<IBlockPlacerEntry> batch, int start) {
+        final IBlockPlacerEntry first = batch.get(start);
+        if (!(first instanceof IBlockPlacerChunkEntry)) {
+            return start + 1;
+        }
+
+        final IBlockPlacerChunkEntry chunkEntry = (IBlockPlacerChunkEntry) first;
+        final IWorld world = chunkEntry.getWorld();
+        final IBlockSetTarget target = chunkEntry.getTarget();
+        if (world == null || target == null || chunkEntry.getMode() != IBlockSetTarget.MODE_NO_NOTIFY) {
+            return start + 1;
+        }
+
+        final IPlayerEntry player = chunkEntry.getPlayer();
+        final BlockVector3 location = chunkEntry.getLocation();
+        final int cx = location.getBlockX() >> 4;
+        final int cz = location.getBlockZ() >> 4;
+
+        addPosition(getChunkPosition(location.getBlockX(), location.getBlockY(), location.getBlockZ()));
+
+        final int size = batch.size();
+        int end = start + 1;
+        while (end < size) {
+            final IBlockPlacerEntry entry = batch.get(end);
+            if (!(entry instanceof IBlockPlacerChunkEntry)) {
+                break;
+            }
+
+            final IBlockPlacerChunkEntry next = (IBlockPlacerChunkEntry) entry;
+            final BlockVector3 l = next.getLocation();
+            if (next.getTarget() != target || next.getPlayer() != player
+                    || next.getMode() != IBlockSetTarget.MODE_NO_NOTIFY
+                    || (l.getBlockX() >> 4) != cx || (l.getBlockZ() >> 4) != cz
+                    || !addPosition(getChunkPosition(l.getBlockX(), l.getBlockY(), l.getBlockZ()))) {
+                break;
+            }
+
+            end++;
+        }
+
+        for (int i = start; i < end; i++) {
+            final BlockVector3 l = ((IBlockPlacerChunkEntry) batch.get(i)).getLocation();
+            removePosition(getChunkPosition(l.getBlockX(), l.getBlockY(), l.getBlockZ()));
+        }
+
+        return end;
+    }
+
+    /**
+     * Find the end of the block set operations placed in the same chunk.
+     * The group ends on the first block that notifies the neighbours or is 
+     * placed on a position already changed in the group.
+     *
+     * @param batch
+     * @param start
+     * @return
+     */
+    private int findChunkEnd(BlockSetBatch batch, int start) {
+        if (batch.getMode(batch.index(start)) != IBlockSetTarget.MODE_NO_NOTIFY) {
+            return start + 1;
+        }
+
+        final long chunkKey = batch.getChunkKey(start);
+        final int size = batch.size();
+        int end = start;
+        while (end < size) {
+            final int idx = batch.index(end);
+            if (batch.getChunkKey(end) != chunkKey
+                    || batch.getMode(idx) != IBlockSetTarget.MODE_NO_NOTIFY
+                    || !addPosition(getChunkPosition(batch.getX(idx), batch.getY(idx), batch.getZ(idx)))) {
+                break;
+            }
+
+            end++;
+        }
+
+        for (int i = start; i < end; i++) {
+            final int idx = batch.index(i);
+            removePosition(getChunkPosition(batch.getX(idx), batch.getY(idx), batch.getZ(idx)));
+        }
+
+        return end;
+    }
+
+    /**
+     * Get the old blocks buffer
+     *
+     * @param size
+     * @return
+     */
+    private BlockStateHolder[] getOldBlocks(int size) {
+        if (m_oldBlocks.length < size) {
+            m_oldBlocks = new BlockStateHolder[Math.max(size, m_oldBlocks.length * 2)];
+        }
+
+        return m_oldBlocks;
+    }
+
+    /**
+     * Get the changed block locations buffer
+     *
+     * @param size
+     * @return
+     */
+    private BlockVector3[] getLocations(int size) {
+        if (m_locations.length < size) {
+            m_locations = new BlockVector3[Math.max(size, m_locations.length * 2)];
+        }
+
+        return m_locations;
+    }
+
+    /**
+     * Mark the chunk as changed in this block placer run. The chunk data
+     * is already written so the chunk is send to the players even if
+     * it can not be marked as dirty.
+     *
+     * @param world
+     * @param cx
+     * @param cz
+     * @param wrappedChunk
+     */
+    private void markDirty(IWorld world, int cx, int cz, IWrappedChunk wrappedChunk) {
+        try {
+            wrappedChunk.setDirty();
+        } catch (Exception ex) {
+            ExceptionHelper.printException(ex, "Error while marking the chunk as dirty.");
+        }
+
+        m_dirtyChunks.put(new ChunkKey(world, cx, cz), wrappedChunk);
+    }
+
+    /**
+     * Apply the block changes to one chunk
+     *
+     * @param dcApi
+     * @param batch
+     * @param start
+     * @param end
+     * @return true if the changes were applied
+     */
+    private boolean apply(IInnerDirectChunkAPI dcApi, List<IBlockPlacerEntry> batch,
+            int start, int end) {
+        final IBlockPlacerChunkEntry first = (IBlockPlacerChunkEntry) batch.get(start);
+        final IBlockSetTarget target = first.getTarget();
+        final IWorld world = first.getWorld();
+        final IPlayerEntry player = first.getPlayer();
+        final BlockVector3 location = first.getLocation();
+        final int cx = location.getBlockX() >> 4;
+        final int cz = location.getBlockZ() >> 4;
+        final BlockStateHolder[] oldBlocks = getOldBlocks(end - start);
+
+        final IWrappedChunk wrappedChunk;
+        int changed = 0;
+        try {
+            final IChunk chunk = world.getChunkAt(cx, cz);
+            wrappedChunk = player == null
+                    ? dcApi.wrapChunk(chunk) : dcApi.wrapChunk(chunk, player);
+            if (wrappedChunk == null) {
+                return false;
+            }
+
+            final IChangesetChunkData data = dcApi.createLazyChunkData(wrappedChunk);
+            for (int i = start; i < end; i++) {
+                final IBlockPlacerChunkEntry entry = (IBlockPlacerChunkEntry) batch.get(i);
+                final BlockVector3 l = entry.getLocation();
+                final BlockStateHolder block = entry.getBlock();
+                final BlockStateHolder oldBlock = target.checkBlock(player, l, block);
+
+                oldBlocks[i - start] = oldBlock;
+                if (oldBlock != null) {
+                    data.setBlock(l.getBlockX() & 0xf, l.getBlockY(), l.getBlockZ() & 0xf, block);
+                    changed++;
+                }
+            }
+
+            if (changed > 0) {
+                wrappedChunk.setData(data);
+            }
+        } catch (Exception ex) {
+            Arrays.fill(oldBlocks, 0, end - start, null);
+            ExceptionHelper.printException(ex, "Error while applying chunk changes, placing the blocks one by one.");
+            return false;
+        }
+
+        if (changed > 0) {
+            markDirty(world, cx, cz, wrappedChunk);
+        }
+
+        final IBlockRelighter relighter = dcApi.getBlockRelighter();
+        for (int i = start; i < end; i++) {
+            final IBlockPlacerChunkEntry entry = (IBlockPlacerChunkEntry) batch.get(i);
+            final BlockVector3 l = entry.getLocation();
+            final String worldName = entry.getWorldName();
+            final BlockStateHolder oldBlock = oldBlocks[i - start];
+
+            if (worldName != null) {
+                m_physicsWatcher.removeLocation(worldName, l);
+            }
+            if (oldBlock == null) {
+                continue;
+            }
+
+            oldBlocks[i - start] = null;
+            if (relighter != null) {
+                relighter.queueBlock(world, l.getBlockX(), l.getBlockY(), l.getBlockZ());
+            }
+            target.blockApplied(player, l, oldBlock, entry.getBlock());
+        }
+
+        return true;
+    }
+
+    /**
+     * Apply the block set operations to one chunk
+     *
+     * @param dcApi
+     * @param world
+     * @param batch
+     * @param start
+     * @param end
+     * @return true if the changes were applied
+     */
+    private boolean apply(IInnerDirectChunkAPI dcApi, IWorld world, BlockSetBatch batch,
+            int start, int end) {
+        final IBlockSetTarget target = batch.getTarget();
+        final IPlayerEntry player = batch.getPlayer();
+        final int first = batch.index(start);
+        final int cx = batch.getX(first) >> 4;
+        final int cz = batch.getZ(first) >> 4;
+        final BlockStateHolder[] oldBlocks = getOldBlocks(end - start);
+        final BlockVector3[] locations = getLocations(end - start);
+
+        final IWrappedChunk wrappedChunk;
+        int changed = 0;
+        try {
+            final IChunk chunk = world.getChunkAt(cx, cz);
+            wrappedChunk = player == null
+                    ? dcApi.wrapChunk(chunk) : dcApi.wrapChunk(chunk, player);
+            if (wrappedChunk == null) {
+                return false;
+            }
+
+            final IChangesetChunkData data = dcApi.createLazyChunkData(wrappedChunk);
+            for (int i = start; i < end; i++) {
+                final int idx = batch.index(i);
+                final int x = batch.getX(idx);
+                final int y = batch.getY(idx);
+                final int z = batch.getZ(idx);
+                final BlockStateHolder block = batch.getBlock(idx);
+                final BlockVector3 location = BlockVector3.at(x, y, z);
+                final BlockStateHolder oldBlock = target.checkBlock(player, location, block);
+
+                oldBlocks[i - start] = oldBlock;
+                if (oldBlock != null) {
+                    locations[i - start] = location;
+                    data.setBlock(x & 0xf, y, z & 0xf, block);
+                    changed++;
+                }
+            }
+
+            if (changed > 0) {
+                wrappedChunk.setData(data);
+            }
+        } catch (Exception ex) {
+            Arrays.fill(oldBlocks, 0, end - start, null);
+            Arrays.fill(locations, 0, end - start, null);
+            ExceptionHelper.printException(ex, "Error while applying chunk changes, placing the blocks one by one.");
+            return false;
+        }
+
+        if (changed > 0) {
+            markDirty(world, cx, cz, wrappedChunk);
+        }
+
+        final IBlockRelighter relighter = dcApi.getBlockRelighter();
+        final String worldName = target.getTargetWorldName();
+        for (int i = start; i < end; i++) {
+            final int idx = batch.index(i);
+            final int x = batch.getX(idx);
+            final int y = batch.getY(idx);
+            final int z = batch.getZ(idx);
+            final BlockStateHolder oldBlock = oldBlocks[i - start];
+            final BlockVector3 location = locations[i - start];
+
+            if (worldName != null) {
+                m_physicsWatcher.removeLocation(worldName, x, y, z);
+            }
+            if (oldBlock == null) {
+                continue;
+            }
+
+            oldBlocks[i - start] = null;
+            locations[i - start] = null;
+            if (relighter != null) {
+                relighter.queueBlock(world, x, y, z);
+            }
+            target.blockApplied(player, location, oldBlock, batch.getBlock(idx));
+        }
+
+        return true;
+    }
+
+    /**
+     * The changed chunk key
+     */
+    private final static class ChunkKey {
+        private final IWorld m_world;
+        private final int m_x;
+        private final int m_z;
+
+        ChunkKey(IWorld world, int x, int z) {
+            m_world = world;
+            m_x = x;
+            m_z = z;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(m_world) * 31 + m_x) * 31 + m_z;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ChunkKey)) {
+                return false;
+            }
+
+            final ChunkKey other = (ChunkKey) obj;
+            return m_world == other.m_world && m_x == other.m_x && m_z == other.m_z;
+        }
+    }
+}
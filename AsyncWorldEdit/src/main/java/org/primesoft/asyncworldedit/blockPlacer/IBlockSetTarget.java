@@ -0,0 +1,129 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ * The target of the queued block set operations. The block sets
+ * are stored in the block placer block set buffers and applied
+ * using this interface.
+ *
+ * @author SBPrime
+ */
+public interface IBlockSetTarget {
+
+    /**
+     * Set the block using the default world set block method
+     */
+    public final static int MODE_DEFAULT = 0;
+
+    /**
+     * Set the block without notifying the neighbours and relighting
+     */
+    public final static int MODE_NO_NOTIFY = 1;
+
+    /**
+     * Set the block, notify the neighbours and relight
+     */
+    public final static int MODE_NOTIFY = 2;
+
+    /**
+     * The world name
+     *
+     * @return
+     */
+    String getTargetWorldName();
+
+    /**
+     * The world
+     *
+     * @return
+     */
+    IWorld getTargetWorld();
+
+    /**
+     * Set the queued block
+     *
+     * @param player the player that changes the block
+     * @param location the block location
+     * @param block the new block
+     * @param mode the set block mode
+     * @return true if the block was changed
+     * @throws WorldEditException
+     */
+    boolean applyBlock(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder block, int mode) throws WorldEditException;
+
+    /**
+     * Check if the queued block can be written directly to the chunk data.
+     * The block is checked the same way as in applyBlock.
+     *
+     * @param player the player that changes the block
+     * @param location the block location
+     * @param block the new block
+     * @return the current block or null if the block should not be changed
+     */
+    BlockStateHolder checkBlock(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder block);
+
+    /**
+     * The queued block was written directly to the chunk data
+     *
+     * @param player the player that changed the block
+     * @param location the block location
+     * @param oldBlock the old block
+     * @param block the new block
+     */
+    void blockApplied(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder oldBlock, BlockStateHolder block);
+}
@@ -0,0 +1,174 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import java.util.HashMap;
+import java.util.Map;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+
+/**
+ * Collects the physics locks of the removed queue entries and releases
+ * them in bulk (one physics watch call per world and batch of locations).
+ *
+ * @author SBPrime
+ */
+final class PhysicsLockRelease {
+
+    /**
+     * Maximum number of locations kept for a single world
+     * before the locks are released
+     */
+    private final static int MAX_LOCATIONS = 0x4000;
+
+    /**
+     * The locations of a single world
+     */
+    private final static class WorldLocations {
+
+        private final String m_worldName;
+
+        /**
+         * The x, y, z location triplets
+         */
+        private int[] m_locations = new int[3 * 64];
+
+        /**
+         * Number of locations
+         */
+        private int m_count;
+
+        private WorldLocations(String worldName) {
+            m_worldName = worldName;
+        }
+    }
+
+    /**
+     * The physics watcher
+     */
+    private final IPhysicsWatch m_physicsWatch;
+
+    /**
+     * The collected locations
+     */
+    private final Map<String, WorldLocations> m_worlds = new HashMap<>();
+
+    /**
+     * The last used world
+     */
+    private WorldLocations m_last;
+
+    PhysicsLockRelease(IPhysicsWatch physicsWatch) {
+        m_physicsWatch = physicsWatch;
+    }
+
+    /**
+     * Add the location to release
+     *
+     * @param worldName
+     * @param location
+     */
+    void add(String worldName, BlockVector3 location) {
+        add(worldName, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Add the location to release
+     *
+     * @param worldName
+     * @param x
+     * @param y
+     * @param z
+     */
+    void add(String worldName, int x, int y, int z) {
+        WorldLocations world = m_last;
+        if (world == null || !world.m_worldName.equals(worldName)) {
+            world = m_worlds.computeIfAbsent(worldName, WorldLocations::new);
+            m_last = world;
+        }
+
+        int[] locations = world.m_locations;
+        int pos = world.m_count * 3;
+        if (pos == locations.length) {
+            locations = new int[locations.length * 2];
+            System.arraycopy(world.m_locations, 0, locations, 0, pos);
+            world.m_locations = locations;
+        }
+
+        locations[pos] = x;
+        locations[pos + 1] = y;
+        locations[pos + 2] = z;
+
+        if (++world.m_count == MAX_LOCATIONS) {
+            release(world);
+        }
+    }
+
+    /**
+     * Release all the collected locks
+     */
+    void release() {
+        for (WorldLocations world : m_worlds.values()) {
+            release(world);
+        }
+    }
+
+    /**
+     * Release the collected locks of one world
+     *
+     * @param world
+     */
+    private void release(WorldLocations world) {
+        if (world.m_count == 0) {
+            return;
+        }
+
+        m_physicsWatch.removeLocations(world.m_worldName, world.m_locations, world.m_count);
+        world.m_count = 0;
+    }
+}
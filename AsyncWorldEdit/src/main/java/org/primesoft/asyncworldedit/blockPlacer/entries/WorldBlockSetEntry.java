@@ -0,0 +1,133 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer.entries;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.api.utils.IFuncEx;
+import org.primesoft.asyncworldedit.blockPlacer.IBlockPlacerChunkEntry;
+import org.primesoft.asyncworldedit.blockPlacer.IBlockSetTarget;
+
+/**
+ * Block placer World set block action. The entry can be applied
+ * directly to the chunk data or using the provided function.
+ * @author SBPrime
+ */
+public class WorldBlockSetEntry extends WorldFuncEntryEx<Boolean, WorldEditException>
+        implements IBlockPlacerChunkEntry {
+
+    /**
+     * The block set target
+     */
+    private final IBlockSetTarget m_target;
+
+    /**
+     * The player
+     */
+    private final IPlayerEntry m_player;
+
+    /**
+     * The new block
+     */
+    private final BlockStateHolder m_block;
+
+    /**
+     * The set block mode
+     */
+    private final int m_mode;
+
+    /**
+     *
+     * @param worldName
+     * @param target
+     * @param player
+     * @param jobId
+     * @param location
+     * @param block
+     * @param mode
+     * @param function
+     */
+    public WorldBlockSetEntry(String worldName, IBlockSetTarget target, IPlayerEntry player,
+            int jobId, BlockVector3 location, BlockStateHolder block, int mode,
+            IFuncEx<Boolean, WorldEditException> function) {
+        super(worldName, jobId, location, function);
+
+        m_target = target;
+        m_player = player;
+        m_block = block;
+        m_mode = mode;
+    }
+
+    @Override
+    public IWorld getWorld() {
+        return m_target.getTargetWorld();
+    }
+
+    @Override
+    public IPlayerEntry getPlayer() {
+        return m_player;
+    }
+
+    @Override
+    public BlockStateHolder getBlock() {
+        return m_block;
+    }
+
+    @Override
+    public IBlockSetTarget getTarget() {
+        return m_target;
+    }
+
+    @Override
+    public int getMode() {
+        return m_mode;
+    }
+}
@@ -52,21 +52,22 @@ import org.primesoft.asyncworldedit.changesetSerializer.serializers.SerializerBl
 import com.sk89q.worldedit.history.change.Change;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import static org.primesoft.asyncworldedit.LoggerProvider.log;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IChangesetSerializer;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
@@ -77,13 +78,16 @@ import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.worldedit.ICancelabeEditSession;
 import org.primesoft.asyncworldedit.changesetSerializer.serializers.SerializerBiomeChange;
-import org.primesoft.asyncworldedit.configuration.ConfigMemory;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.configuration.ConfigUndo;
 import org.primesoft.asyncworldedit.configuration.UndoBehaviour;
+import org.primesoft.asyncworldedit.configuration.UndoCodec;
 import org.primesoft.asyncworldedit.strings.MessageType;
-import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
+import org.primesoft.asyncworldedit.utils.io.BlockCompressedInputStream;
+import org.primesoft.asyncworldedit.utils.io.MappedFileStream;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
-import org.primesoft.asyncworldedit.utils.GCUtils;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
 import org.primesoft.asyncworldedit.utils.io.VarInt;
 
 /**
@@ -92,6 +96,11 @@ import org.primesoft.asyncworldedit.utils.io.VarInt;
  */
 public final class SerializerManager implements IInnerSerializerManager {
     private final static Object ITEM = new Object();
+
+    /**
+     * Maximum number of undo files kept open for writing
+     */
+    private final static int MAX_OPEN_WRITERS = 32;
     
     /**
      * The Zero UUID
@@ -112,16 +121,36 @@ public final class SerializerManager implements IInnerSerializerManager {
      */
     private final Map<File, UndoDescriptor> m_undoDescriptors = new HashMap<>();
 
+    /**
+     * The undo descriptors with open writers (least recently used first)
+     */
+    private final Map<UndoDescriptor, Object> m_openWriters = new LinkedHashMap<>(16, 0.75f, true);
+
     /**
      * List of all known serializers
      */
     private final Map<IChangesetSerializer, Object> m_serializers = new ConcurrentHashMap<>();
 
+    /**
+     * Serializers cache (by class name)
+     */
+    private final Map<String, IChangesetSerializer> m_serializersCache = new ConcurrentHashMap<>();
+
     /**
      * The AWE
      */
     private final IAsyncWorldEditCore m_awe;
 
+    /**
+     * The undo manifest mutex
+     */
+    private final Object m_manifestMutex = new Object();
+
+    /**
+     * The undo files manifest (for the current undo folder)
+     */
+    private UndoManifest m_manifest;
+
     @Override
     public void addSerializer(IChangesetSerializer serializer) {
         if (serializer == null) {
@@ -129,6 +158,7 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         m_serializers.put(serializer, ITEM);
+        m_serializersCache.clear();
     }
 
     @Override
@@ -138,6 +168,7 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         m_serializers.remove(serializer);
+        m_serializersCache.clear();
     }
 
     /**
@@ -147,8 +178,14 @@ public final class SerializerManager implements IInnerSerializerManager {
      * @return
      */
     private IChangesetSerializer getSerializer(String className) {
+        IChangesetSerializer result = m_serializersCache.get(className);
+        if (result != null) {
+            return result;
+        }
+
         for (IChangesetSerializer serializer : m_serializers.keySet()) {
             if (serializer.canSerialize(className)) {
+                m_serializersCache.put(className, serializer);
                 return serializer;
             }
         }
@@ -197,6 +234,7 @@ public final class SerializerManager implements IInnerSerializerManager {
 
         try {
             m_undoDescriptors.put(undoFile, new UndoDescriptor(undoFile));
+            getManifest().opened(undoFile, timestamp);
 
             return undoFile;
         } catch (IOException ioe) {
@@ -217,11 +255,35 @@ public final class SerializerManager implements IInnerSerializerManager {
             return;
         }
 
+        synchronized (m_openWriters) {
+            m_openWriters.remove(ud);
+        }
+
         try {
             ud.close();
         } catch (IOException ioe) {
             ExceptionHelper.printException(ioe, "Unable to close undo file.");
         }
+
+        final File idxFile = new File(storageFile.getPath() + UndoManifest.SUFFIX_IDX);
+        getManifest().closed(storageFile, storageFile.length() + idxFile.length());
+    }
+
+    /**
+     * Get the undo files manifest for the current undo folder
+     *
+     * @return
+     */
+    private UndoManifest getManifest() {
+        final File undoFolder = ConfigProvider.getUndoFolder();
+
+        synchronized (m_manifestMutex) {
+            if (m_manifest == null || !m_manifest.getFolder().equals(undoFolder)) {
+                m_manifest = new UndoManifest(undoFolder);
+            }
+
+            return m_manifest;
+        }
     }
 
     @Override
@@ -248,94 +310,99 @@ public final class SerializerManager implements IInnerSerializerManager {
         final File fileName = ud.getFile();
         final File fileNameIdx = new File(ud.getFile().getPath() + ".idx");
 
-        sp.reserve();
-        sp.reserve();
-
         sp.addReference(fileName);
         sp.addReference(fileNameIdx);
 
-        synchronized (ud.getMutex()) {
-            FileOutputStream stream = null;
-            FileOutputStream streamIdx = null;
-
-            try {
-                stream = new FileOutputStream(fileName, true);
-                streamIdx = new FileOutputStream(fileNameIdx, true);
-
-                ByteArrayOutputStream memoryOut = new ByteArrayOutputStream();
-                ByteArrayOutputStream memoryOutIdx = new ByteArrayOutputStream();
-
-                DataOutputStream bufferStream = new DataOutputStream(memoryOut);
-                DataOutputStream bufferStreamIdx = new DataOutputStream(memoryOutIdx);
-
-                for (Change change : data) {
-                    if (bufferStreamIdx.size() > 1000000) {
-                        bufferStreamIdx.flush();
-                        bufferStreamIdx.close();
-                        streamIdx.write(memoryOutIdx.toByteArray());
-
-                        memoryOutIdx = new ByteArrayOutputStream();
-                        bufferStreamIdx = new DataOutputStream(memoryOutIdx);
+        final List<UndoDescriptor> evicted = markWriterUsed(ud);
+        try {
+            synchronized (ud.getMutex()) {
+                if (ud.isClosed()) {
+                    synchronized (m_openWriters) {
+                        m_openWriters.remove(ud);
                     }
-                    if (bufferStream.size() > 1000000) {
-                        bufferStream.flush();
-                        bufferStream.close();
-                        stream.write(memoryOut.toByteArray());
+                    return;
+                }
 
-                        memoryOut = new ByteArrayOutputStream();
-                        bufferStream = new DataOutputStream(memoryOut);
-                    }
+                try {
+                    final UndoFileWriter writer = ud.getWriter(getCompressionLevel());
+                    final DataOutputStream dataStream = writer.getDataStream();
+                    final DataOutputStream idxStream = writer.getIdxStream();
 
-                    long size = save(ud, bufferStream, change);
-                    VarInt.writeLong(bufferStreamIdx, size);
+                    for (Change change : data) {
+                        long size = save(ud, dataStream, change);
+                        VarInt.writeLong(idxStream, size);
 
-                    if (ud.isClosed()) {
-                        break;
+                        if (ud.isClosed()) {
+                            break;
+                        }
                     }
-                }
 
-                bufferStream.flush();
-                bufferStream.close();
+                    writer.commit();
+                } catch (IOException ioe) {
+                    ExceptionHelper.printException(ioe, String.format("Unable to save undo data. Data might be corrupted"));
 
-                bufferStreamIdx.flush();
-                bufferStreamIdx.close();
+                    closeWriter(ud);
+                }
+            }
+        } finally {
+            for (UndoDescriptor evictedUd : evicted) {
+                synchronized (evictedUd.getMutex()) {
+                    closeWriter(evictedUd);
+                }
+            }
 
-                memoryOut.flush();
-                memoryOut.close();
+            sp.removeReference(fileName);
+            sp.removeReference(fileNameIdx);
+        }
+    }
 
-                memoryOutIdx.flush();
-                memoryOutIdx.close();
+    /**
+     * Mark the undo descriptor writer as used
+     *
+     * @param ud
+     * @return the undo descriptors whose writers should be closed
+     */
+    private List<UndoDescriptor> markWriterUsed(UndoDescriptor ud) {
+        synchronized (m_openWriters) {
+            return markUsed(m_openWriters, ud, MAX_OPEN_WRITERS);
+        }
+    }
 
-                stream.write(memoryOut.toByteArray());
-                stream.flush();
-                stream.close();
+    /**
+     * Mark the item as used in the access ordered map and remove the least
+     * recently used items above the limit
+     *
+     * @param <T>
+     * @param lru the access ordered map
+     * @param item
+     * @param max maximum number of items
+     * @return the removed items
+     */
+    static <T> List<T> markUsed(Map<T, Object> lru, T item, int max) {
+        final List<T> result = new ArrayList<>();
 
-                streamIdx.write(memoryOutIdx.toByteArray());
-                streamIdx.flush();
-                streamIdx.close();
-            } catch (IOException ioe) {
-                ExceptionHelper.printException(ioe, String.format("Unable to save undo data. Data might be corrupted"));
+        lru.put(item, ITEM);
 
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException ex) {
-                    }
-                }
+        final Iterator<T> it = lru.keySet().iterator();
+        while (lru.size() > max && it.hasNext()) {
+            result.add(it.next());
+            it.remove();
+        }
 
-                if (streamIdx != null) {
-                    try {
-                        streamIdx.close();
-                    } catch (IOException ex) {
-                    }
-                }
-            } finally {
-                sp.release();
-                sp.release();
+        return result;
+    }
 
-                sp.removeReference(fileName);
-                sp.removeReference(fileNameIdx);
-            }
+    /**
+     * Close the undo descriptor writer. Needs to be called while holding
+     * the descriptor mutex.
+     *
+     * @param ud
+     */
+    private void closeWriter(UndoDescriptor ud) {
+        try {
+            ud.closeWriter();
+        } catch (IOException ioe) {
+            ExceptionHelper.printException(ioe, "Unable to close undo file.");
         }
     }
 
@@ -349,9 +416,6 @@ public final class SerializerManager implements IInnerSerializerManager {
 
         boolean isMain = m_awe.getTaskDispatcher().isMainTask();
         UndoBehaviour behaviour = ConfigProvider.undo().getStorageBehaviour();
-        ConfigMemory mConfig = ConfigProvider.memory();
-        long minMemoryHard = mConfig.getMinMemoryHard() * 1000;
-        long minMemorySoft = mConfig.getMinMemorySoft() * 1000;
 
         final UndoDescriptor ud = m_undoDescriptors.get(storageFile);
         if (ud == null) {
@@ -367,15 +431,20 @@ public final class SerializerManager implements IInnerSerializerManager {
 
         synchronized (mutex) {
             RandomAccessFile stream = null;
+            IChunkCacheStream dataStream = null;
             try {
                 stream = new RandomAccessFile(fileName, "r");
                 UndoEntry uEntry;
                 boolean breakLoop = false;
 
-                IChunkCacheStream dataStream = new ChunkCacheStream(stream);
+                final IChunkCacheStream fileStream = openFileStream(stream);
+                dataStream = fileStream;
+                
+                final int format = UndoEntry.readHeader(fileStream);
+                dataStream = openDataStream(fileStream, format);
 
                 do {
-                    uEntry = UndoEntry.load(dataStream);
+                    uEntry = load(dataStream, format, ud);
                     Change change = deserialize(uEntry, ud);
 
                     if (change != null) {
@@ -383,26 +452,21 @@ public final class SerializerManager implements IInnerSerializerManager {
                     }
 
                     if (behaviour != UndoBehaviour.Off) {
-                        long memAvailable = GCUtils.getTotalAvailableMemory();
-                        boolean memLow = minMemoryHard > 0 && memAvailable < minMemoryHard;
+                        boolean memLow = MemoryMonitor.getLevel() == MemoryPressure.Hard;
                         if (memLow) {
                             player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
 
                             if (behaviour == UndoBehaviour.Drop) {
                                 breakLoop = true;
                             } else if (behaviour == UndoBehaviour.Wait && editSession != null) {
-                                do {
-                                    //TODO: This needs refactoring
+                                while (MemoryMonitor.getLevel() != MemoryPressure.Normal && !editSession.isCanceled()) {
                                     try {
                                         mutex.wait(1000);
                                     } catch (InterruptedException ex) {
                                         breakLoop = true;
                                         break;
-
                                     }
-
-                                    GCUtils.GC();
-                                } while (GCUtils.getTotalAvailableMemory() < minMemorySoft && !editSession.isCanceled());
+                                }
 
                                 breakLoop |= editSession.isCanceled();
                             } else if (editSession == null) {
@@ -411,18 +475,20 @@ public final class SerializerManager implements IInnerSerializerManager {
                         }
                     }
                 } while (uEntry != null && result.size() < entries && !breakLoop);
-
-                stream.close();
             } catch (IOException ioe) {
                 ExceptionHelper.printException(ioe, "Unable to load undo data. Data might be corrupted.");
-
+            } finally {
+                if (dataStream != null) {
+                    closeDataStream(dataStream);
+                }
+                
                 if (stream != null) {
                     try {
                         stream.close();
                     } catch (IOException ex) {
                     }
                 }
-            } finally {
+                
                 sp.release();
                 sp.removeReference(fileName);
             }
@@ -449,7 +515,7 @@ public final class SerializerManager implements IInnerSerializerManager {
         }
 
         data.setId(idx);
-        return save(stream, data);
+        return UndoEntry.save(stream, data, descriptor.getDictionary());
     }
 
     /**
@@ -602,6 +668,60 @@ public final class SerializerManager implements IInnerSerializerManager {
         return UndoEntry.load(stream);
     }
 
+    @Override
+    public int readHeader(IChunkCacheStream stream) throws IOException {
+        return UndoEntry.readHeader(stream);
+    }
+
+    @Override
+    public IChunkCacheStream openFileStream(RandomAccessFile stream) throws IOException {
+        final ConfigUndo undoConfig = ConfigProvider.undo();
+        final long limit = undoConfig != null ? undoConfig.getMappedFileLimit() * (long) 0x100000 : 0;
+
+        return MappedFileStream.open(stream, limit);
+    }
+
+    @Override
+    public IChunkCacheStream openDataStream(IChunkCacheStream stream, int format) throws IOException {
+        if (format < UndoEntry.FORMAT_V3) {
+            return stream;
+        }
+
+        return new BlockCompressedInputStream(stream, stream.getFilePointer());
+    }
+
+    @Override
+    public void closeDataStream(IChunkCacheStream stream) {
+        if (!(stream instanceof Closeable)) {
+            return;
+        }
+
+        try {
+            ((Closeable) stream).close();
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, "Unable to close the undo data stream.");
+        }
+    }
+
+    /**
+     * Get the undo file compression level
+     *
+     * @return
+     */
+    private static int getCompressionLevel() {
+        final ConfigUndo undoConfig = ConfigProvider.undo();
+        if (undoConfig == null) {
+            return Deflater.BEST_SPEED;
+        }
+
+        return undoConfig.getCodec() == UndoCodec.None ? Deflater.NO_COMPRESSION : undoConfig.getCompressionLevel();
+    }
+
+    @Override
+    public UndoEntry load(IChunkCacheStream stream, int format, IMemoryStorage storage) throws IOException {
+        return UndoEntry.load(stream, format, UndoDictionary.fromStorage(storage));
+    }
+
     @Override
     public int save(RandomAccessFile stream, IUndoEntry undoEntry) throws IOException {
         return UndoEntry.save(stream, undoEntry);
@@ -614,29 +734,31 @@ public final class SerializerManager implements IInnerSerializerManager {
 
     @Override
     public Stream<File> getUndoFiles() throws IOException {
-        return Files.walk(ConfigProvider.getUndoFolder().toPath(),
-                2, FileVisitOption.FOLLOW_LINKS)
-                .map(i -> i.toFile())
-                .filter(i -> i.isFile() && i.getName().startsWith(PREFIX));
+        return getManifest().getFiles().stream();
     }
 
     @Override
-    public Long getTimestamp(File file) {
-        if (file == null) {
-            return null;
-        }
+    public Stream<File> getUndoFiles(long timestamp) {
+        return getManifest().getFiles(timestamp).stream();
+    }
 
-        String[] nameParts = file.getName().split("\\.");
-        if (nameParts == null || nameParts.length < 2) {
-            return null;
-        }
+    @Override
+    public void removeUndoFile(File file) {
+        getManifest().removed(file);
+    }
 
-        long timestamp;
-        try {
-            return Long.parseLong(nameParts[1], 16);
-        } catch (NumberFormatException ex) {
-            return null;
-        }
+    @Override
+    public long getUndoSize(UUID player) {
+        return getManifest().getSize(player);
+    }
+
+    @Override
+    public long getUndoSize() {
+        return getManifest().getTotalSize();
+    }
 
+    @Override
+    public Long getTimestamp(File file) {
+        return UndoManifest.getTimestamp(file);
     }
 }
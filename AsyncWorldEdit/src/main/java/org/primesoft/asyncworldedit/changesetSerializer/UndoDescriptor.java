@@ -69,6 +69,21 @@ public class UndoDescriptor implements IMemoryStorage {
     private final Object m_mutex = new Object();
     private long m_entryIdx;
 
+    /**
+     * The undo file dictionary
+     */
+    private final UndoDictionary m_dictionary = new UndoDictionary();
+
+    /**
+     * Is the undo file header written
+     */
+    private boolean m_hasHeader = false;
+
+    /**
+     * The open undo file writer
+     */
+    private UndoFileWriter m_writer;
+
     private final Map<UUID, Change> m_memoryChanges = new ConcurrentHashMap<UUID, Change>();
 
     /**
@@ -111,6 +126,63 @@ public class UndoDescriptor implements IMemoryStorage {
         return m_mutex;
     }
 
+    /**
+     * Get the undo file dictionary
+     *
+     * @return
+     */
+    public UndoDictionary getDictionary() {
+        return m_dictionary;
+    }
+
+    /**
+     * Is the undo file header written
+     *
+     * @return
+     */
+    boolean hasHeader() {
+        return m_hasHeader;
+    }
+
+    /**
+     * Mark the undo file header as written
+     */
+    void setHasHeader() {
+        m_hasHeader = true;
+    }
+
+    /**
+     * Get the undo file writer, the files are opened if needed.
+     * Needs to be called while holding the mutex.
+     *
+     * @param compressionLevel the data compression level
+     * @return
+     * @throws IOException
+     */
+    UndoFileWriter getWriter(int compressionLevel) throws IOException {
+        if (m_writer == null) {
+            m_writer = new UndoFileWriter(this, compressionLevel);
+        }
+
+        return m_writer;
+    }
+
+    /**
+     * Close the undo file writer (if opened).
+     * Needs to be called while holding the mutex.
+     *
+     * @throws IOException
+     */
+    void closeWriter() throws IOException {
+        final UndoFileWriter writer = m_writer;
+        if (writer == null) {
+            return;
+        }
+
+        m_writer = null;
+        writer.close();
+    }
+
     /**
      * Get the undo file
      *
@@ -163,6 +235,10 @@ public class UndoDescriptor implements IMemoryStorage {
 
     void close() throws IOException {
         m_isClosed = true;
+
+        synchronized (m_mutex) {
+            closeWriter();
+        }
     }
 
     boolean isClosed() {
@@ -0,0 +1,241 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
+
+/**
+ * The undo file dictionary. Stores the change types and the block states 
+ * used in one undo file. The new dictionary values are written to the undo
+ * file as definition records before the entry that uses them.
+ *
+ * @author SBPrime
+ */
+public final class UndoDictionary {
+    
+    private final static Charset UTF8 = Charset.forName("UTF8");
+
+    /**
+     * The change type definition
+     */
+    final static int KIND_TYPE = 0;
+
+    /**
+     * The block state definition
+     */
+    final static int KIND_STATE = 1;
+
+    /**
+     * The MTA mutex
+     */
+    private final Object m_mutex = new Object();
+
+    /**
+     * Known values (by kind)
+     */
+    private final List<List<String>> m_values = new ArrayList<>();
+
+    /**
+     * Known value ids (by kind)
+     */
+    private final List<Map<String, Integer>> m_ids = new ArrayList<>();
+
+    /**
+     * Definitions that are not yet written to the file
+     */
+    private final List<int[]> m_pending = new ArrayList<>();
+
+    public UndoDictionary() {
+        for (int i = KIND_TYPE; i <= KIND_STATE; i++) {
+            m_values.add(new ArrayList<>());
+            m_ids.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Get the undo file dictionary for the memory storage
+     *
+     * @param storage
+     * @return The dictionary or null if the storage is not an undo file
+     */
+    public static UndoDictionary fromStorage(IMemoryStorage storage) {
+        return storage instanceof UndoDescriptor ? ((UndoDescriptor) storage).getDictionary() : null;
+    }
+
+    /**
+     * Get the change type id (add it to the dictionary if needed)
+     *
+     * @param type
+     * @return
+     */
+    public int getTypeId(String type) {
+        return getId(KIND_TYPE, type);
+    }
+
+    /**
+     * Get the change type
+     *
+     * @param id
+     * @return
+     */
+    public String getType(int id) {
+        return get(KIND_TYPE, id);
+    }
+
+    /**
+     * Get the block state id (add it to the dictionary if needed)
+     *
+     * @param state
+     * @return
+     */
+    public int getStateId(String state) {
+        return getId(KIND_STATE, state);
+    }
+
+    /**
+     * Get the block state
+     *
+     * @param id
+     * @return
+     */
+    public String getState(int id) {
+        return get(KIND_STATE, id);
+    }
+
+    /**
+     * Write all the definitions that are not yet stored in the file
+     *
+     * @param stream
+     * @return number of written bytes
+     * @throws IOException
+     */
+    int writeDefinitions(DataOutput stream) throws IOException {
+        synchronized (m_mutex) {
+            int result = 0;
+            for (int[] definition : m_pending) {
+                final int kind = definition[0];
+                final int id = definition[1];
+                final byte[] value = m_values.get(kind).get(id).getBytes(UTF8);
+
+                VarInt.writeInt(stream, kind);
+                VarInt.writeInt(stream, id);
+                VarInt.writeInt(stream, value.length);
+                stream.write(value);
+
+                result += VarInt.getSize(kind) + VarInt.getSize(id)
+                        + VarInt.getSize(value.length) + value.length;
+            }
+
+            m_pending.clear();
+            return result;
+        }
+    }
+
+    /**
+     * Add the definition read from the file
+     *
+     * @param kind
+     * @param id
+     * @param value
+     */
+    void define(int kind, int id, String value) {
+        if (kind < KIND_TYPE || kind > KIND_STATE || id < 0) {
+            return;
+        }
+
+        synchronized (m_mutex) {
+            final List<String> values = m_values.get(kind);
+            while (values.size() <= id) {
+                values.add(null);
+            }
+
+            if (values.get(id) == null) {
+                values.set(id, value);
+                m_ids.get(kind).put(value, id);
+            }
+        }
+    }
+
+    private int getId(int kind, String value) {
+        synchronized (m_mutex) {
+            final Map<String, Integer> ids = m_ids.get(kind);
+            Integer result = ids.get(value);
+            if (result != null) {
+                return result;
+            }
+
+            final List<String> values = m_values.get(kind);
+            final int id = values.size();
+
+            values.add(value);
+            ids.put(value, id);
+            m_pending.add(new int[]{kind, id});
+
+            return id;
+        }
+    }
+
+    private String get(int kind, int id) {
+        synchronized (m_mutex) {
+            final List<String> values = m_values.get(kind);
+            if (id < 0 || id >= values.size()) {
+                return null;
+            }
+
+            return values.get(id);
+        }
+    }
+}
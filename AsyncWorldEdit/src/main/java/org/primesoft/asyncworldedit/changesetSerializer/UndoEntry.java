@@ -47,6 +47,7 @@
  */
 package org.primesoft.asyncworldedit.changesetSerializer;
 
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.IOException;
@@ -54,7 +55,10 @@ import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+import org.primesoft.asyncworldedit.api.io.SeekOrigin;
+import org.primesoft.asyncworldedit.utils.io.BlockCompressedInputStream;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
 
 /**
  *
@@ -66,6 +70,36 @@ public class UndoEntry implements IUndoEntry {
     private final static int INT_SIZE = 4;
     private final static Charset UTF8 = Charset.forName("UTF8");
 
+    /**
+     * The undo file magic number ("AWEU")
+     */
+    private final static int FORMAT_MAGIC = 0x41574555;
+
+    /**
+     * The legacy undo file format (no header, full type names)
+     */
+    public final static int FORMAT_LEGACY = 1;
+
+    /**
+     * The undo file format with type dictionary
+     */
+    public final static int FORMAT_V2 = 2;
+
+    /**
+     * The undo file format with type dictionary stored in compressed blocks
+     */
+    public final static int FORMAT_V3 = 3;
+
+    /**
+     * The undo file header size
+     */
+    final static int HEADER_SIZE = INT_SIZE + 1;
+
+    /**
+     * The undo entry record (v2 format)
+     */
+    private final static int RECORD_ENTRY = 2;
+
     private final String m_type;
     private final byte[] m_data;
     private long m_id = -1;
@@ -86,6 +120,17 @@ public class UndoEntry implements IUndoEntry {
         m_id = id;
     }
 
+    /**
+     * Create new undo entry without an id
+     *
+     * @param type
+     * @param data
+     * @return
+     */
+    public static IUndoEntry create(String type, byte[] data) {
+        return new UndoEntry(type, data, -1);
+    }
+
     /**
      * Save the undo data to stream
      *
@@ -144,6 +189,183 @@ public class UndoEntry implements IUndoEntry {
         return totalSize;
     }
 
+    /**
+     * Write the undo file header
+     *
+     * @param stream
+     * @return number of written bytes
+     * @throws IOException
+     */
+    static int writeHeader(DataOutput stream) throws IOException {
+        stream.writeInt(FORMAT_MAGIC);
+        stream.writeByte(FORMAT_V3);
+
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Read the undo file header. The stream is positioned after the header
+     * (or at the file begining for legacy files)
+     *
+     * @param stream
+     * @return the undo file format
+     * @throws IOException
+     */
+    static int readHeader(IChunkCacheStream stream) throws IOException {
+        stream.seek(0, SeekOrigin.Begin);
+        if (stream.length() >= HEADER_SIZE && stream.readInt() == FORMAT_MAGIC) {
+            return stream.readByte();
+        }
+
+        stream.seek(0, SeekOrigin.Begin);
+        return FORMAT_LEGACY;
+    }
+
+    /**
+     * Save the undo data to stream (v2 format). All the new dictionary
+     * entries are written before the undo entry.
+     *
+     * @param stream
+     * @param entry
+     * @param dictionary
+     * @return number of written bytes
+     * @throws IOException
+     */
+    public static int save(DataOutput stream, IUndoEntry entry, UndoDictionary dictionary) throws IOException {
+        final int typeId = dictionary.getTypeId(entry.getType());
+        final byte[] data = entry.getData();
+        final int dataLen = data.length;
+        final long id = entry.getId() + 1; //The ID can be -1
+
+        final int totalSize = dictionary.writeDefinitions(stream)
+                + VarInt.getSize(RECORD_ENTRY)
+                + VarInt.getSize(typeId)
+                + VarInt.getSize(id)
+                + VarInt.getSize(dataLen) + dataLen;
+
+        VarInt.writeInt(stream, RECORD_ENTRY);
+        VarInt.writeInt(stream, typeId);
+        VarInt.writeLong(stream, id);
+        VarInt.writeInt(stream, dataLen);
+        stream.write(data);
+
+        return totalSize;
+    }
+
+    /**
+     * Load the undo data from stream using the undo file format.
+     * The v2 (and newer) records can only be read using the file dictionary, 
+     * the dictionary is filled with the definition records read from the file.
+     *
+     * @param stream
+     * @param format the undo file format
+     * @param dictionary the undo file dictionary
+     * @return
+     * @throws IOException the dictionary is not available for the v2 format
+     */
+    static UndoEntry load(IChunkCacheStream stream, int format, UndoDictionary dictionary) throws IOException {
+        if (format < FORMAT_V2) {
+            return load(stream);
+        }
+
+        if (dictionary == null) {
+            throw new IOException(String.format("Undo dictionary not available for format %1$s", format));
+        }
+
+        return load(stream, dictionary);
+    }
+
+    /**
+     * Load the undo data from stream (v2 format)
+     *
+     * @param stream
+     * @param dictionary
+     * @return
+     * @throws IOException
+     */
+    static UndoEntry load(IChunkCacheStream stream, UndoDictionary dictionary) throws IOException {
+        while (hasMore(stream)) {
+            UndoEntry result = readRecord(stream, dictionary);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if there is any data left in the stream. The compressed stream
+     * is checked without reading all the block headers.
+     *
+     * @param stream
+     * @return
+     * @throws IOException
+     */
+    private static boolean hasMore(IChunkCacheStream stream) throws IOException {
+        if (stream instanceof BlockCompressedInputStream) {
+            return ((BlockCompressedInputStream) stream).hasMore();
+        }
+
+        return stream.getFilePointer() < stream.length();
+    }
+
+    /**
+     * Load the undo data from stream (v2 format)
+     *
+     * @param stream
+     * @param dictionary
+     * @return
+     * @throws IOException
+     */
+    public static IUndoEntry load(UnsafeDataInput stream, UndoDictionary dictionary) throws IOException {
+        while (stream.available() > 0) {
+            UndoEntry result = readRecord(stream, dictionary);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Read one v2 record
+     *
+     * @param stream
+     * @param dictionary
+     * @return The undo entry or null if the record was a dictionary definition
+     * @throws IOException
+     */
+    private static UndoEntry readRecord(DataInput stream, UndoDictionary dictionary) throws IOException {
+        final int kind = VarInt.readInt(stream);
+
+        if (kind == RECORD_ENTRY) {
+            final int typeId = VarInt.readInt(stream);
+            final long id = VarInt.readLong(stream) - 1;
+            final byte[] data = new byte[VarInt.readInt(stream)];
+            stream.readFully(data);
+
+            final String type = dictionary.getType(typeId);
+            if (type == null) {
+                throw new IOException(String.format("Unknown undo entry type %1$s", typeId));
+            }
+
+            return new UndoEntry(type, data, id);
+        }
+
+        if (kind != UndoDictionary.KIND_TYPE && kind != UndoDictionary.KIND_STATE) {
+            throw new IOException(String.format("Unknown undo record %1$s", kind));
+        }
+
+        final int id = VarInt.readInt(stream);
+        final byte[] value = new byte[VarInt.readInt(stream)];
+        stream.readFully(value);
+
+        dictionary.define(kind, id, new String(value, UTF8));
+        return null;
+    }
+
     /**
      * Load the undo data from stream
      *
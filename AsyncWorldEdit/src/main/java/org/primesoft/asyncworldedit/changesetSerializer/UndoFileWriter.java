@@ -0,0 +1,232 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.primesoft.asyncworldedit.utils.io.BlockCompressedOutputStream;
+import org.primesoft.asyncworldedit.utils.io.ChannelOutputStream;
+import org.primesoft.asyncworldedit.utils.io.DirectBufferPool;
+
+/**
+ * The open undo file writer. Keeps the data and index channels open between
+ * the saves and reuses the compression buffers. The direct channel buffers
+ * are pooled so reopening an evicted writer does not allocate new ones.
+ *
+ * @author SBPrime
+ */
+class UndoFileWriter {
+
+    /**
+     * The data channel buffer size
+     */
+    private final static int DATA_BUFFER_SIZE = 0x10000;
+
+    /**
+     * The index channel buffer size
+     */
+    private final static int IDX_BUFFER_SIZE = 0x2000;
+
+    /**
+     * Maximum number of free buffers kept in each pool
+     */
+    private final static int MAX_POOLED = 8;
+
+    /**
+     * The data channel buffers
+     */
+    final static DirectBufferPool DATA_BUFFERS = new DirectBufferPool(DATA_BUFFER_SIZE, MAX_POOLED);
+
+    /**
+     * The index channel buffers
+     */
+    final static DirectBufferPool IDX_BUFFERS = new DirectBufferPool(IDX_BUFFER_SIZE, MAX_POOLED);
+
+    /**
+     * The undo data channel
+     */
+    private final FileChannel m_dataChannel;
+
+    /**
+     * The undo index channel
+     */
+    private final FileChannel m_idxChannel;
+
+    /**
+     * The compressed data stream
+     */
+    private final BlockCompressedOutputStream m_blockStream;
+
+    /**
+     * The undo data stream
+     */
+    private final DataOutputStream m_dataStream;
+
+    /**
+     * The undo index stream
+     */
+    private final DataOutputStream m_idxStream;
+
+    /**
+     * Open the undo file for writing
+     *
+     * @param descriptor the undo file descriptor
+     * @param compressionLevel the data compression level
+     * @throws IOException
+     */
+    UndoFileWriter(UndoDescriptor descriptor, int compressionLevel) throws IOException {
+        final File file = descriptor.getFile();
+        final File fileIdx = new File(file.getPath() + ".idx");
+
+        final FileChannel dataChannel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        FileChannel idxChannel = null;
+        ChannelOutputStream dataOut = null;
+        ChannelOutputStream idxOut = null;
+
+        try {
+            idxChannel = FileChannel.open(fileIdx.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+            dataOut = new ChannelOutputStream(dataChannel, DATA_BUFFERS);
+            idxOut = new ChannelOutputStream(idxChannel, IDX_BUFFERS);
+            if (!descriptor.hasHeader()) {
+                final DataOutputStream headerStream = new DataOutputStream(dataOut);
+                UndoEntry.writeHeader(headerStream);
+                headerStream.flush();
+
+                descriptor.setHasHeader();
+            }
+
+            m_blockStream = new BlockCompressedOutputStream(dataOut,
+                    BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE, compressionLevel);
+            m_dataStream = new DataOutputStream(m_blockStream);
+            m_idxStream = new DataOutputStream(idxOut);
+        } catch (IOException | RuntimeException ex) {
+            release(dataOut);
+            release(idxOut);
+
+            dataChannel.close();
+            if (idxChannel != null) {
+                idxChannel.close();
+            }
+
+            throw ex;
+        }
+
+        m_dataChannel = dataChannel;
+        m_idxChannel = idxChannel;
+    }
+
+    /**
+     * The undo data stream
+     *
+     * @return
+     */
+    DataOutputStream getDataStream() {
+        return m_dataStream;
+    }
+
+    /**
+     * The undo index stream
+     *
+     * @return
+     */
+    DataOutputStream getIdxStream() {
+        return m_idxStream;
+    }
+
+    /**
+     * Write all the buffered data to the files
+     *
+     * @throws IOException
+     */
+    void commit() throws IOException {
+        m_dataStream.flush();
+        m_blockStream.finishBlock();
+        m_idxStream.flush();
+    }
+
+    /**
+     * Write all the buffered data and close the files
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+        try {
+            try {
+                m_dataStream.close();
+            } finally {
+                m_idxStream.close();
+            }
+        } finally {
+            m_dataChannel.close();
+            m_idxChannel.close();
+        }
+    }
+
+    /**
+     * Close the stream and return its buffer to the pool
+     *
+     * @param stream
+     */
+    private static void release(ChannelOutputStream stream) {
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            //The channel is closed anyway
+        }
+    }
+}
@@ -0,0 +1,592 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.primesoft.asyncworldedit.LoggerProvider.log;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+
+/**
+ * The undo files manifest. An append only log of the undo files stored in
+ * the undo folder (file creation, close and removal), the log is loaded 
+ * once and the undo files are kept in memory ordered by the creation time.
+ * This allows to find the expired undo files without scanning the undo folder.
+ *
+ * @author SBPrime
+ */
+public final class UndoManifest {
+
+    /**
+     * The manifest file name
+     */
+    public final static String FILE_NAME = "undo.manifest";
+
+    /**
+     * The undo file name prefix
+     */
+    final static String PREFIX = "ts";
+
+    /**
+     * The undo index file suffix
+     */
+    public final static String SUFFIX_IDX = ".idx";
+
+    private final static int MAGIC = 0x4157454d;
+
+    private final static int VERSION = 1;
+
+    /**
+     * The undo file was created (value: the creation timestamp)
+     */
+    private final static int RECORD_OPEN = 0;
+
+    /**
+     * The undo file was closed (value: the file size)
+     */
+    private final static int RECORD_CLOSE = 1;
+
+    /**
+     * The undo file was removed
+     */
+    private final static int RECORD_REMOVE = 2;
+
+    /**
+     * Minimum number of records before the manifest is compacted
+     */
+    private final static int COMPACT_MIN_RECORDS = 1024;
+
+    /**
+     * The undo file entry
+     */
+    private final static class Entry {
+
+        /**
+         * The undo file name (owner folder/file name)
+         */
+        private final String m_name;
+
+        /**
+         * The undo file owner (null if unknown)
+         */
+        private final UUID m_owner;
+
+        /**
+         * The undo file creation time
+         */
+        private final long m_timestamp;
+
+        /**
+         * The undo file size (including the index file), 
+         * known when the file is closed
+         */
+        private long m_size;
+
+        /**
+         * Is the undo file still written
+         */
+        private boolean m_isOpen;
+
+        private Entry(String name, long timestamp) {
+            m_name = name;
+            m_owner = parseOwner(name);
+            m_timestamp = timestamp;
+            m_isOpen = true;
+        }
+    }
+
+    /**
+     * The MTA mutex
+     */
+    private final Object m_mutex = new Object();
+
+    /**
+     * The undo folder
+     */
+    private final File m_folder;
+
+    /**
+     * The manifest file
+     */
+    private final File m_file;
+
+    /**
+     * The undo files by name
+     */
+    private final Map<String, Entry> m_entries = new HashMap<>();
+
+    /**
+     * The undo files ordered by the creation time
+     */
+    private final TreeSet<Entry> m_byTimestamp = new TreeSet<>(
+            Comparator.<Entry>comparingLong(i -> i.m_timestamp).thenComparing(i -> i.m_name));
+
+    /**
+     * The undo files size by owner
+     */
+    private final Map<UUID, Long> m_usage = new HashMap<>();
+
+    /**
+     * The size of all undo files
+     */
+    private long m_totalSize;
+
+    /**
+     * Is the manifest loaded
+     */
+    private boolean m_isLoaded;
+
+    public UndoManifest(File folder) {
+        m_folder = folder;
+        m_file = new File(folder, FILE_NAME);
+    }
+
+    /**
+     * The undo folder
+     *
+     * @return
+     */
+    public File getFolder() {
+        return m_folder;
+    }
+
+    /**
+     * Register new undo file
+     *
+     * @param file
+     * @param timestamp the file creation time
+     */
+    public void opened(File file, long timestamp) {
+        final String name = getName(file);
+        if (name == null) {
+            return;
+        }
+
+        synchronized (m_mutex) {
+            load();
+            apply(RECORD_OPEN, name, timestamp);
+            append(RECORD_OPEN, name, timestamp);
+        }
+    }
+
+    /**
+     * Mark the undo file as closed
+     *
+     * @param file
+     * @param size the file size (including the index file)
+     */
+    public void closed(File file, long size) {
+        final String name = getName(file);
+        if (name == null) {
+            return;
+        }
+
+        synchronized (m_mutex) {
+            load();
+            if (apply(RECORD_CLOSE, name, size)) {
+                append(RECORD_CLOSE, name, size);
+            }
+        }
+    }
+
+    /**
+     * Remove the undo file from the manifest
+     *
+     * @param file
+     */
+    public void removed(File file) {
+        final String name = getName(file);
+        if (name == null) {
+            return;
+        }
+
+        synchronized (m_mutex) {
+            load();
+            if (apply(RECORD_REMOVE, name, 0)) {
+                append(RECORD_REMOVE, name, 0);
+            }
+        }
+    }
+
+    /**
+     * Get all the undo files
+     *
+     * @return
+     */
+    public List<File> getFiles() {
+        return getFiles(Long.MAX_VALUE);
+    }
+
+    /**
+     * Get the undo files created before (or at) the timestamp, 
+     * the oldest files first
+     *
+     * @param timestamp
+     * @return
+     */
+    public List<File> getFiles(long timestamp) {
+        final List<File> result = new ArrayList<>();
+
+        synchronized (m_mutex) {
+            load();
+
+            for (Entry entry : m_byTimestamp) {
+                if (entry.m_timestamp > timestamp) {
+                    break;
+                }
+
+                result.add(toFile(entry.m_name));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the size of the closed undo files owned by the player
+     *
+     * @param owner
+     * @return
+     */
+    public long getSize(UUID owner) {
+        synchronized (m_mutex) {
+            load();
+
+            final Long result = m_usage.get(owner);
+            return result != null ? result : 0;
+        }
+    }
+
+    /**
+     * Get the size of all the closed undo files
+     *
+     * @return
+     */
+    public long getTotalSize() {
+        synchronized (m_mutex) {
+            load();
+
+            return m_totalSize;
+        }
+    }
+
+    /**
+     * Try to get the timestamp of the undo file
+     *
+     * @param file
+     * @return File timestamp (in milisecconds) or NULL
+     */
+    static Long getTimestamp(File file) {
+        if (file == null) {
+            return null;
+        }
+
+        String[] nameParts = file.getName().split("\\.");
+        if (nameParts == null || nameParts.length < 2) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(nameParts[1], 16);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the manifest (needs to be called while holding the mutex)
+     */
+    private void load() {
+        if (m_isLoaded) {
+            return;
+        }
+        m_isLoaded = true;
+
+        if (!m_file.exists()) {
+            if (m_folder.isDirectory()) {
+                scan();
+            }
+            rewrite();
+            return;
+        }
+
+        int records = 0;
+        boolean isValid = true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(m_file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log(String.format("Unknown undo manifest format, rebuilding %1$s", m_file));
+                clear();
+                scan();
+                rewrite();
+                return;
+            }
+
+            int kind;
+            while ((kind = in.read()) >= 0) {
+                final String name = in.readUTF();
+                final long value = in.readLong();
+
+                apply(kind, name, value);
+                records++;
+            }
+        } catch (EOFException ex) {
+            //Partially written record (the server was killed)
+            isValid = false;
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, String.format("Unable to read undo manifest %1$s", m_file));
+            isValid = false;
+        }
+
+        if (!isValid || (records > COMPACT_MIN_RECORDS && records > m_entries.size() * 2)) {
+            rewrite();
+        }
+    }
+
+    /**
+     * Build the manifest from the undo folder
+     */
+    private void scan() {
+        final Path root = m_folder.toPath();
+        //The undo files are stored in the owner folders, skip the root files
+        try (Stream<File> files = Files.walk(root, 2, FileVisitOption.FOLLOW_LINKS)
+                .filter(i -> !root.equals(i.getParent()))
+                .map(i -> i.toFile())
+                .filter(i -> i.isFile() && i.getName().startsWith(PREFIX) && !i.getName().endsWith(SUFFIX_IDX))) {
+            for (File file : files.collect(Collectors.toList())) {
+                final String name = getName(file);
+                final Long timestamp = getTimestamp(file);
+                if (name == null || timestamp == null) {
+                    continue;
+                }
+
+                apply(RECORD_OPEN, name, timestamp);
+                apply(RECORD_CLOSE, name, file.length() + new File(file.getPath() + SUFFIX_IDX).length());
+            }
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, "Unable to iterate undo files.");
+        }
+    }
+
+    /**
+     * Write the current state to a new manifest file
+     */
+    private void rewrite() {
+        if (!m_folder.exists() && !m_folder.mkdirs()) {
+            return;
+        }
+
+        final File tmpFile = new File(m_folder, FILE_NAME + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                for (Entry entry : m_byTimestamp) {
+                    writeRecord(out, RECORD_OPEN, entry.m_name, entry.m_timestamp);
+                    if (!entry.m_isOpen) {
+                        writeRecord(out, RECORD_CLOSE, entry.m_name, entry.m_size);
+                    }
+                }
+            }
+
+            try {
+                Files.move(tmpFile.toPath(), m_file.toPath(), 
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, String.format("Unable to write undo manifest %1$s", m_file));
+        }
+    }
+
+    /**
+     * Append the record to the manifest file
+     *
+     * @param kind
+     * @param name
+     * @param value
+     */
+    private void append(int kind, String name, long value) {
+        if (!m_file.exists()) {
+            rewrite();
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(m_file, true)))) {
+            writeRecord(out, kind, name, value);
+        } catch (IOException ex) {
+            ExceptionHelper.printException(ex, String.format("Unable to write undo manifest %1$s", m_file));
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, int kind, String name, long value) throws IOException {
+        out.writeByte(kind);
+        out.writeUTF(name);
+        out.writeLong(value);
+    }
+
+    /**
+     * Apply the record to the in memory state
+     *
+     * @param kind
+     * @param name
+     * @param value
+     * @return true if the state was changed
+     */
+    private boolean apply(int kind, String name, long value) {
+        final Entry entry = m_entries.get(name);
+
+        switch (kind) {
+            case RECORD_OPEN: {
+                if (entry != null) {
+                    remove(entry);
+                }
+
+                final Entry newEntry = new Entry(name, value);
+                m_entries.put(name, newEntry);
+                m_byTimestamp.add(newEntry);
+                return true;
+            }
+            case RECORD_CLOSE: {
+                if (entry == null) {
+                    return false;
+                }
+
+                updateUsage(entry, -entry.m_size);
+                entry.m_size = value;
+                entry.m_isOpen = false;
+                updateUsage(entry, value);
+                return true;
+            }
+            case RECORD_REMOVE: {
+                if (entry == null) {
+                    return false;
+                }
+
+                remove(entry);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private void remove(Entry entry) {
+        m_entries.remove(entry.m_name);
+        m_byTimestamp.remove(entry);
+        updateUsage(entry, -entry.m_size);
+    }
+
+    private void updateUsage(Entry entry, long delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        m_totalSize += delta;
+        if (entry.m_owner != null) {
+            m_usage.merge(entry.m_owner, delta, Long::sum);
+        }
+    }
+
+    private void clear() {
+        m_entries.clear();
+        m_byTimestamp.clear();
+        m_usage.clear();
+        m_totalSize = 0;
+    }
+
+    /**
+     * Get the manifest name of the undo file (owner folder/file name)
+     *
+     * @param file
+     * @return
+     */
+    private static String getName(File file) {
+        final File parent = file != null ? file.getParentFile() : null;
+        if (parent == null) {
+            return null;
+        }
+
+        return parent.getName() + "/" + file.getName();
+    }
+
+    private File toFile(String name) {
+        final int idx = name.indexOf('/');
+        return new File(new File(m_folder, name.substring(0, idx)), name.substring(idx + 1));
+    }
+
+    private static UUID parseOwner(String name) {
+        try {
+            return UUID.fromString(name.substring(0, name.indexOf('/')));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
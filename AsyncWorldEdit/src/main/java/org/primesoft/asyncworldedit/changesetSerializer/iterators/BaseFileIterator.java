@@ -58,7 +58,6 @@ import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
 import org.primesoft.asyncworldedit.api.utils.IDisposable;
 import org.primesoft.asyncworldedit.changesetSerializer.StreamProvider;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
-import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
 import org.primesoft.asyncworldedit.worldedit.history.changeset.ThreadSafeChangeSet;
 
 /**
@@ -87,6 +86,7 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
     protected int m_storageSize;
     protected Change[] m_memoryChanges;
     protected IMemoryStorage m_memoryStorage;
+    protected int m_format;
 
     protected BaseFileIterator(IInnerSerializerManager changesetSerializer) {
         m_changesetSerializer = changesetSerializer;
@@ -111,19 +111,24 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
         }
 
         final StreamProvider sp = StreamProvider.getInstance();
-        final RandomAccessFile stream;
-        final IChunkCacheStream dataStream;
+        RandomAccessFile stream = null;
+        IChunkCacheStream dataStream = null;
+        final int format;
 
         sp.reserve();
         sp.addReference(storageFile);
 
         try {
             stream = new RandomAccessFile(storageFile, "r");
-            dataStream = new ChunkCacheStream(stream);
-
+            IChunkCacheStream fileStream = m_changesetSerializer.openFileStream(stream);
+            dataStream = fileStream;
+            
+            format = m_changesetSerializer.readHeader(fileStream);
+            dataStream = m_changesetSerializer.openDataStream(fileStream, format);
         } catch (IOException ex) {
             ExceptionHelper.printException(ex, String.format("Unable to create undo iterator for %1$s", storageFile.getName()));
 
+            close(stream, dataStream);
             sp.removeReference(storageFile);
             sp.release();
 
@@ -132,6 +137,7 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
 
         synchronized (m_mutex) {
             if (m_isDisposed) {
+                close(stream, dataStream);
                 sp.removeReference(storageFile);
                 sp.release();
 
@@ -141,12 +147,32 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
             m_file = storageFile;
             m_stream = stream;
             m_dataStream = dataStream;
+            m_format = format;
             m_memoryStorage = m_changesetSerializer.getMemoryStorage(storageFile);
         }
 
         return true;
     }
 
+    /**
+     * Close the streams opened for the iterator
+     *
+     * @param stream
+     * @param dataStream
+     */
+    private void close(RandomAccessFile stream, IChunkCacheStream dataStream) {
+        if (dataStream != null) {
+            m_changesetSerializer.closeDataStream(dataStream);
+        }
+
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
     /**
      * Initialize iterator data
      *
@@ -158,6 +184,15 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
         m_memoryChanges = memoryChanges == null ? new Change[0] : memoryChanges;
     }
 
+    /**
+     * Number of changes stored in the file
+     *
+     * @return
+     */
+    public int getStorageSize() {
+        return m_storageSize;
+    }
+
     /**
      * Close all iterator data
      */
@@ -174,6 +209,7 @@ public abstract class BaseFileIterator implements Iterator<Change>, ThreadSafeCh
                 return;
             }
 
+            m_changesetSerializer.closeDataStream(m_dataStream);
             try {
                 m_stream.close();
             } catch (IOException ioe) {
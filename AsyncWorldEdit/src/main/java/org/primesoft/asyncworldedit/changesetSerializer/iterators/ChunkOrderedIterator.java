@@ -0,0 +1,240 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer.iterators;
+
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.primesoft.asyncworldedit.api.utils.IDisposable;
+import org.primesoft.asyncworldedit.blockPlacer.BlockPlacerChange;
+
+/**
+ * Iterator that replays the changes grouped by chunk. A window of changes
+ * is read from the source and sorted by chunk, the order of the changes 
+ * in one chunk is not changed. Only the plain block changes (no tile entity,
+ * not demanding) are reordered, all other changes are barriers: the changes
+ * read before the barrier are returned before it.
+ *
+ * @author SBPrime
+ */
+public class ChunkOrderedIterator implements Iterator<Change>, IDisposable {
+
+    /**
+     * The maximum window size (the change index is stored in 20 bits 
+     * of the sort key)
+     */
+    public final static int MAX_WINDOW = 1 << 20;
+
+    /**
+     * The chunk coordinate mask (22 bits cover the world border)
+     */
+    private final static long CHUNK_MASK = 0x3fffff;
+
+    /**
+     * The change index mask
+     */
+    private final static long INDEX_MASK = MAX_WINDOW - 1;
+
+    /**
+     * The source iterator
+     */
+    private final Iterator<Change> m_source;
+
+    /**
+     * The changes read from the source
+     */
+    private final Change[] m_window;
+
+    /**
+     * The sort keys: chunk x, chunk z and the change index
+     */
+    private final long[] m_keys;
+
+    /**
+     * Number of changes in the window
+     */
+    private int m_count;
+
+    /**
+     * The next change to return
+     */
+    private int m_position;
+
+    /**
+     * The barrier change returned after the window
+     */
+    private Change m_barrier;
+
+    /**
+     * Create new instance of the class
+     *
+     * @param source the changes in the replay order
+     * @param window the maximum number of changes sorted at once
+     */
+    public ChunkOrderedIterator(Iterator<Change> source, int window) {
+        m_source = source;
+
+        window = Math.max(1, Math.min(MAX_WINDOW, window));
+        m_window = new Change[window];
+        m_keys = new long[window];
+    }
+
+    @Override
+    public boolean hasNext() {
+        return m_position < m_count || m_barrier != null || fill();
+    }
+
+    @Override
+    public Change next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        if (m_position < m_count) {
+            final int idx = (int) (m_keys[m_position++] & INDEX_MASK);
+            final Change result = m_window[idx];
+            m_window[idx] = null;
+
+            return result;
+        }
+
+        final Change result = m_barrier;
+        m_barrier = null;
+
+        return result;
+    }
+
+    @Override
+    public void dispose() {
+        Arrays.fill(m_window, 0, m_count, null);
+        m_barrier = null;
+        m_count = 0;
+        m_position = 0;
+
+        if (m_source instanceof IDisposable) {
+            ((IDisposable) m_source).dispose();
+        }
+    }
+
+    /**
+     * Read the next window from the source
+     *
+     * @return true if any change was read
+     */
+    private boolean fill() {
+        int count = 0;
+        while (count < m_window.length && m_source.hasNext()) {
+            final Change change = m_source.next();
+            if (change == null) {
+                continue;
+            }
+
+            final BlockVector3 position = getPosition(change);
+            if (position == null) {
+                m_barrier = change;
+                break;
+            }
+
+            m_window[count] = change;
+            m_keys[count] = ((position.getBlockX() >> 4) & CHUNK_MASK) << 42
+                    | ((position.getBlockZ() >> 4) & CHUNK_MASK) << 20
+                    | count;
+            count++;
+        }
+
+        //The index is the lowest part of the key so the sort is stable
+        Arrays.sort(m_keys, 0, count);
+        m_count = count;
+        m_position = 0;
+
+        return count > 0 || m_barrier != null;
+    }
+
+    /**
+     * Get the position of the change that can be reordered
+     *
+     * @param change
+     * @return The change position or null if the change is a barrier
+     */
+    static BlockVector3 getPosition(Change change) {
+        if (change instanceof BlockPlacerChange) {
+            final BlockPlacerChange bpChange = (BlockPlacerChange) change;
+            if (bpChange.isDemanding()) {
+                return null;
+            }
+
+            change = bpChange.getChange();
+        }
+
+        if (!(change instanceof BlockChange)) {
+            return null;
+        }
+
+        final BlockChange bChange = (BlockChange) change;
+        if (hasNbtData(bChange.getPrevious()) || hasNbtData(bChange.getCurrent())) {
+            return null;
+        }
+
+        return bChange.getPosition();
+    }
+
+    /**
+     * Check if the block has tile entity data
+     *
+     * @param block
+     * @return
+     */
+    private static boolean hasNbtData(BlockStateHolder block) {
+        return block instanceof BaseBlock && ((BaseBlock) block).hasNbtData();
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer.iterators;
+
+import com.sk89q.worldedit.history.change.Change;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.primesoft.asyncworldedit.api.utils.IDisposable;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
+import org.primesoft.asyncworldedit.worldedit.history.changeset.ThreadSafeChangeSet;
+
+/**
+ * Iterator that reads and decodes the changes on a background thread.
+ * The decoded changes are stored in a bounded ring buffer, the undo
+ * (or redo) is applied while the next changes are loaded from the disk.
+ *
+ * @author SBPrime
+ */
+public class PrefetchIterator implements Iterator<Change>, ThreadSafeChangeSet.IThreadSafeIterator, IDisposable {
+
+    /**
+     * The maximum producer wait time (ms), used to check the memory pressure
+     */
+    private final static int WAIT_TIME = 1000;
+
+    /**
+     * The pipeline state shared with the prefetch thread
+     */
+    private static final class Pipeline implements Runnable {
+
+        /**
+         * The source iterator (used only by the prefetch thread)
+         */
+        private final Iterator<Change> m_source;
+
+        /**
+         * The decoded changes ring buffer
+         */
+        private final Change[] m_ring;
+
+        /**
+         * Number of changes decoded at once
+         */
+        private final int m_batchSize;
+
+        /**
+         * The MTA mutex
+         */
+        private final Object m_mutex = new Object();
+
+        /**
+         * The first change in the ring buffer
+         */
+        private int m_head;
+
+        /**
+         * Number of changes in the ring buffer
+         */
+        private int m_count;
+
+        /**
+         * All the changes were decoded
+         */
+        private boolean m_isDone;
+
+        /**
+         * The pipeline was disposed
+         */
+        private boolean m_isDisposed;
+
+        private Pipeline(Iterator<Change> source, int size, int batchSize) {
+            m_source = source;
+            m_ring = new Change[Math.max(1, size)];
+            m_batchSize = Math.max(1, Math.min(batchSize, m_ring.length));
+        }
+
+        @Override
+        public void run() {
+            final Change[] batch = new Change[m_batchSize];
+
+            try {
+                while (true) {
+                    int size = 0;
+                    while (size < batch.length && m_source.hasNext()) {
+                        final Change change = m_source.next();
+                        if (change != null) {
+                            batch[size++] = change;
+                        }
+                    }
+
+                    if (size == 0 || !publish(batch, size)) {
+                        return;
+                    }
+                }
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Unable to prefetch the undo data.");
+            } finally {
+                synchronized (m_mutex) {
+                    m_isDone = true;
+                    m_mutex.notifyAll();
+                }
+
+                if (m_source instanceof IDisposable) {
+                    ((IDisposable) m_source).dispose();
+                }
+            }
+        }
+
+        /**
+         * Move the decoded changes to the ring buffer. When the memory is low
+         * only one batch is decoded ahead.
+         *
+         * @param batch
+         * @param size
+         * @return false if the pipeline was disposed
+         * @throws InterruptedException
+         */
+        private boolean publish(Change[] batch, int size) throws InterruptedException {
+            final Change[] ring = m_ring;
+
+            synchronized (m_mutex) {
+                while (!m_isDisposed && m_count > 0 && m_count + size > getLimit()) {
+                    m_mutex.wait(WAIT_TIME);
+                }
+
+                if (m_isDisposed) {
+                    return false;
+                }
+
+                for (int i = 0; i < size; i++) {
+                    ring[(m_head + m_count + i) % ring.length] = batch[i];
+                    batch[i] = null;
+                }
+                m_count += size;
+
+                m_mutex.notifyAll();
+            }
+
+            return true;
+        }
+
+        /**
+         * Get the maximum number of decoded changes
+         *
+         * @return
+         */
+        private int getLimit() {
+            return MemoryMonitor.getLevel() == MemoryPressure.Normal ? m_ring.length : m_batchSize;
+        }
+
+        private boolean hasNext() {
+            synchronized (m_mutex) {
+                while (m_count == 0 && !m_isDone && !m_isDisposed) {
+                    try {
+                        m_mutex.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+
+                return m_count > 0;
+            }
+        }
+
+        private Change next() {
+            synchronized (m_mutex) {
+                if (m_count == 0) {
+                    return null;
+                }
+
+                final Change result = m_ring[m_head];
+                m_ring[m_head] = null;
+                m_head = (m_head + 1) % m_ring.length;
+                m_count--;
+
+                if (m_count + m_batchSize <= m_ring.length) {
+                    m_mutex.notifyAll();
+                }
+
+                return result;
+            }
+        }
+
+        private void dispose() {
+            synchronized (m_mutex) {
+                m_isDisposed = true;
+                m_count = 0;
+                Arrays.fill(m_ring, null);
+
+                m_mutex.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The pipeline
+     */
+    private final Pipeline m_pipeline;
+
+    /**
+     * Create new instance of the class
+     *
+     * @param source the source iterator, disposed by the prefetch thread
+     * @param size the maximum number of decoded changes
+     * @param batchSize number of changes decoded at once
+     */
+    public PrefetchIterator(Iterator<Change> source, int size, int batchSize) {
+        m_pipeline = new Pipeline(source, size, batchSize);
+    }
+
+    /**
+     * Start the prefetch thread
+     */
+    public void start() {
+        final Thread th = new Thread(m_pipeline);
+        th.setName("AWE:PrefetchIterator");
+        th.start();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        dispose();
+
+        super.finalize();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return m_pipeline.hasNext();
+    }
+
+    @Override
+    public Change next() {
+        if (!m_pipeline.hasNext()) {
+            return null;
+        }
+
+        return m_pipeline.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("This operation is not supported.");
+    }
+
+    @Override
+    public void dispose() {
+        m_pipeline.dispose();
+    }
+}
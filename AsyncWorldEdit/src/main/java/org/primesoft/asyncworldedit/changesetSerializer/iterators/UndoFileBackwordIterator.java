@@ -91,7 +91,15 @@ public class UndoFileBackwordIterator extends BaseFileIterator {
             return false;
         }
 
-        long pos = 0;
+        long pos;
+        try {
+            pos = m_dataStream.getFilePointer();
+        } catch (IOException ioe) {
+            dispose();
+
+            return false;
+        }
+
         final File idxFile = new File(m_file.getPath() + ".idx");
         final StreamProvider sp = StreamProvider.getInstance();
         sp.reserve();
@@ -143,7 +151,7 @@ public class UndoFileBackwordIterator extends BaseFileIterator {
             while (id > position && m_offsetPos >= 0) {
                 m_dataStream.seek(m_offsets[m_offsetPos], SeekOrigin.Begin);
                 m_offsetPos--;
-                uEntry = m_changesetSerializer.load(m_dataStream);
+                uEntry = m_changesetSerializer.load(m_dataStream, m_format, m_memoryStorage);
                 if (uEntry == null) {
                     return null;
                 }
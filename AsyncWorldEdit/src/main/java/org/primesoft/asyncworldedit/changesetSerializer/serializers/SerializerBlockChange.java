@@ -61,9 +61,11 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IChangesetSerializer;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDictionary;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
 import org.primesoft.asyncworldedit.worldedit.blocks.BlockStates;
 import org.bukkit.Bukkit;
 
@@ -108,6 +110,18 @@ public class SerializerBlockChange implements IChangesetSerializer {
 
         try {
             UnsafeDataOutput stream = new UnsafeDataOutput();
+            UndoDictionary dictionary = UndoDictionary.fromStorage(storage);
+
+            if (dictionary != null) {
+                VarInt.writeSignedInt(stream, position.getBlockX());
+                VarInt.writeSignedInt(stream, position.getBlockY());
+                VarInt.writeSignedInt(stream, position.getBlockZ());
+
+                writeBlock(stream, previous, dictionary);
+                writeBlock(stream, current, dictionary);
+
+                return stream.toByteArray();
+            }
 
             stream.writeDouble(position.getX());
             stream.writeDouble(position.getY());
@@ -131,6 +145,18 @@ public class SerializerBlockChange implements IChangesetSerializer {
 
         try {
             UnsafeDataInput stream = new UnsafeDataInput(data);
+            UndoDictionary dictionary = UndoDictionary.fromStorage(storage);
+
+            if (dictionary != null) {
+                int x = VarInt.readSignedInt(stream);
+                int y = VarInt.readSignedInt(stream);
+                int z = VarInt.readSignedInt(stream);
+
+                BlockStateHolder previous = readBlock(stream, dictionary);
+                BlockStateHolder current = readBlock(stream, dictionary);
+
+                return new BlockChange(BlockVector3.at(x, y, z), previous, current);
+            }
 
             double x = stream.readDouble();
             double y = stream.readDouble();
@@ -174,6 +200,44 @@ public class SerializerBlockChange implements IChangesetSerializer {
         NbtTagSerializer.serialize(stream, block != null && block.hasNbtData() ? block.getNbtData() : NbtTagSerializer.END_TAG);
     }
 
+    /**
+     * Serialize block data using the undo file block palette
+     *
+     * @param stream
+     * @param bsh
+     * @param dictionary
+     */
+    private void writeBlock(DataOutput stream, BlockStateHolder bsh, UndoDictionary dictionary) throws IOException {
+        final boolean isBs = isBlockState(bsh);
+        final BaseBlock block = isBs ? null : bsh.toBaseBlock();
+        final String id = isBs ? bsh.getAsString() : block.toImmutableState().getAsString();
+
+        stream.writeBoolean(isBs);
+        VarInt.writeInt(stream, dictionary.getStateId(id));
+
+        NbtTagSerializer.serialize(stream, block != null && block.hasNbtData() ? block.getNbtData() : NbtTagSerializer.END_TAG);
+    }
+
+    private BlockStateHolder readBlock(DataInput stream, UndoDictionary dictionary) throws IOException {
+        final boolean isBs = stream.readBoolean();
+        final int stateId = VarInt.readInt(stream);
+        final String id = dictionary.getState(stateId);
+        if (id == null) {
+            throw new IOException(String.format("Unknown block state %1$s", stateId));
+        }
+
+        final BlockState state = BlockFactory.getState(id);
+        if (state == null) {
+            return null;
+        }
+        Tag nbtTag = NbtTagSerializer.deserialize(stream);
+        if (nbtTag instanceof CompoundTag) {
+            return state.toBaseBlock((CompoundTag) nbtTag);
+        }
+
+        return isBs ? state : state.toBaseBlock();
+    }
+
     private BlockStateHolder readBlock(DataInput stream) throws IOException {
         final boolean isBs = stream.readBoolean();
         final int idLength = stream.readInt();
@@ -49,19 +49,26 @@ package org.primesoft.asyncworldedit.changesetSerializer.serializers;
 
 import com.sk89q.worldedit.history.change.Change;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IChangesetSerializer;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
 import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
 import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
 import org.primesoft.asyncworldedit.blockPlacer.BlockPlacerChange;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDictionary;
 import org.primesoft.asyncworldedit.changesetSerializer.UndoEntry;
 import org.primesoft.asyncworldedit.utils.Compression;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
 import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
+import org.primesoft.asyncworldedit.utils.io.VarInt;
 
 /**
+ * The block placer change serializer. The flat format is: format marker, 
+ * flags, the inner change type (dictionary id or the class name) and the 
+ * inner change data. The legacy format (a compressed nested undo entry) 
+ * is still readable.
  *
  * @author SBPrime
  */
@@ -69,6 +76,29 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
 
     private static final String CLASS_TYPE = BlockPlacerChange.class.getName();
 
+    private final static Charset UTF8 = Charset.forName("UTF8");
+
+    /**
+     * The flat format marker (the legacy format starts with the zlib header,
+     * its low nibble is always 8)
+     */
+    private static final int FORMAT_FLAT = 1;
+
+    /**
+     * The change is demanding
+     */
+    private static final int FLAG_DEMANDING = 1;
+
+    /**
+     * The inner change is stored
+     */
+    private static final int FLAG_SUB_CHANGE = 2;
+
+    /**
+     * The inner change type is stored as a class name (no dictionary)
+     */
+    private static final int FLAG_TYPE_NAME = 4;
+
     private final IBlockPlacer m_blockPlacer;
     private final ISerializerManager m_serializerManager;
 
@@ -92,22 +122,37 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
         Change subChange = bpChange.getChange();
 
         try {
-            UnsafeDataOutput stream = new UnsafeDataOutput();
-
-            stream.writeBoolean(bpChange.isDemanding());
             IUndoEntry entry = null;
             if (subChange != null) {
                 entry = m_serializerManager.serialize(subChange, storage);
             }
 
+            int flags = bpChange.isDemanding() ? FLAG_DEMANDING : 0;
             if (entry == null) {
-                stream.writeBoolean(false);
+                UnsafeDataOutput stream = new UnsafeDataOutput(2);
+                stream.writeByte(FORMAT_FLAT);
+                stream.writeByte(flags);
+                return stream.toByteArray();
+            }
+
+            final byte[] data = entry.getData();
+            final UndoDictionary dictionary = UndoDictionary.fromStorage(storage);
+            flags |= FLAG_SUB_CHANGE | (dictionary == null ? FLAG_TYPE_NAME : 0);
+
+            //The type definition is written to the undo file before the outer entry
+            UnsafeDataOutput stream = new UnsafeDataOutput(data.length + 8);
+            stream.writeByte(FORMAT_FLAT);
+            stream.writeByte(flags);
+            if (dictionary != null) {
+                VarInt.writeInt(stream, dictionary.getTypeId(entry.getType()));
             } else {
-                stream.writeBoolean(true);
-                UndoEntry.save(stream, entry);
+                final byte[] type = entry.getType().getBytes(UTF8);
+                VarInt.writeInt(stream, type.length);
+                stream.write(type);
             }
+            stream.write(data);
 
-            return Compression.compress(stream.toByteArray());
+            return stream.toByteArray();
         } catch (IOException ex) {
             ExceptionHelper.printException(ex, "Unable to serialize BlockPlacerChange");
             return null;
@@ -116,7 +161,15 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
 
     @Override
     public Change deserialize(byte[] data, IMemoryStorage storage) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
         try {
+            if (data[0] == FORMAT_FLAT) {
+                return deserializeFlat(data, storage);
+            }
+
             data = Compression.decompress(data);
             
             UnsafeDataInput stream = new UnsafeDataInput(data);
@@ -125,7 +178,10 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
 
             Change subChange = null;
             if (stream.readBoolean()) {
-                IUndoEntry subEntry = UndoEntry.load(stream);
+                final UndoDictionary dictionary = UndoDictionary.fromStorage(storage);
+                IUndoEntry subEntry = dictionary != null
+                        ? UndoEntry.load(stream, dictionary)
+                        : UndoEntry.load(stream);
                 subChange = m_serializerManager.deserialize(subEntry, storage);
             }
             
@@ -136,4 +192,47 @@ public class SerializerBlockPlacerChange implements IChangesetSerializer {
         }
     }
 
+    /**
+     * Deserialize the flat format
+     *
+     * @param data
+     * @param storage
+     * @return
+     * @throws IOException
+     */
+    private Change deserializeFlat(byte[] data, IMemoryStorage storage) throws IOException {
+        UnsafeDataInput stream = new UnsafeDataInput(data);
+        stream.readByte();
+
+        final int flags = stream.readUnsignedByte();
+        final boolean isDemanding = (flags & FLAG_DEMANDING) != 0;
+
+        Change subChange = null;
+        if ((flags & FLAG_SUB_CHANGE) != 0) {
+            final String type;
+            if ((flags & FLAG_TYPE_NAME) != 0) {
+                final byte[] typeBytes = new byte[VarInt.readInt(stream)];
+                stream.readFully(typeBytes);
+                type = new String(typeBytes, UTF8);
+            } else {
+                final UndoDictionary dictionary = UndoDictionary.fromStorage(storage);
+                if (dictionary == null) {
+                    throw new IOException("Undo dictionary not available");
+                }
+
+                final int typeId = VarInt.readInt(stream);
+                type = dictionary.getType(typeId);
+                if (type == null) {
+                    throw new IOException(String.format("Unknown undo entry type %1$s", typeId));
+                }
+            }
+
+            final byte[] subData = new byte[(int) stream.available()];
+            stream.readFully(subData);
+
+            subChange = m_serializerManager.deserialize(UndoEntry.create(type, subData), storage);
+        }
+
+        return new BlockPlacerChange(subChange, m_blockPlacer, isDemanding);
+    }
 }
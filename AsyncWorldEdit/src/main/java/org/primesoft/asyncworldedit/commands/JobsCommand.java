@@ -178,13 +178,15 @@ public class JobsCommand {
                 entry.printJobs(lines);
             }
         } else {
+            lines.add(MessageType.CMD_JOBS_STATS.format(bPlacer.getBlocksPerRun(), bPlacer.getBatchSize()));
+
             IPlayerEntry[] users = bPlacer.getAllPlayers();
             if (users.length == 0) {
                 lines.add(MessageType.CMD_JOBS_NONE.format());
             } else {
                 for (IPlayerEntry pw : users) {
                     IBlockPlacerPlayer entry = bPlacer.getPlayerEvents(pw);
-                    int cnt = entry != null ? entry.getQueue().size() : 0;                    
+                    int cnt = entry != null ? entry.getOperationCount() : 0;                    
                     String name = pw.getName();
                     lines.add(MessageType.CMD_JOBS_OTHER_SHORT.format(name, cnt));
                     if (entry != null) {
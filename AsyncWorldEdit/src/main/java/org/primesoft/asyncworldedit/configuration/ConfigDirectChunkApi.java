@@ -70,6 +70,11 @@ public class ConfigDirectChunkApi {
      */
     private final byte m_blockLight;
 
+    /**
+     * Number of relight workers
+     */
+    private final int m_relightThreads;
+
     /**
      * Automatically calculate the light level
      * @return 
@@ -94,22 +99,33 @@ public class ConfigDirectChunkApi {
         return m_blockLight;
     }
 
+    /**
+     * Number of relight workers
+     * @return 
+     */
+    public int getRelightThreads() {
+        return m_relightThreads;
+    }
+
     public ConfigDirectChunkApi(IConfigurationSection section) {
         boolean autoRelight;
-        int sectionLight, blockLight;
+        int sectionLight, blockLight, relightThreads;
 
         if (section == null) {
             autoRelight = true;
             sectionLight = 0;
             blockLight = -1;
+            relightThreads = 2;
         } else {
             autoRelight = section.getBoolean("autoRelight", true);
             sectionLight = section.getInt("newSectionLightLevel", 0);
             blockLight = section.getInt("blockLightLevel", -1);
+            relightThreads = section.getInt("relightThreads", 2);
         }
 
         m_autoRelight = autoRelight;
         m_sectionLight = (byte) Math.min(15, Math.max(sectionLight, 0));
         m_blockLight = (byte) Math.min(15, Math.max(blockLight, -1));
+        m_relightThreads = Math.max(1, relightThreads);
     }
 }
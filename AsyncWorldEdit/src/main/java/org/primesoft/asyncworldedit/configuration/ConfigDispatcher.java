@@ -71,6 +71,16 @@ public class ConfigDispatcher {
      */
     private int m_maxTime;
 
+    /**
+     * Number of chunk sections cached by each edit session world
+     */
+    private int m_blockCacheSections;
+
+    /**
+     * Number of chunk snapshots kept by each edit session world
+     */
+    private int m_chunkSnapshots;
+
     public int getMaxIdle() {
         return m_maxIdle;
     }
@@ -83,15 +93,27 @@ public class ConfigDispatcher {
         return m_maxTime;
     }
 
+    public int getBlockCacheSections() {
+        return m_blockCacheSections;
+    }
+
+    public int getChunkSnapshots() {
+        return m_chunkSnapshots;
+    }
+
     public ConfigDispatcher(IConfigurationSection dSection) {
         if (dSection == null) {
             m_maxIdle = 200;
             m_maxJobs = 2000;
             m_maxTime = 20;
+            m_blockCacheSections = 16;
+            m_chunkSnapshots = 0;
         } else {
             m_maxIdle = dSection.getInt("max-idle-runs", 200);
             m_maxJobs = dSection.getInt("max-jobs", 2000);
             m_maxTime = dSection.getInt("max-time", 20);
+            m_blockCacheSections = dSection.getInt("block-cache-sections", 16);
+            m_chunkSnapshots = dSection.getInt("chunk-snapshots", 0);
         }
 
         if (m_maxTime < 1) {
@@ -107,6 +129,16 @@ public class ConfigDispatcher {
             m_maxIdle = 10;
             log("Warning: Dispatcher max idle is lower then 1, changing to 10");
         }
+
+        if (m_blockCacheSections < 0) {
+            m_blockCacheSections = 0;
+            log("Warning: Block cache sections is lower then 0, disabling the cache");
+        }
+
+        if (m_chunkSnapshots < 0) {
+            m_chunkSnapshots = 0;
+            log("Warning: Chunk snapshots is lower then 0, disabling the snapshots");
+        }
     }
 
 }
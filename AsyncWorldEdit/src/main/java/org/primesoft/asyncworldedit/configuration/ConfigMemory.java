@@ -60,8 +60,6 @@ public class ConfigMemory {
 
     private long m_minMemorySoft;
 
-    private final long m_gcTimeout;
-
     public long getMinMemoryHard() {
         return m_minMemoryHard;
     }
@@ -70,19 +68,13 @@ public class ConfigMemory {
         return m_minMemorySoft;
     }
 
-    public long getGCTimeout() {
-        return m_gcTimeout;
-    }
-
     ConfigMemory(IConfigurationSection memorySection) {
         if (memorySection == null) {
             m_minMemoryHard = 200000;
             m_minMemorySoft = 400000;
-            m_gcTimeout = 10000;
         } else {
             m_minMemoryHard = memorySection.getLong("minimumHard", 200000);
             m_minMemorySoft = memorySection.getLong("minimumSoft", 400000);
-            m_gcTimeout = memorySection.getLong("gcTimeout", 10000);
         }
 
         if (m_minMemorySoft < m_minMemoryHard) {
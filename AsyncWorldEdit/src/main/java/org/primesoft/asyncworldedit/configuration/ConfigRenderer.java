@@ -67,6 +67,10 @@ public class ConfigRenderer {
     private final int m_cooldown;
     
     private final int m_bpsAverage;
+    
+    private final int m_batchSize;
+    
+    private final boolean m_chunkApply;
 
     /**
      * Get maximum size of the queue
@@ -101,6 +105,24 @@ public class ConfigRenderer {
     public int bpsAveragePoints() {
         return m_bpsAverage;
     }
+    
+    /**
+     * Number of entries the block placer fetches from a player queue at once
+     * 
+     * @return 
+     */
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+    
+    /**
+     * Should the blocks placed in the same chunk be written to the chunk at once
+     * 
+     * @return 
+     */
+    public boolean isChunkApplyEnabled() {
+        return m_chunkApply;
+    }
 
     public ConfigRenderer(IConfigurationSection renderSection) {
         if (renderSection == null) {
@@ -110,6 +132,8 @@ public class ConfigRenderer {
             m_queueMaxSizeHard = 10000000;
             m_queueMaxSizeSoft = 5000000;
             m_bpsAverage = 5;
+            m_batchSize = 256;
+            m_chunkApply = false;
         } else {
             m_interval = renderSection.getInt("interval", 15);
             m_queueTalkInterval = renderSection.getInt("talk-interval", 10);
@@ -117,6 +141,8 @@ public class ConfigRenderer {
             m_queueMaxSizeHard = renderSection.getInt("queue-max-size-hard", 10000000);
             m_queueMaxSizeSoft = renderSection.getInt("queue-max-size-soft", 5000000);
             m_bpsAverage = renderSection.getInt("bps-avg-data-points", 5);
+            m_batchSize = Math.max(1, renderSection.getInt("batch-size", 256));
+            m_chunkApply = renderSection.getBoolean("chunk-apply", false);
 
             if (m_bpsAverage < 2) {
                 log("Warinig: Not enough data points to properly calculate the BPS. Value: " + m_bpsAverage + " minimum: 2");
@@ -63,6 +63,12 @@ public class ConfigUndo {
     private final int m_keepSessionOnLogoutFor;
     private final int m_keepUndoFileFor;
     private final int m_undoFileCleanupInterval;
+    private final UndoCodec m_codec;
+    private final int m_compressionLevel;
+    private final int m_mappedFileLimit;
+    private final int m_prefetchSize;
+    private final int m_prefetchBatch;
+    private final int m_chunkOrderWindow;
 
     public UndoBehaviour getMainBehaviour() {
         return m_undoMain;
@@ -91,6 +97,57 @@ public class ConfigUndo {
     public int keepUndoFileFor() {
         return m_keepUndoFileFor;
     }
+    
+    /**
+     * The undo file data codec
+     * @return 
+     */
+    public UndoCodec getCodec() {
+        return m_codec;
+    }
+    
+    /**
+     * The deflate compression level (1-9)
+     * @return 
+     */
+    public int getCompressionLevel() {
+        return m_compressionLevel;
+    }
+    
+    /**
+     * The maximum undo file size (in MB) that is memory mapped when
+     * reading the undo data (0 - disabled)
+     * @return 
+     */
+    public int getMappedFileLimit() {
+        return m_mappedFileLimit;
+    }
+    
+    /**
+     * The maximum number of changes decoded ahead while the undo
+     * is applied (0 - disable the prefetch)
+     * @return 
+     */
+    public int getPrefetchSize() {
+        return m_prefetchSize;
+    }
+    
+    /**
+     * The number of changes decoded at once by the prefetch thread
+     * @return 
+     */
+    public int getPrefetchBatch() {
+        return m_prefetchBatch;
+    }
+    
+    /**
+     * The maximum number of block changes grouped by chunk when the undo
+     * is applied (0 - replay the changes in the undo order)
+     * @return 
+     */
+    public int getChunkOrderWindow() {
+        return m_chunkOrderWindow;
+    }
 
 
     ConfigUndo(IConfigurationSection secUndo) {
@@ -102,11 +159,29 @@ public class ConfigUndo {
             m_keepSessionOnLogoutFor = 0;
             m_undoFileCleanupInterval = 30;
             m_keepUndoFileFor = 0;
+            m_codec = UndoCodec.Deflate;
+            m_compressionLevel = 1;
+            m_mappedFileLimit = 256;
+            m_prefetchSize = 8192;
+            m_prefetchBatch = 512;
+            m_chunkOrderWindow = 4096;
         } else {
             m_storeOnDisk = secUndo.getBoolean("storeOnDisk", true);
             m_keepSessionOnLogoutFor = secUndo.getInt("keepSessionOnLogoutFor", 0);
             m_undoFileCleanupInterval = secUndo.getInt("undoFileCleanupInterval", 30);
             m_keepUndoFileFor = secUndo.getInt("keepUndoFileFor", 0);
+            m_codec = parseCodec(secUndo.getString("compression", null), UndoCodec.Deflate);
+            
+            int level = secUndo.getInt("compressionLevel", 1);
+            if (level < 1 || level > 9) {
+                log("ERROR: Invalid undo compression level " + level + ", allowed values 1-9");
+                level = Math.max(1, Math.min(9, level));
+            }
+            m_compressionLevel = level;
+            m_mappedFileLimit = Math.max(0, secUndo.getInt("mappedFileLimit", 256));
+            m_prefetchSize = Math.max(0, secUndo.getInt("prefetchSize", 8192));
+            m_prefetchBatch = Math.max(1, secUndo.getInt("prefetchBatch", 512));
+            m_chunkOrderWindow = Math.max(0, secUndo.getInt("chunkOrderWindow", 4096));
             
             m_undoAsync = parse(secUndo.getString("memoryLow", null), UndoBehaviour.Wait);
             UndoBehaviour uLoad = parse(secUndo.getString("memoryLowStorage", null), UndoBehaviour.Wait);
@@ -144,4 +219,19 @@ public class ConfigUndo {
         
         return defaultValue;
     }
+    
+    private UndoCodec parseCodec(String value, UndoCodec defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        
+        for (UndoCodec i : UndoCodec.values()) {
+            if (i.name().equalsIgnoreCase(value)) {
+                return i;
+            }
+        }
+        
+        log("ERROR: Unknown undo compression " + value);
+        return defaultValue;
+    }
 }
@@ -68,6 +68,7 @@ import org.primesoft.asyncworldedit.strings.MessageProvider;
 import org.primesoft.asyncworldedit.strings.MessageType;
 import org.primesoft.asyncworldedit.taskdispatcher.TaskDispatcher;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
 import org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher;
 
 import static org.primesoft.asyncworldedit.LoggerProvider.log;
@@ -402,6 +403,7 @@ public abstract class AsyncWorldEditCore implements IAsyncWorldEditCore, IAweOpe
      * Initialize the plugin in aordance to the config
      */
     private void initializeConfig() {
+        MemoryMonitor.loadConfig();
         m_blockPlacer.loadConfig();
         m_cron.loadConfig();
         if (ConfigProvider.physicsFreeze().isEnabled()) {
@@ -435,6 +437,7 @@ public abstract class AsyncWorldEditCore implements IAsyncWorldEditCore, IAweOpe
             m_blockPlacer.stop();
             m_cron.stop();
             m_dispatcher.stop();
+            MemoryMonitor.stop();
 
             IInnerDirectChunkAPI dcApi = getInnerDirectChunkAPI();
             IBlockRelighter bRelighter = dcApi != null ? dcApi.getBlockRelighter() : null;
@@ -48,11 +48,11 @@
 package org.primesoft.asyncworldedit.core;
 
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
+import org.primesoft.asyncworldedit.utils.ConcurrentLongSet;
+import org.primesoft.asyncworldedit.utils.LongIntHashMap;
 
 /**
  * This class suppresses chunk unloading
@@ -62,14 +62,46 @@ import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 public abstract class ChunkWatch implements IChunkWatch {
 
     /**
-     * Suppressed chunks
+     * Number of the suppressed chunks stripes (power of 2)
      */
-    private final Map<String, Map<Long, Integer>> m_watchedChunks = new HashMap<>();
+    private final static int STRIPES = 16;
 
     /**
-     * List of all loaded chunks
+     * The world chunks
      */
-    private final Map<String, Set<Long>> m_loadedChunks = new HashMap<>();
+    private final static class WorldChunks {
+
+        /**
+         * Suppressed chunks (reference count) striped by the chunk key
+         */
+        private final LongIntHashMap[] m_watched = new LongIntHashMap[STRIPES];
+
+        /**
+         * List of all loaded chunks
+         */
+        private final ConcurrentLongSet m_loaded = new ConcurrentLongSet();
+
+        private WorldChunks() {
+            for (int i = 0; i < STRIPES; i++) {
+                m_watched[i] = new LongIntHashMap();
+            }
+        }
+
+        /**
+         * Get the suppressed chunks stripe (used as the stripe mutex)
+         *
+         * @param chunk
+         * @return
+         */
+        private LongIntHashMap getWatched(long chunk) {
+            return m_watched[(int) (chunk ^ (chunk >>> 32)) & (STRIPES - 1)];
+        }
+    }
+
+    /**
+     * The worlds chunks
+     */
+    private final Map<String, WorldChunks> m_worlds = new ConcurrentHashMap<>();
 
     /**
      * The dispatcher
@@ -80,13 +112,27 @@ public abstract class ChunkWatch implements IChunkWatch {
         return (long) x << 32 | z & 0xFFFFFFFFL;
     }
 
+    /**
+     * Get the world chunks
+     *
+     * @param worldName
+     * @return
+     */
+    private WorldChunks getWorld(String worldName) {
+        return m_worlds.computeIfAbsent(worldName, _wn -> new WorldChunks());
+    }
+
     /**
      * Remove all chunk unload queues
      */
     @Override
     public void clear() {
-        synchronized (m_watchedChunks) {
-            m_watchedChunks.clear();
+        for (WorldChunks world : m_worlds.values()) {
+            for (LongIntHashMap watched : world.m_watched) {
+                synchronized (watched) {
+                    watched.clear();
+                }
+            }
         }
     }
 
@@ -99,17 +145,16 @@ public abstract class ChunkWatch implements IChunkWatch {
      */
     @Override
     public void add(int cx, int cz, String worldName) {
-        synchronized (m_watchedChunks) {
-            long chunk = encode(cx, cz);
-            m_watchedChunks.computeIfAbsent(worldName, _wn -> new HashMap<>())
-                    .compute(chunk, (_chunk, value) -> {
-                        if (value == null) {
-                            forceloadOn(worldName, cx, cz);
-                            return 1;
-                        }
-
-                        return value + 1;
-                    });
+        final long chunk = encode(cx, cz);
+        final LongIntHashMap watched = getWorld(worldName).getWatched(chunk);
+
+        synchronized (watched) {
+            final int value = watched.get(chunk, 0);
+            if (value == 0) {
+                forceloadOn(worldName, cx, cz);
+            }
+
+            watched.put(chunk, value + 1);
         }
     }
 
@@ -122,84 +167,62 @@ public abstract class ChunkWatch implements IChunkWatch {
      */
     @Override
     public void remove(int cx, int cz, String worldName) {
-        synchronized (m_watchedChunks) {
-            Map<Long, Integer> worldEntry = m_watchedChunks.get(worldName);
-            if (worldEntry == null) {
-                return;
-            }
+        final WorldChunks world = m_worlds.get(worldName);
+        if (world == null) {
+            return;
+        }
+
+        final long chunk = encode(cx, cz);
+        final LongIntHashMap watched = world.getWatched(chunk);
 
-            long chunk = encode(cx, cz);
-            Integer value = worldEntry.get(chunk);
-            if (value == null) {
+        synchronized (watched) {
+            final int value = watched.get(chunk, 0) - 1;
+            if (value < 0) {
                 return;
             }
 
-            value = value - 1;
-            if (value <= 0) {
-                worldEntry.remove(chunk);
+            if (value == 0) {
+                watched.remove(chunk);
                 forceloadOff(worldName, cx, cz);
             } else {
-                worldEntry.put(chunk, value);
-            }
-
-            if (worldEntry.isEmpty()) {
-                m_watchedChunks.remove(worldName);
+                watched.put(chunk, value);
             }
         }
     }
 
     protected final int getReferences(String worldName, int cx, int cz) {
-        synchronized (m_watchedChunks) {
-            Map<Long, Integer> worldEntry = m_watchedChunks.get(worldName);
-            if (worldEntry == null) {
-                return 0;
-            }
+        final WorldChunks world = m_worlds.get(worldName);
+        if (world == null) {
+            return 0;
+        }
 
-            long chunk = encode(cx, cz);
-            Integer value = worldEntry.get(chunk);
-            if (value == null) {
-                return 0;
-            }
-            return value;
+        final long chunk = encode(cx, cz);
+        final LongIntHashMap watched = world.getWatched(chunk);
+
+        synchronized (watched) {
+            return watched.get(chunk, 0);
         }
     }
 
     protected void chunkLoaded(String worldName, int cx, int cz) {
-        synchronized (m_loadedChunks) {
-            m_loadedChunks
-                    .computeIfAbsent(worldName, _wn -> new HashSet<>())
-                    .add(encode(cx, cz));
-        }
+        getWorld(worldName).m_loaded.add(encode(cx, cz));
     }
 
     public boolean chunkUnloading(String worldName, int cx, int cz) {
-        boolean cancel = false;
-        synchronized (m_watchedChunks) {
-            Map<Long, Integer> watchedWorldEntry = m_watchedChunks.get(worldName);
-            if (watchedWorldEntry != null) {
-                Integer value = watchedWorldEntry.get(encode(cx, cz));
-                cancel = value != null && value > 0;
-            }
+        final WorldChunks world = m_worlds.get(worldName);
+        if (world == null) {
+            return false;
+        }
+
+        final long chunk = encode(cx, cz);
+        final LongIntHashMap watched = world.getWatched(chunk);
 
-            if (cancel && supportUnloadCancel()) {
+        synchronized (watched) {
+            if (watched.get(chunk, 0) > 0 && supportUnloadCancel()) {
                 return true;
             }
 
-            synchronized (m_loadedChunks) {
-                final Set<Long> worldEntry = m_loadedChunks.get(worldName);
-                if (worldEntry == null) {
-                    return false;
-                }
-
-                boolean removed = worldEntry.remove(encode(cx, cz));
-                if (!removed) {
-                    return false;
-                }
-
-                if (worldEntry.isEmpty()) {
-                    m_loadedChunks.remove(worldName);
-                }
-            }
+            world.m_loaded.remove(chunk);
         }
 
         return false;
@@ -214,21 +237,12 @@ public abstract class ChunkWatch implements IChunkWatch {
      */
     @Override
     public void setChunkUnloaded(int cx, int cz, String worldName) {
-        synchronized (m_loadedChunks) {
-            final Set<Long> worldEntry = m_loadedChunks.get(worldName);
-            if (worldEntry == null) {
-                return;
-            }
-
-            boolean remove = worldEntry.remove(encode(cx, cz));
-            if (!remove) {
-                return;
-            }
-
-            if (worldEntry.isEmpty()) {
-                m_loadedChunks.remove(worldName);
-            }
+        final WorldChunks world = m_worlds.get(worldName);
+        if (world == null) {
+            return;
         }
+
+        world.m_loaded.remove(encode(cx, cz));
     }
 
     /**
@@ -245,14 +259,9 @@ public abstract class ChunkWatch implements IChunkWatch {
 
     @Override
     public boolean isChunkLoaded(int cx, int cz, String worldName) {
-        synchronized (m_loadedChunks) {
-            final Set<Long> worldEntry = m_loadedChunks.get(worldName);
-            if (worldEntry == null) {
-                return false;
-            }
+        final WorldChunks world = m_worlds.get(worldName);
 
-            return worldEntry.contains(encode(cx, cz));
-        }
+        return world != null && world.m_loaded.contains(encode(cx, cz));
     }
 
     @Override
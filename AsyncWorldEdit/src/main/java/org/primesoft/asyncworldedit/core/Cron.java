@@ -62,6 +62,7 @@ import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerManager;
 import org.primesoft.asyncworldedit.api.utils.IInOutParam;
 import org.primesoft.asyncworldedit.changesetSerializer.StreamProvider;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoManifest;
 import org.primesoft.asyncworldedit.configuration.ConfigMessages;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.configuration.ConfigUndo;
@@ -226,14 +227,13 @@ public final class Cron implements ICron {
                 return;
             }
 
-            sm.getUndoFiles()
-                    .filter(i -> i.exists())
-                    .filter(i -> {
-                        Long timestamp = sm.getTimestamp(i);
-                        return timestamp != null && timestamp <= time;
-                    })
+            //The undo files manifest returns only the expired files
+            sm.getUndoFiles(time)
                     .filter(i -> !streamProvider.isInUse(i))
-                    .forEach(i -> deleteFile(i, showMessages, showError, headerShown));
+                    .forEach(i -> deleteUndoFile(sm, i, showMessages, showError, headerShown));
+            if (showMessages) {
+                log(String.format("\t * undo files size: %1$.2f MB", sm.getUndoSize() / 1048576.0));
+            }
             if (startup) {
                 Files.walk(ConfigProvider.getUndoFolder().toPath(), 1, FileVisitOption.FOLLOW_LINKS)
                         .map(i -> i.toFile())
@@ -252,10 +252,26 @@ public final class Cron implements ICron {
         }
     }
 
-    private void deleteFile(File file, boolean showMessages, boolean showError,
+    /**
+     * Delete the undo file and its index and remove it from the manifest
+     */
+    private void deleteUndoFile(IInnerSerializerManager sm, File file, 
+            boolean showMessages, boolean showError,
+            IInOutParam<Boolean> headerShown) {
+        final File idxFile = new File(file.getPath() + UndoManifest.SUFFIX_IDX);
+        if (idxFile.exists()) {
+            deleteFile(idxFile, showMessages, showError, headerShown);
+        }
+
+        if (!file.exists() || deleteFile(file, showMessages, showError, headerShown)) {
+            sm.removeUndoFile(file);
+        }
+    }
+
+    private boolean deleteFile(File file, boolean showMessages, boolean showError,
             IInOutParam<Boolean> headerShown) {    
         if (file.equals(ConfigProvider.getUndoFolder())) {
-            return;
+            return false;
         }
         
         try {
@@ -267,10 +283,12 @@ public final class Cron implements ICron {
                     }
                     log(String.format("\t * %1$s...error", file));
                 }
+                return false;
             } else {
                 if (showMessages) {
                     log(String.format("\t * %1$s...ok", file));
                 }
+                return true;
             }
         } catch (Exception ex) {
             if (showError) {
@@ -280,6 +298,7 @@ public final class Cron implements ICron {
                 }
                 log(String.format("\t * %1$s...error", file));
             }
+            return false;
         }
     }
 }
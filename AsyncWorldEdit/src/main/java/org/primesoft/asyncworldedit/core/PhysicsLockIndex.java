@@ -0,0 +1,354 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The locked blocks index for a single world. The blocks are stored as
+ * bitmaps of 16x16x16 sections kept in a long keyed open addressing table.
+ * The lookups do not allocate and do not lock, the modifications need to be
+ * synchronized by the caller.
+ *
+ * @author SBPrime
+ */
+final class PhysicsLockIndex {
+
+    /**
+     * The minimum table size
+     */
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * The locked blocks of a single section
+     */
+    private final static class Section {
+
+        /**
+         * The section key
+         */
+        private final long m_key;
+
+        /**
+         * The locked blocks bitmap (read without locking)
+         */
+        private final AtomicLongArray m_bits = new AtomicLongArray(64);
+
+        /**
+         * Number of locks for each block
+         */
+        private final char[] m_counts = new char[4096];
+
+        /**
+         * Number of locked blocks
+         */
+        private int m_locked;
+
+        private Section(long key) {
+            m_key = key;
+        }
+
+        /**
+         * Check if any block in the provided rows is locked. Each 16 block
+         * (x axis) row is stored in a single word.
+         *
+         * @param rowMask the x axis mask
+         * @param y0 first row y
+         * @param y1 last row y
+         * @param z0 first row z
+         * @param z1 last row z
+         * @return
+         */
+        private boolean isAnyLocked(long rowMask, int y0, int y1, int z0, int z1) {
+            for (int y = y0; y <= y1; y++) {
+                for (int z = z0; z <= z1; z++) {
+                    final int idx = (y << 8) | (z << 4);
+                    if (((m_bits.get(idx >>> 6) >>> idx) & rowMask) != 0) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        private void setLocked(int idx, boolean locked) {
+            final int pos = idx >>> 6;
+            final long mask = 1L << idx;
+            final long value = m_bits.get(pos);
+
+            m_bits.set(pos, locked ? (value | mask) : (value & ~mask));
+        }
+    }
+
+    /**
+     * The sections table
+     */
+    private volatile AtomicReferenceArray<Section> m_table = new AtomicReferenceArray<>(MIN_CAPACITY);
+
+    /**
+     * Number of used table slots (including sections without locked blocks)
+     */
+    private int m_used;
+
+    /**
+     * Number of sections with locked blocks
+     */
+    private volatile int m_live;
+
+    /**
+     * Lock the block
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    void add(int x, int y, int z) {
+        final long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Section section = find(m_table, key);
+
+        if (section == null) {
+            section = new Section(key);
+            insert(section);
+        }
+
+        final int idx = blockIndex(x, y, z);
+        final char count = section.m_counts[idx];
+        if (count == 0) {
+            section.setLocked(idx, true);
+            if (section.m_locked++ == 0) {
+                m_live++;
+            }
+        }
+
+        if (count < Character.MAX_VALUE) {
+            section.m_counts[idx] = (char) (count + 1);
+        }
+    }
+
+    /**
+     * Release the block lock
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    void remove(int x, int y, int z) {
+        final Section section = find(m_table, sectionKey(x >> 4, y >> 4, z >> 4));
+        if (section == null) {
+            return;
+        }
+
+        final int idx = blockIndex(x, y, z);
+        final char count = section.m_counts[idx];
+        if (count == 0 || count == Character.MAX_VALUE) {
+            return;
+        }
+
+        section.m_counts[idx] = (char) (count - 1);
+        if (count == 1) {
+            section.setLocked(idx, false);
+            if (--section.m_locked == 0) {
+                m_live--;
+            }
+        }
+    }
+
+    /**
+     * Check if any block in the provided distance is locked
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param delta the distance to check
+     * @return
+     */
+    boolean isLocked(int x, int y, int z, int delta) {
+        if (m_live == 0) {
+            return false;
+        }
+
+        final AtomicReferenceArray<Section> table = m_table;
+        final int x0 = x - delta;
+        final int x1 = x + delta;
+        final int y0 = y - delta;
+        final int y1 = y + delta;
+        final int z0 = z - delta;
+        final int z1 = z + delta;
+
+        for (int sx = x0 >> 4; sx <= x1 >> 4; sx++) {
+            final int bx0 = Math.max(x0, sx << 4) & 0xf;
+            final int bx1 = Math.min(x1, (sx << 4) + 0xf) & 0xf;
+            final long rowMask = ((1L << (bx1 - bx0 + 1)) - 1) << bx0;
+
+            for (int sz = z0 >> 4; sz <= z1 >> 4; sz++) {
+                final int bz0 = Math.max(z0, sz << 4) & 0xf;
+                final int bz1 = Math.min(z1, (sz << 4) + 0xf) & 0xf;
+
+                for (int sy = y0 >> 4; sy <= y1 >> 4; sy++) {
+                    final Section section = find(table, sectionKey(sx, sy, sz));
+                    if (section == null) {
+                        continue;
+                    }
+
+                    final int by0 = Math.max(y0, sy << 4) & 0xf;
+                    final int by1 = Math.min(y1, (sy << 4) + 0xf) & 0xf;
+                    if (section.isAnyLocked(rowMask, by0, by1, bz0, bz1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Is any block locked
+     *
+     * @return
+     */
+    boolean isEmpty() {
+        return m_live == 0;
+    }
+
+    /**
+     * Find the section
+     *
+     * @param table
+     * @param key
+     * @return
+     */
+    private static Section find(AtomicReferenceArray<Section> table, long key) {
+        final int mask = table.length() - 1;
+
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            final Section section = table.get(slot);
+            if (section == null || section.m_key == key) {
+                return section;
+            }
+        }
+    }
+
+    /**
+     * Insert new section, the table is rebuilt when it gets too full
+     *
+     * @param section
+     */
+    private void insert(Section section) {
+        AtomicReferenceArray<Section> table = m_table;
+        if ((m_used + 1) * 2 > table.length()) {
+            table = rebuild(table);
+        }
+
+        put(table, section);
+        m_used++;
+    }
+
+    /**
+     * Rebuild the table, the sections without locked blocks are removed
+     *
+     * @param table
+     * @return
+     */
+    private AtomicReferenceArray<Section> rebuild(AtomicReferenceArray<Section> table) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (m_live + 1) * 4) {
+            capacity <<= 1;
+        }
+
+        final AtomicReferenceArray<Section> result = new AtomicReferenceArray<>(capacity);
+        int used = 0;
+        for (int i = 0; i < table.length(); i++) {
+            final Section section = table.get(i);
+            if (section != null && section.m_locked > 0) {
+                put(result, section);
+                used++;
+            }
+        }
+
+        m_used = used;
+        m_table = result;
+
+        return result;
+    }
+
+    /**
+     * Put the section in the first free slot
+     *
+     * @param table
+     * @param section
+     */
+    private static void put(AtomicReferenceArray<Section> table, Section section) {
+        final int mask = table.length() - 1;
+        int slot = hash(section.m_key) & mask;
+
+        while (table.get(slot) != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        table.set(slot, section);
+    }
+
+    private static long sectionKey(int sx, int sy, int sz) {
+        return ((long) (sx & 0x3fffff) << 42) | ((long) (sz & 0x3fffff) << 20) | (sy & 0xfffff);
+    }
+
+    private static int blockIndex(int x, int y, int z) {
+        return ((y & 0xf) << 8) | ((z & 0xf) << 4) | (x & 0xf);
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+}
@@ -49,8 +49,8 @@ package org.primesoft.asyncworldedit.core;
 
 import com.sk89q.worldedit.math.BlockVector3;
 import org.primesoft.asyncworldedit.api.IPhysicsWatch;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -68,21 +68,21 @@ public abstract class PhysicsWatch implements IPhysicsWatch {
     protected Function<String, Boolean> m_check = i -> true;
 
     /**
-     * MTA mutex
+     * MTA mutex (used for the locked blocks modifications)
      */
     private final Object m_mutex;
 
     /**
-     * Locked blocks
+     * Locked blocks (per world)
      */
-    private final Map<String, Map<Integer, Map<Integer, Map<Integer, Integer>>>> m_locked;
+    private final Map<String, PhysicsLockIndex> m_locked;
 
     /**
      * Create new instanc of the class
      */
     public PhysicsWatch() {
         m_mutex = new Object();
-        m_locked = new HashMap<>();
+        m_locked = new ConcurrentHashMap<>();
     }
 
     /**
@@ -120,19 +120,25 @@ public abstract class PhysicsWatch implements IPhysicsWatch {
      */
     @Override
     public void addLocation(String name, BlockVector3 location) {
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
+        addLocation(name, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
 
+    /**
+     * Add new watched location
+     *
+     * @param name The world name
+     * @param x
+     * @param y
+     * @param z
+     */
+    @Override
+    public void addLocation(String name, int x, int y, int z) {
         synchronized (m_mutex) {
             if (!m_isEnabled) {
                 return;
             }
 
-            Map<Integer, Map<Integer, Map<Integer, Integer>>> xhash = m_locked.computeIfAbsent(name, i -> new HashMap<>());
-            Map<Integer, Map<Integer, Integer>> yhash = xhash.computeIfAbsent(x, i -> new HashMap<>());
-            Map<Integer, Integer> zhash = yhash.computeIfAbsent(y, i -> new HashMap<>());
-            zhash.compute(z, (_z, value) -> value == null ? 1 : (value + 1));           
+            m_locked.computeIfAbsent(name, i -> new PhysicsLockIndex()).add(x, y, z);
         }
     }
 
@@ -144,50 +150,73 @@ public abstract class PhysicsWatch implements IPhysicsWatch {
      */
     @Override
     public void removeLocation(String name, BlockVector3 location) {
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
+        removeLocation(name, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
 
+    /**
+     * Remove watched location
+     *
+     * @param name the world name
+     * @param x
+     * @param y
+     * @param z
+     */
+    @Override
+    public void removeLocation(String name, int x, int y, int z) {
         synchronized (m_mutex) {
             if (!m_isEnabled) {
                 return;
             }
 
-            final Map<Integer, Map<Integer, Map<Integer, Integer>>> xhash = m_locked.get(name);
-            if (xhash == null) {
+            final PhysicsLockIndex index = m_locked.get(name);
+            if (index == null) {
                 return;
             }
 
-            final Map<Integer, Map<Integer, Integer>> yhash = xhash.get(x);
-            if (yhash == null) {
+            index.remove(x, y, z);
+        }
+    }
+
+    /**
+     * Remove multiple watched locations (the mutex is taken once)
+     *
+     * @param name the world name
+     * @param locations the x, y, z location triplets
+     * @param count number of locations
+     */
+    @Override
+    public void removeLocations(String name, int[] locations, int count) {
+        synchronized (m_mutex) {
+            if (!m_isEnabled) {
                 return;
             }
-            
-            final Map<Integer, Integer> zhash = yhash.get(y);
-            if (zhash == null) {
+
+            final PhysicsLockIndex index = m_locked.get(name);
+            if (index == null) {
                 return;
             }
-            
-            zhash.compute(z, (_z, value) -> {
-                if (value == null || value == 1) {
-                    return null;
-                }
-                
-                return value - 1;
-            });
-
-            if (zhash.isEmpty()) {
-                yhash.remove(y);
-            }
-            if (yhash.isEmpty()) {
-                xhash.remove(x);
-            }
-            if (xhash.isEmpty()) {
-                m_locked.remove(name);
+
+            for (int i = 0, pos = 0; i < count; i++, pos += 3) {
+                index.remove(locations[pos], locations[pos + 1], locations[pos + 2]);
             }
         }
     }
     
+    /**
+     * Check if the block or any of its neighbours is locked
+     * (the check does not lock)
+     * @param name
+     * @param x
+     * @param y
+     * @param z
+     * @return 
+     */
+    protected boolean isLocked(String name, int x, int y, int z) {
+        final PhysicsLockIndex index = m_locked.get(name);
+        
+        return index != null && index.isLocked(x, y, z, 1);
+    }
+    
     /**
      * Perform test if block event shuld by canceled
      * @param name
@@ -198,36 +227,7 @@ public abstract class PhysicsWatch implements IPhysicsWatch {
      * @return 
      */
     protected boolean cancelEvent(String name, int x, int y, int z, String material) {        
-        final int delta = 1;
-
-        synchronized (m_mutex) {
-            Map<Integer, Map<Integer, Map<Integer, Integer>>> xhash = m_locked.get(name);
-            if (xhash == null) {
-                return false;
-            }
-
-            for (int px = x - delta; px <= x + delta; px++) {
-                final Map<Integer, Map<Integer, Integer>> yhash = xhash.get(px);
-                if (yhash == null) {
-                    continue;
-                }
-
-                for (int py = y - delta; py <= y + delta; py++) {
-                    final Map<Integer, Integer> zhash = yhash.get(py);
-                    if (zhash == null) {
-                        continue;
-                    }
-
-                    for (int pz = z - delta; pz <= z + delta; pz++) {
-                        if (zhash.containsKey(pz)) {
-                            return m_check.apply(material);
-                        }
-                    }
-                }
-            }
-        }
-        
-        return false;
+        return isLocked(name, x, y, z) && m_check.apply(material);
     }
     
     
@@ -47,21 +47,72 @@
  */
 package org.primesoft.asyncworldedit.directChunk;
 
+import java.util.Arrays;
 import org.primesoft.asyncworldedit.api.directChunk.IChunkSection;
 
 /**
+ * The chunk section data. The block IDs are stored using a palette and the
+ * light arrays are not allocated while all the values are the same. The
+ * arrays returned by the IChunkSection methods are created on the first
+ * access and from then on they hold the section data.
  *
  * @author SBPrime
  */
 public class ChunkSectionData implements IChunkSection {
+    /**
+     * Number of blocks in a section
+     */
+    public final static int SIZE = PalettedBlockStorage.SIZE;
+
+    /**
+     * The light array size
+     */
+    private final static int LIGHT_SIZE = SIZE / 2;
+
     private final int m_y;
-    
-    private final int[] m_blockIds;
-    
-    private final byte[] m_emittedLight;
-    
-    private final byte[] m_skyLight;
-    
+
+    /**
+     * The paletted block IDs (null when expanded to m_blockIds)
+     */
+    private PalettedBlockStorage m_blocks;
+
+    /**
+     * The expanded block IDs
+     */
+    private int[] m_blockIds;
+
+    /**
+     * The emitted light (null if all values are m_emittedValue)
+     */
+    private byte[] m_emittedLight;
+
+    private byte m_emittedValue;
+
+    /**
+     * The sky light (null if all values are m_skyValue)
+     */
+    private byte[] m_skyLight;
+
+    private byte m_skyValue;
+
+    /**
+     * Does the section have the sky light
+     */
+    private final boolean m_hasSkyLight;
+
+    /**
+     * Create new instance of chunk section data filled with a single block
+     * @param y
+     * @param blockId
+     * @param skyLight
+     */
+    public ChunkSectionData(int y, int blockId, boolean skyLight) {
+        m_y = y;
+        m_blocks = new PalettedBlockStorage(blockId);
+        m_emittedValue = (byte) DcUtils.getNewSectionLight();
+        m_hasSkyLight = skyLight;
+    }
+
     /**
      * Create new instance of chunk section data
      * @param y
@@ -69,7 +120,7 @@ public class ChunkSectionData implements IChunkSection {
      * @param skyLight
      */
     public ChunkSectionData(int y, int[] blockIds, boolean skyLight) {
-        this(y, blockIds, null, skyLight ? new byte[2048] : null);
+        this(y, blockIds, null, skyLight ? new byte[LIGHT_SIZE] : null);
     }
     
     /**
@@ -82,39 +133,72 @@ public class ChunkSectionData implements IChunkSection {
     public ChunkSectionData(int y, int[] blockIds, byte[] emittedLight, byte[] skylight){
         m_y = y;
         
-        if (blockIds.length != 4096) {
+        if (blockIds.length != SIZE) {
             throw new IllegalArgumentException(String.format("BlockIds should be 4096 bytes not: %1$s", blockIds.length));
         }
         
-        if (emittedLight == null) {
-            emittedLight = DcUtils.newSectionEmittedLight();
-        }
-        
-        if (emittedLight.length != 2048) {
+        if (emittedLight != null && emittedLight.length != LIGHT_SIZE) {
             throw new IllegalArgumentException(String.format("EmittedLight should be 2048 bytes not: %1$s", emittedLight.length));
         }
         
-        if (skylight != null && skylight.length != 2048){
+        if (skylight != null && skylight.length != LIGHT_SIZE){
             throw new IllegalArgumentException(String.format("Skylight should be 2048 bytes not: %1$s", skylight.length));
         }
         
-        m_blockIds = blockIds;
-        m_emittedLight = emittedLight;
-        m_skyLight = skylight;
+        m_blocks = new PalettedBlockStorage(blockIds);
+        m_hasSkyLight = skylight != null;
+
+        if (emittedLight == null) {
+            m_emittedValue = (byte) DcUtils.getNewSectionLight();
+        } else if (isUniform(emittedLight)) {
+            m_emittedValue = (byte) (emittedLight[0] & 0xf);
+        } else {
+            m_emittedLight = emittedLight;
+        }
+
+        if (skylight != null) {
+            if (isUniform(skylight)) {
+                m_skyValue = (byte) (skylight[0] & 0xf);
+            } else {
+                m_skyLight = skylight;
+            }
+        }
     }
     
+    /**
+     * Get the block IDs. The section is converted to the array form, 
+     * use getBlockId if possible.
+     * @return 
+     */
     @Override
     public int[] getBlockIds() {
+        if (m_blockIds == null) {
+            m_blockIds = m_blocks.toArray();
+            m_blocks = null;
+        }
+
         return m_blockIds;
     }
     
     @Override
     public byte[] getSkyLight() {
+        if (!m_hasSkyLight) {
+            return null;
+        }
+
+        if (m_skyLight == null) {
+            m_skyLight = newLight(m_skyValue);
+        }
+
         return m_skyLight;
     }
     
     @Override
     public byte[] getEmittedLight() {
+        if (m_emittedLight == null) {
+            m_emittedLight = newLight(m_emittedValue);
+        }
+
         return m_emittedLight;
     }
     
@@ -122,4 +206,123 @@ public class ChunkSectionData implements IChunkSection {
     public int getY() {
         return m_y;
     }
+
+    /**
+     * Get the block ID
+     * @param idx the block index (y, z, x order)
+     * @return 
+     */
+    public int getBlockId(int idx) {
+        return m_blockIds != null ? m_blockIds[idx] : m_blocks.get(idx);
+    }
+
+    /**
+     * Set the block ID
+     * @param idx the block index (y, z, x order)
+     * @param id 
+     */
+    public void setBlockId(int idx, int id) {
+        if (m_blockIds != null) {
+            m_blockIds[idx] = id;
+        } else {
+            m_blocks.set(idx, id);
+        }
+    }
+
+    /**
+     * Get the emitted light level
+     * @param idx the block index (y, z, x order)
+     * @return 
+     */
+    public byte getEmittedLightLevel(int idx) {
+        return m_emittedLight != null ? getNibble(m_emittedLight, idx) : m_emittedValue;
+    }
+
+    /**
+     * Set the emitted light level
+     * @param idx the block index (y, z, x order)
+     * @param level 
+     */
+    public void setEmittedLightLevel(int idx, int level) {
+        level &= 0xf;
+        if (m_emittedLight == null) {
+            if (level == m_emittedValue) {
+                return;
+            }
+
+            m_emittedLight = newLight(m_emittedValue);
+        }
+
+        setNibble(m_emittedLight, idx, level);
+    }
+
+    /**
+     * Get the sky light level
+     * @param idx the block index (y, z, x order)
+     * @return the light level or -1 if the section has no sky light
+     */
+    public byte getSkyLightLevel(int idx) {
+        if (!m_hasSkyLight) {
+            return -1;
+        }
+
+        return m_skyLight != null ? getNibble(m_skyLight, idx) : m_skyValue;
+    }
+
+    /**
+     * Set the sky light level
+     * @param idx the block index (y, z, x order)
+     * @param level 
+     */
+    public void setSkyLightLevel(int idx, int level) {
+        if (!m_hasSkyLight) {
+            return;
+        }
+
+        level &= 0xf;
+        if (m_skyLight == null) {
+            if (level == m_skyValue) {
+                return;
+            }
+
+            m_skyLight = newLight(m_skyValue);
+        }
+
+        setNibble(m_skyLight, idx, level);
+    }
+
+    private static byte[] newLight(int level) {
+        byte[] result = new byte[LIGHT_SIZE];
+        if (level != 0) {
+            Arrays.fill(result, (byte) (level | (level << 4)));
+        }
+
+        return result;
+    }
+
+    private static boolean isUniform(byte[] light) {
+        final byte value = light[0];
+        if (((value >> 4) & 0xf) != (value & 0xf)) {
+            return false;
+        }
+
+        for (int i = 1; i < light.length; i++) {
+            if (light[i] != value) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte getNibble(byte[] data, int idx) {
+        return (byte) ((data[idx >> 1] >> ((idx & 1) << 2)) & 0xf);
+    }
+
+    private static void setNibble(byte[] data, int idx, int level) {
+        final int lIdx = idx >> 1;
+        final int shift = (idx & 1) << 2;
+
+        data[lIdx] = (byte) ((data[lIdx] & ~(0xf << shift)) | (level << shift));
+    }
 }
@@ -115,7 +115,7 @@ public class DcUtils {
     public static IWrappedChunk wrapChunk(ITaskDispatcher taskDispatcher, final IDirectChunkAPI chunkApi,
             World weWorld, final IWorld world, final IPlayerEntry player,
             final int cx, final int cz) {
-        return wrapChunk(taskDispatcher, chunkApi, MutexProvider.getMutex(weWorld), world, player, cx, cz);
+        return wrapChunk(taskDispatcher, chunkApi, MutexProvider.getChunkMutex(weWorld, cx, cz), world, player, cx, cz);
     }
 
     /**
@@ -197,7 +197,7 @@ public class DcUtils {
     public static IWrappedChunk wrapChunk(ITaskDispatcher taskDispatcher, final IDirectChunkAPI chunkApi,
             final IWorld world, final IPlayerEntry player,
             final int cx, final int cz) {
-        return wrapChunk(taskDispatcher, chunkApi, MutexProvider.getMutex(world), world, player, cx, cz);
+        return wrapChunk(taskDispatcher, chunkApi, MutexProvider.getChunkMutex(world, cx, cz), world, player, cx, cz);
     }
 
     /**
@@ -237,11 +237,20 @@ public class DcUtils {
     public static byte[] newSectionEmittedLight() {
         byte[] result = new byte[2048];
 
-        ConfigDirectChunkApi dc = ConfigProvider.directChunk();
-        int light = (dc == null ? 0 : dc.getSectionLight()) & 0xf;
+        int light = getNewSectionLight();
 
         Arrays.fill(result, (byte) (light | (light << 4)));
 
         return result;
     }
+
+    /**
+     * Get the new section emitted light level
+     *
+     * @return
+     */
+    public static int getNewSectionLight() {
+        ConfigDirectChunkApi dc = ConfigProvider.directChunk();
+        return (dc == null ? 0 : dc.getSectionLight()) & 0xf;
+    }
 }
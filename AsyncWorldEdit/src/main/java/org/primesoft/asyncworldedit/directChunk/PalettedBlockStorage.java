@@ -0,0 +1,321 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk;
+
+import java.util.Arrays;
+
+/**
+ * Chunk section block IDs stored as indexes to a palette. The number of bits
+ * per entry grows with the palette size. A section that contains a single
+ * block ID uses no entry data, a section with more than 256 different IDs
+ * falls back to a plain int array. The class is not thread safe.
+ *
+ * @author SBPrime
+ */
+public class PalettedBlockStorage {
+
+    /**
+     * Number of blocks in a section
+     */
+    public final static int SIZE = 16 * 16 * 16;
+
+    /**
+     * The max number of bits per palette entry
+     */
+    private final static int MAX_BITS = 8;
+
+    /**
+     * The palette
+     */
+    private int[] m_palette;
+
+    /**
+     * Number of used palette entries
+     */
+    private int m_paletteSize;
+
+    /**
+     * Number of bits per entry (0 - single value)
+     */
+    private int m_bits;
+
+    /**
+     * Number of entries stored in a single long
+     */
+    private int m_valuesPerLong;
+
+    /**
+     * The entry mask
+     */
+    private long m_mask;
+
+    /**
+     * The packed palette indexes
+     */
+    private long[] m_data;
+
+    /**
+     * The block IDs when the palette is too large (null if paletted)
+     */
+    private int[] m_direct;
+
+    /**
+     * Create a section filled with single block ID
+     *
+     * @param id
+     */
+    public PalettedBlockStorage(int id) {
+        m_palette = new int[]{id};
+        m_paletteSize = 1;
+        m_bits = 0;
+    }
+
+    /**
+     * Create a section from block IDs
+     *
+     * @param ids the block IDs (y, z, x order)
+     */
+    public PalettedBlockStorage(int[] ids) {
+        if (ids.length != SIZE) {
+            throw new IllegalArgumentException(String.format("BlockIds should be %1$s entries not: %2$s", SIZE, ids.length));
+        }
+
+        m_palette = new int[]{ids[0]};
+        m_paletteSize = 1;
+        m_bits = 0;
+
+        int lastId = ids[0];
+        for (int i = 1; i < SIZE; i++) {
+            int id = ids[i];
+            if (id != lastId) {
+                set(i, id);
+                lastId = id;
+            } else if (m_direct == null && m_bits > 0) {
+                //Same ID as the previous block, the palette is not changed
+                writeIndex(i, readIndex(i - 1));
+            } else if (m_direct != null) {
+                m_direct[i] = id;
+            }
+        }
+    }
+
+    /**
+     * Get the block ID
+     *
+     * @param idx the block index
+     * @return
+     */
+    public int get(int idx) {
+        if (m_direct != null) {
+            return m_direct[idx];
+        }
+
+        if (m_bits == 0) {
+            return m_palette[0];
+        }
+
+        return m_palette[readIndex(idx)];
+    }
+
+    /**
+     * Set the block ID
+     *
+     * @param idx the block index
+     * @param id the block ID
+     */
+    public void set(int idx, int id) {
+        if (m_direct != null) {
+            m_direct[idx] = id;
+            return;
+        }
+
+        int paletteIdx = indexOf(id);
+        if (paletteIdx < 0) {
+            paletteIdx = addToPalette(id);
+
+            if (m_direct != null) {
+                m_direct[idx] = id;
+                return;
+            }
+        }
+
+        if (m_bits > 0) {
+            writeIndex(idx, paletteIdx);
+        }
+    }
+
+    /**
+     * Get all block IDs
+     *
+     * @return new array with the block IDs (y, z, x order)
+     */
+    public int[] toArray() {
+        final int[] result = new int[SIZE];
+
+        if (m_direct != null) {
+            System.arraycopy(m_direct, 0, result, 0, SIZE);
+        } else if (m_bits == 0) {
+            Arrays.fill(result, m_palette[0]);
+        } else {
+            for (int i = 0; i < SIZE; i++) {
+                result[i] = m_palette[readIndex(i)];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Number of bits used for each block (32 if the palette is not used)
+     *
+     * @return
+     */
+    public int getBits() {
+        return m_direct != null ? 32 : m_bits;
+    }
+
+    /**
+     * Number of palette entries
+     *
+     * @return
+     */
+    public int getPaletteSize() {
+        return m_paletteSize;
+    }
+
+    /**
+     * Find the palette entry
+     *
+     * @param id
+     * @return the palette index or -1 if not found
+     */
+    private int indexOf(int id) {
+        final int[] palette = m_palette;
+        for (int i = 0; i < m_paletteSize; i++) {
+            if (palette[i] == id) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Add new palette entry, the entry size is increased if needed
+     *
+     * @param id
+     * @return the palette index or -1 if the palette is no longer used
+     */
+    private int addToPalette(int id) {
+        if (m_paletteSize == 1 << MAX_BITS) {
+            toDirect();
+            return -1;
+        }
+
+        if (m_paletteSize == m_palette.length) {
+            int[] tmp = new int[Math.min(1 << MAX_BITS, m_palette.length * 2)];
+            System.arraycopy(m_palette, 0, tmp, 0, m_paletteSize);
+            m_palette = tmp;
+        }
+
+        final int result = m_paletteSize++;
+        m_palette[result] = id;
+
+        if (m_paletteSize > 1 << m_bits) {
+            resize(m_bits + 1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Change the number of bits per entry
+     *
+     * @param bits
+     */
+    private void resize(int bits) {
+        final int[] indexes = new int[SIZE];
+        if (m_bits > 0) {
+            for (int i = 0; i < SIZE; i++) {
+                indexes[i] = readIndex(i);
+            }
+        }
+
+        m_bits = bits;
+        m_valuesPerLong = 64 / bits;
+        m_mask = (1L << bits) - 1;
+        m_data = new long[(SIZE + m_valuesPerLong - 1) / m_valuesPerLong];
+
+        for (int i = 0; i < SIZE; i++) {
+            writeIndex(i, indexes[i]);
+        }
+    }
+
+    /**
+     * Convert the storage to plain block IDs
+     */
+    private void toDirect() {
+        m_direct = toArray();
+        m_data = null;
+        m_bits = 0;
+    }
+
+    private int readIndex(int idx) {
+        final int word = idx / m_valuesPerLong;
+        final int shift = (idx - word * m_valuesPerLong) * m_bits;
+
+        return (int) ((m_data[word] >>> shift) & m_mask);
+    }
+
+    private void writeIndex(int idx, int value) {
+        final int word = idx / m_valuesPerLong;
+        final int shift = (idx - word * m_valuesPerLong) * m_bits;
+
+        m_data[word] = (m_data[word] & ~(m_mask << shift)) | ((long) value << shift);
+    }
+}
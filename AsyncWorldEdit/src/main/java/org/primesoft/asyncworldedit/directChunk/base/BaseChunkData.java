@@ -369,20 +369,19 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
         int cy = y / 16;
         IChunkSection cs = getChunkSection(cy);
         if (cs == null) {
-            cs = new ChunkSectionData(y, new int[16 * 16 * 16], true);
+            cs = new ChunkSectionData(y, 0, true);
             setChunkSection(cy, cs);
         }
 
-        int[] ids = cs.getBlockIds();
         int idx = (y % 16) * 256 + z * 16 + x;
 
-        if (idx < 0 || idx >= ids.length) {
+        if (idx < 0 || idx >= ChunkSectionData.SIZE) {
             return;
         }
 
         removeTileEntity(BlockVector3.at(x, y, z));
 
-        ids[idx] = id;
+        setBlockId(cs, idx, id);
         if (emission >= 0) {
             setEmission(cs, idx, emission);
         }
@@ -407,24 +406,22 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
         int cy = y / 16;
         IChunkSection cs = getChunkSection(cy);
         if (cs == null) {
-            cs = new ChunkSectionData(y, new int[16 * 16 * 16], true);
+            cs = new ChunkSectionData(y, 0, true);
             setChunkSection(cy, cs);
         }
 
         BlockVector3 entityCoords = BlockVector3.at(x, y, z);
         ISerializedTileEntity entity = createTileEntity(entityCoords, ct);
 
-        int[] ids = cs.getBlockIds();
-
         int idx = (y % 16) * 256 + z * 16 + x;
 
-        if (idx < 0 || idx >= ids.length) {
+        if (idx < 0 || idx >= ChunkSectionData.SIZE) {
             return;
         }
 
         setTileEntity(BlockVector3.at(x, y, z), entity);
 
-        ids[idx] = id;
+        setBlockId(cs, idx, id);
 
         if (emission >= 0) {
             setEmission(cs, idx, emission);
@@ -449,18 +446,40 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
      * @param id
      */
     private void setEmission(IChunkSection cs, int idx, byte lightLevel) {
-        setLight(cs.getEmittedLight(),
-                idx, lightLevel & 0xf);
+        if (cs instanceof ChunkSectionData) {
+            ((ChunkSectionData) cs).setEmittedLightLevel(idx, lightLevel);
+        } else {
+            setLight(cs.getEmittedLight(), idx, lightLevel);
+        }
+    }
+
+    /**
+     * Set the sky light level
+     *
+     * @param cs
+     * @param idx
+     * @param lightLevel
+     */
+    private void setSkyLight(IChunkSection cs, int idx, byte lightLevel) {
+        if (cs instanceof ChunkSectionData) {
+            ((ChunkSectionData) cs).setSkyLightLevel(idx, lightLevel);
+        } else {
+            setLight(cs.getSkyLight(), idx, lightLevel);
+        }
     }
     
     /**
      * Set light
      *
-     * @param cs
+     * @param data
      * @param idx
-     * @param id
+     * @param level
      */
-    private void setLight(byte[] data, int idx, int level) {
+    private static void setLight(byte[] data, int idx, int level) {
+        if (data == null) {
+            return;
+        }
+
         int lIdx = idx >> 1;
         int mask = 0xf << (4 * ((idx + 1) & 1));
         level = level & 0xf;
@@ -470,6 +489,36 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
                 | level << (4 * (idx & 1)));
     }
 
+    /**
+     * Set the block ID, the paletted section data is not expanded
+     *
+     * @param cs
+     * @param idx
+     * @param id
+     */
+    private static void setBlockId(IChunkSection cs, int idx, int id) {
+        if (cs instanceof ChunkSectionData) {
+            ((ChunkSectionData) cs).setBlockId(idx, id);
+        } else {
+            cs.getBlockIds()[idx] = id;
+        }
+    }
+
+    /**
+     * Get the block ID, the paletted section data is not expanded
+     *
+     * @param cs
+     * @param idx
+     * @return
+     */
+    private static int getBlockId(IChunkSection cs, int idx) {
+        if (cs instanceof ChunkSectionData) {
+            return ((ChunkSectionData) cs).getBlockId(idx);
+        }
+
+        return cs.getBlockIds()[idx];
+    }
+
     @Override
     public int getBlock(int x, int y, int z, IInOutParam<ISerializedTileEntity> tileEntity) {
         if (!isValidPosition(x, y, z)) {
@@ -483,10 +532,9 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
             return 0;
         }
 
-        int[] ids = cs.getBlockIds();
         int idx = (y % 16) * 256 + z * 16 + x;
 
-        if (idx < 0 || idx >= ids.length) {
+        if (idx < 0 || idx >= ChunkSectionData.SIZE) {
             return 0;
         }
 
@@ -498,7 +546,7 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
             }
         }
 
-        return ids[idx];
+        return getBlockId(cs, idx);
     }
 
     @Override
@@ -511,15 +559,12 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
         int cy = y / 16;
         IChunkSection cs = getChunkSection(cy);
         if (cs == null) {
-            cs = new ChunkSectionData(y, new int[16 * 16 * 16], true);
+            cs = new ChunkSectionData(y, 0, true);
             setChunkSection(cy, cs);
         }
 
         int idx = (y % 16) * 256 + z * 16 + x;
-        byte[] lEmission = cs.getEmittedLight();
-        if (lEmission != null) {
-            setLight(lEmission, idx, emission);
-        }
+        setEmission(cs, idx, emission);
     }
     
     
@@ -533,15 +578,12 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
         int cy = y / 16;
         IChunkSection cs = getChunkSection(cy);
         if (cs == null) {
-            cs = new ChunkSectionData(y, new int[16 * 16 * 16], true);
+            cs = new ChunkSectionData(y, 0, true);
             setChunkSection(cy, cs);
         }
 
         int idx = (y % 16) * 256 + z * 16 + x;
-        byte[] lEmission = cs.getSkyLight();
-        if (lEmission != null) {
-            setLight(lEmission, idx, emission);
-        }
+        setSkyLight(cs, idx, emission);
     }
     
     
@@ -558,12 +600,16 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
             return -1;
         }
 
-        return getLight(y, z, x, cs.getEmittedLight());
+        int idx = (y % 16) * 256 + z * 16 + x;
+        if (cs instanceof ChunkSectionData) {
+            return ((ChunkSectionData) cs).getEmittedLightLevel(idx);
+        }
+
+        return getLight(idx, cs.getEmittedLight());
     }
 
-    private byte getLight(int y, int z, int x, byte[] light) {
-        int idx = (y % 16) * 256 + z * 16 + x;
-        int lIdx = idx >> 2;
+    private static byte getLight(int idx, byte[] light) {
+        int lIdx = idx >> 1;
 
         byte lightLevel;
 
@@ -591,7 +637,12 @@ public abstract class BaseChunkData extends ChunkDataCommon implements IChunkDat
             return -1;
         }
 
-        return getLight(y, z, x, cs.getSkyLight());
+        int idx = (y % 16) * 256 + z * 16 + x;
+        if (cs instanceof ChunkSectionData) {
+            return ((ChunkSectionData) cs).getSkyLightLevel(idx);
+        }
+
+        return getLight(idx, cs.getSkyLight());
     }
 
     @Override
@@ -47,12 +47,10 @@
  */
 package org.primesoft.asyncworldedit.directChunk.relighter;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Set;
 import java.util.UUID;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
@@ -67,8 +65,12 @@ import org.primesoft.asyncworldedit.directChunk.DcUtils;
 import org.primesoft.asyncworldedit.platform.api.IPlatform;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.platform.api.ITask;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
 
 /**
+ * The block relighter. The queued chunks are relighted by a pool of workers,
+ * each worker processes a 3x3 chunk neighbourhood that does not overlap
+ * neighbourhoods processed by the other workers.
  *
  * @author SBPrime
  */
@@ -76,7 +78,7 @@ public class BlockReligher implements IBlockRelighter {
 
     private interface IRelighterMethods {
 
-        public byte getLightLevel(IDirectChunkData chunk, int x, int y, int z, int id);
+        public byte getLightLevel(RelightContext context, int x, int y, int z, int id);
 
         public int getOpacityLevel(int tBlockType);
 
@@ -90,7 +92,7 @@ public class BlockReligher implements IBlockRelighter {
     /**
      * Is the relight disposed
      */
-    private boolean m_isDisposed = false;
+    private volatile boolean m_isDisposed = false;
 
     /**
      * The DirectChunk API
@@ -98,21 +100,19 @@ public class BlockReligher implements IBlockRelighter {
     private final IDirectChunkAPI m_dcApi;
 
     /**
-     * The wait mutex
+     * The worker tasks
      */
-    private final Object m_waitMutex = new Object();
-
-    /**
-     * The task
-     */
-    private ITask m_task;
+    private ITask[] m_tasks;
 
     /**
      * List of all queued entries
      */
     private final HashMap<UUID, QueueEntry> m_worlds = new LinkedHashMap<>();
 
-    private final LinkedList<UUID> m_worldsStack = new LinkedList<>();
+    /**
+     * Worlds with queued chunks (round robin)
+     */
+    private final ArrayDeque<UUID> m_worldsStack = new ArrayDeque<>();
 
     /**
      * The data mutex
@@ -132,7 +132,7 @@ public class BlockReligher implements IBlockRelighter {
     /**
      * The emission relighter
      */
-    private final IRelighterMethods m_relighterEmission;
+    private final EmissionRelighter m_relighterEmission;
 
     /**
      * The sky light relighter
@@ -143,47 +143,12 @@ public class BlockReligher implements IBlockRelighter {
         m_dcApi = dcApi;
         m_taskDispatcher = taskDispatcher;
 
-        m_relighterEmission = new IRelighterMethods() {
-            @Override
-            public byte getLightLevel(IDirectChunkData chunk, int x, int y, int z, int id) {
-                return m_dcApi.getLightEmissionLevel(id);
-            }
-
-            @Override
-            public int getOpacityLevel(int tBlockType) {
-                return Math.max(1, m_dcApi.getOpacityLevel(tBlockType));
-            }
-
-            @Override
-            public byte getCurrentLight(IDirectChunkData chunk, int x, int y, int z) {
-                return chunk.getEmissionLight(x, y, z);
-            }
-
-            @Override
-            public void setCurrentLight(IDirectChunkData chunk, int x, int y, int z, byte level) {
-                chunk.setEmissionLight(x, y, z, level);
-            }
-
-            @Override
-            public boolean isFullY() {
-                return false;
-            }
-        };
+        m_relighterEmission = new EmissionRelighter(dcApi);
 
         m_relighterSky = new IRelighterMethods() {
             @Override
-            public byte getLightLevel(IDirectChunkData chunk, int x, int y, int z, int id) {
-                if (chunk == null) {
-                    return 0;
-                }
-
-                int opacity = 0;
-                for (int py = y; py < 256 && opacity < 15; py++) {
-                    id = chunk.getRawBlockData(x, py, z);
-                    opacity = Math.max(opacity, m_dcApi.getOpacityLevelSkyLight(id));
-                }
-
-                return (byte) Math.max(0, 15 - opacity);
+            public byte getLightLevel(RelightContext context, int x, int y, int z, int id) {
+                return (byte) Math.max(0, 15 - context.getSkyOpacity(x, y, z));
             }
 
             @Override
@@ -222,6 +187,27 @@ public class BlockReligher implements IBlockRelighter {
         return cx | (cz << 28);
     }
 
+    /**
+     * Get the chunk X coordinate from encoded chunk
+     *
+     * @param encodedChunk
+     * @return
+     */
+    public static int decodeChunkX(long encodedChunk) {
+        //HACK: We need to do SHL then SHR to handle the negative chunks propwerly
+        return ((int) ((encodedChunk & 0xfffffff) << 4)) >> 4;
+    }
+
+    /**
+     * Get the chunk Z coordinate from encoded chunk
+     *
+     * @param encodedChunk
+     * @return
+     */
+    public static int decodeChunkZ(long encodedChunk) {
+        return ((int) (((encodedChunk >> 28) & 0xfffffff) << 4)) >> 4;
+    }
+
     /**
      * Converts X, Y, Z position to in chunk position
      *
@@ -237,26 +223,33 @@ public class BlockReligher implements IBlockRelighter {
     @Override
     public void initialize(IPlatform platform) {
         IScheduler scheduler = platform.getScheduler();
+        ConfigDirectChunkApi dcConfig = ConfigProvider.directChunk();
+        int threads = dcConfig != null ? dcConfig.getRelightThreads() : 1;
 
         m_chunkWatcher = platform.getChunkWatcher();
 
-        m_task = scheduler.runTaskAsynchronously(this::relightLoop);
+        m_tasks = new ITask[threads];
+        for (int i = 0; i < threads; i++) {
+            m_tasks[i] = scheduler.runTaskAsynchronously(this::relightLoop);
+        }
     }
 
     @Override
     public void stop() {
         m_isDisposed = true;
 
-        synchronized (m_waitMutex) {
-            m_waitMutex.notifyAll();
-        }
-
         synchronized (m_dataMutex) {
             m_worlds.clear();
             m_worldsStack.clear();
+
+            m_dataMutex.notifyAll();
         }
 
-        m_task.cancel();
+        if (m_tasks != null) {
+            for (ITask task : m_tasks) {
+                task.cancel();
+            }
+        }
     }
 
     @Override
@@ -290,13 +283,11 @@ public class BlockReligher implements IBlockRelighter {
 
             if (queue.queueBlock(x, y, z)) {
                 if (!m_worldsStack.contains(uuid)) {
-                    m_worldsStack.push(uuid);
+                    m_worldsStack.add(uuid);
                 }
-            }
-        }
 
-        synchronized (m_waitMutex) {
-            m_waitMutex.notifyAll();
+                m_dataMutex.notifyAll();
+            }
         }
     }
 
@@ -306,74 +297,77 @@ public class BlockReligher implements IBlockRelighter {
     }
 
     /**
-     * The main relight loop
+     * The relight worker loop
      */
     private void relightLoop() {
-        boolean dataProcessed = false;
+        final RelightContext context = new RelightContext(m_dcApi);
 
         while (!m_isDisposed) {
-            if (!dataProcessed) {
-                synchronized (m_waitMutex) {
-                    try {
-                        m_waitMutex.wait();
-                    } catch (InterruptedException ex) {
-                    }
-                }
-            } else {
-                dataProcessed = false;
-            }
-
-            IWorld world = null;
-            Long encodedChunk = null;
-            HashSet<Short> blocksToProcess = null;
+            RelightJob job;
 
             synchronized (m_dataMutex) {
-                if (m_isDisposed) {
-                    //Relighter is disposed
-                    continue;
-                }
-
-                while (!m_worldsStack.isEmpty() && blocksToProcess == null) {
-                    UUID worldUUID = m_worldsStack.pop();
-                    QueueEntry entry = m_worlds.get(worldUUID);
-
-                    Queue<Long> hashQueue = entry.getQueue();
-                    HashMap<Long, HashSet<Short>> blockQueue = entry.getBlockQueue();
+                job = m_isDisposed ? null : pollJob();
 
-                    if (hashQueue.isEmpty()) {
-                        //No data? strange this should not happen...
-                        //Continue to next world
-                        continue;
+                if (job == null) {
+                    if (!m_isDisposed) {
+                        try {
+                            m_dataMutex.wait();
+                        } catch (InterruptedException ex) {
+                        }
                     }
+                    continue;
+                }
+            }
 
-                    encodedChunk = hashQueue.poll();
-                    blocksToProcess = blockQueue.get(encodedChunk);
-                    blockQueue.remove(encodedChunk);
-                    world = entry.getWorld();
+            try {
+                relight(context, job);
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Unable to relight chunk");
+            } finally {
+                context.reset();
 
-                    if (!hashQueue.isEmpty()) {
-                        m_worldsStack.push(worldUUID);
-                    }
+                synchronized (m_dataMutex) {
+                    job.getEntry().done(job.getChunkX(), job.getChunkZ());
+                    m_dataMutex.notifyAll();
                 }
             }
+        }
+    }
+
+    /**
+     * Get the next chunk to relight, the worlds are processed round robin.
+     * Must be called inside the data mutex.
+     *
+     * @return
+     */
+    private RelightJob pollJob() {
+        for (int i = m_worldsStack.size(); i > 0; i--) {
+            UUID worldUUID = m_worldsStack.poll();
+            QueueEntry entry = m_worlds.get(worldUUID);
+
+            RelightJob job = entry.poll();
+            if (!entry.isEmpty()) {
+                m_worldsStack.add(worldUUID);
+            }
 
-            if (blocksToProcess != null) {
-                relight(world, encodedChunk, blocksToProcess);
-                dataProcessed = true;
+            if (job != null) {
+                return job;
             }
         }
+
+        return null;
     }
 
     /**
      * Relight blocks
      *
-     * @param encodedChunk
-     * @param blocks
+     * @param context
+     * @param job
      */
-    private void relight(IWorld world, long encodedChunk, HashSet<Short> blocks) {
-        //HACK: We need to do SHL then SHR to handle the negative chunks propwerly
-        int cx = ((int) ((encodedChunk & 0xfffffff) << 4)) >> 4;
-        int cz = ((int) (((encodedChunk >> 28) & 0xfffffff) << 4)) >> 4;
+    private void relight(RelightContext context, RelightJob job) {
+        IWorld world = job.getEntry().getWorld();
+        int cx = job.getChunkX();
+        int cz = job.getChunkZ();
         String worldName = world.getName();
 
         int[] ccx = new int[3];
@@ -384,9 +378,6 @@ public class BlockReligher implements IBlockRelighter {
             ccz[i + 1] = cz + i;
         }
 
-        final IWrappedChunk[] chunks = new IWrappedChunk[9];
-        final IDirectChunkData[] chunkData = new IDirectChunkData[9];
-
         try {
             for (int i = 0; i < 3; i++) {
                 for (int j = 0; j < 3; j++) {
@@ -397,14 +388,18 @@ public class BlockReligher implements IBlockRelighter {
             for (int i = 0; i < 9; i++) {
                 IWrappedChunk wChunk = DcUtils.wrapChunk(m_taskDispatcher, m_dcApi, world,
                         ccx[i % 3], ccz[i / 3]);
-                chunks[i] = wChunk;
-                chunkData[i] = wChunk.getDirectDataManipulator();
+                context.setChunk(i, wChunk);
 
                 wChunk.initLighting();
             }
 
-            //relight(chunks, chunkData, blocks, m_relighterEmission);
-            relight(chunks, chunkData, blocks, m_relighterSky);
+            relight(context, job.getBlocks(), m_relighterSky);
+            m_relighterEmission.relight(context, job.getBlocks());
+
+            for (IWrappedChunk chunk : context.getChunks()) {
+                chunk.setDirty();
+                chunk.sendChunkUpdate();
+            }
         } finally {
             for (int i = 0; i < 3; i++) {
                 for (int j = 0; j < 3; j++) {
@@ -421,37 +416,27 @@ public class BlockReligher implements IBlockRelighter {
     /**
      * Recalculate light starting from blocks
      *
-     * @param chunks
+     * @param context
+     * @param blocks
+     * @param relighter
      */
-    private static void relight(IWrappedChunk[] chunks, IDirectChunkData[] chunkData, HashSet<Short> blocks,
+    private static void relight(RelightContext context, BitSet blocks,
             IRelighterMethods relighter) {
-        //Move position to center chunk
-        final Set<Integer> diamond = new HashSet<>();
-        final HashMap<Byte, Queue<Integer>> blockQueue = new LinkedHashMap<>();
-        final Set<Integer> blockQueueFlat = new HashSet<>();
+        final BitSet area = context.getArea();
 
-        calculateDiamond(blocks, diamond, chunkData, relighter.isFullY());
-        queueDiamond(diamond, chunkData, blockQueue, blockQueueFlat, relighter);
+        calculateArea(area, blocks, relighter.isFullY());
+        queueArea(context, relighter);
 
-        while (!blockQueue.isEmpty()) {
-            int data = dequeueBlock(blockQueue, blockQueueFlat);
-            if (data == -1) {
-                continue;
-            }
-
-            int x = data & 0x3f;
-            int y = (data >> 12) & 0xff;
-            int z = (data >> 6) & 0x3f;
+        int data;
+        while ((data = context.poll()) >= 0) {
+            int x = decodeRelightX(data);
+            int y = decodeRelightY(data);
+            int z = decodeRelightZ(data);
 
-            if (!diamond.contains(data)) {
-                continue;
-            }
-
-            int idx = (x / 16) + (z / 16) * 3;
-            IDirectChunkData chunk = chunkData[idx];
+            IDirectChunkData chunk = context.getChunk(x, z);
 
             int lightCurrent = relighter.getCurrentLight(chunk, x & 0xf, y, z & 0xf);
-            int lightExpected = getExpectedLight(x, y, z, chunkData, relighter);
+            int lightExpected = getExpectedLight(x, y, z, context, relighter);
 
             if (lightCurrent == lightExpected) {
                 continue;
@@ -472,60 +457,70 @@ public class BlockReligher implements IBlockRelighter {
                 int newY = y + DD_Y[i];
                 int newZ = z + DD_Z[i];
 
+                if (!isValidPos(newX, newY, newZ)) {
+                    continue;
+                }
+
                 data = encodeRelightPosition(newX, newY, newZ);
-                if (!diamond.contains(data) || newY < 0 || newY > 255) {
+                if (!area.get(data) || context.isQueued(data)) {
                     continue;
                 }
 
-                idx = (newX / 16) + (newZ / 16) * 3;
-                chunk = chunkData[idx];
+                chunk = context.getChunk(newX, newZ);
                 lightCurrent = relighter.getCurrentLight(chunk, newX & 0xf, newY, newZ & 0xf);
 
                 if (lightCurrent >= lightExpected) {
                     continue;
                 }
 
-                if (blockQueueFlat.contains(data)) {
-                    continue;
-                }
-
-                queueBlock((byte) (lightExpected & 0xf), data, blockQueue, blockQueueFlat);
+                context.queue(lightExpected & 0xf, data);
             }
         }
-
-        for (IWrappedChunk chunk : chunks) {
-            chunk.setDirty();
-            chunk.sendChunkUpdate();
-        }
     }
 
-    private static void queueDiamond(final Set<Integer> diamond, IDirectChunkData[] chunkData,
-            final HashMap<Byte, Queue<Integer>> blockQueue, Set<Integer> blockQueueFlat,
-            IRelighterMethods relighter) {
-        for (Integer data : diamond) {
-            int x = data & 0x3f;
-            int y = (data >> 12) & 0xff;
-            int z = (data >> 6) & 0x3f;
+    /**
+     * Reset the light of all blocks in the relight area and queue them
+     *
+     * @param context
+     * @param relighter
+     */
+    private static void queueArea(RelightContext context, IRelighterMethods relighter) {
+        final BitSet area = context.getArea();
 
-            int idx = (x / 16) + (z / 16) * 3;
-            IDirectChunkData chunk = chunkData[idx];
+        for (int data = area.nextSetBit(0); data >= 0; data = area.nextSetBit(data + 1)) {
+            int x = decodeRelightX(data);
+            int y = decodeRelightY(data);
+            int z = decodeRelightZ(data);
+
+            IDirectChunkData chunk = context.getChunk(x, z);
             relighter.setCurrentLight(chunk, x & 0xf, y, z & 0xf, (byte) 0);
             int id = chunk.getRawBlockData(x & 0xf, y, z & 0xf);
-            byte lightLevel = relighter.getLightLevel(chunk, x & 0xf, y, z & 0xf, id);
+            byte lightLevel = relighter.getLightLevel(context, x, y, z, id);
 
-            queueBlock(lightLevel, data, blockQueue, blockQueueFlat);
+            context.queue(lightLevel, data);
         }
     }
 
     /**
-     * Queue all blocks inside a diamond shape
+     * Mark all blocks inside a diamond shape around the queued blocks
      *
-     * @param blockQueue
-     * @param chunkData
+     * @param area
+     * @param blocks
+     * @param fullY
      */
-    private static void calculateDiamond(Set<Short> blocks, final Set<Integer> diamond, IDirectChunkData[] chunkData,
-            boolean fullY) {
-        for (Short data : blocks) {
+    private static void calculateArea(BitSet area, BitSet blocks, boolean fullY) {
+        final BitSet columns = fullY ? new BitSet(256) : null;
+
+        for (int data = blocks.nextSetBit(0); data >= 0; data = blocks.nextSetBit(data + 1)) {
+            if (fullY) {
+                //The area is the same for all blocks in the column
+                int column = data & 0xff;
+                if (columns.get(column)) {
+                    continue;
+                }
+                columns.set(column);
+            }
+
             int px = 16 + (data & 0xf);
             int py = (data >> 8) & 0xff;
             int pz = 16 + ((data >> 4) & 0xf);
@@ -542,36 +537,40 @@ public class BlockReligher implements IBlockRelighter {
                         yMin = 0;
                         yMax = 255;
                     } else {
-                        yMin = py + -15 + dx + dz;
-                        yMax = py + 15 - dx - dz;
+                        yMin = Math.max(0, py + -15 + dx + dz);
+                        yMax = Math.min(255, py + 15 - dx - dz);
                     }
 
-                    for (int y = yMin; y <= yMax; y++) {
-                        if (!isValidPos(x, y, z)) {
-                            return;
-                        }
-
-                        Integer encoded = encodeRelightPosition(x, y, z);
-                        if (!diamond.contains(encoded)) {
-                            diamond.add(encoded);
-                        }
-                    }
+                    int base = encodeRelightPosition(x, 0, z);
+                    area.set(base + yMin, base + yMax + 1);
                 }
             }
         }
     }
 
     /**
-     * Encode relight block position and expected light value
+     * Encode relight block position (the Y coordinate is stored in the lowest
+     * bits so each column is a continuous range)
      *
      * @param x
      * @param y
      * @param z
-     * @param light
      * @return
      */
-    private static int encodeRelightPosition(int x, int y, int z) {
-        return (x & 0x3f) | ((z & 0x3f) << 6) | ((y & 0xff) << 12);
+    static int encodeRelightPosition(int x, int y, int z) {
+        return (y & 0xff) | ((x & 0x3f) << 8) | ((z & 0x3f) << 14);
+    }
+
+    static int decodeRelightX(int data) {
+        return (data >> 8) & 0x3f;
+    }
+
+    static int decodeRelightY(int data) {
+        return data & 0xff;
+    }
+
+    static int decodeRelightZ(int data) {
+        return (data >> 14) & 0x3f;
     }
 
     /**
@@ -582,8 +581,8 @@ public class BlockReligher implements IBlockRelighter {
      * @param pz
      * @return
      */
-    private static boolean isValidPos(int px, int py, int pz) {
-        return px >= 0 && px < 48 && pz >= 0 && pz < 48 && py >= 0 && py < 256;
+    static boolean isValidPos(int px, int py, int pz) {
+        return px >= 0 && px < RelightContext.SIZE && pz >= 0 && pz < RelightContext.SIZE && py >= 0 && py < 256;
     }
 
     /**
@@ -592,19 +591,20 @@ public class BlockReligher implements IBlockRelighter {
      * @param x
      * @param y
      * @param z
-     * @param chunkData
+     * @param context
+     * @param relighter
      * @return
      */
-    private static int getExpectedLight(int x, int y, int z, IDirectChunkData[] chunkData,
+    private static int getExpectedLight(int x, int y, int z, RelightContext context,
             IRelighterMethods relighter) {
         if (!isValidPos(x, y, z)) {
             return -1;
         }
 
-        IDirectChunkData chunk = chunkData[(x / 16) + (z / 16) * 3];
+        IDirectChunkData chunk = context.getChunk(x, z);
         int tBlockType = chunk.getRawBlockData(x & 0xf, y, z & 0xf);
 
-        int tLight = relighter.getLightLevel(chunk, x & 0xf, y, z & 0xf, tBlockType);
+        int tLight = relighter.getLightLevel(context, x, y, z, tBlockType);
         int tOpacity = relighter.getOpacityLevel(tBlockType);
 
         if (tOpacity >= 15) {
@@ -619,62 +619,14 @@ public class BlockReligher implements IBlockRelighter {
             int newY = y + DD_Y[i];
             int newZ = z + DD_Z[i];
 
-            if (!isValidPos(newX, newY, newZ) || newY < 0 || newY > 255) {
+            if (!isValidPos(newX, newY, newZ)) {
                 continue;
             }
 
-            chunk = chunkData[(newX / 16) + (newZ / 16) * 3];
-            tBlockType = chunk.getRawBlockData(newX & 0xf, newY, newZ & 0xf);
+            chunk = context.getChunk(newX, newZ);
             tLight = Math.max(tLight, relighter.getCurrentLight(chunk, newX & 0xf, newY, newZ & 0xf) - tOpacity);
         }
 
         return tLight;
     }
-
-    /**
-     * Queue block to block queue
-     *
-     * @param emission
-     * @param data
-     * @param blockQueue
-     */
-    private static void queueBlock(Byte emission, Integer data,
-            HashMap<Byte, Queue<Integer>> blockQueue, Set<Integer> blockQueueFlat) {
-        Queue<Integer> entry = blockQueue.get(emission);
-        if (entry == null) {
-            entry = new LinkedList<>();
-            blockQueue.put(emission, entry);
-        }
-
-        entry.add(data);
-        blockQueueFlat.add(data);
-    }
-
-    private static int dequeueBlock(HashMap<Byte, Queue<Integer>> blockQueue,
-            Set<Integer> blockQueueFlat) {
-        if (blockQueue.isEmpty()) {
-            return -1;
-        }
-
-        for (Byte emission = 15; emission >= 0; emission--) {
-            Queue<Integer> queue = blockQueue.get(emission);
-            if (queue == null) {
-                continue;
-            }
-            if (queue.isEmpty()) {
-                blockQueue.remove(emission);
-                continue;
-            }
-
-            Integer result = queue.poll();
-            blockQueueFlat.remove(result);
-            if (queue.isEmpty()) {
-                blockQueue.remove(emission);
-            }
-
-            return result;
-        }
-
-        return -1;
-    }
 }
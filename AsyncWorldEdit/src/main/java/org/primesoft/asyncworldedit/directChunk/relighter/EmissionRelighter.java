@@ -0,0 +1,277 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk.relighter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkData;
+import org.primesoft.asyncworldedit.utils.IntQueue;
+import static org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher.decodeRelightX;
+import static org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher.decodeRelightY;
+import static org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher.decodeRelightZ;
+import static org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher.encodeRelightPosition;
+import static org.primesoft.asyncworldedit.directChunk.relighter.BlockReligher.isValidPos;
+
+/**
+ * The emission (block) light relighter. The light is updated using two
+ * queues: the removal queue clears the light that was emitted by the changed
+ * blocks, the increase queue spreads the light from the remaining and the
+ * new light sources.
+ *
+ * @author SBPrime
+ */
+class EmissionRelighter {
+
+    /**
+     * Number of cached block IDs
+     */
+    private final static int CACHE_SIZE = 0x10000;
+
+    /**
+     * Mask of the encoded position in the removal queue
+     */
+    private final static int POSITION_MASK = 0xfffff;
+
+    /**
+     * The light level shift in the removal queue
+     */
+    private final static int LEVEL_SHIFT = 20;
+
+    private final static int[] DD_X = new int[]{-1, 1, 0, 0, 0, 0};
+    private final static int[] DD_Y = new int[]{0, 0, -1, 1, 0, 0};
+    private final static int[] DD_Z = new int[]{0, 0, 0, 0, -1, 1};
+
+    /**
+     * The DirectChunk API
+     */
+    private final IDirectChunkAPI m_dcApi;
+
+    /**
+     * The cached light emission level for block ID (-1 not cached)
+     */
+    private final byte[] m_emission = new byte[CACHE_SIZE];
+
+    /**
+     * The cached light opacity for block ID (-1 not cached)
+     */
+    private final byte[] m_opacity = new byte[CACHE_SIZE];
+
+    EmissionRelighter(IDirectChunkAPI dcApi) {
+        m_dcApi = dcApi;
+
+        Arrays.fill(m_emission, (byte) -1);
+        Arrays.fill(m_opacity, (byte) -1);
+    }
+
+    /**
+     * Recalculate the emission light around the changed blocks
+     *
+     * @param context the relight context
+     * @param blocks the changed blocks (encoded center chunk positions)
+     */
+    void relight(RelightContext context, BitSet blocks) {
+        final IntQueue removeQueue = context.getRemoveQueue();
+        final IntQueue increaseQueue = context.getIncreaseQueue();
+
+        for (int data = blocks.nextSetBit(0); data >= 0; data = blocks.nextSetBit(data + 1)) {
+            int x = 16 + (data & 0xf);
+            int y = (data >> 8) & 0xff;
+            int z = 16 + ((data >> 4) & 0xf);
+
+            IDirectChunkData chunk = context.getChunk(x, z);
+            int oldLight = chunk.getEmissionLight(x & 0xf, y, z & 0xf);
+            int emission = getEmission(chunk.getRawBlockData(x & 0xf, y, z & 0xf));
+            int pos = encodeRelightPosition(x, y, z);
+
+            chunk.setEmissionLight(x & 0xf, y, z & 0xf, (byte) emission);
+            removeQueue.add(pos | (oldLight << LEVEL_SHIFT));
+            if (emission > 0) {
+                increaseQueue.add(pos);
+            }
+        }
+
+        processRemoval(context, removeQueue, increaseQueue);
+        processIncrease(context, increaseQueue);
+    }
+
+    /**
+     * Clear the light that was spread from the removed light levels. The
+     * blocks that have the light from other sources are queued for increase.
+     *
+     * @param context
+     * @param removeQueue
+     * @param increaseQueue
+     */
+    private void processRemoval(RelightContext context, IntQueue removeQueue, IntQueue increaseQueue) {
+        while (!removeQueue.isEmpty()) {
+            int entry = removeQueue.poll();
+            int pos = entry & POSITION_MASK;
+            int level = entry >>> LEVEL_SHIFT;
+
+            int x = decodeRelightX(pos);
+            int y = decodeRelightY(pos);
+            int z = decodeRelightZ(pos);
+
+            for (int i = 0; i < DD_X.length; i++) {
+                int newX = x + DD_X[i];
+                int newY = y + DD_Y[i];
+                int newZ = z + DD_Z[i];
+
+                if (!isValidPos(newX, newY, newZ)) {
+                    continue;
+                }
+
+                IDirectChunkData chunk = context.getChunk(newX, newZ);
+                int light = chunk.getEmissionLight(newX & 0xf, newY, newZ & 0xf);
+                if (light == 0) {
+                    continue;
+                }
+
+                int newPos = encodeRelightPosition(newX, newY, newZ);
+                if (light >= level) {
+                    //Light from a different source
+                    increaseQueue.add(newPos);
+                    continue;
+                }
+
+                int emission = getEmission(chunk.getRawBlockData(newX & 0xf, newY, newZ & 0xf));
+                chunk.setEmissionLight(newX & 0xf, newY, newZ & 0xf, (byte) emission);
+                removeQueue.add(newPos | (light << LEVEL_SHIFT));
+
+                if (emission > 0) {
+                    increaseQueue.add(newPos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Spread the light from the queued blocks
+     *
+     * @param context
+     * @param increaseQueue
+     */
+    private void processIncrease(RelightContext context, IntQueue increaseQueue) {
+        while (!increaseQueue.isEmpty()) {
+            int pos = increaseQueue.poll();
+            int x = decodeRelightX(pos);
+            int y = decodeRelightY(pos);
+            int z = decodeRelightZ(pos);
+
+            int light = context.getChunk(x, z).getEmissionLight(x & 0xf, y, z & 0xf);
+            if (light <= 1) {
+                continue;
+            }
+
+            for (int i = 0; i < DD_X.length; i++) {
+                int newX = x + DD_X[i];
+                int newY = y + DD_Y[i];
+                int newZ = z + DD_Z[i];
+
+                if (!isValidPos(newX, newY, newZ)) {
+                    continue;
+                }
+
+                IDirectChunkData chunk = context.getChunk(newX, newZ);
+                int opacity = getOpacity(chunk.getRawBlockData(newX & 0xf, newY, newZ & 0xf));
+                if (opacity >= 15) {
+                    continue;
+                }
+
+                int newLight = light - opacity;
+                if (newLight <= chunk.getEmissionLight(newX & 0xf, newY, newZ & 0xf)) {
+                    continue;
+                }
+
+                chunk.setEmissionLight(newX & 0xf, newY, newZ & 0xf, (byte) newLight);
+                increaseQueue.add(encodeRelightPosition(newX, newY, newZ));
+            }
+        }
+    }
+
+    /**
+     * Get the block light emission level
+     *
+     * @param id the raw block ID
+     * @return
+     */
+    private int getEmission(int id) {
+        if (id < 0 || id >= CACHE_SIZE) {
+            return Math.min(15, Math.max(0, m_dcApi.getLightEmissionLevel(id)));
+        }
+
+        byte result = m_emission[id];
+        if (result < 0) {
+            result = (byte) Math.min(15, Math.max(0, m_dcApi.getLightEmissionLevel(id)));
+            m_emission[id] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the block light opacity (at least 1)
+     *
+     * @param id the raw block ID
+     * @return
+     */
+    private int getOpacity(int id) {
+        if (id < 0 || id >= CACHE_SIZE) {
+            return Math.min(15, Math.max(1, m_dcApi.getOpacityLevel(id)));
+        }
+
+        byte result = m_opacity[id];
+        if (result < 0) {
+            result = (byte) Math.min(15, Math.max(1, m_dcApi.getOpacityLevel(id)));
+            m_opacity[id] = result;
+        }
+
+        return result;
+    }
+}
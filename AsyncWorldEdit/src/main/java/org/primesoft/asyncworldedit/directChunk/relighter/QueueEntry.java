@@ -47,12 +47,9 @@
  */
 package org.primesoft.asyncworldedit.directChunk.relighter;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.BitSet;
 import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.utils.LongIntHashMap;
 
 /**
  *
@@ -61,14 +58,54 @@ import org.primesoft.asyncworldedit.api.IWorld;
 public class QueueEntry {
 
     /**
-     * Hash of all queued blocks
+     * Number of positions in a chunk (16 x 16 x 256)
      */
-    private final HashMap<Long, HashSet<Short>> m_blockQueue = new HashMap<Long, HashSet<Short>>();
+    private final static int CHUNK_POSITIONS = 0x10000;
 
     /**
-     * Queue used to determine the order of relighting
+     * The queued blocks slot for each encoded chunk
      */
-    private final Queue<Long> m_hashQueue = new LinkedList<Long>();
+    private final LongIntHashMap m_blockQueue = new LongIntHashMap();
+
+    /**
+     * Queued blocks (encoded positions) for each slot
+     */
+    private BitSet[] m_blocks = new BitSet[8];
+
+    /**
+     * The free slots
+     */
+    private int[] m_freeSlots = new int[8];
+
+    /**
+     * Number of free slots
+     */
+    private int m_freeCount;
+
+    /**
+     * Number of used slots (the free slots included)
+     */
+    private int m_slotCount;
+
+    /**
+     * Queue used to determine the order of relighting (encoded chunks)
+     */
+    private long[] m_hashQueue = new long[8];
+
+    /**
+     * Number of queued chunks
+     */
+    private int m_hashQueueCount;
+
+    /**
+     * The chunks that are currently relighted (x, z pairs)
+     */
+    private int[] m_inProgress = new int[8];
+
+    /**
+     * Number of chunks currently relighted
+     */
+    private int m_inProgressCount;
 
     /**
      * The world
@@ -83,12 +120,13 @@ public class QueueEntry {
         return m_world;
     }
 
-    public HashMap<Long, HashSet<Short>> getBlockQueue() {
-        return m_blockQueue;
-    }
-
-    public Queue<Long> getQueue() {
-        return m_hashQueue;
+    /**
+     * Are there any chunks waiting for relight
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return m_hashQueueCount == 0;
     }
 
     /**
@@ -97,24 +135,166 @@ public class QueueEntry {
      * @param x
      * @param y
      * @param z
+     * @return true if the block was not queued
      */
     public boolean queueBlock(int x, int y, int z) {
-        Long chunk = BlockReligher.encodeChunk(x, z);
-        Short pos = BlockReligher.encodePosition(x, y, z);
+        long chunk = BlockReligher.encodeChunk(x, z);
+        int pos = BlockReligher.encodePosition(x, y, z) & 0xffff;
 
-        HashSet<Short> data = m_blockQueue.get(chunk);
-        if (data == null) {
-            data = new LinkedHashSet<Short>();
+        final BitSet data;
+        final int slot = m_blockQueue.get(chunk, -1);
+        if (slot < 0) {
+            data = new BitSet(CHUNK_POSITIONS);
 
-            m_blockQueue.put(chunk, data);
-            m_hashQueue.add(chunk);
+            m_blockQueue.put(chunk, allocateSlot(data));
+            addQueue(chunk);
+        } else {
+            data = m_blocks[slot];
         }
 
-        if (data.contains(pos)) {            
+        if (data.get(pos)) {
             return false;
         }
-        
-        data.add(pos);
+
+        data.set(pos);
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the first queued chunk that can be relighted now. The chunk 3x3
+     * neighbourhood must not overlap any chunk that is being relighted.
+     * The returned chunk is marked as in progress.
+     *
+     * @return the job or null if no chunk can be relighted
+     */
+    public RelightJob poll() {
+        final long[] queue = m_hashQueue;
+        for (int i = 0; i < m_hashQueueCount; i++) {
+            long chunk = queue[i];
+            int cx = BlockReligher.decodeChunkX(chunk);
+            int cz = BlockReligher.decodeChunkZ(chunk);
+
+            if (isLocked(cx, cz)) {
+                continue;
+            }
+
+            m_hashQueueCount--;
+            System.arraycopy(queue, i + 1, queue, i, m_hashQueueCount - i);
+            addInProgress(cx, cz);
+
+            final int slot = m_blockQueue.get(chunk, -1);
+            m_blockQueue.remove(chunk);
+
+            return new RelightJob(this, cx, cz, releaseSlot(slot));
+        }
+
+        return null;
+    }
+
+    /**
+     * Mark the chunk relight as finished
+     *
+     * @param cx
+     * @param cz
+     */
+    public void done(int cx, int cz) {
+        final int[] inProgress = m_inProgress;
+        for (int i = 0; i < m_inProgressCount; i++) {
+            if (inProgress[i * 2] == cx && inProgress[i * 2 + 1] == cz) {
+                m_inProgressCount--;
+                inProgress[i * 2] = inProgress[m_inProgressCount * 2];
+                inProgress[i * 2 + 1] = inProgress[m_inProgressCount * 2 + 1];
+                return;
+            }
+        }
+    }
+
+    /**
+     * Is the chunk neighbourhood shared with a chunk that is being relighted
+     *
+     * @param cx
+     * @param cz
+     * @return
+     */
+    private boolean isLocked(int cx, int cz) {
+        final int[] inProgress = m_inProgress;
+        for (int i = 0; i < m_inProgressCount; i++) {
+            if (Math.abs(inProgress[i * 2] - cx) <= 2 && Math.abs(inProgress[i * 2 + 1] - cz) <= 2) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add the chunk to the end of the relight queue
+     *
+     * @param chunk
+     */
+    private void addQueue(long chunk) {
+        if (m_hashQueueCount == m_hashQueue.length) {
+            long[] tmp = new long[m_hashQueue.length * 2];
+            System.arraycopy(m_hashQueue, 0, tmp, 0, m_hashQueueCount);
+            m_hashQueue = tmp;
+        }
+
+        m_hashQueue[m_hashQueueCount++] = chunk;
+    }
+
+    /**
+     * Store the queued blocks in a free slot
+     *
+     * @param data
+     * @return the slot
+     */
+    private int allocateSlot(BitSet data) {
+        final int slot;
+        if (m_freeCount > 0) {
+            slot = m_freeSlots[--m_freeCount];
+        } else {
+            if (m_slotCount == m_blocks.length) {
+                BitSet[] tmp = new BitSet[m_blocks.length * 2];
+                System.arraycopy(m_blocks, 0, tmp, 0, m_slotCount);
+                m_blocks = tmp;
+            }
+
+            slot = m_slotCount++;
+        }
+
+        m_blocks[slot] = data;
+        return slot;
+    }
+
+    /**
+     * Free the slot
+     *
+     * @param slot
+     * @return the queued blocks stored in the slot
+     */
+    private BitSet releaseSlot(int slot) {
+        final BitSet result = m_blocks[slot];
+        m_blocks[slot] = null;
+
+        if (m_freeCount == m_freeSlots.length) {
+            int[] tmp = new int[m_freeSlots.length * 2];
+            System.arraycopy(m_freeSlots, 0, tmp, 0, m_freeCount);
+            m_freeSlots = tmp;
+        }
+
+        m_freeSlots[m_freeCount++] = slot;
+        return result;
+    }
+
+    private void addInProgress(int cx, int cz) {
+        if (m_inProgressCount * 2 == m_inProgress.length) {
+            int[] tmp = new int[m_inProgress.length * 2];
+            System.arraycopy(m_inProgress, 0, tmp, 0, m_inProgress.length);
+            m_inProgress = tmp;
+        }
+
+        m_inProgress[m_inProgressCount * 2] = cx;
+        m_inProgress[m_inProgressCount * 2 + 1] = cz;
+        m_inProgressCount++;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk.relighter;
+
+import java.util.BitSet;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import org.primesoft.asyncworldedit.utils.IntQueue;
+
+/**
+ * The relight worker state for a 3x3 chunk neighbourhood. All buffers are
+ * allocated once per worker and reused between the jobs.
+ * The positions are encoded using BlockReligher.encodeRelightPosition.
+ *
+ * @author SBPrime
+ */
+class RelightContext {
+
+    /**
+     * The neighbourhood size (blocks)
+     */
+    final static int SIZE = 48;
+
+    /**
+     * Number of encoded positions
+     */
+    private final static int POSITIONS = 1 << 20;
+
+    /**
+     * Number of light levels
+     */
+    private final static int LEVELS = 16;
+
+    /**
+     * The DirectChunk API
+     */
+    private final IDirectChunkAPI m_dcApi;
+
+    /**
+     * The wrapped chunks
+     */
+    private final IWrappedChunk[] m_chunks = new IWrappedChunk[9];
+
+    /**
+     * The chunks data
+     */
+    private final IDirectChunkData[] m_chunkData = new IDirectChunkData[9];
+
+    /**
+     * Positions that can be relighted
+     */
+    private final BitSet m_area = new BitSet(POSITIONS);
+
+    /**
+     * Positions that are queued
+     */
+    private final BitSet m_queued = new BitSet(POSITIONS);
+
+    /**
+     * The queued positions for each light level
+     */
+    private final IntQueue[] m_queues = new IntQueue[LEVELS];
+
+    /**
+     * The light removal queue (encoded position and the removed light level)
+     */
+    private final IntQueue m_removeQueue = new IntQueue(1024);
+
+    /**
+     * The light increase queue (encoded positions)
+     */
+    private final IntQueue m_increaseQueue = new IntQueue(1024);
+
+    /**
+     * The highest light level that may have queued positions
+     */
+    private int m_topLevel = -1;
+
+    /**
+     * The cached sky light opacity (max opacity of all blocks above)
+     */
+    private final byte[] m_skyOpacity = new byte[SIZE * SIZE * 256];
+
+    /**
+     * Columns that have the sky light opacity calculated
+     */
+    private final BitSet m_skyColumns = new BitSet(SIZE * SIZE);
+
+    RelightContext(IDirectChunkAPI dcApi) {
+        m_dcApi = dcApi;
+
+        for (int i = 0; i < LEVELS; i++) {
+            m_queues[i] = new IntQueue(1024);
+        }
+    }
+
+    /**
+     * Set the neighbourhood chunk
+     *
+     * @param idx the chunk index (x + z * 3)
+     * @param chunk
+     */
+    void setChunk(int idx, IWrappedChunk chunk) {
+        m_chunks[idx] = chunk;
+        m_chunkData[idx] = chunk != null ? chunk.getDirectDataManipulator() : null;
+    }
+
+    IWrappedChunk[] getChunks() {
+        return m_chunks;
+    }
+
+    /**
+     * Get the chunk data for neighbourhood position
+     *
+     * @param x
+     * @param z
+     * @return
+     */
+    IDirectChunkData getChunk(int x, int z) {
+        return m_chunkData[(x >> 4) + (z >> 4) * 3];
+    }
+
+    BitSet getArea() {
+        return m_area;
+    }
+
+    boolean isQueued(int pos) {
+        return m_queued.get(pos);
+    }
+
+    /**
+     * Queue position
+     *
+     * @param level the light level
+     * @param pos the encoded position
+     */
+    void queue(int level, int pos) {
+        m_queues[level].add(pos);
+        m_queued.set(pos);
+
+        if (level > m_topLevel) {
+            m_topLevel = level;
+        }
+    }
+
+    /**
+     * Get the queued position with the highest light level
+     *
+     * @return the encoded position or -1 if there are no queued positions
+     */
+    int poll() {
+        for (int level = m_topLevel; level >= 0; level--) {
+            IntQueue queue = m_queues[level];
+            if (!queue.isEmpty()) {
+                m_topLevel = level;
+
+                int result = queue.poll();
+                m_queued.clear(result);
+                return result;
+            }
+        }
+
+        m_topLevel = -1;
+        return -1;
+    }
+
+    IntQueue getRemoveQueue() {
+        return m_removeQueue;
+    }
+
+    IntQueue getIncreaseQueue() {
+        return m_increaseQueue;
+    }
+
+    /**
+     * Get the max sky light opacity of the block and all blocks above it.
+     * The value is calculated once for each column.
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return
+     */
+    int getSkyOpacity(int x, int y, int z) {
+        final int column = x + z * SIZE;
+        final int base = column << 8;
+
+        if (!m_skyColumns.get(column)) {
+            IDirectChunkData chunk = getChunk(x, z);
+            int opacity = chunk == null ? 15 : 0;
+
+            for (int py = 255; py >= 0; py--) {
+                if (opacity < 15) {
+                    opacity = Math.max(opacity, m_dcApi.getOpacityLevelSkyLight(chunk.getRawBlockData(x & 0xf, py, z & 0xf)));
+                }
+                m_skyOpacity[base + py] = (byte) opacity;
+            }
+
+            m_skyColumns.set(column);
+        }
+
+        return m_skyOpacity[base + y];
+    }
+
+    /**
+     * Reset the context, the buffers are kept
+     */
+    void reset() {
+        for (int i = 0; i < m_chunks.length; i++) {
+            m_chunks[i] = null;
+            m_chunkData[i] = null;
+        }
+
+        for (IntQueue queue : m_queues) {
+            queue.clear();
+        }
+
+        m_removeQueue.clear();
+        m_increaseQueue.clear();
+
+        m_topLevel = -1;
+        m_area.clear();
+        m_queued.clear();
+        m_skyColumns.clear();
+    }
+}
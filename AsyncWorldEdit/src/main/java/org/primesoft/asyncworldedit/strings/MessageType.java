@@ -132,6 +132,7 @@ public enum MessageType {
     CMD_JOBS_YOU("CMD_JOBS_YOU"),
     CMD_JOBS_OTHER("CMD_JOBS_OTHER"),
     CMD_JOBS_OTHER_SHORT("CMD_JOBS_OTHER_SHORT"),
+    CMD_JOBS_STATS("CMD_JOBS_STATS"),
     CMD_JOBS_STATUS("CMD_JOBS_STATUS"),
     CMD_JOBS_STATUS_DONE("CMD_JOBS_STATUS_DONE"),
     CMD_JOBS_STATUS_CANCELED("CMD_JOBS_STATUS_CANCELED"),
@@ -53,11 +53,13 @@ import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.taskdispatcher.IDispatcherEntry;
 import com.sk89q.worldedit.regions.Region;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
 import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
@@ -70,6 +72,7 @@ import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.platform.api.ITask;
 import org.primesoft.asyncworldedit.utils.InOutParam;
 import org.primesoft.asyncworldedit.utils.PositionHelper;
+import org.primesoft.asyncworldedit.utils.StripedMutex;
 
 /**
  * This class is used to perform tasks that need to by performed as fast as
@@ -118,10 +121,9 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
     private final IAsyncWorldEditCore m_aweCore;
 
     /**
-     * List of fast tasks (high priority) Use linked list to overcome memory
-     * leakage
+     * List of fast tasks (high priority)
      */
-    private final Queue<IDispatcherEntry> m_fastTasks = new LinkedList<>();
+    private final Queue<IDispatcherEntry> m_fastTasks = new ConcurrentLinkedQueue<>();
 
     /**
      * The main thread
@@ -219,23 +221,13 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
 
             boolean processed = false;
             for (int i = 0; i < jobsCount && (m_usage * 3 + usage) / 4 < maxTime; i++) {
-                IDispatcherEntry task = null;
-                synchronized (m_fastTasks) {
-                    if (!m_fastTasks.isEmpty()) {
-                        task = m_fastTasks.poll();
-                    }
+                final IDispatcherEntry task = m_fastTasks.poll();
+                if (task == null) {
+                    break;
                 }
 
-                if (task != null) {
-                    task.Process();
-                    processed = true;
-                } else {
-                    try {
-                        //Force thread change
-                        Thread.sleep(1);
-                    } catch (InterruptedException ex) {
-                    }
-                }
+                task.Process();
+                processed = true;
 
                 runTime = System.currentTimeMillis() - enter;
                 if (runTime + runDelta > 0) {
@@ -285,9 +277,7 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
      */
     @Override
     public void addFastTask(IDispatcherEntry entry) {
-        synchronized (m_fastTasks) {
-            m_fastTasks.add(entry);
-        }
+        m_fastTasks.add(entry);
 
         startFastTask();
     }
@@ -334,24 +324,14 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return null;
         }
 
-        FuncEntry<T> getBlock = new FuncEntry<>(action);
         if (isMainTask()) {
             return action.execute();
         }
 
-        final Object mutex = getBlock.getMutex();
+        final FutureEntry<T> entry = new FutureEntry<>(action);
+        addFastTask(entry);
 
-        addFastTask(getBlock);
-        synchronized (mutex) {
-            while (getBlock.getResult() == null) {
-                try {
-                    mutex.wait();
-                } catch (InterruptedException ex) {
-                }
-            }
-        }
-        
-        return getBlock.getResult().orElse(null);
+        return waitFor(entry.getFuture());
     }
 
     /**
@@ -364,25 +344,125 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return;
         }
 
-        ActionEntry actionEntry = new ActionEntry(action);
         if (isMainTask()) {
             action.execute();
             return;
         }
 
-        final Object mutex = actionEntry.getMutex();
+        final FutureEntry<Object> entry = new FutureEntry<>(toFunc(action));
+        addFastTask(entry);
+
+        waitFor(entry.getFuture());
+    }
+
+    @Override
+    public <T> CompletableFuture<T> performSafeBatch(IWorld world, Collection<BlockVector2> chunks, IFunc<T> action) {
+        if (action == null) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        addFastTask(actionEntry);
-        synchronized (mutex) {
-            while (!actionEntry.isDone()) {
+        final String worldName = world != null ? world.getName() : null;
+        try {
+            boolean canPerform = true;
+            for (BlockVector2 vector : chunks) {
+                int cx = vector.getBlockX();
+                int cz = vector.getBlockZ();
+                m_chunkWatch.add(cx, cz, worldName);
+                canPerform &= canPerform(world, cx, cz);
+            }
+
+            if (canPerform) {
                 try {
-                    mutex.wait();
-                } catch (InterruptedException ex) {
+                    return CompletableFuture.completedFuture(action.execute());
+                } catch (Exception ex) {
+                    if (isMainTask()) {
+                        //There is no fallback on the main thread
+                        final CompletableFuture<T> result = new CompletableFuture<>();
+                        result.completeExceptionally(ex);
+                        return result;
+                    }
+
+                    /*
+                     * Exception here indicates that async block get is not
+                     * available. Therefore use the queue fallback.
+                     */
+                    ExceptionHelper.printException(ex,
+                            String.format("Error performing safe operation for %1$s for chunk list",
+                                    worldName));
                 }
             }
+        } finally {
+            for (BlockVector2 vector : chunks) {
+                m_chunkWatch.remove(vector.getBlockX(), vector.getBlockZ(), worldName);
+            }
+        }
+
+        return queueBatch(world, chunks, action);
+    }
+
+    /**
+     * Queue the action on the dispatcher. All the chunks are loaded and the
+     * action is performed in a single dispatcher run.
+     *
+     * @param <T>
+     * @param world
+     * @param chunks
+     * @param action
+     * @return
+     */
+    private <T> CompletableFuture<T> queueBatch(IWorld world, Collection<BlockVector2> chunks, IFunc<T> action) {
+        final String worldName = world != null ? world.getName() : null;
+        for (BlockVector2 vector : chunks) {
+            m_chunkWatch.add(vector.getBlockX(), vector.getBlockZ(), worldName);
+        }
+
+        final FutureEntry<T> entry = new FutureEntry<>(() -> {
+            for (BlockVector2 vector : chunks) {
+                m_chunkWatch.loadChunk(vector.getBlockX(), vector.getBlockZ(), worldName);
+            }
+
+            return action.execute();
+        });
+
+        addFastTask(entry);
+
+        return entry.getFuture().whenComplete((r, ex) -> {
+            for (BlockVector2 vector : chunks) {
+                m_chunkWatch.remove(vector.getBlockX(), vector.getBlockZ(), worldName);
+            }
+        });
+    }
+
+    /**
+     * Wait for the dispatcher operation to finish
+     *
+     * @param <T>
+     * @param future
+     * @return
+     */
+    private static <T> T waitFor(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw ex;
         }
     }
 
+    private static IFunc<Object> toFunc(IAction action) {
+        return () -> {
+            action.execute();
+            return null;
+        };
+    }
+
     /**
      * Try to mark thread
      *
@@ -428,30 +508,35 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                int cx = pos.getBlockX();
-                int cz = pos.getBlockZ();
-                String worldName = world != null ? world.getName() : null;
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    int cx = pos.getBlockX();
+                    int cz = pos.getBlockZ();
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    m_chunkWatch.add(cx, cz, worldName);
-                    if (canPerform(world, cx, cz)) {
-                        try {
-                            action.execute();
-                            return;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
-                                            worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                    try {
+                        m_chunkWatch.add(cx, cz, worldName);
+                        if (canPerform(world, cx, cz)) {
+                            try {
+                                action.execute();
+                                return;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
+                                                worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                            }
                         }
+                    } finally {
+                        m_chunkWatch.remove(cx, cz, worldName);
                     }
-                } finally {
-                    m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             queueFastOperation(action);
         } finally {
@@ -477,30 +562,35 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                int cx = PositionHelper.positionToChunk(pos.getX());
-                int cz = PositionHelper.positionToChunk(pos.getZ());
-                String worldName = world != null ? world.getName() : null;
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    int cx = PositionHelper.positionToChunk(pos.getX());
+                    int cz = PositionHelper.positionToChunk(pos.getZ());
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    m_chunkWatch.add(cx, cz, worldName);
-                    if (canPerform(world, cx, cz)) {
-                        try {
-                            action.execute();
-                            return;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
-                                            worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                    try {
+                        m_chunkWatch.add(cx, cz, worldName);
+                        if (canPerform(world, cx, cz)) {
+                            try {
+                                action.execute();
+                                return;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
+                                                worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                            }
                         }
+                    } finally {
+                        m_chunkWatch.remove(cx, cz, worldName);
                     }
-                } finally {
-                    m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             queueFastOperation(action);
         } finally {
@@ -526,42 +616,47 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                Set<BlockVector2> chunks = region.getChunks();
-                String worldName = world != null ? world.getName() : null;
+            final Set<BlockVector2> chunks = region.getChunks();
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    boolean canPerform = true;
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.add(cx, cz, worldName);
-                        canPerform &= canPerform(world, cx, cz);
-                    }
-                    if (canPerform) {
-                        try {
-                            action.execute();
-                            return;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s for region %2$s",
-                                            worldName, region.toString()));
+                    try {
+                        boolean canPerform = true;
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.add(cx, cz, worldName);
+                            canPerform &= canPerform(world, cx, cz);
+                        }
+                        if (canPerform) {
+                            try {
+                                action.execute();
+                                return;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s for region %2$s",
+                                                worldName, region.toString()));
+                            }
+                        }
+                    } finally {
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.remove(cx, cz, worldName);
                         }
-                    }
-                } finally {
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
 
-            queueFastOperation(action);
+            waitFor(queueBatch(world, chunks, toFunc(action)));
         } finally {
             unmarkThread(id);
         }
@@ -585,41 +680,46 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                Set<BlockVector2> chunks = region.getChunks();
-                String worldName = world != null ? world.getName() : null;
+            final Set<BlockVector2> chunks = region.getChunks();
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    boolean canPerform = true;
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.add(cx, cz, worldName);
-                        canPerform &= canPerform(world, cx, cz);
-                    }
-                    if (canPerform) {
-                        try {
-                            T result = action.execute();
-                            return result;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s for region %2$s",
-                                            worldName, region.toString()));
+                    try {
+                        boolean canPerform = true;
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.add(cx, cz, worldName);
+                            canPerform &= canPerform(world, cx, cz);
+                        }
+                        if (canPerform) {
+                            try {
+                                T result = action.execute();
+                                return result;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s for region %2$s",
+                                                worldName, region.toString()));
+                            }
+                        }
+                    } finally {
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.remove(cx, cz, worldName);
                         }
-                    }
-                } finally {
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
-            return queueFastOperation(action);
+            return waitFor(queueBatch(world, chunks, action));
         } finally {
             unmarkThread(id);
         }
@@ -643,29 +743,34 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                int cx = PositionHelper.positionToChunk(pos.getX());
-                int cz = PositionHelper.positionToChunk(pos.getZ());
-                String worldName = world != null ? world.getName() : null;
-                try {
-                    m_chunkWatch.add(cx, cz, worldName);
-                    if (canPerform(world, cx, cz)) {
-                        try {
-                            T result = action.execute();
-                            return result;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
-                                            worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    int cx = PositionHelper.positionToChunk(pos.getX());
+                    int cz = PositionHelper.positionToChunk(pos.getZ());
+                    String worldName = world != null ? world.getName() : null;
+                    try {
+                        m_chunkWatch.add(cx, cz, worldName);
+                        if (canPerform(world, cx, cz)) {
+                            try {
+                                T result = action.execute();
+                                return result;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
+                                                worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                            }
                         }
+                    } finally {
+                        m_chunkWatch.remove(cx, cz, worldName);
                     }
-                } finally {
-                    m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             return queueFastOperation(action);
         } finally {
@@ -691,29 +796,34 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                int cx = pos.getBlockX();
-                int cz = pos.getBlockZ();
-                String worldName = world != null ? world.getName() : null;
-                try {
-                    m_chunkWatch.add(cx, cz, worldName);
-                    if (canPerform(world, cx, cz)) {
-                        try {
-                            T result = action.execute();
-                            return result;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
-                                            worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    int cx = pos.getBlockX();
+                    int cz = pos.getBlockZ();
+                    String worldName = world != null ? world.getName() : null;
+                    try {
+                        m_chunkWatch.add(cx, cz, worldName);
+                        if (canPerform(world, cx, cz)) {
+                            try {
+                                T result = action.execute();
+                                return result;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s cx: %2$s cz: %3$s Loaded: %4$s",
+                                                worldName, cx, cz, world.isChunkLoaded(cx, cz)));
+                            }
                         }
+                    } finally {
+                        m_chunkWatch.remove(cx, cz, worldName);
                     }
-                } finally {
-                    m_chunkWatch.remove(cx, cz, worldName);
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             return queueFastOperation(action);
         } finally {
@@ -736,17 +846,22 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return;
         }
         try {
-            synchronized (mutex) {
-                try {
-                    action.execute();
-                    return;
-                } catch (Exception ex) {
-                    /*
-                     * Exception here indicates that async block get is not
-                     * available. Therefore use the queue fallback.
-                     */
-                    ExceptionHelper.printException(ex, "Error performing safe operation.");
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    try {
+                        action.execute();
+                        return;
+                    } catch (Exception ex) {
+                        /*
+                         * Exception here indicates that async block get is not
+                         * available. Therefore use the queue fallback.
+                         */
+                        ExceptionHelper.printException(ex, "Error performing safe operation.");
+                    }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             queueFastOperation(action);
         } finally {
@@ -770,17 +885,22 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return action.execute();
         }
         try {
-            synchronized (mutex) {
-                try {
-                    T result = action.execute();
-                    return result;
-                } catch (Exception ex) {
-                    /*
-                     * Exception here indicates that async block get is not
-                     * available. Therefore use the queue fallback.
-                     */
-                    ExceptionHelper.printException(ex, "Error performing safe operation.");
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    try {
+                        T result = action.execute();
+                        return result;
+                    } catch (Exception ex) {
+                        /*
+                         * Exception here indicates that async block get is not
+                         * available. Therefore use the queue fallback.
+                         */
+                        ExceptionHelper.printException(ex, "Error performing safe operation.");
+                    }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
             return queueFastOperation(action);
         } finally {
@@ -796,41 +916,46 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
             return;
         }
         try {
-            synchronized (mutex) {
-                String worldName = world != null ? world.getName() : null;
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    boolean canPerform = true;
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.add(cx, cz, worldName);
-                        canPerform &= canPerform(world, cx, cz);
-                    }
-                    if (canPerform) {
-                        try {
-                            action.execute();
-                            return;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s for chunk list",
-                                            worldName));
+                    try {
+                        boolean canPerform = true;
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.add(cx, cz, worldName);
+                            canPerform &= canPerform(world, cx, cz);
+                        }
+                        if (canPerform) {
+                            try {
+                                action.execute();
+                                return;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s for chunk list",
+                                                worldName));
+                            }
+                        }
+                    } finally {
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.remove(cx, cz, worldName);
                         }
-                    }
-                } finally {
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
 
-            queueFastOperation(action);
+            waitFor(queueBatch(world, chunks, toFunc(action)));
         } finally {
             unmarkThread(id);
         }
@@ -844,40 +969,45 @@ public class TaskDispatcher implements Runnable, ITaskDispatcher {
         }
 
         try {
-            synchronized (mutex) {
-                String worldName = world != null ? world.getName() : null;
+            StripedMutex.lock(mutex);
+            try {
+                synchronized (mutex) {
+                    String worldName = world != null ? world.getName() : null;
 
-                try {
-                    boolean canPerform = true;
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.add(cx, cz, worldName);
-                        canPerform &= canPerform(world, cx, cz);
-                    }
-                    if (canPerform) {
-                        try {
-                            T result = action.execute();
-                            return result;
-                        } catch (Exception ex) {
-                            /*
-                             * Exception here indicates that async block get is not
-                             * available. Therefore use the queue fallback.
-                             */
-                            ExceptionHelper.printException(ex,
-                                    String.format("Error performing safe operation for %1$s for chunk list",
-                                            worldName));
+                    try {
+                        boolean canPerform = true;
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.add(cx, cz, worldName);
+                            canPerform &= canPerform(world, cx, cz);
+                        }
+                        if (canPerform) {
+                            try {
+                                T result = action.execute();
+                                return result;
+                            } catch (Exception ex) {
+                                /*
+                                 * Exception here indicates that async block get is not
+                                 * available. Therefore use the queue fallback.
+                                 */
+                                ExceptionHelper.printException(ex,
+                                        String.format("Error performing safe operation for %1$s for chunk list",
+                                                worldName));
+                            }
+                        }
+                    } finally {
+                        for (BlockVector2 vector : chunks) {
+                            int cx = vector.getBlockX();
+                            int cz = vector.getBlockZ();
+                            m_chunkWatch.remove(cx, cz, worldName);
                         }
-                    }
-                } finally {
-                    for (BlockVector2 vector : chunks) {
-                        int cx = vector.getBlockX();
-                        int cz = vector.getBlockZ();
-                        m_chunkWatch.remove(cx, cz, worldName);
                     }
                 }
+            } finally {
+                StripedMutex.unlock(mutex);
             }
-            return queueFastOperation(action);
+            return waitFor(queueBatch(world, chunks, action));
         } finally {
             unmarkThread(id);
         }
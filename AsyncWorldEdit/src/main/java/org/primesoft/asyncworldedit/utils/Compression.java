@@ -59,6 +59,16 @@ import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
  */
 public class Compression {
 
+    /**
+     * The codec buffer size
+     */
+    private final static int BUFFER_SIZE = 1024;
+
+    /**
+     * The per thread codec (the native zlib contexts are reused)
+     */
+    private final static ThreadLocal<Codec> s_codecs = ThreadLocal.withInitial(Codec::new);
+
     /**
      * Compress the data stream
      *
@@ -70,12 +80,15 @@ public class Compression {
             return data;
         }
 
-        Deflater compressor = new Deflater(Deflater.BEST_COMPRESSION);
+        final Codec codec = s_codecs.get();
+        final Deflater compressor = codec.getDeflater();
+        final byte[] buffer = codec.m_buffer;
+
+        compressor.reset();
         compressor.setInput(data);
         compressor.finish();
 
         UnsafeDataOutput out = new UnsafeDataOutput(data.length);
-        byte[] buffer = new byte[1024];
         try {
             while (!compressor.finished()) {
                 int count = compressor.deflate(buffer);
@@ -84,6 +97,8 @@ public class Compression {
             return out.toByteArray();
         } catch (IOException ex) {
             return null;
+        } finally {
+            compressor.reset();
         }
     }
 
@@ -98,14 +113,21 @@ public class Compression {
             return data;
         }
 
-        Inflater decompressor = new Inflater();
+        final Codec codec = s_codecs.get();
+        final Inflater decompressor = codec.getInflater();
+        final byte[] buffer = codec.m_buffer;
+
+        decompressor.reset();
         decompressor.setInput(data);
 
         UnsafeDataOutput out = new UnsafeDataOutput(data.length);
-        byte[] buffer = new byte[1024];
         try {
             while (!decompressor.finished()) {
                 int count = decompressor.inflate(buffer);
+                if (count == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    //Truncated stream
+                    return null;
+                }
                 out.write(buffer, 0, count);
             }
             return out.toByteArray();
@@ -113,7 +135,47 @@ public class Compression {
             return data;
         } catch (DataFormatException dfex) {
             return null;
+        } finally {
+            decompressor.reset();
         }
     }
 
+    /**
+     * The thread codec, the deflater and inflater are created on first use
+     * and released when the thread dies (the zlib classes clean up their
+     * native memory when they are collected).
+     */
+    private static class Codec {
+
+        /**
+         * The codec buffer
+         */
+        private final byte[] m_buffer = new byte[BUFFER_SIZE];
+
+        /**
+         * The compressor
+         */
+        private Deflater m_deflater;
+
+        /**
+         * The decompressor
+         */
+        private Inflater m_inflater;
+
+        Deflater getDeflater() {
+            if (m_deflater == null) {
+                m_deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            }
+
+            return m_deflater;
+        }
+
+        Inflater getInflater() {
+            if (m_inflater == null) {
+                m_inflater = new Inflater();
+            }
+
+            return m_inflater;
+        }
+    }
 }
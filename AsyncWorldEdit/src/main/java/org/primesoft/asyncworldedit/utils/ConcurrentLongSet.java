@@ -0,0 +1,249 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Open addressing set of longs. The modifications are synchronized, the
+ * lookups do not lock and do not allocate. The two largest negative values
+ * (Long.MIN_VALUE and Long.MIN_VALUE + 1) are reserved and can not be stored.
+ *
+ * @author SBPrime
+ */
+public class ConcurrentLongSet {
+
+    /**
+     * The empty slot marker
+     */
+    private final static long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The removed entry marker
+     */
+    private final static long REMOVED = Long.MIN_VALUE + 1;
+
+    /**
+     * The minimum table size
+     */
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * The values table
+     */
+    private volatile AtomicLongArray m_table = allocate(MIN_CAPACITY);
+
+    /**
+     * Number of used slots (including the removed entries)
+     */
+    private int m_used;
+
+    /**
+     * Number of entries
+     */
+    private volatile int m_size;
+
+    /**
+     * Number of entries
+     *
+     * @return
+     */
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * Check if the value is in the set
+     *
+     * @param value
+     * @return
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY || value == REMOVED) {
+            return false;
+        }
+
+        return find(m_table, value) >= 0;
+    }
+
+    /**
+     * Add value to the set
+     *
+     * @param value
+     * @return True if the value was added (false for the reserved values)
+     */
+    public synchronized boolean add(long value) {
+        if (value == EMPTY || value == REMOVED) {
+            return false;
+        }
+
+        AtomicLongArray table = m_table;
+        if (find(table, value) >= 0) {
+            return false;
+        }
+
+        if ((m_used + 1) * 2 > table.length()) {
+            table = rebuild(table);
+        }
+
+        final int mask = table.length() - 1;
+        int slot = LongIntHashMap.hash(value) & mask;
+        long current;
+        while ((current = table.get(slot)) != EMPTY && current != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (current == EMPTY) {
+            m_used++;
+        }
+
+        table.set(slot, value);
+        m_size++;
+
+        return true;
+    }
+
+    /**
+     * Remove the value from the set
+     *
+     * @param value
+     * @return True if the value was removed
+     */
+    public synchronized boolean remove(long value) {
+        if (value == EMPTY || value == REMOVED) {
+            return false;
+        }
+
+        final AtomicLongArray table = m_table;
+        final int slot = find(table, value);
+        if (slot < 0) {
+            return false;
+        }
+
+        table.set(slot, REMOVED);
+        m_size--;
+
+        return true;
+    }
+
+    /**
+     * Remove all values
+     */
+    public synchronized void clear() {
+        m_table = allocate(MIN_CAPACITY);
+        m_used = 0;
+        m_size = 0;
+    }
+
+    /**
+     * Find the value slot
+     *
+     * @param table
+     * @param value
+     * @return The slot or -1 if not found
+     */
+    private static int find(AtomicLongArray table, long value) {
+        final int mask = table.length() - 1;
+
+        for (int slot = LongIntHashMap.hash(value) & mask;; slot = (slot + 1) & mask) {
+            final long current = table.get(slot);
+            if (current == value) {
+                return slot;
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Rebuild the table (removes the removed entries markers)
+     *
+     * @param table
+     * @return
+     */
+    private AtomicLongArray rebuild(AtomicLongArray table) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (m_size + 1) * 4) {
+            capacity <<= 1;
+        }
+
+        final AtomicLongArray result = allocate(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < table.length(); i++) {
+            final long value = table.get(i);
+            if (value == EMPTY || value == REMOVED) {
+                continue;
+            }
+
+            int slot = LongIntHashMap.hash(value) & mask;
+            while (result.get(slot) != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            result.set(slot, value);
+        }
+
+        m_used = m_size;
+        m_table = result;
+
+        return result;
+    }
+
+    private static AtomicLongArray allocate(int capacity) {
+        final AtomicLongArray result = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            result.set(i, EMPTY);
+        }
+
+        return result;
+    }
+}
@@ -50,7 +50,6 @@ package org.primesoft.asyncworldedit.utils;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -62,12 +61,19 @@ import static org.primesoft.asyncworldedit.LoggerProvider.log;
  */
 public class ExtentUtils {
 
-    private final static Field s_abstractDelegateExtent_extent
-            = Reflection.findField(AbstractDelegateExtent.class, "extent", "Unable to get AbstractDelegateExtent extent");
+    private final static FieldAccessor<Extent> s_abstractDelegateExtent_extent
+            = Reflection.findFieldAccessor(AbstractDelegateExtent.class, Extent.class, "extent", "Unable to get AbstractDelegateExtent extent");
+
+    private final static FieldAccessor<Extent> s_editSession_bypassNone
+            = Reflection.findFieldAccessor(EditSession.class, Extent.class, "bypassNone", "Unable to get extent");
+
+    private static Extent getBypassNone(EditSession session) {
+        return s_editSession_bypassNone != null ? s_editSession_bypassNone.get(session) : null;
+    }
 
     public static List<Extent> getExtentList(EditSession session) {
         List<Extent> extentList = new ArrayList<>();
-        Extent current = Reflection.get(EditSession.class, Extent.class, session, "bypassNone", "Unable to get extent");
+        Extent current = getBypassNone(session);
         while (current != null) {
             extentList.add(current);
 
@@ -89,7 +95,7 @@ public class ExtentUtils {
     public static void dumpExtents(String prefix, String text, EditSession editSession) {
         log(prefix + "-----------------------");
         log(prefix + text);
-        Extent current = Reflection.get(EditSession.class, Extent.class, editSession, "bypassNone", "Unable to get extent");
+        Extent current = getBypassNone(editSession);
         while (current != null) {
             log(prefix + "..." + current.getClass().getName());
 
@@ -138,6 +144,6 @@ public class ExtentUtils {
             return false;
         }
 
-        return Reflection.set(delegateExtent, s_abstractDelegateExtent_extent, childExtent, "Unable to set extent");
+        return s_abstractDelegateExtent_extent.set(delegateExtent, childExtent);
     }
 }
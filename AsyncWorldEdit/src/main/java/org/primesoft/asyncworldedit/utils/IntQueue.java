@@ -0,0 +1,157 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+/**
+ * Growable FIFO queue of primitive ints (ring buffer, no boxing).
+ * The class is not thread safe.
+ *
+ * @author SBPrime
+ */
+public class IntQueue {
+
+    /**
+     * The minimum queue size
+     */
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * The queued values
+     */
+    private int[] m_data;
+
+    /**
+     * Index of the first value
+     */
+    private int m_head;
+
+    /**
+     * Number of queued values
+     */
+    private int m_size;
+
+    public IntQueue() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntQueue(int capacity) {
+        int size = MIN_CAPACITY;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        m_data = new int[size];
+    }
+
+    /**
+     * Number of queued values
+     *
+     * @return
+     */
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * Add value at the end of the queue
+     *
+     * @param value
+     */
+    public void add(int value) {
+        if (m_size == m_data.length) {
+            grow();
+        }
+
+        m_data[(m_head + m_size) & (m_data.length - 1)] = value;
+        m_size++;
+    }
+
+    /**
+     * Remove the first value from the queue
+     *
+     * @return the value
+     * @throws IllegalStateException when the queue is empty
+     */
+    public int poll() {
+        if (m_size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+
+        final int result = m_data[m_head];
+        m_head = (m_head + 1) & (m_data.length - 1);
+        m_size--;
+
+        return result;
+    }
+
+    /**
+     * Remove all values, the allocated buffer is kept
+     */
+    public void clear() {
+        m_head = 0;
+        m_size = 0;
+    }
+
+    /**
+     * Double the queue size
+     */
+    private void grow() {
+        final int[] data = new int[m_data.length * 2];
+        final int tail = m_data.length - m_head;
+
+        System.arraycopy(m_data, m_head, data, 0, tail);
+        System.arraycopy(m_data, 0, data, tail, m_head);
+
+        m_data = data;
+        m_head = 0;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe latency statistics (number of calls, total and maximum time and
+ * a histogram with power of two microsecond buckets)
+ *
+ * @author SBPrime
+ */
+public class LatencyStats {
+
+    /**
+     * Number of histogram buckets, bucket i holds the calls that took less
+     * then 2^i microseconds (the last bucket holds all the slower calls)
+     */
+    private final static int BUCKETS = 32;
+
+    /**
+     * Number of recorded calls
+     */
+    private final LongAdder m_count = new LongAdder();
+
+    /**
+     * The total time (ns)
+     */
+    private final LongAdder m_totalTime = new LongAdder();
+
+    /**
+     * The maximum time (ns)
+     */
+    private final LongAccumulator m_maxTime = new LongAccumulator(Math::max, 0);
+
+    /**
+     * The latency histogram
+     */
+    private final LongAdder[] m_histogram = new LongAdder[BUCKETS];
+
+    public LatencyStats() {
+        for (int i = 0; i < BUCKETS; i++) {
+            m_histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a call
+     *
+     * @param time the call time (ns)
+     */
+    public void record(long time) {
+        m_count.increment();
+        m_totalTime.add(time);
+        m_maxTime.accumulate(time);
+        m_histogram[bucket(time)].increment();
+    }
+
+    public long getCount() {
+        return m_count.sum();
+    }
+
+    /**
+     * The total time (ns)
+     *
+     * @return
+     */
+    public long getTotalTime() {
+        return m_totalTime.sum();
+    }
+
+    /**
+     * The maximum time (ns)
+     *
+     * @return
+     */
+    public long getMaxTime() {
+        return m_maxTime.get();
+    }
+
+    /**
+     * The average time (ns)
+     *
+     * @return
+     */
+    public double getAverageTime() {
+        final long count = getCount();
+        return count == 0 ? 0 : (double) getTotalTime() / count;
+    }
+
+    /**
+     * The number of calls in each histogram bucket, bucket i holds the calls
+     * that took less then 2^i microseconds
+     *
+     * @return
+     */
+    public long[] getHistogram() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = m_histogram[i].sum();
+        }
+
+        return result;
+    }
+
+    /**
+     * The time (ns) under which the percentile of the calls completed,
+     * rounded up to the histogram bucket
+     *
+     * @param percentile the percentile (0 - 1)
+     * @return
+     */
+    public long getPercentile(double percentile) {
+        final long[] histogram = getHistogram();
+        long count = 0;
+        for (long c : histogram) {
+            count += c;
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        final long limit = Math.max(1, (long) Math.ceil(count * percentile));
+        long sum = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            sum += histogram[i];
+            if (sum >= limit) {
+                return (1L << i) * 1000;
+            }
+        }
+
+        return getMaxTime();
+    }
+
+    public void reset() {
+        m_count.reset();
+        m_totalTime.reset();
+        m_maxTime.reset();
+        for (LongAdder bucket : m_histogram) {
+            bucket.reset();
+        }
+    }
+
+    private static int bucket(long time) {
+        final long us = Math.max(0, time) / 1000;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(us));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$d calls, avg %2$.3fms, p99 %3$.3fms, max %4$.3fms",
+                getCount(), getAverageTime() / 1000000.0, getPercentile(0.99) / 1000000.0,
+                getMaxTime() / 1000000.0);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+/**
+ * Open addressing long to int hash map (linear probing, no boxing).
+ * The class is not thread safe.
+ *
+ * @author SBPrime
+ */
+public class LongIntHashMap {
+
+    /**
+     * The minimum table size
+     */
+    private final static int MIN_CAPACITY = 16;
+
+    /**
+     * The keys
+     */
+    private long[] m_keys;
+
+    /**
+     * The values
+     */
+    private int[] m_values;
+
+    /**
+     * Is the slot used
+     */
+    private boolean[] m_used;
+
+    /**
+     * Number of entries
+     */
+    private int m_size;
+
+    public LongIntHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Number of entries
+     *
+     * @return
+     */
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    /**
+     * Get the value
+     *
+     * @param key
+     * @param defaultValue the value returned when the key is not found
+     * @return
+     */
+    public int get(long key, int defaultValue) {
+        final int slot = find(key);
+
+        return slot < 0 ? defaultValue : m_values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Set the value
+     *
+     * @param key
+     * @param value
+     */
+    public void put(long key, int value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            m_values[slot] = value;
+            return;
+        }
+
+        if ((m_size + 1) * 2 > m_keys.length) {
+            resize(m_keys.length * 2);
+        }
+
+        final int mask = m_keys.length - 1;
+        slot = hash(key) & mask;
+        while (m_used[slot]) {
+            slot = (slot + 1) & mask;
+        }
+
+        m_keys[slot] = key;
+        m_values[slot] = value;
+        m_used[slot] = true;
+        m_size++;
+    }
+
+    /**
+     * Remove the value
+     *
+     * @param key
+     * @return True if the key was removed
+     */
+    public boolean remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+
+        //Move back the following entries (no tombstones needed)
+        final int mask = m_keys.length - 1;
+        for (int next = (slot + 1) & mask; m_used[next]; next = (next + 1) & mask) {
+            final int ideal = hash(m_keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - slot) & mask)) {
+                m_keys[slot] = m_keys[next];
+                m_values[slot] = m_values[next];
+                slot = next;
+            }
+        }
+
+        m_used[slot] = false;
+        m_size--;
+
+        return true;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        if (m_size == 0) {
+            return;
+        }
+
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Find the key slot
+     *
+     * @param key
+     * @return the slot or -1 if not found
+     */
+    private int find(long key) {
+        final int mask = m_keys.length - 1;
+
+        for (int slot = hash(key) & mask; m_used[slot]; slot = (slot + 1) & mask) {
+            if (m_keys[slot] == key) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        final long[] keys = m_keys;
+        final int[] values = m_values;
+        final boolean[] used = m_used;
+
+        allocate(capacity);
+
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        m_keys = new long[capacity];
+        m_values = new int[capacity];
+        m_used = new boolean[capacity];
+        m_size = 0;
+    }
+
+    /**
+     * Mix the key bits
+     *
+     * @param key
+     * @return
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+
+        return (int) key;
+    }
+}
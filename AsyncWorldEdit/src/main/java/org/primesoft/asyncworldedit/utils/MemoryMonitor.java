@@ -0,0 +1,447 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import static org.primesoft.asyncworldedit.LoggerProvider.log;
+import org.primesoft.asyncworldedit.configuration.ConfigMemory;
+import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+
+/**
+ * The memory pressure monitor. The free memory is calculated from the heap
+ * usage after each garbage collection (GC notifications) and when the heap
+ * pools exceed the usage thresholds. The monitor never polls the runtime
+ * on the hot paths and never forces the GC to run, the pressure is lowered
+ * after a GC started by the JVM.
+ *
+ * @author SBPrime
+ */
+public final class MemoryMonitor {
+
+    /**
+     * The minimum time between two runtime checks (used only when 
+     * the GC notifications are not supported)
+     */
+    private final static long CHECK = 100;
+
+    private final static Object ITEM = new Object();
+
+    /**
+     * The state mutex, notified when the pressure level changes
+     */
+    private final static Object s_mutex = new Object();
+
+    /**
+     * The pressure listeners
+     */
+    private final static Map<IMemoryPressureListener, Object> s_listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Unregister the JVM notification listeners
+     */
+    private final static List<Runnable> s_cleanup = new ArrayList<>();
+
+    /**
+     * The JVM notification listener
+     */
+    private final static NotificationListener s_notificationListener = MemoryMonitor::handleNotification;
+
+    /**
+     * Names of the heap memory pools
+     */
+    private final static Set<String> s_heapPools = new HashSet<>();
+
+    /**
+     * The last runtime check (used only when the GC notifications are not supported)
+     */
+    private final static AtomicLong s_lastCheck = new AtomicLong(-1);
+
+    /**
+     * Minimum free memory (bytes)
+     */
+    private static volatile long s_minMemoryHard;
+
+    /**
+     * Minimum free memory required to leave the hard limit (bytes)
+     */
+    private static volatile long s_minMemorySoft;
+
+    /**
+     * The free memory
+     */
+    private static volatile long s_available = Long.MAX_VALUE;
+
+    /**
+     * The memory pressure level
+     */
+    private static volatile MemoryPressure s_level = MemoryPressure.Normal;
+
+    /**
+     * Is the free memory updated by the GC notifications
+     */
+    private static volatile boolean s_isNotificationDriven;
+
+    private MemoryMonitor() {
+    }
+
+    /**
+     * Load the memory limits from the configuration
+     * and (re)register the JVM notification listeners
+     */
+    public static void loadConfig() {
+        final ConfigMemory mConfig = ConfigProvider.memory();
+
+        initialize(mConfig.getMinMemoryHard() * 1000, mConfig.getMinMemorySoft() * 1000);
+    }
+
+    /**
+     * Initialize the monitor
+     *
+     * @param minMemoryHard minimum free memory (bytes)
+     * @param minMemorySoft minimum free memory required to leave the hard limit (bytes)
+     */
+    static void initialize(long minMemoryHard, long minMemorySoft) {
+        synchronized (s_mutex) {
+            unregister();
+
+            s_minMemoryHard = minMemoryHard;
+            s_minMemorySoft = minMemorySoft;
+            s_isNotificationDriven = register(minMemoryHard, minMemorySoft);
+        }
+
+        if (!s_isNotificationDriven) {
+            log("Warning: GC notifications are not supported, polling the free memory.");
+        }
+
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        update(getMaxMemory() - heap.getUsed());
+    }
+
+    /**
+     * Stop the monitor
+     */
+    public static void stop() {
+        synchronized (s_mutex) {
+            unregister();
+            s_isNotificationDriven = false;
+
+            s_mutex.notifyAll();
+        }
+    }
+
+    /**
+     * Get the free memory (bytes)
+     *
+     * @return
+     */
+    public static long getAvailableMemory() {
+        if (!s_isNotificationDriven) {
+            poll();
+        }
+
+        return s_available;
+    }
+
+    /**
+     * Get the memory pressure level
+     *
+     * @return
+     */
+    public static MemoryPressure getLevel() {
+        if (!s_isNotificationDriven) {
+            poll();
+        }
+
+        return s_level;
+    }
+
+    /**
+     * Wait until the memory pressure drops to the provided level
+     *
+     * @param level the expected level
+     * @param timeout maximum wait time (ms)
+     * @return true if the pressure is at most at the provided level
+     * @throws InterruptedException
+     */
+    public static boolean waitForLevel(MemoryPressure level, long timeout) throws InterruptedException {
+        synchronized (s_mutex) {
+            if (getLevel().compareTo(level) <= 0) {
+                return true;
+            }
+
+            s_mutex.wait(timeout);
+        }
+
+        return getLevel().compareTo(level) <= 0;
+    }
+
+    /**
+     * Add the memory pressure listener
+     *
+     * @param listener
+     */
+    public static void addListener(IMemoryPressureListener listener) {
+        s_listeners.put(listener, ITEM);
+    }
+
+    /**
+     * Remove the memory pressure listener
+     *
+     * @param listener
+     */
+    public static void removeListener(IMemoryPressureListener listener) {
+        s_listeners.remove(listener);
+    }
+
+    /**
+     * Calculate the memory pressure level
+     *
+     * @param available free memory
+     * @param minMemoryHard
+     * @param minMemorySoft
+     * @return
+     */
+    static MemoryPressure getLevel(long available, long minMemoryHard, long minMemorySoft) {
+        if (minMemoryHard > 0 && available < minMemoryHard) {
+            return MemoryPressure.Hard;
+        }
+        if (minMemorySoft > 0 && available < minMemorySoft) {
+            return MemoryPressure.Soft;
+        }
+
+        return MemoryPressure.Normal;
+    }
+
+    /**
+     * Update the free memory and inform the listeners when
+     * the pressure level changes
+     *
+     * @param available
+     */
+    static void update(long available) {
+        final MemoryPressure oldLevel;
+        final MemoryPressure newLevel = getLevel(available, s_minMemoryHard, s_minMemorySoft);
+
+        synchronized (s_mutex) {
+            s_available = available;
+            oldLevel = s_level;
+            if (oldLevel == newLevel) {
+                return;
+            }
+
+            s_level = newLevel;
+            s_mutex.notifyAll();
+        }
+
+        for (IMemoryPressureListener listener : s_listeners.keySet()) {
+            try {
+                listener.pressureChanged(oldLevel, newLevel);
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Error while processing the memory pressure change.");
+            }
+        }
+    }
+
+    /**
+     * Update the free memory using the runtime (no GC notifications)
+     */
+    private static void poll() {
+        final long now = System.currentTimeMillis();
+        final long previous = s_lastCheck.get();
+        if (now - previous < CHECK || !s_lastCheck.compareAndSet(previous, now)) {
+            return;
+        }
+
+        final Runtime runtime = Runtime.getRuntime();
+        update(runtime.freeMemory() - runtime.totalMemory() + runtime.maxMemory());
+    }
+
+    /**
+     * Get the maximum heap size
+     *
+     * @return
+     */
+    private static long getMaxMemory() {
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Register the JVM notification listeners
+     *
+     * @param minMemoryHard
+     * @param minMemorySoft
+     * @return true if the GC notifications are available
+     */
+    private static boolean register(long minMemoryHard, long minMemorySoft) {
+        final long minMemory = Math.max(minMemoryHard, minMemorySoft);
+        boolean result = false;
+
+        try {
+            s_heapPools.clear();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() != MemoryType.HEAP) {
+                    continue;
+                }
+
+                s_heapPools.add(pool.getName());
+
+                final long max = pool.getUsage().getMax();
+                if (minMemory <= 0 || max <= minMemory) {
+                    continue;
+                }
+
+                //Usage thresholds are set only on the pools that are collected rarely (old generation)
+                if (pool.isUsageThresholdSupported()) {
+                    pool.setUsageThreshold(max - minMemory);
+                    s_cleanup.add(() -> pool.setUsageThreshold(0));
+                }
+                if (pool.isCollectionUsageThresholdSupported()) {
+                    pool.setCollectionUsageThreshold(max - minMemory);
+                    s_cleanup.add(() -> pool.setCollectionUsageThreshold(0));
+                }
+            }
+
+            final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+            if (memoryBean instanceof NotificationEmitter) {
+                addNotificationListener((NotificationEmitter) memoryBean);
+            }
+
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    addNotificationListener((NotificationEmitter) gc);
+                    result = true;
+                }
+            }
+        } catch (Exception | LinkageError ex) {
+            ExceptionHelper.printException(ex, "Unable to register the memory notifications.");
+            unregister();
+
+            return false;
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the notification listener to the emitter
+     *
+     * @param emitter
+     */
+    private static void addNotificationListener(NotificationEmitter emitter) {
+        emitter.addNotificationListener(s_notificationListener, null, null);
+        s_cleanup.add(() -> {
+            try {
+                emitter.removeNotificationListener(s_notificationListener);
+            } catch (Exception ex) {
+                //Already removed
+            }
+        });
+    }
+
+    /**
+     * Unregister all the JVM notification listeners
+     */
+    private static void unregister() {
+        for (Runnable r : s_cleanup) {
+            try {
+                r.run();
+            } catch (Exception ex) {
+                ExceptionHelper.printException(ex, "Unable to unregister the memory notifications.");
+            }
+        }
+
+        s_cleanup.clear();
+    }
+
+    /**
+     * Handle the JVM notification
+     *
+     * @param notification
+     * @param handback
+     */
+    private static void handleNotification(Notification notification, Object handback) {
+        final String type = notification.getType();
+
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(type)) {
+            final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                    (CompositeData) notification.getUserData());
+
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (s_heapPools.contains(entry.getKey())) {
+                    used += entry.getValue().getUsed();
+                }
+            }
+
+            update(getMaxMemory() - used);
+        } else if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+            update(getMaxMemory() - heap.getUsed());
+        }
+    }
+}
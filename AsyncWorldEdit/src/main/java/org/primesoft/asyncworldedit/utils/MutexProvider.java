@@ -47,7 +47,12 @@
  */
 package org.primesoft.asyncworldedit.utils;
 
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.World;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.core.AwePlatform;
 import org.primesoft.asyncworldedit.worldedit.ThreadSafeEditSession;
@@ -58,6 +63,11 @@ import org.primesoft.asyncworldedit.worldedit.world.AbstractWorldWrapper;
  * @author SBPrime
  */
 public class MutexProvider {
+    /**
+     * The per world chunk stripes
+     */
+    private final static Map<Object, StripedMutex> s_chunkMutexes = new ConcurrentHashMap<>();
+    
     public static Object getMutex(ThreadSafeEditSession es) {
         return es.getMutex();
     }
@@ -75,4 +85,79 @@ public class MutexProvider {
     public static Object getMutex(IWorld world) {
         return world.getUUID();
     }    
+    
+    /**
+     * Get the mutex guarding the chunk that contains the block
+     * @param world
+     * @param position the block position
+     * @return 
+     */
+    public static Object getMutex(World world, BlockVector3 position) {
+        return getChunkMutex(getMutex(world), position.getBlockX() >> 4, position.getBlockZ() >> 4);
+    }
+    
+    /**
+     * Get the mutex guarding the chunk that contains the block column
+     * @param world
+     * @param position the block column position
+     * @return 
+     */
+    public static Object getMutex(World world, BlockVector2 position) {
+        return getChunkMutex(getMutex(world), position.getBlockX() >> 4, position.getBlockZ() >> 4);
+    }
+    
+    /**
+     * Get the mutex guarding the chunk
+     * @param world
+     * @param cx the chunk X coordinate
+     * @param cz the chunk Z coordinate
+     * @return 
+     */
+    public static Object getChunkMutex(World world, int cx, int cz) {
+        return getChunkMutex(getMutex(world), cx, cz);
+    }
+    
+    /**
+     * Get the mutex guarding the chunk
+     * @param world
+     * @param cx the chunk X coordinate
+     * @param cz the chunk Z coordinate
+     * @return 
+     */
+    public static Object getChunkMutex(IWorld world, int cx, int cz) {
+        return getChunkMutex(getMutex(world), cx, cz);
+    }
+    
+    /**
+     * Get the mutex guarding the chunks
+     * @param world
+     * @param chunks
+     * @return 
+     */
+    public static Object getChunksMutex(World world, Collection<BlockVector2> chunks) {
+        return getStripes(getMutex(world)).get(chunks);
+    }
+    
+    /**
+     * Get the mutex for world wide operations that access the chunks, it
+     * excludes all the chunk operations
+     * @param world
+     * @return 
+     */
+    public static Object getWorldChunksMutex(World world) {
+        return getStripes(getMutex(world)).getWorld();
+    }
+    
+    private static Object getChunkMutex(Object worldMutex, int cx, int cz) {
+        return getStripes(worldMutex).get(cx, cz);
+    }
+    
+    private static StripedMutex getStripes(Object worldMutex) {
+        StripedMutex stripes = s_chunkMutexes.get(worldMutex);
+        if (stripes == null) {
+            stripes = s_chunkMutexes.computeIfAbsent(worldMutex, _w -> new StripedMutex());
+        }
+        
+        return stripes;
+    }
 }
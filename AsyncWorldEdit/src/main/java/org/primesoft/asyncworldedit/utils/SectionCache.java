@@ -0,0 +1,363 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe cache of values stored per block, grouped by chunk sections.
+ * Each cached section holds a lazily filled array of 16x16x16 values.
+ * The sections are split between independently locked segments and evicted
+ * using the clock (second chance) algorithm.
+ *
+ * Sections with pending writes (blocks queued but not yet placed) are marked
+ * as written. The values read from such sections are not cached, because
+ * the world might still contain the old blocks.
+ *
+ * @param <T> the cached value type
+ * @author SBPrime
+ */
+public class SectionCache<T> {
+
+    /**
+     * Number of blocks in a section
+     */
+    private final static int SECTION_SIZE = 16 * 16 * 16;
+
+    /**
+     * The maximum number of segments
+     */
+    private final static int MAX_SEGMENTS = 8;
+
+    /**
+     * The cache segments (empty if the cache is disabled)
+     */
+    private final Segment[] m_segments;
+
+    /**
+     * The segment index mask
+     */
+    private final int m_segmentMask;
+
+    /**
+     * Number of cache hits
+     */
+    private final LongAdder m_hits = new LongAdder();
+
+    /**
+     * Number of cache misses
+     */
+    private final LongAdder m_misses = new LongAdder();
+
+    /**
+     * The sections with pending writes
+     */
+    private final ConcurrentLongSet m_written = new ConcurrentLongSet();
+
+    /**
+     * Create new instance of the class
+     *
+     * @param capacity the maximum number of cached sections, 0 disables the
+     * cache
+     */
+    public SectionCache(int capacity) {
+        capacity = Math.max(0, capacity);
+
+        int segments = 1;
+        while (segments < MAX_SEGMENTS && segments * 2 <= capacity) {
+            segments <<= 1;
+        }
+
+        if (capacity == 0) {
+            m_segments = new Segment[0];
+        } else {
+            m_segments = new Segment[segments];
+            for (int i = 0; i < segments; i++) {
+                m_segments[i] = new Segment((capacity + segments - 1) / segments, m_written);
+            }
+        }
+        m_segmentMask = segments - 1;
+    }
+
+    /**
+     * Get the cached value
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the value or null if not cached
+     */
+    public T get(int x, int y, int z) {
+        if (m_segments.length == 0) {
+            return null;
+        }
+
+        final long key = sectionKey(x, y, z);
+        final Object result = getSegment(key).get(key, blockIndex(x, y, z));
+        if (result == null) {
+            m_misses.increment();
+            return null;
+        }
+
+        m_hits.increment();
+        return (T) result;
+    }
+
+    /**
+     * Store the value in the cache (ignored for written sections)
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @param value
+     */
+    public void put(int x, int y, int z, T value) {
+        if (m_segments.length == 0 || value == null) {
+            return;
+        }
+
+        final long key = sectionKey(x, y, z);
+        getSegment(key).put(key, blockIndex(x, y, z), value);
+    }
+
+    /**
+     * Remove the cached value
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void invalidate(int x, int y, int z) {
+        if (m_segments.length == 0) {
+            return;
+        }
+
+        final long key = sectionKey(x, y, z);
+        getSegment(key).put(key, blockIndex(x, y, z), null);
+    }
+
+    /**
+     * Mark the block as written, removes the cached value and stops caching
+     * the section values
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    public void markWritten(int x, int y, int z) {
+        if (m_segments.length == 0) {
+            return;
+        }
+
+        final long key = sectionKey(x, y, z);
+        m_written.add(key);
+        getSegment(key).put(key, blockIndex(x, y, z), null);
+    }
+
+    /**
+     * Remove all cached values (the written sections are kept)
+     */
+    public void clear() {
+        for (Segment segment : m_segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Number of cache hits
+     *
+     * @return
+     */
+    public long getHits() {
+        return m_hits.sum();
+    }
+
+    /**
+     * Number of cache misses
+     *
+     * @return
+     */
+    public long getMisses() {
+        return m_misses.sum();
+    }
+
+    private Segment getSegment(long key) {
+        return m_segments[LongIntHashMap.hash(key) & m_segmentMask];
+    }
+
+    /**
+     * Pack the section coordinates to a long (26 bits X, 26 bits Z, 12 bits Y)
+     */
+    static long sectionKey(int x, int y, int z) {
+        return ((long) ((x >> 4) & 0x3FFFFFF) << 38)
+                | ((long) ((z >> 4) & 0x3FFFFFF) << 12)
+                | ((y >> 4) & 0xFFF);
+    }
+
+    private static int blockIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Independently locked part of the cache
+     */
+    private static class Segment {
+
+        /**
+         * Section key to slot index
+         */
+        private final LongIntHashMap m_index = new LongIntHashMap();
+
+        /**
+         * The slot section keys
+         */
+        private final long[] m_keys;
+
+        /**
+         * The slot data (allocated on first use)
+         */
+        private final Object[][] m_data;
+
+        /**
+         * Was the slot used since the last clock pass
+         */
+        private final boolean[] m_referenced;
+
+        /**
+         * Number of used slots
+         */
+        private int m_used;
+
+        /**
+         * The clock hand
+         */
+        private int m_hand;
+
+        /**
+         * The sections with pending writes (shared)
+         */
+        private final ConcurrentLongSet m_written;
+
+        Segment(int capacity, ConcurrentLongSet written) {
+            m_written = written;
+            m_keys = new long[capacity];
+            m_data = new Object[capacity][];
+            m_referenced = new boolean[capacity];
+        }
+
+        synchronized Object get(long key, int index) {
+            final int slot = m_index.get(key, -1);
+            if (slot < 0) {
+                return null;
+            }
+
+            final Object result = m_data[slot][index];
+            if (result != null) {
+                m_referenced[slot] = true;
+            }
+            return result;
+        }
+
+        synchronized void put(long key, int index, Object value) {
+            if (value != null && m_written.contains(key)) {
+                //Checked under the segment lock, markWritten removes the
+                //values stored before the section was marked
+                return;
+            }
+
+            int slot = m_index.get(key, -1);
+            if (slot < 0) {
+                if (value == null) {
+                    return;
+                }
+
+                slot = allocate(key);
+            }
+
+            m_data[slot][index] = value;
+            m_referenced[slot] = true;
+        }
+
+        synchronized void clear() {
+            m_index.clear();
+            for (int i = 0; i < m_used; i++) {
+                m_data[i] = null;
+                m_referenced[i] = false;
+            }
+            m_used = 0;
+            m_hand = 0;
+        }
+
+        /**
+         * Get a slot for the section, evicts a section if the segment is full
+         */
+        private int allocate(long key) {
+            final int slot;
+            if (m_used < m_keys.length) {
+                slot = m_used++;
+                m_data[slot] = new Object[SECTION_SIZE];
+            } else {
+                while (m_referenced[m_hand]) {
+                    m_referenced[m_hand] = false;
+                    m_hand = (m_hand + 1) % m_keys.length;
+                }
+
+                slot = m_hand;
+                m_hand = (m_hand + 1) % m_keys.length;
+
+                m_index.remove(m_keys[slot]);
+                Arrays.fill(m_data[slot], null);
+            }
+
+            m_keys[slot] = key;
+            m_index.put(key, slot);
+            return slot;
+        }
+    }
+}
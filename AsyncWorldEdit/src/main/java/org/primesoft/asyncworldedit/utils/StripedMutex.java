@@ -0,0 +1,311 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of locks selected by the chunk coordinates. Operations on
+ * different chunks use (most likely) different stripes and do not block
+ * each other, operations on the same chunk always use the same stripe.
+ *
+ * The chunk operations hold the world read lock and their stripes (locked in
+ * the index order), the world wide operations hold the world write lock.
+ * The mutex objects returned by this class need to be locked using
+ * {@link #lock(Object)} and {@link #unlock(Object)}, the task dispatcher
+ * does that for the safe operations.
+ *
+ * Each thread locks only one mutex object: the task dispatcher runs nested
+ * safe operations without locking (the thread already holds the outer
+ * mutex), so the world lock is never upgraded and the lock order is always
+ * world lock first, then the stripes in the index order.
+ *
+ * @author SBPrime
+ */
+public class StripedMutex {
+
+    /**
+     * The default number of stripes
+     */
+    public final static int DEFAULT_STRIPES = 64;
+
+    /**
+     * The world lock
+     */
+    private final ReentrantReadWriteLock m_worldLock = new ReentrantReadWriteLock();
+
+    /**
+     * The stripes
+     */
+    private final Stripe[] m_stripes;
+
+    /**
+     * The stripe index mask
+     */
+    private final int m_mask;
+
+    /**
+     * The world wide operations mutex
+     */
+    private final IMutexLock m_world = new WorldMutex();
+
+    public StripedMutex() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create new instance of the class
+     *
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public StripedMutex(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        m_stripes = new Stripe[size];
+        m_mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            m_stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Get the number of stripes
+     *
+     * @return
+     */
+    public int getStripes() {
+        return m_stripes.length;
+    }
+
+    /**
+     * Get the mutex for the chunk
+     *
+     * @param cx the chunk X coordinate
+     * @param cz the chunk Z coordinate
+     * @return
+     */
+    public Object get(int cx, int cz) {
+        return m_stripes[index(cx, cz)];
+    }
+
+    /**
+     * Get the mutex for the chunks
+     *
+     * @param chunks
+     * @return
+     */
+    public Object get(Collection<BlockVector2> chunks) {
+        final boolean[] used = new boolean[m_stripes.length];
+        int count = 0;
+        for (BlockVector2 chunk : chunks) {
+            final int idx = index(chunk.getBlockX(), chunk.getBlockZ());
+            if (!used[idx]) {
+                used[idx] = true;
+                count++;
+            }
+        }
+
+        final Stripe[] stripes = new Stripe[count];
+        for (int i = 0, j = 0; j < count; i++) {
+            if (used[i]) {
+                stripes[j++] = m_stripes[i];
+            }
+        }
+
+        return new ChunksMutex(stripes);
+    }
+
+    /**
+     * Get the world wide operations mutex
+     *
+     * @return
+     */
+    public Object getWorld() {
+        return m_world;
+    }
+
+    /**
+     * Lock the mutex object (does nothing for the other objects, they are
+     * locked using synchronized)
+     *
+     * @param mutex
+     */
+    public static void lock(Object mutex) {
+        if (mutex instanceof IMutexLock) {
+            ((IMutexLock) mutex).lock();
+        }
+    }
+
+    /**
+     * Unlock the mutex object
+     *
+     * @param mutex
+     */
+    public static void unlock(Object mutex) {
+        if (mutex instanceof IMutexLock) {
+            ((IMutexLock) mutex).unlock();
+        }
+    }
+
+    /**
+     * Is the mutex object locked by the current thread
+     *
+     * @param mutex
+     * @return
+     */
+    static boolean isHeldByCurrentThread(Object mutex) {
+        return mutex instanceof IMutexLock && ((IMutexLock) mutex).isHeldByCurrentThread();
+    }
+
+    private int index(int cx, int cz) {
+        int h = cx * 0x9E3779B1 + cz * 0x85EBCA6B;
+        h ^= h >>> 16;
+
+        return h & m_mask;
+    }
+
+    private interface IMutexLock {
+
+        void lock();
+
+        void unlock();
+
+        boolean isHeldByCurrentThread();
+    }
+
+    /**
+     * Single chunk stripe
+     */
+    private class Stripe implements IMutexLock {
+
+        private final ReentrantLock m_lock = new ReentrantLock();
+
+        @Override
+        public void lock() {
+            m_worldLock.readLock().lock();
+            m_lock.lock();
+        }
+
+        @Override
+        public void unlock() {
+            m_lock.unlock();
+            m_worldLock.readLock().unlock();
+        }
+
+        @Override
+        public boolean isHeldByCurrentThread() {
+            return m_lock.isHeldByCurrentThread();
+        }
+    }
+
+    /**
+     * The stripes of a set of chunks (in the index order)
+     */
+    private class ChunksMutex implements IMutexLock {
+
+        private final Stripe[] m_chunkStripes;
+
+        ChunksMutex(Stripe[] stripes) {
+            m_chunkStripes = stripes;
+        }
+
+        @Override
+        public void lock() {
+            m_worldLock.readLock().lock();
+            for (Stripe stripe : m_chunkStripes) {
+                stripe.m_lock.lock();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            for (int i = m_chunkStripes.length - 1; i >= 0; i--) {
+                m_chunkStripes[i].m_lock.unlock();
+            }
+            m_worldLock.readLock().unlock();
+        }
+
+        @Override
+        public boolean isHeldByCurrentThread() {
+            for (Stripe stripe : m_chunkStripes) {
+                if (!stripe.isHeldByCurrentThread()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The world wide operations
+     */
+    private class WorldMutex implements IMutexLock {
+
+        @Override
+        public void lock() {
+            m_worldLock.writeLock().lock();
+        }
+
+        @Override
+        public void unlock() {
+            m_worldLock.writeLock().unlock();
+        }
+
+        @Override
+        public boolean isHeldByCurrentThread() {
+            return m_worldLock.isWriteLockedByCurrentThread();
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+import org.primesoft.asyncworldedit.api.io.SeekOrigin;
+
+/**
+ * Seekable input stream for the data written by BlockCompressedOutputStream.
+ * The stream positions are the uncompressed data positions, only the block
+ * that contains the current position is decompressed. The block headers are
+ * read when the stream reaches the block (length reads all the headers).
+ *
+ * @author SBPrime
+ */
+public class BlockCompressedInputStream implements IChunkCacheStream, Closeable {
+
+    private final static int BYTE_CONVERT = 256;
+
+    /**
+     * The block description
+     */
+    private final static class BlockInfo {
+
+        /**
+         * Uncompressed data position
+         */
+        final long position;
+
+        /**
+         * Stored data offset in the source stream
+         */
+        final long offset;
+
+        /**
+         * Uncompressed size
+         */
+        final int size;
+
+        /**
+         * Stored size
+         */
+        final int stored;
+
+        /**
+         * Block codec
+         */
+        final int codec;
+
+        BlockInfo(long position, long offset, int size, int stored, int codec) {
+            this.position = position;
+            this.offset = offset;
+            this.size = size;
+            this.stored = stored;
+            this.codec = codec;
+        }
+    }
+
+    /**
+     * The source stream
+     */
+    private final IChunkCacheStream m_stream;
+
+    /**
+     * All known blocks
+     */
+    private final List<BlockInfo> m_blocks;
+
+    /**
+     * The source stream length
+     */
+    private final long m_sourceLength;
+
+    /**
+     * The next block header offset in the source stream
+     */
+    private long m_nextOffset;
+
+    /**
+     * The uncompressed length of the known blocks
+     */
+    private long m_indexed;
+
+    /**
+     * All the block headers are read
+     */
+    private boolean m_isComplete;
+
+    /**
+     * The decompressor
+     */
+    private final Inflater m_inflater = new Inflater();
+
+    /**
+     * Current position
+     */
+    private long m_filePointer;
+
+    /**
+     * The current block
+     */
+    private BlockInfo m_block;
+
+    /**
+     * The current block data
+     */
+    private byte[] m_data = new byte[0];
+
+    /**
+     * The stored block data buffer
+     */
+    private byte[] m_stored = new byte[0];
+
+    /**
+     * Create new instance of the class
+     *
+     * @param stream the source stream
+     * @param offset the first block offset
+     * @throws IOException
+     */
+    public BlockCompressedInputStream(IChunkCacheStream stream, long offset) throws IOException {
+        m_stream = stream;
+        m_blocks = new ArrayList<>();
+        m_sourceLength = stream.length();
+        m_nextOffset = offset;
+    }
+
+    /**
+     * Read the next block header
+     *
+     * @return false if there are no more blocks
+     * @throws IOException
+     */
+    private boolean indexNext() throws IOException {
+        if (m_isComplete) {
+            return false;
+        }
+
+        final long offset = m_nextOffset;
+        if (offset + BlockCompressedOutputStream.BLOCK_HEADER_SIZE > m_sourceLength) {
+            m_isComplete = true;
+            return false;
+        }
+
+        m_stream.seek(offset, SeekOrigin.Begin);
+
+        final int size = m_stream.readInt();
+        final int stored = m_stream.readInt();
+        final int codec = m_stream.readByte();
+        final long dataOffset = offset + BlockCompressedOutputStream.BLOCK_HEADER_SIZE;
+
+        if (size < 0 || stored < 0 || dataOffset + stored > m_sourceLength) {
+            //Incomplete block
+            m_isComplete = true;
+            return false;
+        }
+
+        m_blocks.add(new BlockInfo(m_indexed, dataOffset, size, stored, codec));
+        m_indexed += size;
+        m_nextOffset = dataOffset + stored;
+
+        return true;
+    }
+
+    /**
+     * Read the block headers up to the position
+     *
+     * @param position
+     * @return false if the position is after the end of the stream
+     * @throws IOException
+     */
+    private boolean ensureIndexed(long position) throws IOException {
+        while (position >= m_indexed) {
+            if (!indexNext()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Number of block headers read
+     *
+     * @return
+     */
+    int getIndexedBlocks() {
+        return m_blocks.size();
+    }
+
+    /**
+     * Check if there is any data after the current position. Unlike length
+     * this only reads the block headers up to the current position.
+     *
+     * @return
+     * @throws IOException
+     */
+    public boolean hasMore() throws IOException {
+        return ensureIndexed(m_filePointer);
+    }
+
+    /**
+     * Release the decompressor and the source stream
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        m_inflater.end();
+
+        if (m_stream instanceof Closeable) {
+            ((Closeable) m_stream).close();
+        }
+    }
+
+    @Override
+    public long getFilePointer() throws IOException {
+        return m_filePointer;
+    }
+
+    @Override
+    public long length() throws IOException {
+        ensureIndexed(Long.MAX_VALUE);
+        return m_indexed;
+    }
+
+    @Override
+    public long seek(long pos, SeekOrigin origin) throws IOException {
+        long newOffset;
+
+        switch (origin) {
+            case Begin:
+                newOffset = pos;
+                break;
+            case Current:
+                newOffset = m_filePointer + pos;
+                break;
+            case End:
+                newOffset = length() - pos;
+                break;
+            default:
+                return -1;
+        }
+
+        if (newOffset < 0) {
+            throw new IOException("Negative seek offset");
+        }
+        if (newOffset > m_indexed && !ensureIndexed(newOffset - 1)) {
+            throw new IOException("Seek offset larget then file size");
+        }
+
+        m_filePointer = newOffset;
+        return newOffset;
+    }
+
+    /**
+     * Reads the next byte of data
+     *
+     * @return the next byte of data, or <code>-1</code> if the end of the
+     * stream is reached.
+     * @throws IOException
+     */
+    public int read() throws IOException {
+        if (!ensureIndexed(m_filePointer)) {
+            return -1;
+        }
+
+        return readUnsignedByte();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (len > 0 && !ensureIndexed(m_filePointer + len - 1)) {
+            throw new EOFException();
+        }
+
+        while (len > 0) {
+            final BlockInfo block = getBlock(m_filePointer);
+            final int idx = (int) (m_filePointer - block.position);
+            final int toCopy = Math.min(len, block.size - idx);
+
+            System.arraycopy(m_data, idx, b, off, toCopy);
+            off += toCopy;
+            len -= toCopy;
+            m_filePointer += toCopy;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        long pos = m_filePointer;
+        if (n <= 0) {
+            return 0;
+        }
+
+        ensureIndexed(pos + n - 1);
+        seek(Math.min(n, m_indexed - pos), SeekOrigin.Current);
+
+        return (int) (m_filePointer - pos);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return (readByte() != 0);
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        final long position = m_filePointer;
+        if (!ensureIndexed(position)) {
+            throw new EOFException();
+        }
+
+        final BlockInfo block = getBlock(position);
+        m_filePointer++;
+
+        return m_data[(int) (position - block.position)];
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        int i = readByte();
+
+        if (i < 0) {
+            i += BYTE_CONVERT;
+        }
+
+        return i;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        final int b1 = readUnsignedByte();
+        final int b2 = readUnsignedByte();
+
+        return (short) ((b1 << 8) | b2);
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        final int b1 = readUnsignedByte();
+        final int b2 = readUnsignedByte();
+
+        return (b1 << 8) | b2;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        final int b1 = readUnsignedByte();
+        final int b2 = readUnsignedByte();
+
+        return (char) ((b1 << 8) | b2);
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int b1 = readUnsignedByte();
+        int b2 = readUnsignedByte();
+        int b3 = readUnsignedByte();
+        int b4 = readUnsignedByte();
+
+        return ((b1 << 24) | (b2 << 16) | (b3 << 8) | b4);
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return (((long) readInt()) << 32) | (readInt() & 0xFFFFFFFFl);
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder input = new StringBuilder();
+        int ch = -1;
+        boolean eol = false;
+
+        while (!eol) {
+            ch = read();
+            switch (ch) {
+                case -1:
+                case '\n':
+                    eol = true;
+                    break;
+                case '\r':
+                    eol = true;
+                    if ((read()) != '\n') {
+                        seek(-1, SeekOrigin.Current);
+                    }
+                    break;
+                default:
+                    input.append((char) ch);
+                    break;
+            }
+        }
+
+        if ((ch == -1) && (input.length() == 0)) {
+            return null;
+        }
+        return input.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+    /**
+     * Get the block that contains the position (and decompress it)
+     *
+     * @param position
+     * @return
+     * @throws IOException
+     */
+    private BlockInfo getBlock(long position) throws IOException {
+        final BlockInfo current = m_block;
+        if (current != null && position >= current.position
+                && position < current.position + current.size) {
+            return current;
+        }
+
+        int low = 0;
+        int high = m_blocks.size() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final BlockInfo block = m_blocks.get(mid);
+
+            if (position < block.position) {
+                high = mid - 1;
+            } else if (position >= block.position + block.size) {
+                low = mid + 1;
+            } else {
+                loadBlock(block);
+                return block;
+            }
+        }
+
+        throw new EOFException();
+    }
+
+    /**
+     * Read and decompress the block data
+     *
+     * @param block
+     * @throws IOException
+     */
+    private void loadBlock(BlockInfo block) throws IOException {
+        m_block = null;
+
+        if (m_data.length < block.size) {
+            m_data = new byte[block.size];
+        }
+
+        m_stream.seek(block.offset, SeekOrigin.Begin);
+        switch (block.codec) {
+            case BlockCompressedOutputStream.CODEC_NONE:
+                m_stream.readFully(m_data, 0, block.size);
+                break;
+            case BlockCompressedOutputStream.CODEC_DEFLATE:
+                if (m_stored.length < block.stored) {
+                    m_stored = new byte[block.stored];
+                }
+                m_stream.readFully(m_stored, 0, block.stored);
+                inflate(block);
+                break;
+            default:
+                throw new IOException(String.format("Unknown block codec %1$s", block.codec));
+        }
+
+        m_block = block;
+    }
+
+    /**
+     * Decompress the stored block data
+     *
+     * @param block
+     * @throws IOException
+     */
+    private void inflate(BlockInfo block) throws IOException {
+        final Inflater inflater = m_inflater;
+        inflater.reset();
+        inflater.setInput(m_stored, 0, block.stored);
+
+        try {
+            int pos = 0;
+            while (pos < block.size && !inflater.finished()) {
+                int count = inflater.inflate(m_data, pos, block.size - pos);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+
+                pos += count;
+            }
+
+            if (pos != block.size) {
+                throw new IOException("Corrupted compressed block");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupted compressed block", ex);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that writes the data as independently compressed blocks.
+ * Each block starts with a header: the uncompressed size (int), the stored 
+ * size (int) and the codec (byte).
+ *
+ * @author SBPrime
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+    /**
+     * The block is stored uncompressed
+     */
+    public final static int CODEC_NONE = 0;
+
+    /**
+     * The block is compressed using deflate
+     */
+    public final static int CODEC_DEFLATE = 1;
+
+    /**
+     * The default (uncompressed) block size
+     */
+    public final static int DEFAULT_BLOCK_SIZE = 0x10000;
+
+    /**
+     * The block header size
+     */
+    public final static int BLOCK_HEADER_SIZE = 4 + 4 + 1;
+
+    /**
+     * The output stream
+     */
+    private final OutputStream m_out;
+
+    /**
+     * The block header buffer
+     */
+    private final byte[] m_header = new byte[BLOCK_HEADER_SIZE];
+
+    /**
+     * The current block data
+     */
+    private final byte[] m_block;
+
+    /**
+     * The compressed block data
+     */
+    private byte[] m_compressed;
+
+    /**
+     * Number of bytes in the current block
+     */
+    private int m_blockPos;
+
+    /**
+     * The compressor (null if compression is disabled)
+     */
+    private final Deflater m_deflater;
+
+    /**
+     * Is the stream closed
+     */
+    private boolean m_isClosed;
+
+    /**
+     * Create new instance of the class
+     *
+     * @param out the output stream
+     * @param blockSize the uncompressed block size
+     * @param level the deflate compression level, 
+     * 0 (Deflater.NO_COMPRESSION) disables the compression
+     */
+    public BlockCompressedOutputStream(OutputStream out, int blockSize, int level) {
+        m_out = out;
+        m_block = new byte[Math.max(1, blockSize)];
+        m_compressed = new byte[m_block.length];
+        m_deflater = level == Deflater.NO_COMPRESSION ? null : new Deflater(level);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (m_blockPos == m_block.length) {
+            writeBlock();
+        }
+
+        m_block[m_blockPos++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (m_blockPos == m_block.length) {
+                writeBlock();
+            }
+
+            final int toCopy = Math.min(len, m_block.length - m_blockPos);
+            System.arraycopy(b, off, m_block, m_blockPos, toCopy);
+
+            m_blockPos += toCopy;
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    /**
+     * Flush the underlying stream. The current block is written 
+     * when it is full or when the stream is closed.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        m_out.flush();
+    }
+
+    /**
+     * Write the current (not full) block and flush the underlying stream.
+     * The data written so far can be read, the stream can still be used.
+     *
+     * @throws IOException
+     */
+    public void finishBlock() throws IOException {
+        writeBlock();
+        m_out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (m_isClosed) {
+            return;
+        }
+
+        m_isClosed = true;
+        try {
+            writeBlock();
+            m_out.close();
+        } finally {
+            if (m_deflater != null) {
+                m_deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Write the current block to the output stream
+     *
+     * @throws IOException
+     */
+    private void writeBlock() throws IOException {
+        final int size = m_blockPos;
+        if (size == 0) {
+            return;
+        }
+
+        int codec = CODEC_NONE;
+        byte[] data = m_block;
+        int stored = size;
+
+        if (m_deflater != null) {
+            final int compressed = deflate(size);
+            if (compressed < size) {
+                codec = CODEC_DEFLATE;
+                data = m_compressed;
+                stored = compressed;
+            }
+        }
+
+        final byte[] header = m_header;
+        header[0] = (byte) (size >>> 24);
+        header[1] = (byte) (size >>> 16);
+        header[2] = (byte) (size >>> 8);
+        header[3] = (byte) size;
+        header[4] = (byte) (stored >>> 24);
+        header[5] = (byte) (stored >>> 16);
+        header[6] = (byte) (stored >>> 8);
+        header[7] = (byte) stored;
+        header[8] = (byte) codec;
+
+        m_out.write(header);
+        m_out.write(data, 0, stored);
+
+        m_blockPos = 0;
+    }
+
+    /**
+     * Compress the current block
+     *
+     * @param size
+     * @return the compressed size
+     */
+    private int deflate(int size) {
+        final Deflater deflater = m_deflater;
+
+        deflater.reset();
+        deflater.setInput(m_block, 0, size);
+        deflater.finish();
+
+        int result = 0;
+        while (!deflater.finished()) {
+            if (result == m_compressed.length) {
+                byte[] tmp = new byte[m_compressed.length * 2];
+                System.arraycopy(m_compressed, 0, tmp, 0, result);
+                m_compressed = tmp;
+            }
+
+            result += deflater.deflate(m_compressed, result, m_compressed.length - result);
+        }
+
+        return result;
+    }
+}
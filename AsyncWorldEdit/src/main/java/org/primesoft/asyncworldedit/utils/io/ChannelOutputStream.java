@@ -0,0 +1,182 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Output stream that writes to a channel using a direct buffer. Closing the
+ * stream flushes the buffer and returns it to the pool, the channel is not
+ * closed.
+ *
+ * @author SBPrime
+ */
+public class ChannelOutputStream extends OutputStream {
+
+    /**
+     * The output channel
+     */
+    private final WritableByteChannel m_channel;
+
+    /**
+     * The buffer pool (null if the buffer is not pooled)
+     */
+    private final DirectBufferPool m_pool;
+
+    /**
+     * The write buffer (null when the stream is closed)
+     */
+    private ByteBuffer m_buffer;
+
+    /**
+     * Create new instance of the class
+     *
+     * @param channel the output channel
+     * @param bufferSize the direct buffer size
+     */
+    public ChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+        m_channel = channel;
+        m_pool = null;
+        m_buffer = ByteBuffer.allocateDirect(Math.max(1, bufferSize));
+    }
+
+    /**
+     * Create new instance of the class
+     *
+     * @param channel the output channel
+     * @param pool the direct buffer pool
+     */
+    public ChannelOutputStream(WritableByteChannel channel, DirectBufferPool pool) {
+        m_channel = channel;
+        m_pool = pool;
+        m_buffer = pool.acquire();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        final ByteBuffer buffer = getBuffer();
+        if (!buffer.hasRemaining()) {
+            flushBuffer(buffer);
+        }
+
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        final ByteBuffer buffer = getBuffer();
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer(buffer);
+            }
+
+            final int toCopy = Math.min(len, buffer.remaining());
+            buffer.put(b, off, toCopy);
+
+            off += toCopy;
+            len -= toCopy;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer(getBuffer());
+    }
+
+    @Override
+    public void close() throws IOException {
+        final ByteBuffer buffer = m_buffer;
+        if (buffer == null) {
+            return;
+        }
+
+        try {
+            flushBuffer(buffer);
+        } finally {
+            m_buffer = null;
+            if (m_pool != null) {
+                m_pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Get the write buffer
+     *
+     * @return
+     * @throws IOException the stream is closed
+     */
+    private ByteBuffer getBuffer() throws IOException {
+        final ByteBuffer buffer = m_buffer;
+        if (buffer == null) {
+            throw new IOException("Stream closed");
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Write the buffered data to the channel
+     *
+     * @param buffer
+     * @throws IOException
+     */
+    private void flushBuffer(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                m_channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+}
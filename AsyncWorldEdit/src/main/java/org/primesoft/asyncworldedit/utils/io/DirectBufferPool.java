@@ -0,0 +1,144 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of direct buffers with the same size. Allocating a direct buffer is
+ * expensive and its memory is only freed by the GC, so buffers are returned
+ * to the pool instead of being dropped.
+ *
+ * @author SBPrime
+ */
+public class DirectBufferPool {
+
+    /**
+     * The buffer size
+     */
+    private final int m_bufferSize;
+
+    /**
+     * Maximum number of pooled buffers
+     */
+    private final int m_maxPooled;
+
+    /**
+     * The free buffers
+     */
+    private final Deque<ByteBuffer> m_buffers = new ArrayDeque<>();
+
+    /**
+     * Create new instance of the class
+     *
+     * @param bufferSize the buffer size
+     * @param maxPooled maximum number of kept free buffers
+     */
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        m_bufferSize = Math.max(1, bufferSize);
+        m_maxPooled = Math.max(0, maxPooled);
+    }
+
+    /**
+     * The buffer size
+     *
+     * @return
+     */
+    public int getBufferSize() {
+        return m_bufferSize;
+    }
+
+    /**
+     * Number of free buffers in the pool
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (m_buffers) {
+            return m_buffers.size();
+        }
+    }
+
+    /**
+     * Get a cleared buffer from the pool or allocate a new one
+     *
+     * @return
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer result;
+        synchronized (m_buffers) {
+            result = m_buffers.pollFirst();
+        }
+
+        if (result == null) {
+            return ByteBuffer.allocateDirect(m_bufferSize);
+        }
+
+        result.clear();
+        return result;
+    }
+
+    /**
+     * Return the buffer to the pool
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != m_bufferSize) {
+            return;
+        }
+
+        synchronized (m_buffers) {
+            if (m_buffers.size() < m_maxPooled) {
+                m_buffers.addFirst(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+import org.primesoft.asyncworldedit.api.io.SeekOrigin;
+import org.primesoft.asyncworldedit.utils.Reflection;
+import sun.misc.Unsafe;
+
+/**
+ * Read only file stream backed by a memory mapped file. The whole file
+ * is mapped so the data is read without any intermediate buffers.
+ * The stream is owned by one undo iterator (or loader), the mapping is
+ * released when the owner closes the stream.
+ *
+ * @author SBPrime
+ */
+public class MappedFileStream implements IChunkCacheStream, Closeable {
+
+    private final static int BYTE_CONVERT = 256;
+
+    /**
+     * The unsafe instance
+     */
+    private final static Unsafe s_unsafe = Reflection.get(Unsafe.class, Unsafe.class, "theUnsafe", "Unable to get unsafe");
+
+    /**
+     * The unsafe invoke cleaner method (java 9+)
+     */
+    private final static Method s_invokeCleaner = findInvokeCleaner();
+
+    /**
+     * The mapped file data
+     */
+    private volatile MappedByteBuffer m_buffer;
+
+    /**
+     * The file length
+     */
+    private final int m_length;
+
+    /**
+     * Current position
+     */
+    private int m_filePointer;
+
+    /**
+     * Map the file
+     *
+     * @param stream the file to map
+     * @throws IOException
+     */
+    public MappedFileStream(RandomAccessFile stream) throws IOException {
+        final FileChannel channel = stream.getChannel();
+        final long length = channel.size();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("File too large to map");
+        }
+
+        m_length = (int) length;
+        m_buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+    }
+
+    /**
+     * Open the file stream, the file is mapped if it is not larger then the
+     * provided limit
+     *
+     * @param stream
+     * @param maxMappedSize maximum file size to map (0 disables the mapping)
+     * @return
+     * @throws IOException
+     */
+    public static IChunkCacheStream open(RandomAccessFile stream, long maxMappedSize) throws IOException {
+        if (maxMappedSize > 0 && stream.length() <= maxMappedSize) {
+            return new MappedFileStream(stream);
+        }
+
+        return new ChunkCacheStream(stream);
+    }
+
+    /**
+     * Release the mapped file. The stream can not be used after this call.
+     * The owner closes the stream after its last read (the undo iterator
+     * dispose, before the file reference is released) so the mapping is
+     * unmapped right away. If the buffer can not be unmapped it is released
+     * by the GC.
+     */
+    @Override
+    public void close() {
+        final MappedByteBuffer buffer;
+        synchronized (this) {
+            buffer = m_buffer;
+            m_buffer = null;
+        }
+
+        if (buffer != null) {
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Find the unsafe invoke cleaner method
+     *
+     * @return
+     */
+    private static Method findInvokeCleaner() {
+        if (s_unsafe == null) {
+            return null;
+        }
+
+        try {
+            return Unsafe.class.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Unmap the buffer. The buffer can not be used after this call.
+     *
+     * @param buffer
+     * @return true if the buffer was unmapped
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            if (s_invokeCleaner != null) {
+                s_invokeCleaner.invoke(s_unsafe, buffer);
+                return true;
+            }
+
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public long getFilePointer() throws IOException {
+        return m_filePointer;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return m_length;
+    }
+
+    @Override
+    public long seek(long pos, SeekOrigin origin) throws IOException {
+        long newOffset;
+
+        switch (origin) {
+            case Begin:
+                newOffset = pos;
+                break;
+            case Current:
+                newOffset = m_filePointer + pos;
+                break;
+            case End:
+                newOffset = m_length - pos;
+                break;
+            default:
+                return -1;
+        }
+
+        if (newOffset < 0) {
+            throw new IOException("Negative seek offset");
+        }
+        if (newOffset > m_length) {
+            throw new IOException("Seek offset larget then file size");
+        }
+
+        m_filePointer = (int) newOffset;
+        return newOffset;
+    }
+
+    /**
+     * Reads the next byte of data
+     *
+     * @return the next byte of data, or <code>-1</code> if the end of the
+     * stream is reached.
+     * @throws IOException
+     */
+    public int read() throws IOException {
+        if (m_filePointer >= m_length) {
+            return -1;
+        }
+
+        return readUnsignedByte();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        final int pos = checkAvailable(len);
+
+        final MappedByteBuffer buffer = getBuffer();
+        buffer.position(pos);
+        buffer.get(b, off, len);
+
+        m_filePointer = pos + len;
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        final int pos = m_filePointer;
+        m_filePointer = (int) Math.min((long) m_length, (long) pos + Math.max(0, n));
+
+        return m_filePointer - pos;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return (readByte() != 0);
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        final int pos = checkAvailable(1);
+        final byte result = getBuffer().get(pos);
+        m_filePointer = pos + 1;
+
+        return result;
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        int i = readByte();
+
+        if (i < 0) {
+            i += BYTE_CONVERT;
+        }
+
+        return i;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        final int pos = checkAvailable(2);
+        final short result = getBuffer().getShort(pos);
+        m_filePointer = pos + 2;
+
+        return result;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        final int pos = checkAvailable(2);
+        final char result = getBuffer().getChar(pos);
+        m_filePointer = pos + 2;
+
+        return result;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        final int pos = checkAvailable(4);
+        final int result = getBuffer().getInt(pos);
+        m_filePointer = pos + 4;
+
+        return result;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        final int pos = checkAvailable(8);
+        final long result = getBuffer().getLong(pos);
+        m_filePointer = pos + 8;
+
+        return result;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder input = new StringBuilder();
+        int ch = -1;
+        boolean eol = false;
+
+        while (!eol) {
+            ch = read();
+            switch (ch) {
+                case -1:
+                case '\n':
+                    eol = true;
+                    break;
+                case '\r':
+                    eol = true;
+                    if ((read()) != '\n') {
+                        seek(-1, SeekOrigin.Current);
+                    }
+                    break;
+                default:
+                    input.append((char) ch);
+                    break;
+            }
+        }
+
+        if ((ch == -1) && (input.length() == 0)) {
+            return null;
+        }
+        return input.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF(this);
+    }
+
+    /**
+     * Check if the data is available
+     *
+     * @param size
+     * @return The current position
+     * @throws EOFException
+     */
+    private int checkAvailable(int size) throws EOFException {
+        final int pos = m_filePointer;
+        if (size < 0 || pos + (long) size > m_length) {
+            throw new EOFException();
+        }
+
+        return pos;
+    }
+
+    /**
+     * Get the mapped buffer
+     *
+     * @return
+     * @throws IOException
+     */
+    private MappedByteBuffer getBuffer() throws IOException {
+        final MappedByteBuffer result = m_buffer;
+        if (result == null) {
+            throw new IOException("Stream closed");
+        }
+
+        return result;
+    }
+}
@@ -125,6 +125,45 @@ public class VarInt {
     }
     
     
+    /**
+     * Write variable length signed int (zig-zag encoded) to data output
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeSignedInt(DataOutput out, int value) throws IOException {
+        int v = (value << 1) ^ (value >> 31);
+        
+        do {
+            byte b = (byte) (v & MASK_VALUE);
+
+            v >>>= SHIFT;
+
+            if (v != 0) {
+                b |= MASK_MORE;
+            }
+
+            out.writeByte(b);
+        } while (v != 0);
+    }
+    
+    /**
+     * Get the number of bytes used to store a non negative value
+     *
+     * @param value
+     * @return
+     */
+    public static int getSize(long value) {
+        int result = 1;
+        while ((value >>>= SHIFT) != 0) {
+            result++;
+        }
+        
+        return result;
+    }
+    
+    
     /**
      * Read variable length long from data input
      * @param in
@@ -194,4 +233,16 @@ public class VarInt {
         
         return result;
     }
+    
+    /**
+     * Read variable length signed int (zig-zag encoded) from data input
+     * @param in
+     * @return
+     * @throws IOException 
+     */
+    public static int readSignedInt(DataInput in) throws IOException {
+        final int v = readInt(in);
+        
+        return (v >>> 1) ^ -(v & 1);
+    }
 }
@@ -98,6 +98,7 @@ import org.primesoft.asyncworldedit.configuration.DebugLevel;
 import org.primesoft.asyncworldedit.events.EditSessionLimitChanged;
 import org.primesoft.asyncworldedit.utils.ExtentUtils;
 import org.primesoft.asyncworldedit.utils.MutexProvider;
+import org.primesoft.asyncworldedit.utils.FieldAccessor;
 import org.primesoft.asyncworldedit.utils.Reflection;
 import org.primesoft.asyncworldedit.worldedit.extent.ExtendedChangeSetExtent;
 import org.primesoft.asyncworldedit.worldedit.extent.inventory.FixedBlockBagExtent;
@@ -116,6 +117,15 @@ import org.primesoft.asyncworldedit.injector.injected.extent.reorder.IResetable;
  */
 public class ThreadSafeEditSession extends AweEditSession implements IThreadSafeEditSession {
 
+    private final static FieldAccessor<BlockBagExtent> s_editSession_blockBagExtent
+            = Reflection.findFieldAccessor(EditSession.class, BlockBagExtent.class, "blockBagExtent", "Unable to get the blockBagExtent");
+
+    private final static FieldAccessor<ChangeSet> s_editSession_changeSet
+            = Reflection.findFieldAccessor(EditSession.class, ChangeSet.class, "changeSet", "Unable to inject ChangeSet, undo and redo broken.");
+
+    private final static FieldAccessor<ChangeSet> s_changeSetExtent_changeSet
+            = Reflection.findFieldAccessor(ChangeSetExtent.class, ChangeSet.class, "changeSet", "Unable to inject changeset to extent, undo and redo broken.");
+
     /**
      * Async block placer
      */
@@ -304,8 +314,8 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
     }
 
     private void injectBlockBagExtent(Extent[] extentList) {
-        BlockBagExtent blockBagExtent = Reflection.get(EditSession.class, BlockBagExtent.class,
-                this, "blockBagExtent", "Unable to get the blockBagExtent");
+        BlockBagExtent blockBagExtent = s_editSession_blockBagExtent != null
+                ? s_editSession_blockBagExtent.get(this) : null;
         Extent beforeExtent = ExtentUtils.findBeforer(extentList, blockBagExtent);
         Extent afterExtent = blockBagExtent != null ? blockBagExtent.getExtent() : null;
 
@@ -324,8 +334,9 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
             return;
         }
 
-        Reflection.set(EditSession.class, this, "blockBagExtent", newBlockBag,
-                "Unable to set the blockBagExtent from EditSession, block bag broken.");
+        if (!s_editSession_blockBagExtent.set(this, newBlockBag)) {
+            log("Unable to set the blockBagExtent from EditSession, block bag broken.");
+        }
     }
 
     private void injectChangeSet(Extent[] extentList, IPlayerEntry playerEntry, IAsyncWorldEditCore core) {
@@ -369,10 +380,12 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
                     m_rootChangeSet = changeSet;
                 }
 
-                Reflection.set(EditSession.class, this, "changeSet", newChangeSet,
-                        "Unable to inject ChangeSet, undo and redo broken.");
-                Reflection.set(ChangeSetExtent.class, changesetExtent, "changeSet", newChangeSet,
-                        "Unable to inject changeset to extent, undo and redo broken.");
+                if (s_editSession_changeSet != null) {
+                    s_editSession_changeSet.set(this, newChangeSet);
+                }
+                if (s_changeSetExtent_changeSet != null) {
+                    s_changeSetExtent_changeSet.set(changesetExtent, newChangeSet);
+                }
             }
             beforeExtent = current;
         }
@@ -524,21 +537,21 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
     public BlockState getBlock(final BlockVector3 position) {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()), () -> es.doGetBlock(position), m_bukkitWorld, position);
+        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position), () -> es.doGetBlock(position), m_bukkitWorld, position);
     }
 
     @Override
     public BaseBlock getFullBlock(final BlockVector3 position) {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()), () -> es.doGetFullBlock(position), m_bukkitWorld, position);
+        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position), () -> es.doGetFullBlock(position), m_bukkitWorld, position);
     }
 
     @Override
     public BiomeType getBiome(final BlockVector2 position) {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position),
                 () -> es.doGetBiome(position), m_bukkitWorld, BlockVector3.at(position.getX(), 0, position.getZ()));
     }
 
@@ -561,7 +574,7 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
     public List<? extends Entity> getEntities() {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getWorldChunksMutex(getWorld()),
                 () -> es.doGetEntities());
     }
 
@@ -569,7 +582,7 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
     public List<? extends Entity> getEntities(final Region region) {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getWorldChunksMutex(getWorld()),
                 () -> es.doGetEntities(region), m_bukkitWorld, region);
     }
 
@@ -577,7 +590,7 @@ public class ThreadSafeEditSession extends AweEditSession implements IThreadSafe
     public int getHighestTerrainBlock(final int x, final int z, final int minY, final int maxY) {
         final ThreadSafeEditSession es = this;
 
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getChunkMutex(getWorld(), x >> 4, z >> 4),
                 () -> es.doGetHighestTerrainBlock(x, z, minY, maxY), m_bukkitWorld, BlockVector3.at(x, minY, z));
     }
 
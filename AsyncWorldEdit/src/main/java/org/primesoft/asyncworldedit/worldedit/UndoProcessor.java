@@ -61,6 +61,8 @@ import java.util.Iterator;
 import java.util.List;
 import org.primesoft.asyncworldedit.api.utils.IDisposable;
 import org.primesoft.asyncworldedit.api.worldedit.IThreadSafeEditSession;
+import org.primesoft.asyncworldedit.changesetSerializer.iterators.ChunkOrderedIterator;
+import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.utils.InjectionException;
 import org.primesoft.asyncworldedit.utils.Reflection;
 import org.primesoft.asyncworldedit.worldedit.history.ExtendedUndoContext;
@@ -76,6 +78,10 @@ public class UndoProcessor implements Operation {
             EditSession session) {
 
         Iterator<Change> changes = parent.doUndo();
+        final int chunkOrderWindow = ConfigProvider.undo().getChunkOrderWindow();
+        if (chunkOrderWindow > 1) {
+            changes = new ChunkOrderedIterator(changes, chunkOrderWindow);
+        }
         Mask oldMask = session.getMask();
         session.setMask(sender.getMask());
 
@@ -113,15 +119,17 @@ public class UndoProcessor implements Operation {
         }
         uc.setExtent(bypassHistory);
 
-        for (; m_changes.hasNext();) {
-            Change change = m_changes.next();
-            if (change != null) {
-                change.undo(uc);
-            }            
-        }
-
-        if (m_changes instanceof IDisposable) {
-            ((IDisposable)m_changes).dispose();
+        try {
+            for (; m_changes.hasNext();) {
+                Change change = m_changes.next();
+                if (change != null) {
+                    change.undo(uc);
+                }
+            }
+        } finally {
+            if (m_changes instanceof IDisposable) {
+                ((IDisposable) m_changes).dispose();
+            }
         }
         
         return null;
@@ -59,16 +59,20 @@ import static org.primesoft.asyncworldedit.LoggerProvider.log;
 import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
 import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.utils.IAction;
 import org.primesoft.asyncworldedit.api.utils.IFunc;
 import org.primesoft.asyncworldedit.api.worldedit.ICancelabeEditSession;
 import org.primesoft.asyncworldedit.changesetSerializer.StreamProvider;
 import org.primesoft.asyncworldedit.changesetSerializer.iterators.BaseFileIterator;
+import org.primesoft.asyncworldedit.changesetSerializer.iterators.PrefetchIterator;
 import org.primesoft.asyncworldedit.changesetSerializer.iterators.UndoFileBackwordIterator;
 import org.primesoft.asyncworldedit.changesetSerializer.iterators.UndoFileForwardIterator;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.configuration.ConfigUndo;
 import org.primesoft.asyncworldedit.strings.MessageType;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
 
 /**
  *
@@ -77,6 +81,18 @@ import org.primesoft.asyncworldedit.strings.MessageType;
 public final class FileChangeSet implements ChangeSet {
 
     private final static int MAX_SAVE = 100;
+
+    /**
+     * Maximum number of changes waiting for the writer,
+     * the edit thread is paused when the limit is reached
+     */
+    private final static int MAX_QUEUED = 0x10000;
+
+    /**
+     * Maximum number of changes waiting for the writer when the
+     * memory is low, the changes are moved to disk sooner
+     */
+    private final static int MAX_QUEUED_LOW_MEMORY = 0x400;
     private final static Iterator<Change> EMPTY_ITERATOR = new Iterator<Change>() {
         @Override
         public boolean hasNext() {
@@ -99,6 +115,7 @@ public final class FileChangeSet implements ChangeSet {
     private File m_storageFile;
 
     private final IInnerSerializerManager m_changesetSerializer;
+    private final ITaskDispatcher m_dispatcher;
     private ICancelabeEditSession m_cancelable;
     private final IPlayerEntry m_player;
     private final Object m_saveMutex = new Object();
@@ -107,6 +124,7 @@ public final class FileChangeSet implements ChangeSet {
 
     public FileChangeSet(IAsyncWorldEditCore aweCore, IPlayerEntry player) {
         m_changesetSerializer = aweCore.getInnerChangesetSerializer();
+        m_dispatcher = aweCore.getTaskDispatcher();
         m_player = player;
     }
 
@@ -122,13 +140,32 @@ public final class FileChangeSet implements ChangeSet {
         if (change == null && !m_isDisposed) {
             return;
         }
+        final boolean canWait = m_dispatcher != null && !m_dispatcher.isMainTask();
         synchronized (m_queuedChanges) {
+            while (canWait && !m_isDisposed && m_queuedChanges.size() >= getMaxQueued()) {
+                FileChangeSetManager.notiffy();
+                try {
+                    m_queuedChanges.wait(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
             m_queuedChanges.add(change);
         }
 
         FileChangeSetManager.notiffy();
     }
 
+    /**
+     * Get the maximum number of changes waiting for the writer
+     * @return 
+     */
+    static int getMaxQueued() {
+        return MemoryMonitor.getLevel() == MemoryPressure.Normal ? MAX_QUEUED : MAX_QUEUED_LOW_MEMORY;
+    }
+
     @Override
     public Iterator<Change> backwardIterator() {
         if (m_player != null) {
@@ -174,6 +211,7 @@ public final class FileChangeSet implements ChangeSet {
             m_queuedChanges.clear();
 
             m_isDisposed = true;
+            m_queuedChanges.notifyAll();
         }
         m_changesetSerializer.close(m_storageFile);
         FileChangeSetManager.stop(this);
@@ -204,6 +242,8 @@ public final class FileChangeSet implements ChangeSet {
                 dataToSave.add(m_queuedChanges.poll());
                 m_size++;
             }
+
+            m_queuedChanges.notifyAll();
         }
 
         try {
@@ -330,7 +370,17 @@ public final class FileChangeSet implements ChangeSet {
             return EMPTY_ITERATOR;
         }
 
-        return fileIterator;
+        final ConfigUndo uConfig = ConfigProvider.undo();
+        final int prefetchSize = uConfig.getPrefetchSize();
+        if (prefetchSize <= 0 || fileIterator.getStorageSize() == 0) {
+            return fileIterator;
+        }
+
+        //Read and decode the undo data while the changes are applied
+        final PrefetchIterator result = new PrefetchIterator(fileIterator, prefetchSize, uConfig.getPrefetchBatch());
+        result.start();
+
+        return result;
     }
 
     @Override
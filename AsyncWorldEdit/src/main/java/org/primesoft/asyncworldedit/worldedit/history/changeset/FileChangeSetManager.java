@@ -50,6 +50,8 @@ package org.primesoft.asyncworldedit.worldedit.history.changeset;
 import java.util.LinkedList;
 import java.util.List;
 import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
 
 /**
  *
@@ -61,6 +63,15 @@ public class FileChangeSetManager {
     private static boolean s_isRunning = false;
     private static final Object s_waitMutex = new Object();
 
+    static {
+        //Move the queued changes to disk as soon as the memory is low
+        MemoryMonitor.addListener((oldLevel, newLevel) -> {
+            if (newLevel != MemoryPressure.Normal) {
+                notiffy();
+            }
+        });
+    }
+
     /**
      * Start the file saver thread
      *
@@ -131,15 +142,6 @@ public class FileChangeSetManager {
                         ExceptionHelper.printException(ex, "Unable to save undo data. Preventing undo subsystem from breaking.");
                         result = true;
                     }
-                    if (result) {
-                        try {
-                            /**
-                             * HACK: Sleep is added to prevent IO overflow
-                             */
-                            Thread.sleep(5);
-                        } catch (InterruptedException ex) {
-                        }
-                    }
                     dataSaved |= result;
                 }
             } while (dataSaved);
@@ -55,12 +55,12 @@ import java.util.Iterator;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.api.worldedit.ICancelabeEditSession;
-import org.primesoft.asyncworldedit.configuration.ConfigMemory;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
 import org.primesoft.asyncworldedit.configuration.ConfigUndo;
 import org.primesoft.asyncworldedit.configuration.UndoBehaviour;
 import org.primesoft.asyncworldedit.strings.MessageType;
-import org.primesoft.asyncworldedit.utils.GCUtils;
+import org.primesoft.asyncworldedit.utils.MemoryMonitor;
+import org.primesoft.asyncworldedit.utils.MemoryPressure;
 
 /**
  *
@@ -88,21 +88,6 @@ public class MemoryMonitorChangeSet implements IExtendedChangeSet {
      */
     private final ITaskDispatcher m_taskDispatcher;
 
-    /**
-     * Minimum free memory
-     */
-    private final long m_minMemoryHard;
-
-    /**
-     * Minimum free memory
-     */
-    private final long m_minMemorySoft;
-
-    /**
-     * The wait mutex
-     */
-    private final Object m_mutex = new Object();
-    
     /**
      * THe player
      */
@@ -114,10 +99,6 @@ public class MemoryMonitorChangeSet implements IExtendedChangeSet {
         m_parent = parent;
 
         ConfigUndo uConfig = ConfigProvider.undo();
-        ConfigMemory mConfig = ConfigProvider.memory();
-
-        m_minMemoryHard = mConfig.getMinMemoryHard() * 1000;
-        m_minMemorySoft = mConfig.getMinMemorySoft() * 1000;
 
         m_behaviourAsync = uConfig.getAsyncBehaviour();
         m_behaviourMain = uConfig.getMainBehaviour();
@@ -135,8 +116,7 @@ public class MemoryMonitorChangeSet implements IExtendedChangeSet {
         }
         
         if (behaviour != UndoBehaviour.Off) {
-            long memAvailable = GCUtils.getTotalAvailableMemory();
-            boolean memLow = m_minMemoryHard > 0 && memAvailable < m_minMemoryHard;
+            boolean memLow = MemoryMonitor.getLevel() == MemoryPressure.Hard;
 
             if (memLow) {
                 m_player.say(MessageType.BLOCK_PLACER_MEMORY_LOW.format());
@@ -146,18 +126,13 @@ public class MemoryMonitorChangeSet implements IExtendedChangeSet {
                 } else if (behaviour == UndoBehaviour.Cancel) {
                     throw new MaxChangedBlocksException(0);
                 } else if (behaviour == UndoBehaviour.Wait && editSession != null) {
-                    do {
-                        //TODO: This needs refactoring
-                        synchronized (m_mutex) {
-                            try {
-                                m_mutex.wait(1000);
-                            } catch (InterruptedException ex) {
-                                return;
-                            }
+                    try {
+                        while (!MemoryMonitor.waitForLevel(MemoryPressure.Normal, 1000)
+                                && !editSession.isCanceled()) {
                         }
-
-                        GCUtils.GC();
-                    } while (GCUtils.getTotalAvailableMemory() < m_minMemorySoft && !editSession.isCanceled());
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
                 } else if (editSession == null) {
                     throw new MaxChangedBlocksException(0);
                 }
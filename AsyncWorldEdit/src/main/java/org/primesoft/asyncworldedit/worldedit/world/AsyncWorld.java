@@ -77,10 +77,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
 import org.primesoft.asyncworldedit.core.AwePlatform;
 import org.primesoft.asyncworldedit.api.IWorld;
 import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
@@ -90,9 +87,12 @@ import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
 import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
 import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
 import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.blockPlacer.BlockPlacer;
+import org.primesoft.asyncworldedit.blockPlacer.IBlockSetTarget;
 import org.primesoft.asyncworldedit.blockPlacer.entries.JobEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.RegenerateEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.WorldActionEntry;
+import org.primesoft.asyncworldedit.blockPlacer.entries.WorldBlockSetEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.WorldFuncEntry;
 import org.primesoft.asyncworldedit.blockPlacer.entries.WorldFuncEntryEx;
 import org.primesoft.asyncworldedit.api.utils.IAction;
@@ -104,18 +104,20 @@ import org.primesoft.asyncworldedit.worldedit.AsyncEditSession;
 import org.primesoft.asyncworldedit.worldedit.CancelabeEditSession;
 import org.primesoft.asyncworldedit.worldedit.WorldAsyncTask;
 import org.primesoft.asyncworldedit.configuration.WorldeditOperations;
+import org.primesoft.asyncworldedit.injector.injected.IAsyncWrapper;
 import org.primesoft.asyncworldedit.platform.api.IMaterial;
 import org.primesoft.asyncworldedit.platform.api.IScheduler;
 import org.primesoft.asyncworldedit.utils.PositionHelper;
 import static org.primesoft.asyncworldedit.utils.PositionHelper.positionToChunk;
 import org.primesoft.asyncworldedit.utils.SchedulerUtils;
+import org.primesoft.asyncworldedit.utils.SectionCache;
 import org.primesoft.asyncworldedit.worldedit.entity.EntityLazyWrapper;
 
 /**
  *
  * @author SBPrime
  */
-public class AsyncWorld extends AbstractWorldWrapper {
+public class AsyncWorld extends AbstractWorldWrapper implements IBlockSetTarget {
 
     /**
      * Wrap the world (if needed)
@@ -156,6 +158,17 @@ public class AsyncWorld extends AbstractWorldWrapper {
      */
     private final IBlockPlacer m_blockPlacer;
 
+    /**
+     * The block placer used to queue the block set operations
+     * (null if the block placer does not support block set buffers)
+     */
+    private final BlockPlacer m_blockSetPlacer;
+
+    /**
+     * The world name
+     */
+    private volatile String m_worldName;
+
     /**
      * The dispather
      */
@@ -171,9 +184,15 @@ public class AsyncWorld extends AbstractWorldWrapper {
      */
     private final IChunkWatch m_chunkWatcher;
 
-    private final static int CACHE_SIZE = 5000;
+    /**
+     * The read blocks cache
+     */
+    private final SectionCache<BlockState> m_blockCache;
 
-    private final Map<UUID, BlockState> m_blockCache = new LruMap<>(CACHE_SIZE);
+    /**
+     * The chunk snapshots
+     */
+    private final ChunkSnapshotCache m_snapshots;
 
     public AsyncWorld(World world, IPlayerEntry player) {
         super(world);
@@ -184,10 +203,23 @@ public class AsyncWorld extends AbstractWorldWrapper {
         m_player = player;
         m_schedule = awePlatform.getPlatform().getScheduler();
         m_blockPlacer = aweCore.getBlockPlacer();
+        m_blockSetPlacer = m_blockPlacer instanceof BlockPlacer ? (BlockPlacer) m_blockPlacer : null;
         m_dispatcher = aweCore.getTaskDispatcher();
         m_blocksHub = aweCore.getBlocksHubBridge();
         m_bukkitWorld = aweCore.getWorldEditIntegrator().getWorld(world);
         m_chunkWatcher = aweCore.getChunkWatch();
+        m_blockCache = new SectionCache<>(ConfigProvider.dispatcher().getBlockCacheSections());
+        m_snapshots = new ChunkSnapshotCache(ConfigProvider.dispatcher().getChunkSnapshots(),
+                m_dispatcher, aweCore.getDirectChunkAPI(), m_bukkitWorld);
+    }
+
+    /**
+     * Get the read blocks cache (hit and miss counters)
+     *
+     * @return
+     */
+    public SectionCache<BlockState> getBlockCache() {
+        return m_blockCache;
     }
 
     /**
@@ -219,6 +251,31 @@ public class AsyncWorld extends AbstractWorldWrapper {
         return result;
     }
 
+    /**
+     * Decide on the player UUID
+     *
+     * @param first
+     * @param second
+     * @return
+     */
+    private IPlayerEntry getPlayer(IAsyncWrapper first, IAsyncWrapper second) {
+        IPlayerEntry result = m_player;
+
+        if (first != null) {
+            IPlayerEntry player = first.getPlayer();
+            if (player != null && player.isPlayer()) {
+                result = player;
+            }
+        }
+        if (second != null) {
+            IPlayerEntry player = second.getPlayer();
+            if (player != null && player.isPlayer()) {
+                result = player;
+            }
+        }
+        return result;
+    }
+
     /**
      * This function checks if async mode is enabled for specific command
      *
@@ -281,43 +338,119 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     @Override
     public boolean setBlock(BlockVector3 position, BlockStateHolder block, boolean notifyAndLight) throws WorldEditException {
-        final DataAsyncParams<BlockStateHolder> paramBlock = DataAsyncParams.extract(block);
-        final DataAsyncParams<BlockVector3> paramVector = DataAsyncParams.extract(position);
-
-        final BlockStateHolder newBlock = paramBlock.getData();
-        final BlockVector3 v = paramVector.getData();
-        final IPlayerEntry player = getPlayer(paramBlock, paramVector);
+        return setBlock(position, block, notifyAndLight ? MODE_NOTIFY : MODE_NO_NOTIFY);
+    }
 
-        IFuncEx<Boolean, WorldEditException> func = () -> {
-            final BlockStateHolder oldBlock = m_parent.getBlock(v);
-            if (!canPlace(player, m_bukkitWorld, v, oldBlock, newBlock)
-                    || isSame(oldBlock, newBlock)) {
+    /**
+     * Set the block. In async mode the block is added to the job 
+     * block set buffer without creating any block placer entries.
+     *
+     * @param position
+     * @param block
+     * @param mode the set block mode
+     * @return
+     * @throws WorldEditException
+     */
+    private boolean setBlock(BlockVector3 position, BlockStateHolder block, int mode) throws WorldEditException {
+        final int x = position.getBlockX();
+        final int y = position.getBlockY();
+        final int z = position.getBlockZ();
+
+        m_snapshots.markDirty(x, y, z);
+
+        final IAsyncWrapper wBlock = block instanceof IAsyncWrapper ? (IAsyncWrapper) block : null;
+        final IAsyncWrapper wPosition = position instanceof IAsyncWrapper ? (IAsyncWrapper) position : null;
+        final IPlayerEntry player = getPlayer(wBlock, wPosition);
+        final boolean isAsync = (wBlock != null && wBlock.isAsync())
+                || (wPosition != null && wPosition.isAsync());
+
+        if (isAsync || !m_dispatcher.isMainTask()) {
+            //The block is placed later, do not cache the old block
+            m_blockCache.markWritten(x, y, z);
+            if (!canPlace(player, m_bukkitWorld, position, getBlock(position), block)) {
                 return false;
             }
 
-            final boolean result = m_parent.setBlock(v, newBlock, notifyAndLight);
-            if (result) {
-                logBlock(v, player, oldBlock, newBlock);
+            final int jobId = wBlock != null ? wBlock.getJobId() : -1;
+            if (m_blockSetPlacer != null) {
+                return m_blockSetPlacer.addBlock(player, jobId, this, x, y, z, block, mode);
             }
 
-            return result;
-        };
+            return m_blockPlacer.addTasks(player,
+                    new WorldBlockSetEntry(getTargetWorldName(), this, player, jobId, position, block, mode,
+                            () -> applyBlock(player, position, block, mode)));
+        }
 
-        if (paramBlock.isAsync() || paramVector.isAsync() || !m_dispatcher.isMainTask()) {
-            if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
-                return false;
-            }
+        try {
+            return applyBlock(player, position, block, mode);
+        } finally {
+            m_blockCache.invalidate(x, y, z);
+        }
+    }
 
-            return m_blockPlacer.addTasks(player,
-                    new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
+    @Override
+    public boolean applyBlock(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder block, int mode) throws WorldEditException {
+        final BlockStateHolder oldBlock = m_parent.getBlock(location);
+        if (!canPlace(player, m_bukkitWorld, location, oldBlock, block)
+                || isSame(oldBlock, block)) {
+            return false;
         }
-        
-        return func.execute();
+
+        final boolean result = mode == MODE_DEFAULT
+                ? m_parent.setBlock(location, block)
+                : m_parent.setBlock(location, block, mode == MODE_NOTIFY);
+        if (result) {
+            logBlock(location, player, oldBlock, block);
+        }
+
+        return result;
+    }
+
+    @Override
+    public BlockStateHolder checkBlock(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder block) {
+        final BlockStateHolder oldBlock = m_parent.getBlock(location);
+        if (!canPlace(player, m_bukkitWorld, location, oldBlock, block)
+                || isSame(oldBlock, block)) {
+            return null;
+        }
+
+        return oldBlock;
+    }
+
+    @Override
+    public void blockApplied(IPlayerEntry player, BlockVector3 location,
+            BlockStateHolder oldBlock, BlockStateHolder block) {
+        logBlock(location, player, oldBlock, block);
+    }
+
+    @Override
+    public String getTargetWorldName() {
+        String result = m_worldName;
+        if (result == null) {
+            result = getName();
+            m_worldName = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public IWorld getTargetWorld() {
+        return m_bukkitWorld;
     }
 
     @Override
     public int getBlockLightLevel(final BlockVector3 position) {
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        final ChunkSnapshot snapshot = m_snapshots.get(position.getBlockX() >> 4, position.getBlockZ() >> 4);
+        final int light = snapshot != null
+                ? snapshot.getBlockLightLevel(position.getBlockX(), position.getBlockY(), position.getBlockZ()) : -1;
+        if (light >= 0) {
+            return light;
+        }
+
+        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position),
                 () -> m_parent.getBlockLightLevel(position), m_bukkitWorld, position);
     }
 
@@ -413,6 +546,12 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     @Override
     public boolean regenerate(final Region region, EditSession editSession) {
+        m_blockCache.clear();
+        m_snapshots.clear();
+        for (BlockVector2 chunk : region.getChunks()) {
+            m_snapshots.markDirty(chunk.getBlockX(), chunk.getBlockZ());
+        }
+
         boolean isAsync = checkAsync(WorldeditOperations.regenerate);
         if (!isAsync) {
             return m_parent.regenerate(region, editSession);
@@ -513,6 +652,9 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     @Override
     public boolean generateTree(final TreeGenerator.TreeType type, final EditSession editSession, BlockVector3 position) throws MaxChangedBlocksException {
+        m_blockCache.clear();
+        m_snapshots.clear();
+
         final DataAsyncParams<BlockVector3> param = DataAsyncParams.extract(position);
         final BlockVector3 v = param.getData();
         final IPlayerEntry player = getPlayer(param);
@@ -521,6 +663,12 @@ public class AsyncWorld extends AbstractWorldWrapper {
             return false;
         }
 
+        for (int cx = (v.getBlockX() >> 4) - 1; cx <= (v.getBlockX() >> 4) + 1; cx++) {
+            for (int cz = (v.getBlockZ() >> 4) - 1; cz <= (v.getBlockZ() >> 4) + 1; cz++) {
+                m_snapshots.markDirty(cx, cz);
+            }
+        }
+
         IFuncEx<Boolean, MaxChangedBlocksException> func = () -> m_parent.generateTree(type, editSession, v);
 
         if (param.isAsync() || !m_dispatcher.isMainTask()) {
@@ -537,9 +685,10 @@ public class AsyncWorld extends AbstractWorldWrapper {
             return;
         }
 
-        m_dispatcher.performSafeChunk(MutexProvider.getMutex(getWorld()), () -> {
+        final BlockVector2 chunk = PositionHelper.positionToChunk(position);
+        m_dispatcher.performSafeChunk(MutexProvider.getChunkMutex(getWorld(), chunk.getBlockX(), chunk.getBlockZ()), () -> {
             m_parent.checkLoadedChunk(position);
-        }, m_bukkitWorld, PositionHelper.positionToChunk(position));
+        }, m_bukkitWorld, chunk);
     }
 
     @Override
@@ -549,7 +698,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
             tmp.add(iterator.next());
         }
 
-        m_dispatcher.performSafeChunk(MutexProvider.getMutex(getWorld()), () -> {
+        m_dispatcher.performSafeChunk(MutexProvider.getChunksMutex(getWorld(), tmp), () -> {
             m_parent.fixAfterFastMode(tmp);
         }, m_bukkitWorld, tmp);
     }
@@ -561,7 +710,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
             tmp.add(iterator.next());
         }
 
-        m_dispatcher.performSafeChunk(MutexProvider.getMutex(getWorld()), () -> {
+        m_dispatcher.performSafeChunk(MutexProvider.getChunksMutex(getWorld(), tmp), () -> {
             m_parent.fixLighting(tmp);
         }, m_bukkitWorld, tmp);
     }
@@ -668,7 +817,7 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     @Override
     public List<? extends Entity> getEntities(final Region region) {
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getWorldChunksMutex(getWorld()),
                 () -> m_parent.getEntities(region), m_bukkitWorld, region);
     }
 
@@ -711,26 +860,41 @@ public class AsyncWorld extends AbstractWorldWrapper {
         return func.execute();
     }
 
-    private UUID toUUID(BlockVector3 pos) {
-        return toUUID(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ());
-    }
+    @Override
+    public BlockState getBlock(final BlockVector3 position) {
+        final int x = position.getBlockX();
+        final int y = position.getBlockY();
+        final int z = position.getBlockZ();
 
-    private UUID toUUID(int x, int y, int z) {
-        long p1 = (long) x << 32 | y & 0xFFFFFFFFL;
-        long p2 = (long) z;
+        BlockState result = m_blockCache.get(x, y, z);
+        if (result != null) {
+            return result;
+        }
 
-        return new UUID(p1, p2);
-    }
+        final ChunkSnapshot snapshot = m_snapshots.get(x >> 4, z >> 4);
+        if (snapshot != null) {
+            result = snapshot.getBlock(x, y, z);
+        }
+        if (result == null) {
+            result = m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position),
+                    () -> m_parent.getBlock(position), m_bukkitWorld, position);
+        }
+        m_blockCache.put(x, y, z, result);
 
-    @Override
-    public BlockState getBlock(final BlockVector3 position) {
-        return m_blockCache.computeIfAbsent(toUUID(position), _p -> m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
-                () -> m_parent.getBlock(position), m_bukkitWorld, position));
+        return result;
     }
 
     @Override
     public BaseBlock getFullBlock(final BlockVector3 position) {
-        BaseBlock result = m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        final ChunkSnapshot snapshot = m_snapshots.get(position.getBlockX() >> 4, position.getBlockZ() >> 4);
+        if (snapshot != null) {
+            final BaseBlock block = snapshot.getFullBlock(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            if (block != null && !isTileEntity(block.getBlockType())) {
+                return block;
+            }
+        }
+
+        BaseBlock result = m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position),
             () -> m_parent.getFullBlock(position), m_bukkitWorld, position);
 
         if (result != null && !result.hasNbtData()) {
@@ -747,47 +911,14 @@ public class AsyncWorld extends AbstractWorldWrapper {
 
     @Override
     public BiomeType getBiome(BlockVector2 position) {
-        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld()),
+        return m_dispatcher.performSafe(MutexProvider.getMutex(getWorld(), position),
                 () -> m_parent.getBiome(position),
                 m_bukkitWorld, BlockVector3.at(position.getX(), 0, position.getZ()));
     }
 
     @Override
     public boolean setBlock(final BlockVector3 position, final BlockStateHolder block) throws WorldEditException {
-        m_blockCache.remove(toUUID(position));
-
-        final DataAsyncParams<BlockStateHolder> paramBlock = DataAsyncParams.extract(block);
-        final DataAsyncParams<BlockVector3> paramVector = DataAsyncParams.extract(position);
-
-        final BlockStateHolder newBlock = paramBlock.getData();
-        final BlockVector3 v = paramVector.getData();
-        final IPlayerEntry player = getPlayer(paramBlock, paramVector);
-
-        IFuncEx<Boolean, WorldEditException> func = () -> {
-            final BlockState oldBlock = m_parent.getBlock(v);
-            if (!canPlace(player, m_bukkitWorld, v, oldBlock, newBlock)
-                    || isSame(oldBlock, newBlock)) {
-                return false;
-            }
-
-            final boolean result = m_parent.setBlock(position, newBlock);
-            if (result) {
-                logBlock(position, player, oldBlock, newBlock);
-            }
-
-            return result;
-        };
-
-        if (paramBlock.isAsync() || paramVector.isAsync() || !m_dispatcher.isMainTask()) {
-            if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
-                return false;
-            }
-
-            return m_blockPlacer.addTasks(player,
-                    new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
-        }
-
-        return func.execute();
+        return setBlock(position, block, MODE_DEFAULT);
     }
 
     @Override
@@ -842,7 +973,10 @@ public class AsyncWorld extends AbstractWorldWrapper {
             return result;
         };
 
+        m_snapshots.markDirty(v.getBlockX(), v.getBlockY(), v.getBlockZ());
         if (paramBlock.isAsync() || paramVector.isAsync() || !m_dispatcher.isMainTask()) {
+            //The block is placed later, do not cache the old block
+            m_blockCache.markWritten(v.getBlockX(), v.getBlockY(), v.getBlockZ());
             if (!canPlace(player, m_bukkitWorld, position, getBlock(v), newBlock)) {
                 return false;
             }
@@ -851,7 +985,11 @@ public class AsyncWorld extends AbstractWorldWrapper {
                     new WorldFuncEntryEx(this.getName(), paramBlock.getJobId(), v, func));
         }
 
-        return func.execute();
+        try {
+            return func.execute();
+        } finally {
+            m_blockCache.invalidate(v.getBlockX(), v.getBlockY(), v.getBlockZ());
+        }
     }
 
     @Override
@@ -878,20 +1016,4 @@ public class AsyncWorld extends AbstractWorldWrapper {
     public String getId() {
         return m_parent.getId();
     }
-
-    private static class LruMap<TKey, TValue> extends LinkedHashMap<TKey, TValue> {
-
-        private final int m_size;
-
-        public LruMap(int size) {
-            super(size + 1, 0.75f, true);
-
-            m_size = size;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<TKey, TValue> entry) {
-            return size() > m_size;
-        }
-    };
 }
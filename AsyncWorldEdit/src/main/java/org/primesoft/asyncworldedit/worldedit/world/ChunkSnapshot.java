@@ -0,0 +1,205 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.world;
+
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.primesoft.asyncworldedit.api.directChunk.IChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IChunkSection;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.ISerializedTileEntity;
+import org.primesoft.asyncworldedit.directChunk.ChunkSectionData;
+import org.primesoft.asyncworldedit.directChunk.DcUtils;
+import org.primesoft.asyncworldedit.utils.InOutParam;
+
+/**
+ * Immutable copy of the chunk data taken while holding the chunk mutex. The
+ * reads are served without accessing the world, positions written by the edit
+ * session are marked as dirty and need to be read from the world.
+ *
+ * @author SBPrime
+ */
+class ChunkSnapshot {
+
+    /**
+     * The chunk data copy
+     */
+    private final IChunkData m_data;
+
+    /**
+     * The direct chunk API used to convert the block ids
+     */
+    private final IDirectChunkAPI m_chunkApi;
+
+    /**
+     * The positions changed after the snapshot was taken
+     */
+    private final AtomicLongArray m_dirty = new AtomicLongArray(DcUtils.CHUNK_SIZE / 64);
+
+    ChunkSnapshot(IDirectChunkAPI chunkApi, IChunkData data) {
+        m_chunkApi = chunkApi;
+        m_data = data;
+    }
+
+    /**
+     * Mark the position as changed
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    void markDirty(int x, int y, int z) {
+        final int idx = index(x, y, z);
+        if (idx < 0) {
+            return;
+        }
+
+        final int word = idx >> 6;
+        final long bit = 1L << idx;
+        long old;
+        do {
+            old = m_dirty.get(word);
+        } while ((old & bit) == 0 && !m_dirty.compareAndSet(word, old, old | bit));
+    }
+
+    /**
+     * Get the block state
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the block or null if the block needs to be read from the world
+     */
+    BlockState getBlock(int x, int y, int z) {
+        final int idx = index(x, y, z);
+        if (idx < 0 || isDirty(idx)) {
+            return null;
+        }
+
+        final BlockStateHolder block = m_chunkApi.convertId(m_data.getBlock(x & 15, y, z & 15, null));
+        return block != null ? block.toImmutableState() : null;
+    }
+
+    /**
+     * Get the full block (blocks with tile entities are not served)
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the block or null if the block needs to be read from the world
+     */
+    BaseBlock getFullBlock(int x, int y, int z) {
+        final int idx = index(x, y, z);
+        if (idx < 0 || isDirty(idx)) {
+            return null;
+        }
+
+        final InOutParam<ISerializedTileEntity> tileEntity = InOutParam.Out();
+        final int id = m_data.getBlock(x & 15, y, z & 15, tileEntity);
+        if (tileEntity.isSet()) {
+            return null;
+        }
+
+        final BlockStateHolder block = m_chunkApi.convertId(id);
+        return block != null ? block.toBaseBlock() : null;
+    }
+
+    /**
+     * Get the block light level (maximum of the emitted and sky light)
+     *
+     * @param x
+     * @param y
+     * @param z
+     * @return the light level or -1 if it needs to be read from the world
+     */
+    int getBlockLightLevel(int x, int y, int z) {
+        final int idx = index(x, y, z);
+        if (idx < 0 || isDirty(idx)) {
+            return -1;
+        }
+
+        final IChunkSection section = m_data.getChunkSection(y >> 4);
+        if (section == null) {
+            return -1;
+        }
+
+        final int sIdx = idx & 0xfff;
+        if (section instanceof ChunkSectionData) {
+            final ChunkSectionData data = (ChunkSectionData) section;
+            return Math.max(data.getEmittedLightLevel(sIdx), data.getSkyLightLevel(sIdx));
+        }
+
+        return Math.max(getNibble(section.getEmittedLight(), sIdx),
+                getNibble(section.getSkyLight(), sIdx));
+    }
+
+    private boolean isDirty(int idx) {
+        return (m_dirty.get(idx >> 6) & (1L << idx)) != 0;
+    }
+
+    private static int getNibble(byte[] data, int idx) {
+        if (data == null) {
+            return 0;
+        }
+
+        return (data[idx >> 1] >> ((idx & 1) << 2)) & 0xf;
+    }
+
+    /**
+     * The block index in the chunk (y, z, x order)
+     */
+    private static int index(int x, int y, int z) {
+        if (y < 0 || y >= DcUtils.CHUNK_SIZE / 256) {
+            return -1;
+        }
+
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+}
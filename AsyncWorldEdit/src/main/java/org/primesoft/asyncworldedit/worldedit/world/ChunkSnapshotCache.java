@@ -0,0 +1,261 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.world;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.primesoft.asyncworldedit.api.IChunk;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.directChunk.IChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
+import org.primesoft.asyncworldedit.utils.ConcurrentLongSet;
+import org.primesoft.asyncworldedit.utils.ExceptionHelper;
+import org.primesoft.asyncworldedit.utils.MutexProvider;
+import org.primesoft.asyncworldedit.utils.PositionHelper;
+
+/**
+ * The chunk snapshots taken by an edit session. Each chunk is copied once
+ * while holding the chunk mutex (on the calling thread if the chunk is
+ * loaded, otherwise on the main thread). The oldest snapshots are dropped
+ * when the capacity is reached.
+ *
+ * Chunks written by the session are never copied again: the queued blocks
+ * might not be placed yet, so a new copy could contain the old blocks.
+ *
+ * @author SBPrime
+ */
+class ChunkSnapshotCache {
+
+    /**
+     * The maximum number of snapshots (0 - disabled)
+     */
+    private final int m_capacity;
+
+    /**
+     * The task dispatcher
+     */
+    private final ITaskDispatcher m_dispatcher;
+
+    /**
+     * The direct chunk API (null if not available)
+     */
+    private final IDirectChunkAPI m_chunkApi;
+
+    /**
+     * The world
+     */
+    private final IWorld m_world;
+
+    /**
+     * The snapshots (null result if the chunk is not available)
+     */
+    private final Map<Long, CompletableFuture<ChunkSnapshot>> m_snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * The snapshots in the order they were taken (MTA: self)
+     */
+    private final Deque<Long> m_order = new ArrayDeque<>();
+
+    /**
+     * The chunks written by the edit session
+     */
+    private final ConcurrentLongSet m_written = new ConcurrentLongSet();
+
+    ChunkSnapshotCache(int capacity, ITaskDispatcher dispatcher, IDirectChunkAPI chunkApi, IWorld world) {
+        m_capacity = chunkApi != null && world != null ? Math.max(0, capacity) : 0;
+        m_dispatcher = dispatcher;
+        m_chunkApi = chunkApi;
+        m_world = world;
+    }
+
+    /**
+     * Get the chunk snapshot, takes the snapshot if needed
+     *
+     * @param cx
+     * @param cz
+     * @return the snapshot or null if not available
+     */
+    ChunkSnapshot get(int cx, int cz) {
+        if (m_capacity == 0) {
+            return null;
+        }
+
+        final long key = encode(cx, cz);
+        CompletableFuture<ChunkSnapshot> snapshot = m_snapshots.get(key);
+        if (snapshot == null) {
+            if (m_written.contains(key)) {
+                return null;
+            }
+
+            final CompletableFuture<ChunkSnapshot> newSnapshot = new CompletableFuture<>();
+            snapshot = m_snapshots.putIfAbsent(key, newSnapshot);
+
+            if (snapshot == null) {
+                if (m_written.contains(key)) {
+                    //Written while the snapshot was registered
+                    m_snapshots.remove(key, newSnapshot);
+                    newSnapshot.complete(null);
+                    return null;
+                }
+
+                snapshot = newSnapshot;
+                take(key, cx, cz, newSnapshot);
+            }
+        }
+
+        if (!snapshot.isDone() && m_dispatcher.isMainTask()) {
+            //The snapshot is taken by a thread that waits for the main thread
+            return null;
+        }
+
+        return snapshot.join();
+    }
+
+    /**
+     * Mark the block as changed by the edit session
+     *
+     * @param x
+     * @param y
+     * @param z
+     */
+    void markDirty(final int x, final int y, final int z) {
+        if (m_capacity == 0) {
+            return;
+        }
+
+        final long key = encode(x >> 4, z >> 4);
+        m_written.add(key);
+
+        final CompletableFuture<ChunkSnapshot> snapshot = m_snapshots.get(key);
+        if (snapshot != null) {
+            snapshot.thenAccept(s -> {
+                if (s != null) {
+                    s.markDirty(x, y, z);
+                }
+            });
+        }
+    }
+
+    /**
+     * Mark the whole chunk as changed by the edit session, drops the
+     * chunk snapshot
+     *
+     * @param cx
+     * @param cz
+     */
+    void markDirty(final int cx, final int cz) {
+        if (m_capacity == 0) {
+            return;
+        }
+
+        final long key = encode(cx, cz);
+        m_written.add(key);
+
+        synchronized (m_order) {
+            if (m_snapshots.remove(key) != null) {
+                m_order.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drop all the snapshots
+     */
+    void clear() {
+        synchronized (m_order) {
+            m_snapshots.clear();
+            m_order.clear();
+        }
+    }
+
+    /**
+     * Number of snapshots in the cache
+     *
+     * @return
+     */
+    int size() {
+        synchronized (m_order) {
+            return m_order.size();
+        }
+    }
+
+    private void take(long key, final int cx, final int cz, CompletableFuture<ChunkSnapshot> result) {
+        synchronized (m_order) {
+            m_order.add(key);
+            if (m_order.size() > m_capacity) {
+                final Long oldest = m_order.poll();
+                m_snapshots.remove(oldest);
+            }
+        }
+
+        ChunkSnapshot snapshot = null;
+        try {
+            snapshot = m_dispatcher.performSafe(MutexProvider.getChunkMutex(m_world, cx, cz), () -> {
+                IChunk chunk = m_world.getChunkAt(cx, cz);
+                IWrappedChunk wrappedChunk = chunk != null ? m_chunkApi.wrapChunk(chunk) : null;
+                IChunkData data = wrappedChunk != null ? wrappedChunk.getData() : null;
+
+                return data != null ? new ChunkSnapshot(m_chunkApi, data) : null;
+            }, m_world, PositionHelper.chunkToPosition(cx, 0, cz));
+        } catch (Exception ex) {
+            ExceptionHelper.printException(ex,
+                    String.format("Unable to take the chunk %1$s,%2$s snapshot", cx, cz));
+        } finally {
+            result.complete(snapshot);
+        }
+    }
+
+    private static long encode(int cx, int cz) {
+        return (long) cx << 32 | cz & 0xFFFFFFFFL;
+    }
+}
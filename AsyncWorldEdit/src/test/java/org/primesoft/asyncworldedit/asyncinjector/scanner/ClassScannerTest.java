@@ -0,0 +1,170 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.asyncinjector.scanner;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.classScanner.IClassFilter;
+import org.primesoft.asyncworldedit.platform.api.IConfigurationSection;
+import org.primesoft.asyncworldedit.api.inner.IClassScanner;
+import org.primesoft.asyncworldedit.api.inner.IClassScannerResult;
+import org.primesoft.asyncworldedit.configuration.ConfigMessages;
+import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ClassScannerTest {
+
+    private static final Class<?>[] TYPES = new Class<?>[]{Target.class};
+
+    private Object m_oldMessages;
+    private IClassScanner m_scanner;
+
+    @Before
+    public void init() throws Exception {
+        Constructor<ConfigMessages> ctor = ConfigMessages.class.getDeclaredConstructor(IConfigurationSection.class);
+        ctor.setAccessible(true);
+        m_oldMessages = setMessagesConfig(ctor.newInstance((IConfigurationSection) null));
+
+        m_scanner = new ClassScanner() {
+            @Override
+            protected IClassScannerEntry[] getBlackList() {
+                return new IClassScannerEntry[0];
+            }
+        };
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        setMessagesConfig(m_oldMessages);
+    }
+
+    @Test
+    public void shouldFindTargets() {
+        // Given
+        m_scanner.initialize();
+
+        // When
+        List<IClassScannerResult> result = m_scanner.scan(TYPES, new Holder());
+
+        // Then
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void shouldReuseClassInformation() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        m_scanner.addFilter((cls, field) -> {
+            calls.incrementAndGet();
+            return true;
+        });
+        m_scanner.initialize();
+        m_scanner.scan(TYPES, new Holder());
+        int firstScan = calls.get();
+
+        // When
+        List<IClassScannerResult> result = m_scanner.scan(TYPES, new Holder());
+
+        // Then
+        assertTrue(firstScan > 0);
+        assertEquals(firstScan, calls.get());
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void shouldRebuildClassInformationWhenFiltersChange() {
+        // Given
+        IClassFilter filter = (cls, field) -> cls != Inner.class;
+        m_scanner.initialize();
+        m_scanner.scan(TYPES, new Holder());
+
+        // When
+        m_scanner.addFilter(filter);
+        List<IClassScannerResult> filtered = m_scanner.scan(TYPES, new Holder());
+        m_scanner.removeFilter(filter);
+        List<IClassScannerResult> unfiltered = m_scanner.scan(TYPES, new Holder());
+
+        // Then
+        assertEquals(1, filtered.size());
+        assertEquals(2, unfiltered.size());
+    }
+
+    private static Object setMessagesConfig(Object config) throws Exception {
+        Field field = ConfigProvider.class.getDeclaredField("m_configMessages");
+        field.setAccessible(true);
+
+        Object result = field.get(null);
+        field.set(null, config);
+
+        return result;
+    }
+
+    private static class Target {
+    }
+
+    private static class Inner {
+
+        private final Target m_target = new Target();
+    }
+
+    private static class Holder {
+
+        private final Target m_target = new Target();
+
+        private final Inner m_inner = new Inner();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockPlacerBatchTest {
+    @Test
+    public void shouldUseWholeBatchForSinglePlayer() {
+        // Given
+        int batchSize = 256;
+
+        // When
+        int result = BlockPlacer.getPlayerBatch(batchSize, 1);
+
+        // Then
+        Assert.assertEquals("Player batch", 256, result);
+    }
+
+    @Test
+    public void shouldSplitBatchBetweenPlayers() {
+        // Given
+        int batchSize = 256;
+
+        // When
+        int result = BlockPlacer.getPlayerBatch(batchSize, 4);
+
+        // Then
+        Assert.assertEquals("Player batch", 64, result);
+    }
+
+    @Test
+    public void shouldNotSplitBatchBelowMinimum() {
+        // Given
+        int batchSize = 256;
+
+        // When
+        int many = BlockPlacer.getPlayerBatch(batchSize, 100);
+        int small = BlockPlacer.getPlayerBatch(4, 100);
+
+        // Then
+        Assert.assertEquals("Many players", BlockPlacer.MIN_PLAYER_BATCH, many);
+        Assert.assertEquals("Small batch", 4, small);
+    }
+
+    @Test
+    public void shouldSortEntriesByChunkAndKeepChunkOrder() {
+        // Given
+        Entry a1 = new Entry("world", 40, 0, 0);
+        Entry b1 = new Entry("world", 0, 0, 0);
+        Entry a2 = new Entry("world", 41, 0, 0);
+        Entry b2 = new Entry("world", 1, 0, 0);
+        List<IBlockPlacerEntry> batch = new ArrayList<>();
+        batch.add(a1);
+        batch.add(b1);
+        batch.add(a2);
+        batch.add(b2);
+
+        // When
+        BlockPlacer.sortByChunk(batch);
+
+        // Then
+        Assert.assertSame("Entry 0", b1, batch.get(0));
+        Assert.assertSame("Entry 1", b2, batch.get(1));
+        Assert.assertSame("Entry 2", a1, batch.get(2));
+        Assert.assertSame("Entry 3", a2, batch.get(3));
+    }
+
+    @Test
+    public void shouldKeepBarrierLast() {
+        // Given
+        Entry a = new Entry("world", 40, 0, 0);
+        Entry b = new Entry("world", 0, 0, 0);
+        IBlockPlacerEntry barrier = new Barrier();
+        List<IBlockPlacerEntry> batch = new ArrayList<>();
+        batch.add(a);
+        batch.add(b);
+        batch.add(barrier);
+
+        // When
+        BlockPlacer.sortByChunk(batch);
+
+        // Then
+        Assert.assertSame("Entry 0", b, batch.get(0));
+        Assert.assertSame("Entry 1", a, batch.get(1));
+        Assert.assertSame("Barrier", barrier, batch.get(2));
+    }
+
+    private static class Barrier implements IBlockPlacerEntry {
+        @Override
+        public int getJobId() {
+            return 0;
+        }
+
+        @Override
+        public boolean isDemanding() {
+            return false;
+        }
+
+        @Override
+        public boolean process(IBlockPlacer bp) {
+            return true;
+        }
+    }
+
+    private static class Entry extends Barrier implements IBlockPlacerLocationEntry {
+        private final String m_world;
+        private final BlockVector3 m_location;
+
+        Entry(String world, int x, int y, int z) {
+            m_world = world;
+            m_location = BlockVector3.at(x, y, z);
+        }
+
+        @Override
+        public String getWorldName() {
+            return m_world;
+        }
+
+        @Override
+        public BlockVector3 getLocation() {
+            return m_location;
+        }
+    }
+}
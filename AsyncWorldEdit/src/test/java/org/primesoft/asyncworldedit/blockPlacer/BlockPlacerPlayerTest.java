@@ -0,0 +1,244 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.Queue;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacerEntry;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockPlacerPlayerTest {
+    @Test
+    public void shouldTrackQueueSize() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        IBlockPlacerEntry e1 = Mockito.mock(IBlockPlacerEntry.class);
+        IBlockPlacerEntry e2 = Mockito.mock(IBlockPlacerEntry.class);
+        
+        // When
+        boolean added1 = bpp.offer(e1);
+        boolean added2 = bpp.offer(e2);
+        int size1 = bpp.getQueueSize();
+        IBlockPlacerEntry polled = bpp.poll(bpp.nextSegment());
+        int size2 = bpp.getQueueSize();
+        
+        // Then
+        Assert.assertTrue("Entry 1 added", added1);
+        Assert.assertTrue("Entry 2 added", added2);
+        Assert.assertEquals("Step 1: Queue size", 2, size1);
+        Assert.assertEquals("Polled entry", e1, polled);
+        Assert.assertEquals("Step 2: Queue size", 1, size2);
+    }
+    
+    @Test
+    public void shouldNotRetireNonEmptyQueue() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        bpp.offer(Mockito.mock(IBlockPlacerEntry.class));
+        
+        // When
+        boolean retired = bpp.tryRetire();
+        
+        // Then
+        Assert.assertFalse("Retired", retired);
+        Assert.assertEquals("Queue size", 1, bpp.getQueueSize());
+    }
+    
+    @Test
+    public void shouldRejectEntriesWhenRetired() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        
+        // When
+        boolean retired = bpp.tryRetire();
+        boolean added = bpp.offer(Mockito.mock(IBlockPlacerEntry.class));
+        
+        // Then
+        Assert.assertTrue("Retired", retired);
+        Assert.assertFalse("Entry added", added);
+        Assert.assertEquals("Queue size", 0, bpp.getQueueSize());
+        Assert.assertFalse("Has blocks", bpp.hasBlocks());
+    }
+    
+    @Test
+    public void shouldKeepBlocksOrderedWithEntries() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        IBlockSetTarget target = Mockito.mock(IBlockSetTarget.class);
+        BlockStateHolder block = Mockito.mock(BlockStateHolder.class);
+        IBlockPlacerEntry entry = Mockito.mock(IBlockPlacerEntry.class);
+        Mockito.when(entry.getJobId()).thenReturn(1);
+        BlockSetBatch batch = new BlockSetBatch();
+        
+        bpp.offerBlock(1, target, 0, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        bpp.offerBlock(1, target, 1, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        bpp.offer(entry);
+        bpp.offerBlock(1, target, 2, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        
+        // When
+        int size1 = bpp.getQueueSize();
+        BlockPlacerSegment segment = bpp.nextSegment();
+        IBlockPlacerEntry polled1 = bpp.poll(segment);
+        int drained1 = bpp.drainBlocks(segment, batch, 10);
+        IBlockPlacerEntry polled2 = bpp.poll(segment);
+        int drained2 = bpp.drainBlocks(segment, batch, 10);
+        
+        // Then
+        Assert.assertEquals("Queue size", 4, size1);
+        Assert.assertNull("Entry polled before the blocks", polled1);
+        Assert.assertEquals("Step 1: Drained blocks", 2, drained1);
+        Assert.assertEquals("Polled entry", entry, polled2);
+        Assert.assertEquals("Step 2: Drained blocks", 1, drained2);
+        Assert.assertEquals("Block 3 X", 2, batch.getX(2));
+        Assert.assertEquals("Final queue size", 0, bpp.getQueueSize());
+        Assert.assertNull("Empty queue", bpp.poll(segment));
+        Assert.assertNull("No segment", bpp.nextSegment());
+    }
+    
+    @Test
+    public void shouldUseSeparateBuffersForJobs() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        IBlockSetTarget target = Mockito.mock(IBlockSetTarget.class);
+        BlockStateHolder block = Mockito.mock(BlockStateHolder.class);
+        BlockSetBatch batch1 = new BlockSetBatch();
+        BlockSetBatch batch2 = new BlockSetBatch();
+        
+        bpp.offerBlock(1, target, 0, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        bpp.offerBlock(2, target, 1, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        
+        // When
+        int drained1 = bpp.drainBlocks(bpp.nextSegment(), batch1, 10);
+        int drained2 = bpp.drainBlocks(bpp.nextSegment(), batch2, 10);
+        
+        // Then
+        Assert.assertEquals("Step 1: Drained blocks", 1, drained1);
+        Assert.assertEquals("Step 1: Job", 1, batch1.getJobId());
+        Assert.assertEquals("Step 2: Drained blocks", 1, drained2);
+        Assert.assertEquals("Step 2: Job", 2, batch2.getJobId());
+    }
+    
+    @Test
+    public void shouldRejectBlocksWhenRetired() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        
+        // When
+        boolean retired = bpp.tryRetire();
+        boolean added = bpp.offerBlock(1, Mockito.mock(IBlockSetTarget.class), 0, 0, 0, 
+                Mockito.mock(BlockStateHolder.class), IBlockSetTarget.MODE_DEFAULT);
+        
+        // Then
+        Assert.assertTrue("Retired", retired);
+        Assert.assertFalse("Block added", added);
+        Assert.assertEquals("Queue size", 0, bpp.getQueueSize());
+    }
+    
+    @Test
+    public void shouldRoundRobinJobSegments() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        IBlockPlacerEntry j1e1 = mockEntry(1);
+        IBlockPlacerEntry j1e2 = mockEntry(1);
+        IBlockPlacerEntry j2e1 = mockEntry(2);
+        bpp.offer(j1e1);
+        bpp.offer(j1e2);
+        bpp.offer(j2e1);
+        
+        // When
+        IBlockPlacerEntry polled1 = bpp.poll(bpp.nextSegment());
+        IBlockPlacerEntry polled2 = bpp.poll(bpp.nextSegment());
+        IBlockPlacerEntry polled3 = bpp.poll(bpp.nextSegment());
+        
+        // Then
+        Assert.assertEquals("Step 1: Polled entry", j1e1, polled1);
+        Assert.assertEquals("Step 2: Polled entry", j2e1, polled2);
+        Assert.assertEquals("Step 3: Polled entry", j1e2, polled3);
+        Assert.assertEquals("Queue size", 0, bpp.getQueueSize());
+    }
+    
+    @Test
+    public void shouldDropJobSegment() {
+        // Given
+        BlockPlacerPlayer bpp = new BlockPlacerPlayer(Mockito.mock(IPlayerEntry.class));
+        IBlockSetTarget target = Mockito.mock(IBlockSetTarget.class);
+        IBlockPlacerEntry j2e1 = mockEntry(2);
+        bpp.offer(mockEntry(1));
+        bpp.offerBlock(1, target, 0, 0, 0, Mockito.mock(BlockStateHolder.class), IBlockSetTarget.MODE_DEFAULT);
+        bpp.offer(j2e1);
+        
+        // When
+        Queue<IBlockPlacerEntry> dropped = bpp.dropSegment(1);
+        boolean added = bpp.offer(mockEntry(1));
+        BlockPlacerSegment segment1 = bpp.nextSegment();
+        IBlockPlacerEntry polled1 = bpp.poll(segment1);
+        BlockPlacerSegment segment2 = bpp.nextSegment();
+        
+        // Then
+        Assert.assertEquals("Dropped entries", 2, dropped.size());
+        Assert.assertTrue("Entry added to a new segment", added);
+        Assert.assertEquals("Step 1: Segment", 1, segment1.getJobId());
+        Assert.assertNotNull("Step 1: Polled entry", polled1);
+        Assert.assertEquals("Step 2: Segment", 2, segment2.getJobId());
+        Assert.assertEquals("Polled entry", j2e1, bpp.poll(segment2));
+    }
+    
+    private static IBlockPlacerEntry mockEntry(int jobId) {
+        IBlockPlacerEntry result = Mockito.mock(IBlockPlacerEntry.class);
+        Mockito.when(result.getJobId()).thenReturn(jobId);
+        
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockSetBufferTest {
+
+    @Test
+    public void shouldPackPositions() {
+        // Given
+        int[][] positions = new int[][]{
+            {0, 0, 0}, {-1, -64, -1}, {29999999, 319, -29999999}, {-30000000, -2048, 30000000}, {15, 2047, -17}
+        };
+
+        for (int[] p : positions) {
+            // When
+            long packed = BlockSetBuffer.pack(p[0], p[1], p[2]);
+
+            // Then
+            Assert.assertEquals("X", p[0], BlockSetBuffer.unpackX(packed));
+            Assert.assertEquals("Y", p[1], BlockSetBuffer.unpackY(packed));
+            Assert.assertEquals("Z", p[2], BlockSetBuffer.unpackZ(packed));
+        }
+    }
+
+    @Test
+    public void shouldKeepOrderWhenWrapped() {
+        // Given
+        BlockSetBuffer buffer = new BlockSetBuffer(1, Mockito.mock(IBlockSetTarget.class), null);
+        BlockStateHolder b1 = Mockito.mock(BlockStateHolder.class);
+        BlockStateHolder b2 = Mockito.mock(BlockStateHolder.class);
+        BlockSetBatch batch = new BlockSetBatch();
+
+        for (int i = 0; i < 50; i++) {
+            buffer.add(i, 0, 0, b1, IBlockSetTarget.MODE_DEFAULT);
+        }
+        buffer.drain(batch, 40);
+        batch.clear();
+
+        // When
+        for (int i = 50; i < 200; i++) {
+            buffer.add(i, 0, 0, (i & 1) == 0 ? b1 : b2, IBlockSetTarget.MODE_DEFAULT);
+        }
+        int drained = buffer.drain(batch, 1000);
+
+        // Then
+        Assert.assertEquals("Drained", 160, drained);
+        for (int i = 0; i < drained; i++) {
+            int x = i + 40;
+            Assert.assertEquals("X", x, batch.getX(i));
+            Assert.assertSame("Block", x < 50 || (x & 1) == 0 ? b1 : b2, batch.getBlock(i));
+        }
+        Assert.assertEquals("Buffer size", 0, buffer.size());
+    }
+
+    @Test
+    public void shouldRejectBlocksWhenFull() {
+        // Given
+        BlockSetBuffer buffer = new BlockSetBuffer(1, Mockito.mock(IBlockSetTarget.class), null);
+        BlockStateHolder block = Mockito.mock(BlockStateHolder.class);
+        for (int i = 0; i < BlockSetBuffer.MAX_CAPACITY; i++) {
+            buffer.add(i, 0, 0, block, IBlockSetTarget.MODE_DEFAULT);
+        }
+
+        // When
+        boolean added = buffer.add(0, 1, 0, block, IBlockSetTarget.MODE_DEFAULT);
+
+        // Then
+        Assert.assertFalse("Added", added);
+        Assert.assertEquals("Buffer size", BlockSetBuffer.MAX_CAPACITY, buffer.size());
+    }
+
+    @Test
+    public void shouldReleasePhysicsOnDiscard() {
+        // Given
+        IBlockSetTarget target = Mockito.mock(IBlockSetTarget.class);
+        Mockito.when(target.getTargetWorldName()).thenReturn("world");
+        IPhysicsWatch physicsWatch = Mockito.mock(IPhysicsWatch.class);
+        BlockSetBuffer buffer = new BlockSetBuffer(1, target, null);
+        buffer.add(-5, 64, 7, Mockito.mock(BlockStateHolder.class), IBlockSetTarget.MODE_DEFAULT);
+
+        // When
+        PhysicsLockRelease locks = new PhysicsLockRelease(physicsWatch);
+        int removed = buffer.discard(locks);
+        locks.release();
+        boolean added = buffer.add(0, 0, 0, Mockito.mock(BlockStateHolder.class), IBlockSetTarget.MODE_DEFAULT);
+
+        // Then
+        Assert.assertEquals("Removed", 1, removed);
+        Assert.assertFalse("Added after discard", added);
+        Assert.assertTrue("Is done", buffer.isDone());
+        Mockito.verify(physicsWatch).removeLocations(Mockito.eq("world"), Mockito.any(int[].class), Mockito.eq(1));
+    }
+}
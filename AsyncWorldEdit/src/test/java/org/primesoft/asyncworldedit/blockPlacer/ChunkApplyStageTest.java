@@ -0,0 +1,240 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.blockPlacer;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.IChunk;
+import org.primesoft.asyncworldedit.api.IPhysicsWatch;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.directChunk.IChangesetChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IInnerDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.playerManager.IPlayerEntry;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkApplyStageTest {
+    private IInnerDirectChunkAPI m_dcApi;
+    private IWrappedChunk m_wrappedChunk;
+    private IChangesetChunkData m_data;
+    private IPhysicsWatch m_physicsWatch;
+    private IBlockSetTarget m_target;
+    private BlockStateHolder m_oldBlock;
+    private BlockStateHolder m_block;
+    private ChunkApplyStage m_stage;
+
+    @Before
+    public void setUp() throws Exception {
+        IAsyncWorldEditCore aweCore = Mockito.mock(IAsyncWorldEditCore.class);
+        IWorld world = Mockito.mock(IWorld.class);
+        IChunk chunk = Mockito.mock(IChunk.class);
+
+        m_dcApi = Mockito.mock(IInnerDirectChunkAPI.class);
+        m_wrappedChunk = Mockito.mock(IWrappedChunk.class);
+        m_data = Mockito.mock(IChangesetChunkData.class);
+        m_physicsWatch = Mockito.mock(IPhysicsWatch.class);
+        m_target = Mockito.mock(IBlockSetTarget.class);
+        m_oldBlock = Mockito.mock(BlockStateHolder.class);
+        m_block = Mockito.mock(BlockStateHolder.class);
+
+        Mockito.when(aweCore.getInnerDirectChunkAPI()).thenReturn(m_dcApi);
+        Mockito.when(world.getChunkAt(Mockito.anyInt(), Mockito.anyInt())).thenReturn(chunk);
+        Mockito.when(m_dcApi.wrapChunk(chunk)).thenReturn(m_wrappedChunk);
+        Mockito.when(m_dcApi.createLazyChunkData(m_wrappedChunk)).thenReturn(m_data);
+        Mockito.when(m_target.getTargetWorld()).thenReturn(world);
+        Mockito.when(m_target.getTargetWorldName()).thenReturn("world");
+        Mockito.when(m_target.checkBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class)))
+                .thenReturn(m_oldBlock);
+
+        m_stage = new ChunkApplyStage(aweCore, m_physicsWatch);
+    }
+
+    private BlockSetBatch createBatch(int mode, int... xs) {
+        BlockSetBatch result = new BlockSetBatch();
+        result.setOwner(1, m_target, null);
+        for (int x : xs) {
+            result.add(BlockSetBuffer.pack(x, 10, 0), m_block, (byte) mode);
+        }
+
+        return result;
+    }
+
+    @Test
+    public void shouldWriteAcceptedBlocksToChunk() throws Exception {
+        // Given
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1, 2);
+
+        // When
+        int chunks = m_stage.process(batch);
+
+        // Then
+        Assert.assertEquals("Chunks", 1, chunks);
+        Mockito.verify(m_data, Mockito.times(3)).setBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_target, Mockito.times(3)).blockApplied(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.eq(m_oldBlock), Mockito.eq(m_block));
+        Mockito.verify(m_target, Mockito.never()).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+        Mockito.verify(m_physicsWatch, Mockito.times(3)).removeLocation(Mockito.eq("world"), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldSkipBlocksRejectedByTarget() throws Exception {
+        // Given
+        Mockito.when(m_target.checkBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class)))
+                .thenAnswer(i -> ((BlockVector3) i.getArguments()[1]).getBlockX() == 1 ? null : m_oldBlock);
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1, 2);
+
+        // When
+        m_stage.process(batch);
+
+        // Then
+        Mockito.verify(m_data, Mockito.never()).setBlock(Mockito.eq(1), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_data, Mockito.times(2)).setBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_target, Mockito.times(2)).blockApplied(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.eq(m_oldBlock), Mockito.eq(m_block));
+        Mockito.verify(m_physicsWatch, Mockito.times(3)).removeLocation(Mockito.eq("world"), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldApplyNotifyBlocksOneByOne() throws Exception {
+        // Given
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NOTIFY, 0, 1);
+
+        // When
+        int chunks = m_stage.process(batch);
+
+        // Then
+        Assert.assertEquals("Chunks", 0, chunks);
+        Mockito.verify(m_target, Mockito.times(2)).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+        Mockito.verify(m_data, Mockito.never()).setBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+    }
+
+    @Test
+    public void shouldSplitChunkOnRepeatedPosition() throws Exception {
+        // Given
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1, 0);
+
+        // When
+        int chunks = m_stage.process(batch);
+
+        // Then
+        Assert.assertEquals("Chunks", 1, chunks);
+        Mockito.verify(m_data, Mockito.times(2)).setBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_target, Mockito.times(1)).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldSendChunkUpdateOncePerRun() throws Exception {
+        // Given
+        BlockSetBatch batch1 = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1);
+        BlockSetBatch batch2 = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 2, 3);
+
+        // When
+        m_stage.process(batch1);
+        m_stage.process(batch2);
+        Mockito.verify(m_wrappedChunk, Mockito.never()).sendChunkUpdate();
+        m_stage.flush();
+        m_stage.flush();
+
+        // Then
+        Mockito.verify(m_wrappedChunk, Mockito.times(2)).setDirty();
+        Mockito.verify(m_wrappedChunk, Mockito.times(1)).sendChunkUpdate();
+    }
+
+    @Test
+    public void shouldReuseClearedPositionsInNextGroup() throws Exception {
+        // Given
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1, 0, 1);
+
+        // When
+        int chunks = m_stage.process(batch);
+
+        // Then
+        Assert.assertEquals("Chunks", 2, chunks);
+        Mockito.verify(m_data, Mockito.times(4)).setBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_target, Mockito.never()).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldLogBlocksWhenSetDirtyFails() throws Exception {
+        // Given
+        Mockito.doThrow(new IllegalStateException()).when(m_wrappedChunk).setDirty();
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1);
+
+        // When
+        int chunks = m_stage.process(batch);
+        m_stage.flush();
+
+        // Then
+        Assert.assertEquals("Chunks", 1, chunks);
+        Mockito.verify(m_target, Mockito.times(2)).blockApplied(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.eq(m_oldBlock), Mockito.eq(m_block));
+        Mockito.verify(m_target, Mockito.never()).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+        Mockito.verify(m_wrappedChunk, Mockito.times(1)).sendChunkUpdate();
+    }
+
+    @Test
+    public void shouldApplyBlocksOneByOneWhenSetDataFails() throws Exception {
+        // Given
+        Mockito.doThrow(new IllegalStateException()).when(m_wrappedChunk).setData(m_data);
+        BlockSetBatch batch = createBatch(IBlockSetTarget.MODE_NO_NOTIFY, 0, 1);
+
+        // When
+        int chunks = m_stage.process(batch);
+
+        // Then
+        Assert.assertEquals("Chunks", 0, chunks);
+        Mockito.verify(m_target, Mockito.never()).blockApplied(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.any(BlockStateHolder.class));
+        Mockito.verify(m_target, Mockito.times(2)).applyBlock(Mockito.any(IPlayerEntry.class), Mockito.any(BlockVector3.class), Mockito.any(BlockStateHolder.class), Mockito.anyInt());
+        Mockito.verify(m_wrappedChunk, Mockito.never()).setDirty();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
+import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
+import org.primesoft.asyncworldedit.utils.io.UnsafeDataInput;
+import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class UndoEntryTest {
+    private final static String TYPE_A = "com.sk89q.worldedit.history.change.BlockChange";
+    private final static String TYPE_B = "com.sk89q.worldedit.history.change.BiomeChange";
+
+    private UndoDictionary m_dictionary;
+
+    @Before
+    public void init() {
+        m_dictionary = new UndoDictionary();
+    }
+
+    @Test
+    public void shouldReadSavedEntries() throws Exception {
+        // Given
+        UnsafeDataOutput out = new UnsafeDataOutput();
+        UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[]{1, 2, 3}, 0), m_dictionary);
+        UndoEntry.save(out, new UndoEntry(TYPE_B, new byte[0], 1), m_dictionary);
+        UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[]{4}, -1), m_dictionary);
+
+        // When
+        UnsafeDataInput in = new UnsafeDataInput(out.toByteArray());
+        UndoDictionary dictionary = new UndoDictionary();
+        IUndoEntry e1 = UndoEntry.load(in, dictionary);
+        IUndoEntry e2 = UndoEntry.load(in, dictionary);
+        IUndoEntry e3 = UndoEntry.load(in, dictionary);
+        IUndoEntry e4 = UndoEntry.load(in, dictionary);
+
+        // Then
+        assertEquals(TYPE_A, e1.getType());
+        assertEquals(0, e1.getId());
+        assertArrayEquals(new byte[]{1, 2, 3}, e1.getData());
+
+        assertEquals(TYPE_B, e2.getType());
+        assertEquals(1, e2.getId());
+        assertEquals(0, e2.getData().length);
+
+        assertEquals(TYPE_A, e3.getType());
+        assertEquals(-1, e3.getId());
+        assertArrayEquals(new byte[]{4}, e3.getData());
+
+        assertNull(e4);
+    }
+
+    @Test
+    public void shouldReturnWrittenSize() throws Exception {
+        // Given
+        UnsafeDataOutput out = new UnsafeDataOutput();
+        m_dictionary.getStateId("minecraft:stone");
+
+        // When
+        int size = UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[300], 1000), m_dictionary);
+        size += UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[1], 1001), m_dictionary);
+
+        // Then
+        assertEquals(out.toByteArray().length, size);
+    }
+
+    @Test
+    public void shouldWriteDictionaryEntriesOnce() throws Exception {
+        // Given
+        UnsafeDataOutput out = new UnsafeDataOutput();
+        int first = UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[0], 0), m_dictionary);
+
+        // When
+        int second = UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[0], 1), m_dictionary);
+
+        // Then
+        assertTrue(second < first);
+        assertEquals(0, m_dictionary.getTypeId(TYPE_A));
+    }
+
+    @Test
+    public void shouldRebuildDictionaryFromFile() throws Exception {
+        // Given
+        UnsafeDataOutput out = new UnsafeDataOutput();
+        UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[]{1}, 0), m_dictionary);
+        UndoEntry.save(out, new UndoEntry(TYPE_B, new byte[]{2}, 1), m_dictionary);
+        File file = File.createTempFile("undo", ".bin");
+        Files.write(file.toPath(), out.toByteArray());
+
+        // When
+        UndoDictionary dictionary = new UndoDictionary();
+        IUndoEntry e1;
+        IUndoEntry e2;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            ChunkCacheStream stream = new ChunkCacheStream(raf);
+            e1 = UndoEntry.load(stream, UndoEntry.FORMAT_V2, dictionary);
+            e2 = UndoEntry.load(stream, UndoEntry.FORMAT_V3, dictionary);
+        } finally {
+            file.delete();
+        }
+
+        // Then
+        assertEquals(TYPE_A, e1.getType());
+        assertEquals(TYPE_B, e2.getType());
+        assertEquals(TYPE_B, dictionary.getType(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotReadV2EntryWithoutDictionary() throws Exception {
+        // Given
+        UnsafeDataOutput out = new UnsafeDataOutput();
+        UndoEntry.save(out, new UndoEntry(TYPE_A, new byte[]{1}, 0), m_dictionary);
+        File file = File.createTempFile("undo", ".bin");
+        Files.write(file.toPath(), out.toByteArray());
+
+        // When
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            UndoEntry.load(new ChunkCacheStream(raf), UndoEntry.FORMAT_V2, null);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
+import org.primesoft.asyncworldedit.api.inner.IChunkCacheStream;
+import org.primesoft.asyncworldedit.utils.io.BlockCompressedInputStream;
+import org.primesoft.asyncworldedit.utils.io.ChunkCacheStream;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class UndoFileWriterTest {
+    private final static String TYPE = "com.sk89q.worldedit.history.change.BlockChange";
+
+    private File m_file;
+    private UndoDescriptor m_descriptor;
+
+    @Before
+    public void init() throws Exception {
+        m_file = File.createTempFile("undo", ".bin");
+        m_file.delete();
+        m_descriptor = new UndoDescriptor(m_file);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        m_descriptor.closeWriter();
+        m_file.delete();
+        new File(m_file.getPath() + UndoManifest.SUFFIX_IDX).delete();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedWriter() {
+        // Given
+        Map<String, Object> lru = new LinkedHashMap<>(16, 0.75f, true);
+        SerializerManager.markUsed(lru, "a", 3);
+        SerializerManager.markUsed(lru, "b", 3);
+        SerializerManager.markUsed(lru, "c", 3);
+
+        // When
+        List<String> touched = SerializerManager.markUsed(lru, "a", 3);
+        List<String> evicted = SerializerManager.markUsed(lru, "d", 3);
+
+        // Then
+        assertTrue(touched.isEmpty());
+        assertEquals(Arrays.asList("b"), evicted);
+        assertEquals(Arrays.asList("c", "a", "d"), new ArrayList<>(lru.keySet()));
+    }
+
+    @Test
+    public void shouldAppendDataAfterReopen() throws Exception {
+        // Given
+        write(new UndoEntry(TYPE, new byte[]{1, 2}, 0));
+        m_descriptor.closeWriter();
+
+        // When
+        write(new UndoEntry(TYPE, new byte[]{3}, 1));
+        m_descriptor.closeWriter();
+
+        // Then
+        try (RandomAccessFile raf = new RandomAccessFile(m_file, "r")) {
+            ChunkCacheStream stream = new ChunkCacheStream(raf);
+            int format = UndoEntry.readHeader(stream);
+            IChunkCacheStream data = new BlockCompressedInputStream(stream, stream.getFilePointer());
+            UndoDictionary dictionary = new UndoDictionary();
+
+            IUndoEntry e1 = UndoEntry.load(data, format, dictionary);
+            IUndoEntry e2 = UndoEntry.load(data, format, dictionary);
+            IUndoEntry e3 = UndoEntry.load(data, format, dictionary);
+
+            assertEquals(UndoEntry.FORMAT_V3, format);
+            assertArrayEquals(new byte[]{1, 2}, e1.getData());
+            assertArrayEquals(new byte[]{3}, e2.getData());
+            assertEquals(TYPE, e2.getType());
+            assertNull(e3);
+        }
+    }
+
+    @Test
+    public void shouldReuseBuffersAfterReopen() throws Exception {
+        // Given
+        m_descriptor.getWriter(1);
+        m_descriptor.closeWriter();
+        int dataPooled = UndoFileWriter.DATA_BUFFERS.size();
+        int idxPooled = UndoFileWriter.IDX_BUFFERS.size();
+
+        // When
+        m_descriptor.getWriter(1);
+
+        // Then
+        assertTrue(dataPooled > 0);
+        assertTrue(idxPooled > 0);
+        assertEquals(dataPooled - 1, UndoFileWriter.DATA_BUFFERS.size());
+        assertEquals(idxPooled - 1, UndoFileWriter.IDX_BUFFERS.size());
+    }
+
+    private void write(IUndoEntry entry) throws Exception {
+        UndoFileWriter writer = m_descriptor.getWriter(1);
+        UndoEntry.save(writer.getDataStream(), entry, m_descriptor.getDictionary());
+        writer.commit();
+    }
+}
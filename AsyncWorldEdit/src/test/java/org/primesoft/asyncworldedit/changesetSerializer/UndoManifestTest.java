@@ -0,0 +1,196 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class UndoManifestTest {
+
+    private final static UUID PLAYER_A = UUID.randomUUID();
+    private final static UUID PLAYER_B = UUID.randomUUID();
+
+    private File m_folder;
+
+    @Before
+    public void init() throws IOException {
+        m_folder = Files.createTempDirectory("awe-undo").toFile();
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        try (Stream<File> files = Files.walk(m_folder.toPath()).map(i -> i.toFile())) {
+            files.sorted(Comparator.reverseOrder()).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void shouldRestoreStateFromManifest() {
+        // Given
+        UndoManifest manifest = new UndoManifest(m_folder);
+        File f1 = undoFile(PLAYER_A, 100);
+        File f2 = undoFile(PLAYER_A, 200);
+        File f3 = undoFile(PLAYER_B, 300);
+        manifest.opened(f1, 100);
+        manifest.opened(f2, 200);
+        manifest.opened(f3, 300);
+        manifest.closed(f1, 10);
+        manifest.closed(f2, 20);
+        manifest.closed(f3, 30);
+        manifest.removed(f2);
+
+        // When
+        UndoManifest result = new UndoManifest(m_folder);
+
+        // Then
+        assertEquals(Arrays.asList(f1, f3), result.getFiles());
+        assertEquals(10, result.getSize(PLAYER_A));
+        assertEquals(30, result.getSize(PLAYER_B));
+        assertEquals(40, result.getTotalSize());
+    }
+
+    @Test
+    public void shouldReturnExpiredFilesOldestFirst() {
+        // Given
+        UndoManifest manifest = new UndoManifest(m_folder);
+        File f1 = undoFile(PLAYER_A, 300);
+        File f2 = undoFile(PLAYER_B, 100);
+        File f3 = undoFile(PLAYER_A, 200);
+        manifest.opened(f1, 300);
+        manifest.opened(f2, 100);
+        manifest.opened(f3, 200);
+
+        // When
+        UndoManifest result = new UndoManifest(m_folder);
+
+        // Then
+        assertEquals(Arrays.asList(f2, f3), result.getFiles(200));
+        assertEquals(0, result.getFiles(99).size());
+    }
+
+    @Test
+    public void shouldBuildManifestFromUndoFolder() throws IOException {
+        // Given
+        File f1 = undoFile(PLAYER_A, 0x100);
+        File f2 = undoFile(PLAYER_B, 0x200);
+        write(f1, 100);
+        write(new File(f1.getPath() + ".idx"), 5);
+        write(f2, 50);
+
+        // When
+        UndoManifest result = new UndoManifest(m_folder);
+
+        // Then
+        assertEquals(Arrays.asList(f1, f2), result.getFiles());
+        assertEquals(105, result.getSize(PLAYER_A));
+        assertEquals(155, result.getTotalSize());
+        assertTrue(new File(m_folder, UndoManifest.FILE_NAME).exists());
+    }
+
+    @Test
+    public void shouldIgnoreRootUndoFiles() throws IOException {
+        // Given
+        File f1 = undoFile(PLAYER_A, 0x100);
+        write(f1, 100);
+        write(new File(m_folder, "ts.200.0.0"), 50);
+
+        // When
+        UndoManifest result = new UndoManifest(m_folder);
+
+        // Then
+        assertEquals(Arrays.asList(f1), result.getFiles());
+        assertEquals(100, result.getTotalSize());
+    }
+
+    @Test
+    public void shouldIgnorePartialRecord() throws IOException {
+        // Given
+        UndoManifest manifest = new UndoManifest(m_folder);
+        File f1 = undoFile(PLAYER_A, 100);
+        manifest.opened(f1, 100);
+        manifest.closed(f1, 10);
+        try (FileOutputStream out = new FileOutputStream(new File(m_folder, UndoManifest.FILE_NAME), true)) {
+            out.write(new byte[]{0, 0, 10, 'a'});
+        }
+
+        // When
+        UndoManifest result = new UndoManifest(m_folder);
+        File f2 = undoFile(PLAYER_A, 200);
+        result.opened(f2, 200);
+
+        // Then
+        assertEquals(Arrays.asList(f1, f2), new UndoManifest(m_folder).getFiles());
+        assertEquals(10, result.getTotalSize());
+    }
+
+    private File undoFile(UUID player, long timestamp) {
+        return new File(new File(m_folder, player.toString()),
+                String.format("ts.%1$s.0.0", Long.toHexString(timestamp)));
+    }
+
+    private static void write(File file, int size) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer.iterators;
+
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.blockPlacer.BlockPlacerChange;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkOrderedIteratorTest {
+
+    @Test
+    public void shouldGroupChangesByChunk() {
+        // Given
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            //Alternate between chunk (0, 0), (-1, 0) and (1, 2)
+            int x = (i % 3 == 0) ? i % 16 : (i % 3 == 1 ? -1 - i % 16 : 16 + i % 16);
+            int z = (i % 3 == 2) ? 32 : 0;
+            changes.add(wrap(blockChange(x, i, z), false));
+        }
+        changes.add(5, null);
+
+        // When
+        List<Change> result = readAll(new ChunkOrderedIterator(changes.iterator(), 64));
+
+        // Then
+        changes.remove(5);
+        Assert.assertEquals("Changes", changes.size(), result.size());
+        Assert.assertEquals("Chunk switches", 2, countChunkSwitches(result));
+        for (int i = 1; i < result.size(); i++) {
+            if (chunk(result.get(i - 1)) == chunk(result.get(i))) {
+                Assert.assertTrue("Order in chunk", changes.indexOf(result.get(i - 1)) < changes.indexOf(result.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotReorderAcrossBarriers() {
+        // Given
+        Change c1 = wrap(blockChange(0, 0, 0), false);
+        Change c2 = wrap(blockChange(100, 0, 0), false);
+        Change c3 = wrap(blockChange(0, 1, 0), false);
+        Change barrier = wrap(blockChange(100, 1, 0), true);
+        Change c4 = wrap(blockChange(0, 2, 0), false);
+        Change other = Mockito.mock(Change.class);
+        Change c5 = wrap(blockChange(100, 2, 0), false);
+
+        // When
+        List<Change> result = readAll(new ChunkOrderedIterator(
+                Arrays.asList(c1, c2, c3, barrier, c4, other, c5).iterator(), 64));
+
+        // Then
+        Assert.assertEquals(7, result.size());
+        Assert.assertEquals("Barrier", 3, result.indexOf(barrier));
+        Assert.assertEquals("Other change", 5, result.indexOf(other));
+        Assert.assertTrue("c1 before c3", result.indexOf(c1) < result.indexOf(c3));
+        Assert.assertTrue("c1 and c3 grouped", Math.abs(result.indexOf(c1) - result.indexOf(c3)) == 1);
+        Assert.assertEquals("c4", 4, result.indexOf(c4));
+        Assert.assertEquals("c5", 6, result.indexOf(c5));
+    }
+
+    @Test
+    public void shouldReturnAllChangesWithSmallWindow() {
+        // Given
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            changes.add(blockChange((i & 1) * 16, i, 0));
+        }
+
+        // When
+        List<Change> result = readAll(new ChunkOrderedIterator(changes.iterator(), 10));
+
+        // Then
+        Assert.assertEquals("Changes", changes.size(), result.size());
+        Assert.assertEquals("Chunk switches", 19, countChunkSwitches(result));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue("Window", result.subList(i * 10, i * 10 + 10).containsAll(changes.subList(i * 10, i * 10 + 10)));
+        }
+    }
+
+    private static List<Change> readAll(ChunkOrderedIterator iterator) {
+        List<Change> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        iterator.dispose();
+
+        return result;
+    }
+
+    private static int countChunkSwitches(List<Change> changes) {
+        int result = 0;
+        for (int i = 1; i < changes.size(); i++) {
+            if (chunk(changes.get(i - 1)) != chunk(changes.get(i))) {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    private static long chunk(Change change) {
+        BlockVector3 position = ChunkOrderedIterator.getPosition(change);
+        return ((long) (position.getBlockX() >> 4) << 32) | ((position.getBlockZ() >> 4) & 0xffffffffL);
+    }
+
+    private static Change blockChange(int x, int y, int z) {
+        return new BlockChange(BlockVector3.at(x, y, z),
+                Mockito.mock(BlockStateHolder.class), Mockito.mock(BlockStateHolder.class));
+    }
+
+    private static Change wrap(Change change, boolean isDemanding) {
+        return new BlockPlacerChange(change, null, isDemanding);
+    }
+}
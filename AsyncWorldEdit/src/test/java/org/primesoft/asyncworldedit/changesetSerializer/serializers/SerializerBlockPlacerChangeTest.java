@@ -0,0 +1,152 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.changesetSerializer.serializers;
+
+import com.sk89q.worldedit.history.change.Change;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.blockPlacer.IBlockPlacer;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IMemoryStorage;
+import org.primesoft.asyncworldedit.api.changesetSerializer.ISerializerManager;
+import org.primesoft.asyncworldedit.api.changesetSerializer.IUndoEntry;
+import org.primesoft.asyncworldedit.blockPlacer.BlockPlacerChange;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDescriptor;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoDictionary;
+import org.primesoft.asyncworldedit.changesetSerializer.UndoEntry;
+import org.primesoft.asyncworldedit.utils.Compression;
+import org.primesoft.asyncworldedit.utils.io.UnsafeDataOutput;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class SerializerBlockPlacerChangeTest {
+
+    private final static String TYPE = "com.sk89q.worldedit.history.change.BlockChange";
+    private final static byte[] DATA = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+
+    private ISerializerManager m_serializerManager;
+    private Change m_subChange;
+    private SerializerBlockPlacerChange m_serializer;
+
+    @Before
+    public void init() {
+        m_serializerManager = Mockito.mock(ISerializerManager.class);
+        m_subChange = Mockito.mock(Change.class);
+        m_serializer = new SerializerBlockPlacerChange(m_serializerManager, Mockito.mock(IBlockPlacer.class));
+
+        Mockito.when(m_serializerManager.serialize(Mockito.any(Change.class), Mockito.any(IMemoryStorage.class)))
+                .thenReturn(UndoEntry.create(TYPE, DATA));
+        Mockito.when(m_serializerManager.deserialize(Mockito.any(IUndoEntry.class), Mockito.any(IMemoryStorage.class)))
+                .thenAnswer(i -> {
+                    IUndoEntry entry = (IUndoEntry) i.getArguments()[0];
+                    return TYPE.equals(entry.getType()) && Arrays.equals(DATA, entry.getData()) ? m_subChange : null;
+                });
+    }
+
+    @Test
+    public void shouldStoreTypeAsDictionaryId() {
+        // Given
+        IMemoryStorage storage = mockStorage(new UndoDictionary());
+
+        // When
+        byte[] data = m_serializer.serialize(new BlockPlacerChange(m_subChange, null, true), storage);
+        BlockPlacerChange result = (BlockPlacerChange) m_serializer.deserialize(data, storage);
+
+        // Then
+        Assert.assertEquals("Serialized size", 3 + DATA.length, data.length);
+        Assert.assertTrue("Is demanding", result.isDemanding());
+        Assert.assertSame("Sub change", m_subChange, result.getChange());
+    }
+
+    @Test
+    public void shouldStoreTypeNameWithoutDictionary() {
+        // When
+        byte[] data = m_serializer.serialize(new BlockPlacerChange(m_subChange, null, false), null);
+        BlockPlacerChange result = (BlockPlacerChange) m_serializer.deserialize(data, null);
+
+        // Then
+        Assert.assertFalse("Is demanding", result.isDemanding());
+        Assert.assertSame("Sub change", m_subChange, result.getChange());
+    }
+
+    @Test
+    public void shouldReadLegacyFormat() throws Exception {
+        // Given
+        IMemoryStorage storage = mockStorage(new UndoDictionary());
+        byte[] data = serializeLegacy(true, UndoEntry.create(TYPE, DATA), storage);
+
+        // When
+        BlockPlacerChange result = (BlockPlacerChange) m_serializer.deserialize(data, storage);
+
+        // Then
+        Assert.assertTrue("Is demanding", result.isDemanding());
+        Assert.assertSame("Sub change", m_subChange, result.getChange());
+    }
+
+    /**
+     * Serialize the change using the legacy (nested and compressed) format
+     */
+    private static byte[] serializeLegacy(boolean isDemanding, IUndoEntry entry, IMemoryStorage storage) throws Exception {
+        UnsafeDataOutput stream = new UnsafeDataOutput();
+        stream.writeBoolean(isDemanding);
+        stream.writeBoolean(true);
+        UndoEntry.save(stream, entry, UndoDictionary.fromStorage(storage));
+
+        return Compression.compress(stream.toByteArray());
+    }
+
+    private static IMemoryStorage mockStorage(UndoDictionary dictionary) {
+        UndoDescriptor storage = Mockito.mock(UndoDescriptor.class);
+        Mockito.when(storage.getDictionary()).thenReturn(dictionary);
+        return storage;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.configuration.update;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.platform.api.IConfiguration;
+import org.primesoft.asyncworldedit.platform.api.IConfigurationSection;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ConfigUpdater_v23_v24Test {
+    @Test
+    public void shouldSetDefaultsAndVersion() {
+        // Given
+        MapConfiguration config = new MapConfiguration("");
+        config.createSection("awe");
+
+        // When
+        int result = new ConfigUpdater_v23_v24().updateConfig(config);
+
+        // Then
+        IConfigurationSection awe = config.getConfigurationSection("awe");
+        Assert.assertEquals("Result", 24, result);
+        Assert.assertEquals("Version", 24, awe.get("version"));
+        Assert.assertEquals("Batch size", 256, awe.getConfigurationSection("rendering").get("batch-size"));
+        Assert.assertEquals("Chunk order window", 4096, awe.getConfigurationSection("undo").get("chunkOrderWindow"));
+        Assert.assertEquals("Relight threads", 2, awe.getConfigurationSection("directChunk").get("relightThreads"));
+    }
+
+    @Test
+    public void shouldKeepExistingValues() {
+        // Given
+        MapConfiguration config = new MapConfiguration("");
+        config.createSection("awe");
+        IConfigurationSection awe = config.getConfigurationSection("awe");
+        awe.createSection("rendering");
+        awe.getConfigurationSection("rendering").set("batch-size", 32);
+
+        // When
+        new ConfigUpdater_v23_v24().updateConfig(config);
+
+        // Then
+        Assert.assertEquals("Batch size", 32, awe.getConfigurationSection("rendering").get("batch-size"));
+    }
+
+    @Test
+    public void shouldRemoveGcTimeout() {
+        // Given
+        MapConfiguration config = new MapConfiguration("");
+        config.createSection("awe");
+        IConfigurationSection awe = config.getConfigurationSection("awe");
+        awe.createSection("memory");
+        awe.getConfigurationSection("memory").set("gcTimeout", 1000);
+
+        // When
+        new ConfigUpdater_v23_v24().updateConfig(config);
+
+        // Then
+        Assert.assertFalse("gcTimeout", awe.getConfigurationSection("memory").contains("gcTimeout"));
+    }
+
+    @Test
+    public void shouldFailWithoutMainSection() {
+        // Given
+        MapConfiguration config = new MapConfiguration("");
+
+        // When
+        int result = new ConfigUpdater_v23_v24().updateConfig(config);
+
+        // Then
+        Assert.assertEquals("Result", -1, result);
+    }
+
+    /**
+     * Simple in memory configuration
+     */
+    private static class MapConfiguration implements IConfiguration {
+        private final String m_name;
+        private final Map<String, Object> m_values = new LinkedHashMap<>();
+
+        MapConfiguration(String name) {
+            m_name = name;
+        }
+
+        @Override
+        public String getName() {
+            return m_name;
+        }
+
+        @Override
+        public IConfigurationSection getConfigurationSection(String node) {
+            Object result = m_values.get(node);
+            return result instanceof IConfigurationSection ? (IConfigurationSection) result : null;
+        }
+
+        @Override
+        public boolean contains(String node) {
+            return m_values.containsKey(node);
+        }
+
+        @Override
+        public void set(String node, Object value) {
+            if (value == null) {
+                m_values.remove(node);
+            } else {
+                m_values.put(node, value);
+            }
+        }
+
+        @Override
+        public void createSection(String name) {
+            m_values.put(name, new MapConfiguration(name));
+        }
+
+        @Override
+        public Object get(String node) {
+            return m_values.get(node);
+        }
+
+        @Override
+        public Object get(String node, Object defaultValue) {
+            return m_values.containsKey(node) ? m_values.get(node) : defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(String node, boolean defaultValue) {
+            return (Boolean) get(node, defaultValue);
+        }
+
+        @Override
+        public int getInt(String node, int defaultValue) {
+            return (Integer) get(node, defaultValue);
+        }
+
+        @Override
+        public long getLong(String node, long defaultValue) {
+            return ((Number) get(node, defaultValue)).longValue();
+        }
+
+        @Override
+        public String getString(String node, String defaultValue) {
+            return (String) get(node, defaultValue);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<Integer> getIntegerList(String node) {
+            return (List<Integer>) get(node);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<String> getStringList(String node) {
+            return (List<String>) get(node);
+        }
+
+        @Override
+        public Set<String> getSubNodes() {
+            return m_values.keySet();
+        }
+
+        @Override
+        public File getDataFolder() {
+            return null;
+        }
+
+        @Override
+        public void save() {
+        }
+    }
+}
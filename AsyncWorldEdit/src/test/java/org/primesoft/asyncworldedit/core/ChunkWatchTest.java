@@ -0,0 +1,132 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkWatchTest {
+
+    private final static String WORLD = "world";
+
+    private static class TestChunkWatch extends ChunkWatch {
+
+        private final AtomicInteger m_forceloaded = new AtomicInteger();
+
+        @Override
+        public void registerEvents() {
+        }
+
+        @Override
+        protected boolean doLoadChunk(int cx, int cz, String worldName) {
+            return true;
+        }
+
+        @Override
+        protected void forceloadOff(String world, int cx, int cz) {
+            m_forceloaded.decrementAndGet();
+        }
+
+        @Override
+        protected void forceloadOn(String world, int cx, int cz) {
+            m_forceloaded.incrementAndGet();
+        }
+
+        @Override
+        protected boolean supportUnloadCancel() {
+            return true;
+        }
+    }
+
+    @Test
+    public void shouldForceloadOnce() {
+        // Given
+        TestChunkWatch watch = new TestChunkWatch();
+
+        // When
+        watch.add(10, -3, WORLD);
+        watch.add(10, -3, WORLD);
+        watch.remove(10, -3, WORLD);
+
+        // Then
+        assertEquals(1, watch.m_forceloaded.get());
+        assertEquals(1, watch.getReferences(WORLD, 10, -3));
+        assertTrue(watch.chunkUnloading(WORLD, 10, -3));
+
+        // When
+        watch.remove(10, -3, WORLD);
+        watch.remove(10, -3, WORLD);
+
+        // Then
+        assertEquals(0, watch.m_forceloaded.get());
+        assertEquals(0, watch.getReferences(WORLD, 10, -3));
+    }
+
+    @Test
+    public void shouldTrackLoadedChunks() {
+        // Given
+        TestChunkWatch watch = new TestChunkWatch();
+
+        // When
+        watch.setChunkLoaded(1, 2, WORLD);
+        watch.setChunkLoaded(-1, -2, WORLD);
+        watch.setChunkUnloaded(-1, -2, WORLD);
+
+        // Then
+        assertTrue(watch.isChunkLoaded(1, 2, WORLD));
+        assertFalse(watch.isChunkLoaded(-1, -2, WORLD));
+        assertFalse(watch.isChunkLoaded(1, 2, "other"));
+        assertFalse(watch.chunkUnloading(WORLD, 1, 2));
+        assertFalse(watch.isChunkLoaded(1, 2, WORLD));
+    }
+}
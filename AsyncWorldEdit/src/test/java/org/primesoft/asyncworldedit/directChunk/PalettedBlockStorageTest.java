@@ -0,0 +1,135 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class PalettedBlockStorageTest {
+
+    @Test
+    public void shouldStoreSingleValue() {
+        // Given
+        PalettedBlockStorage storage = new PalettedBlockStorage(new int[PalettedBlockStorage.SIZE]);
+
+        // When
+        storage.set(100, 0);
+
+        // Then
+        assertEquals(0, storage.getBits());
+        assertEquals(0, storage.get(4095));
+    }
+
+    @Test
+    public void shouldGrowBitsWithPalette() {
+        // Given
+        PalettedBlockStorage storage = new PalettedBlockStorage(7);
+
+        // When
+        for (int i = 0; i < 17; i++) {
+            storage.set(i * 200, 1000 + i);
+        }
+
+        // Then
+        assertEquals(5, storage.getBits());
+        assertEquals(18, storage.getPaletteSize());
+        assertEquals(7, storage.get(1));
+        for (int i = 0; i < 17; i++) {
+            assertEquals(1000 + i, storage.get(i * 200));
+        }
+    }
+
+    @Test
+    public void shouldFallBackToArray() {
+        // Given
+        Random rnd = new Random(1);
+        int[] ids = new int[PalettedBlockStorage.SIZE];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rnd.nextInt(1000);
+        }
+
+        // When
+        PalettedBlockStorage storage = new PalettedBlockStorage(ids);
+        storage.set(5, 123456);
+
+        // Then
+        assertEquals(32, storage.getBits());
+        ids[5] = 123456;
+        assertArrayEquals(ids, storage.toArray());
+    }
+
+    @Test
+    public void shouldMatchArray() {
+        // Given
+        Random rnd = new Random(2);
+        int[] ids = new int[PalettedBlockStorage.SIZE];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = rnd.nextInt(10) == 0 ? rnd.nextInt(40) : 1;
+        }
+        PalettedBlockStorage storage = new PalettedBlockStorage(ids);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            int idx = rnd.nextInt(ids.length);
+            ids[idx] = rnd.nextInt(60);
+            storage.set(idx, ids[idx]);
+        }
+
+        // Then
+        assertTrue(storage.getBits() <= 6);
+        assertArrayEquals(ids, storage.toArray());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], storage.get(i));
+        }
+    }
+}
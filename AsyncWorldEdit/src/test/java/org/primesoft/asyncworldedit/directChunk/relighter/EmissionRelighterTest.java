@@ -0,0 +1,255 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk.relighter;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.util.BitSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class EmissionRelighterTest {
+
+    private final static int AIR = 0;
+    private final static int STONE = 1;
+    private final static int GLOWSTONE = 89;
+
+    private TestChunkData[] m_chunks;
+    private RelightContext m_context;
+    private EmissionRelighter m_relighter;
+
+    @Before
+    public void setUp() {
+        IDirectChunkAPI dcApi = Mockito.mock(IDirectChunkAPI.class);
+        Mockito.when(dcApi.getLightEmissionLevel(Mockito.anyInt())).thenAnswer(
+                i -> (byte) ((Integer) i.getArguments()[0] == GLOWSTONE ? 15 : 0));
+        Mockito.when(dcApi.getOpacityLevel(Mockito.anyInt())).thenAnswer(
+                i -> (short) ((Integer) i.getArguments()[0] == STONE ? 15 : 0));
+
+        m_chunks = new TestChunkData[9];
+        m_context = new RelightContext(dcApi);
+        m_relighter = new EmissionRelighter(dcApi);
+    }
+
+    @Test
+    public void shouldSpreadLightFromSource() {
+        // Given
+        BitSet blocks = new BitSet();
+        setBlock(blocks, 8, 64, 8, GLOWSTONE);
+        setBlock(blocks, 8, 64, 10, STONE);
+
+        // When
+        relight(blocks);
+
+        // Then
+        assertEquals(15, getLight(8, 64, 8));
+        assertEquals(12, getLight(11, 64, 8));
+        assertEquals(0, getLight(8, 64, 10));
+        assertEquals(10, getLight(8, 64, 11));
+        assertEquals(1, getLight(22, 64, 8));
+        assertEquals(0, getLight(23, 64, 8));
+    }
+
+    @Test
+    public void shouldRemoveLight() {
+        // Given
+        BitSet blocks = new BitSet();
+        setBlock(blocks, 8, 64, 8, GLOWSTONE);
+        relight(blocks);
+
+        // When
+        blocks.clear();
+        setBlock(blocks, 8, 64, 8, AIR);
+        relight(blocks);
+
+        // Then
+        for (TestChunkData chunk : m_chunks) {
+            for (byte light : chunk.m_emission) {
+                assertEquals(0, light);
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepLightFromOtherSources() {
+        // Given
+        BitSet blocks = new BitSet();
+        setBlock(blocks, 4, 64, 8, GLOWSTONE);
+        setBlock(blocks, 10, 64, 8, GLOWSTONE);
+        relight(blocks);
+
+        // When
+        blocks.clear();
+        setBlock(blocks, 10, 64, 8, AIR);
+        relight(blocks);
+
+        // Then
+        assertEquals(15, getLight(4, 64, 8));
+        assertEquals(9, getLight(10, 64, 8));
+        assertEquals(3, getLight(16, 64, 8));
+    }
+
+    /**
+     * Set block in the center chunk and mark it as changed
+     */
+    private void setBlock(BitSet blocks, int x, int y, int z, int id) {
+        getChunk(16 + x, 16 + z).setBlock(x, y, z, id);
+        blocks.set(BlockReligher.encodePosition(x, y, z) & 0xffff);
+    }
+
+    /**
+     * Get the emission light, the coordinates are relative to the center chunk
+     */
+    private int getLight(int x, int y, int z) {
+        return getChunk(16 + x, 16 + z).getEmissionLight(x & 0xf, y, z & 0xf);
+    }
+
+    private TestChunkData getChunk(int x, int z) {
+        int idx = (x >> 4) + (z >> 4) * 3;
+        if (m_chunks[idx] == null) {
+            m_chunks[idx] = new TestChunkData();
+        }
+
+        return m_chunks[idx];
+    }
+
+    private void relight(BitSet blocks) {
+        for (int i = 0; i < 9; i++) {
+            IWrappedChunk chunk = Mockito.mock(IWrappedChunk.class);
+            Mockito.when(chunk.getDirectDataManipulator()).thenReturn(getChunk((i % 3) * 16, (i / 3) * 16));
+
+            m_context.setChunk(i, chunk);
+        }
+
+        m_relighter.relight(m_context, blocks);
+        m_context.reset();
+    }
+
+    private static class TestChunkData implements IDirectChunkData {
+
+        private final int[] m_blocks = new int[0x10000];
+        private final byte[] m_emission = new byte[0x10000];
+        private final byte[] m_sky = new byte[0x10000];
+
+        private static int index(int x, int y, int z) {
+            return (x & 0xf) | ((z & 0xf) << 4) | ((y & 0xff) << 8);
+        }
+
+        @Override
+        public IWrappedChunk getChunk() {
+            return null;
+        }
+
+        @Override
+        public byte getEmissionLight(int x, int y, int z) {
+            return m_emission[index(x, y, z)];
+        }
+
+        @Override
+        public byte getSkyLight(int x, int y, int z) {
+            return m_sky[index(x, y, z)];
+        }
+
+        @Override
+        public String getMaterial(int x, int y, int z) {
+            return null;
+        }
+
+        @Override
+        public int getRawBlockData(int x, int y, int z) {
+            return m_blocks[index(x, y, z)];
+        }
+
+        @Override
+        public void setEmissionLight(int x, int y, int z, byte lightLevel) {
+            m_emission[index(x, y, z)] = lightLevel;
+        }
+
+        @Override
+        public void setSkyLight(int x, int y, int z, byte lightLevel) {
+            m_sky[index(x, y, z)] = lightLevel;
+        }
+
+        @Override
+        public void setBlock(int x, int y, int z, int id) {
+            m_blocks[index(x, y, z)] = id;
+        }
+
+        @Override
+        public void setBlockAndEmission(int x, int y, int z, int id, byte emission) {
+            setBlock(x, y, z, id);
+            setEmissionLight(x, y, z, emission);
+        }
+
+        @Override
+        public int getBiome(int x, int z) {
+            return 0;
+        }
+
+        @Override
+        public void setBiome(int x, int z, int biome) {
+        }
+
+        @Override
+        public BlockVector2 getChunkCoords() {
+            return null;
+        }
+
+        @Override
+        public void setChunkCoords(BlockVector2 coords) {
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.directChunk.relighter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.IWorld;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class QueueEntryTest {
+
+    private QueueEntry m_queue;
+
+    @Before
+    public void setUp() {
+        m_queue = new QueueEntry(Mockito.mock(IWorld.class));
+    }
+
+    @Test
+    public void shouldMergeBlocksQueuedInSameChunk() {
+        // Given
+        assertTrue(m_queue.queueBlock(0, 10, 0));
+        assertTrue(m_queue.queueBlock(1, 10, 0));
+        assertFalse(m_queue.queueBlock(0, 10, 0));
+
+        // When
+        RelightJob job = m_queue.poll();
+
+        // Then
+        assertNotNull(job);
+        assertEquals(0, job.getChunkX());
+        assertEquals(0, job.getChunkZ());
+        assertEquals(2, job.getBlocks().cardinality());
+        assertTrue(m_queue.isEmpty());
+    }
+
+    @Test
+    public void shouldRefuseAdjacentChunkWhileInProgress() {
+        // Given
+        m_queue.queueBlock(0, 10, 0);
+        m_queue.queueBlock(16, 10, 16);
+        RelightJob first = m_queue.poll();
+
+        // When
+        RelightJob second = m_queue.poll();
+
+        // Then
+        assertNotNull(first);
+        assertNull(second);
+        assertFalse(m_queue.isEmpty());
+    }
+
+    @Test
+    public void shouldPollChunkOutsideNeighbourhood() {
+        // Given
+        m_queue.queueBlock(0, 10, 0);
+        m_queue.queueBlock(16, 10, 0);
+        m_queue.queueBlock(16 * 3, 10, 0);
+        m_queue.poll();
+
+        // When
+        RelightJob job = m_queue.poll();
+
+        // Then
+        assertNotNull(job);
+        assertEquals(3, job.getChunkX());
+        assertFalse(m_queue.isEmpty());
+    }
+
+    @Test
+    public void shouldReleaseChunkOnDone() {
+        // Given
+        m_queue.queueBlock(0, 10, 0);
+        m_queue.queueBlock(16, 10, 0);
+        RelightJob first = m_queue.poll();
+
+        // When
+        m_queue.done(first.getChunkX(), first.getChunkZ());
+        RelightJob second = m_queue.poll();
+
+        // Then
+        assertNotNull(second);
+        assertEquals(1, second.getChunkX());
+        assertEquals(0, second.getChunkZ());
+        assertTrue(m_queue.isEmpty());
+    }
+
+    @Test
+    public void shouldNotPollRequeuedChunkWhileInProgress() {
+        // Given
+        m_queue.queueBlock(0, 10, 0);
+        RelightJob first = m_queue.poll();
+        assertTrue(m_queue.queueBlock(1, 10, 0));
+
+        // When
+        RelightJob second = m_queue.poll();
+        m_queue.done(first.getChunkX(), first.getChunkZ());
+        RelightJob third = m_queue.poll();
+
+        // Then
+        assertNull(second);
+        assertNotNull(third);
+        assertEquals(0, third.getChunkX());
+        assertEquals(0, third.getChunkZ());
+        assertEquals(1, third.getBlocks().cardinality());
+        assertTrue(third.getBlocks().get(BlockReligher.encodePosition(1, 10, 0) & 0xffff));
+        assertNotSame(first.getBlocks(), third.getBlocks());
+        assertTrue(m_queue.isEmpty());
+    }
+
+    @Test
+    public void shouldKeepQueueOrderWhenReusingSlots() {
+        // Given
+        for (int i = 0; i < 20; i++) {
+            m_queue.queueBlock(i * 16 * 3, 10, 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            RelightJob job = m_queue.poll();
+            m_queue.done(job.getChunkX(), job.getChunkZ());
+        }
+        m_queue.queueBlock(16 * 3, 10, 0);
+        m_queue.queueBlock(0, 10, 16 * 3);
+
+        // When
+        RelightJob first = m_queue.poll();
+        RelightJob second = m_queue.poll();
+
+        // Then
+        assertEquals(3, first.getChunkX());
+        assertEquals(0, first.getChunkZ());
+        assertEquals(0, second.getChunkX());
+        assertEquals(3, second.getChunkZ());
+        assertEquals(1, first.getBlocks().cardinality());
+        assertEquals(1, second.getBlocks().cardinality());
+        assertNull(m_queue.poll());
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.taskdispatcher;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IChunkWatch;
+import org.primesoft.asyncworldedit.api.utils.IAction;
+import org.primesoft.asyncworldedit.configuration.ConfigDispatcher;
+import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.primesoft.asyncworldedit.platform.api.IPlatform;
+import org.primesoft.asyncworldedit.platform.api.IScheduler;
+import org.primesoft.asyncworldedit.platform.api.ITask;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class TaskDispatcherTest {
+
+    private final static String WORLD = "world";
+
+    private final List<BlockVector2> m_chunks = Arrays.asList(BlockVector2.at(0, 0), BlockVector2.at(1, 0));
+
+    private Object m_oldConfig;
+    private IChunkWatch m_chunkWatch;
+    private ITask m_task;
+    private IWorld m_world;
+    private TaskDispatcher m_dispatcher;
+
+    @Before
+    public void init() throws Exception {
+        m_oldConfig = setDispatcherConfig(new ConfigDispatcher(null));
+
+        IAsyncWorldEditCore core = Mockito.mock(IAsyncWorldEditCore.class);
+        IPlatform platform = Mockito.mock(IPlatform.class);
+        IScheduler scheduler = Mockito.mock(IScheduler.class);
+        m_chunkWatch = Mockito.mock(IChunkWatch.class);
+        m_task = Mockito.mock(ITask.class);
+        m_world = Mockito.mock(IWorld.class);
+
+        Mockito.when(core.getPlatform()).thenReturn(platform);
+        Mockito.when(core.getChunkWatch()).thenReturn(m_chunkWatch);
+        Mockito.when(platform.getScheduler()).thenReturn(scheduler);
+        Mockito.when(scheduler.runTaskTimer(Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.anyLong())).thenReturn(m_task);
+        Mockito.when(m_world.getName()).thenReturn(WORLD);
+
+        m_dispatcher = new TaskDispatcher(core);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        setDispatcherConfig(m_oldConfig);
+    }
+
+    @Test
+    public void shouldRunBatchOnCallerWhenChunksAreLoaded() {
+        // Given
+        Mockito.when(m_chunkWatch.isChunkLoaded(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD))).thenReturn(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        CompletableFuture<Integer> result = m_dispatcher.performSafeBatch(m_world, m_chunks, calls::incrementAndGet);
+
+        // Then
+        assertTrue(result.isDone());
+        assertEquals(1, (int) result.join());
+        Mockito.verify(m_chunkWatch, Mockito.times(2)).add(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD));
+        Mockito.verify(m_chunkWatch, Mockito.times(2)).remove(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD));
+    }
+
+    @Test
+    public void shouldLoadChunksAndRunBatchInOneDispatcherRun() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> result = m_dispatcher.performSafeBatch(m_world, m_chunks, calls::incrementAndGet);
+        boolean doneBeforeRun = result.isDone();
+
+        // When
+        m_dispatcher.run();
+
+        // Then
+        assertFalse(doneBeforeRun);
+        assertTrue(result.isDone());
+        assertEquals(1, (int) result.join());
+        Mockito.verify(m_chunkWatch).loadChunk(0, 0, WORLD);
+        Mockito.verify(m_chunkWatch).loadChunk(1, 0, WORLD);
+        Mockito.verify(m_chunkWatch, Mockito.times(4)).add(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD));
+        Mockito.verify(m_chunkWatch, Mockito.times(4)).remove(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD));
+    }
+
+    @Test
+    public void shouldRunFailedChunkActionOnlyOnMainThread() throws Exception {
+        // Given
+        Mockito.when(m_chunkWatch.isChunkLoaded(Mockito.anyInt(), Mockito.anyInt(), Mockito.eq(WORLD))).thenReturn(true);
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicReference<Thread> successThread = new AtomicReference<>();
+        final AtomicReference<Integer> result = new AtomicReference<>();
+
+        Thread worker = new Thread(() -> result.set(m_dispatcher.performSafeChunk(new Object(), () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("Async access not available");
+            }
+
+            successThread.set(Thread.currentThread());
+            return calls.get();
+        }, m_world, m_chunks)));
+
+        // When
+        worker.start();
+        runUntilDone(worker);
+
+        // Then
+        assertEquals(2, calls.get());
+        assertEquals(2, (int) result.get());
+        assertSame(Thread.currentThread(), successThread.get());
+    }
+
+    @Test
+    public void shouldRethrowMainThreadException() throws Exception {
+        // Given
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread worker = new Thread(() -> {
+            try {
+                m_dispatcher.queueFastOperation((IAction) () -> {
+                    throw new IllegalStateException("Main thread failure");
+                });
+            } catch (IllegalStateException ex) {
+                error.set(ex);
+            }
+        });
+
+        // When
+        worker.start();
+        runUntilDone(worker);
+
+        // Then
+        assertNotNull(error.get());
+        assertEquals("Main thread failure", error.get().getMessage());
+    }
+
+    @Test
+    public void shouldNotWaitWhenQueueIsEmpty() {
+        // Given
+        final int runs = 100;
+        long start = System.nanoTime();
+
+        // When
+        for (int i = 0; i < runs; i++) {
+            m_dispatcher.run();
+        }
+
+        // Then
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue("Empty runs took " + elapsedMs + "ms", elapsedMs < runs);
+    }
+
+    @Test
+    public void shouldStopFastTaskWhenIdle() {
+        // Given
+        int maxIdle = ConfigProvider.dispatcher().getMaxIdle();
+
+        // When
+        for (int i = 0; i < maxIdle; i++) {
+            m_dispatcher.run();
+        }
+
+        // Then
+        Mockito.verify(m_task).cancel();
+    }
+
+    /**
+     * Run the dispatcher on the current thread until the worker finishes
+     *
+     * @param worker
+     * @throws InterruptedException
+     */
+    private void runUntilDone(Thread worker) throws InterruptedException {
+        final long timeout = System.currentTimeMillis() + 5000;
+        while (worker.isAlive() && System.currentTimeMillis() < timeout) {
+            m_dispatcher.run();
+            worker.join(1);
+        }
+
+        assertFalse(worker.isAlive());
+    }
+
+    private static Object setDispatcherConfig(Object config) throws Exception {
+        Field field = ConfigProvider.class.getDeclaredField("m_configDispatcher");
+        field.setAccessible(true);
+
+        Object result = field.get(null);
+        field.set(null, config);
+
+        return result;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class FieldAccessorTest {
+
+    private static class Target {
+
+        private String text = "a";
+        private int number = 1;
+        private boolean flag;
+        private final Object locked = "locked";
+
+        private int add(int a, int b) {
+            return a + b + number;
+        }
+    }
+
+    @Test
+    public void shouldGetAndSetObjectField() {
+        // Given
+        Target target = new Target();
+        FieldAccessor<String> accessor = Reflection.findFieldAccessor(Target.class, String.class, "text", "Unable to get text");
+
+        // When
+        String before = accessor.get(target);
+        boolean result = accessor.set(target, "b");
+
+        // Then
+        assertEquals("a", before);
+        assertTrue(result);
+        assertEquals("b", target.text);
+    }
+
+    @Test
+    public void shouldGetAndSetPrimitiveFields() {
+        // Given
+        Target target = new Target();
+        FieldAccessor<Integer> number = Reflection.findFieldAccessor(Target.class, int.class, "number", "Unable to get number");
+        FieldAccessor<Boolean> flag = Reflection.findFieldAccessor(Target.class, boolean.class, "flag", "Unable to get flag");
+
+        // When
+        number.setInt(target, 42);
+        flag.setBoolean(target, true);
+
+        // Then
+        assertEquals(42, number.getInt(target));
+        assertEquals(Integer.valueOf(42), number.get(target));
+        assertTrue(flag.getBoolean(target));
+    }
+
+    @Test
+    public void shouldSetFinalInstanceField() {
+        // Given
+        Target target = new Target();
+        FieldAccessor<Object> accessor = Reflection.findFieldAccessor(Target.class, Object.class, "locked", "Unable to get locked");
+
+        // When
+        boolean result = accessor.set(target, "unlocked");
+
+        // Then
+        assertTrue(result);
+        assertEquals("unlocked", accessor.get(target));
+    }
+
+    @Test
+    public void shouldInvokeMethod() {
+        // Given
+        Target target = new Target();
+        MethodAccessor accessor = Reflection.findMethodAccessor(Target.class, "add", "Unable to get add", int.class, int.class);
+
+        // When
+        Integer result = accessor.call(target, Integer.class, 2, 3);
+        boolean invoked = accessor.invoke(target, 2, 3);
+
+        // Then
+        assertEquals(Integer.valueOf(6), result);
+        assertTrue(invoked);
+    }
+}
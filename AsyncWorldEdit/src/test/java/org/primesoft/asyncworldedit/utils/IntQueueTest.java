@@ -1,6 +1,6 @@
 /*
  * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
- * Copyright (c) 2015, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
  * Copyright (c) AsyncWorldEdit contributors
  *
  * All rights reserved.
@@ -47,56 +47,49 @@
  */
 package org.primesoft.asyncworldedit.utils;
 
-import java.util.concurrent.atomic.AtomicLong;
-import static org.primesoft.asyncworldedit.LoggerProvider.log;
-import org.primesoft.asyncworldedit.configuration.ConfigProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
  * @author SBPrime
  */
-public class GCUtils {
+public class IntQueueTest {
 
-    private final static long CHECK = 100;
-
-    /**
-     * GC last run time
-     */
-    private static long m_lastRun = 0;
-
-    private static final AtomicLong m_lastCheck = new AtomicLong(-1);
-    private static volatile long m_lastFree = -1;
-
-    public static long getTotalAvailableMemory() {
-        final long now = System.currentTimeMillis();
-        final long previous = m_lastCheck.getAndSet(now);
-        if (now - previous >= CHECK) {
-            Runtime runtime = Runtime.getRuntime();
-            long free = runtime.freeMemory();
-            long total = runtime.totalMemory();
-            long max = runtime.maxMemory();
+    @Test
+    public void shouldKeepFifoOrderWhenGrowing() {
+        // Given
+        IntQueue queue = new IntQueue();
+        for (int i = 0; i < 10; i++) {
+            queue.add(i);
+        }
+        for (int i = 0; i < 5; i++) {
+            queue.poll();
+        }
 
-            m_lastFree = free - total + max;
+        // When
+        for (int i = 10; i < 100; i++) {
+            queue.add(i);
         }
 
-        return m_lastFree;
+        // Then
+        assertEquals(95, queue.size());
+        for (int i = 5; i < 100; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertTrue(queue.isEmpty());
     }
 
-    /**
-     * Force GC run
-     */
-    public static void GC() {
-        long now = System.currentTimeMillis();
-        long delta = now - m_lastRun;
-        long gcTimeout = ConfigProvider.memory().getGCTimeout();
-        if (delta < gcTimeout || gcTimeout <= 0) {
-            return;
-        }
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailOnEmptyQueue() {
+        // Given
+        IntQueue queue = new IntQueue();
+        queue.add(1);
+        queue.clear();
 
-        log(String.format("[GC] Free memory: %1$sMB, collecting...", getTotalAvailableMemory() / 1024 / 1024));
-        System.gc();
-        m_lastRun = System.currentTimeMillis();
+        // When
+        queue.poll();
 
-        log(String.format("[GC] ...time: %1$sms\tfree memory: %2$sMB.", m_lastRun - now, getTotalAvailableMemory() / 1024 / 1024));
+        // Then exception
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class MemoryMonitorTest {
+
+    private final List<MemoryPressure> m_levels = new ArrayList<>();
+
+    private final IMemoryPressureListener m_listener = (oldLevel, newLevel) -> m_levels.add(newLevel);
+
+    @Before
+    public void setUp() {
+        MemoryMonitor.initialize(1000, 2000);
+        MemoryMonitor.update(Long.MAX_VALUE);
+        MemoryMonitor.addListener(m_listener);
+    }
+
+    @After
+    public void tearDown() {
+        MemoryMonitor.removeListener(m_listener);
+        MemoryMonitor.stop();
+        MemoryMonitor.update(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldCalculateLevel() {
+        // Given
+        final long hard = 1000;
+        final long soft = 2000;
+
+        // When / Then
+        assertEquals(MemoryPressure.Hard, MemoryMonitor.getLevel(999, hard, soft));
+        assertEquals(MemoryPressure.Soft, MemoryMonitor.getLevel(1000, hard, soft));
+        assertEquals(MemoryPressure.Soft, MemoryMonitor.getLevel(1999, hard, soft));
+        assertEquals(MemoryPressure.Normal, MemoryMonitor.getLevel(2000, hard, soft));
+        assertEquals(MemoryPressure.Normal, MemoryMonitor.getLevel(0, -1, -1));
+    }
+
+    @Test
+    public void shouldNotifyOnlyOnLevelChange() {
+        // Given
+        MemoryMonitor.stop();
+
+        // When
+        MemoryMonitor.update(500);
+        MemoryMonitor.update(400);
+        MemoryMonitor.update(1500);
+        MemoryMonitor.update(5000);
+        MemoryMonitor.update(6000);
+
+        // Then
+        assertEquals(3, m_levels.size());
+        assertEquals(MemoryPressure.Hard, m_levels.get(0));
+        assertEquals(MemoryPressure.Soft, m_levels.get(1));
+        assertEquals(MemoryPressure.Normal, m_levels.get(2));
+    }
+
+    @Test(timeout = 5000)
+    public void shouldWakeUpWaitingThreads() throws InterruptedException {
+        // Given
+        MemoryMonitor.update(500);
+        final Thread th = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+            }
+            MemoryMonitor.update(5000);
+        });
+
+        // When
+        th.start();
+        boolean result = false;
+        while (!result) {
+            result = MemoryMonitor.waitForLevel(MemoryPressure.Normal, 1000);
+        }
+
+        // Then
+        assertTrue(result);
+        th.join();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class SectionCacheTest {
+
+    @Test
+    public void shouldCacheValues() {
+        // Given
+        SectionCache<String> cache = new SectionCache<>(4);
+
+        // When
+        String miss = cache.get(-1, 64, 17);
+        cache.put(-1, 64, 17, "stone");
+        cache.put(15, 64, 17, "dirt");
+
+        // Then
+        assertNull(miss);
+        assertEquals("stone", cache.get(-1, 64, 17));
+        assertEquals("dirt", cache.get(15, 64, 17));
+        assertNull(cache.get(-1, 65, 17));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void shouldInvalidateValues() {
+        // Given
+        SectionCache<String> cache = new SectionCache<>(4);
+        cache.put(100, 5, -100, "stone");
+        cache.put(101, 5, -100, "dirt");
+
+        // When
+        cache.invalidate(100, 5, -100);
+
+        // Then
+        assertNull(cache.get(100, 5, -100));
+        assertEquals("dirt", cache.get(101, 5, -100));
+
+        // When
+        cache.clear();
+
+        // Then
+        assertNull(cache.get(101, 5, -100));
+    }
+
+    @Test
+    public void shouldEvictSections() {
+        // Given
+        SectionCache<Integer> cache = new SectionCache<>(8);
+
+        // When
+        for (int i = 0; i < 64; i++) {
+            cache.put(i * 16, 0, 0, i);
+        }
+
+        // Then
+        int cached = 0;
+        for (int i = 0; i < 64; i++) {
+            Integer value = cache.get(i * 16, 0, 0);
+            if (value != null) {
+                assertEquals(i, value.intValue());
+                cached++;
+            }
+        }
+        assertTrue("Cached sections: " + cached, cached > 0 && cached <= 8);
+    }
+
+    @Test
+    public void shouldNotCacheReadAfterWrite() {
+        // Given
+        SectionCache<String> cache = new SectionCache<>(4);
+        cache.put(1, 2, 3, "stone");
+
+        // When
+        cache.markWritten(1, 2, 3);
+        cache.put(1, 2, 3, "stone");
+        cache.put(2, 2, 3, "dirt");
+
+        // Then
+        assertNull(cache.get(1, 2, 3));
+        assertNull(cache.get(2, 2, 3));
+    }
+
+    @Test
+    public void shouldKeepWrittenSectionsOnClear() {
+        // Given
+        SectionCache<String> cache = new SectionCache<>(4);
+        cache.put(17, 2, 3, "dirt");
+        cache.markWritten(1, 2, 3);
+
+        // When
+        cache.clear();
+        cache.put(1, 2, 3, "stone");
+        cache.put(17, 2, 3, "dirt");
+
+        // Then
+        assertNull(cache.get(1, 2, 3));
+        assertEquals("dirt", cache.get(17, 2, 3));
+    }
+
+    @Test
+    public void shouldNotCacheWhenDisabled() {
+        // Given
+        SectionCache<String> cache = new SectionCache<>(0);
+
+        // When
+        cache.put(1, 2, 3, "stone");
+
+        // Then
+        assertNull(cache.get(1, 2, 3));
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getHits());
+    }
+}
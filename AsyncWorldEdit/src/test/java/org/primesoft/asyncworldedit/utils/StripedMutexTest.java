@@ -0,0 +1,222 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class StripedMutexTest {
+
+    @Test
+    public void shouldReturnSameMutexForChunk() {
+        // Given
+        StripedMutex mutex = new StripedMutex();
+
+        // When
+        Object m1 = mutex.get(12, -40);
+        Object m2 = mutex.get(12, -40);
+
+        // Then
+        assertSame(m1, m2);
+        assertEquals(StripedMutex.DEFAULT_STRIPES, mutex.getStripes());
+    }
+
+    @Test
+    public void shouldRoundStripesToPowerOfTwo() {
+        // Given
+        // When
+        StripedMutex mutex = new StripedMutex(100);
+
+        // Then
+        assertEquals(128, mutex.getStripes());
+    }
+
+    @Test
+    public void shouldSpreadNeighbouringChunks() {
+        // Given
+        StripedMutex mutex = new StripedMutex();
+        Set<Object> used = new HashSet<>();
+
+        // When
+        for (int cx = 750; cx < 758; cx++) {
+            for (int cz = -758; cz < -750; cz++) {
+                used.add(mutex.get(cx, cz));
+            }
+        }
+
+        // Then
+        assertTrue("Used stripes: " + used.size(), used.size() >= 32);
+    }
+
+    @Test
+    public void shouldHoldChunkStripes() {
+        // Given
+        StripedMutex mutex = new StripedMutex(16);
+        List<BlockVector2> chunks = Arrays.asList(BlockVector2.at(1, 2), BlockVector2.at(-5, 7), BlockVector2.at(1, 2));
+        Object chunksMutex = mutex.get(chunks);
+
+        // When
+        StripedMutex.lock(chunksMutex);
+        boolean locked = StripedMutex.isHeldByCurrentThread(mutex.get(1, 2))
+                && StripedMutex.isHeldByCurrentThread(mutex.get(-5, 7));
+        StripedMutex.unlock(chunksMutex);
+
+        // Then
+        assertTrue(locked);
+        assertFalse(StripedMutex.isHeldByCurrentThread(mutex.get(1, 2)));
+        assertFalse(StripedMutex.isHeldByCurrentThread(mutex.get(-5, 7)));
+    }
+
+    @Test
+    public void shouldNotBlockOtherChunks() throws InterruptedException {
+        // Given
+        final StripedMutex mutex = new StripedMutex();
+        final Object first = mutex.get(0, 0);
+        int cx = 1;
+        while (mutex.get(cx, 0) == first) {
+            cx++;
+        }
+        final Object second = mutex.get(cx, 0);
+
+        // When
+        StripedMutex.lock(first);
+        boolean done;
+        try {
+            done = runLocked(second, 5000);
+        } finally {
+            StripedMutex.unlock(first);
+        }
+
+        // Then
+        assertTrue(done);
+    }
+
+    @Test
+    public void shouldBlockChunkOperationDuringWorldOperation() throws InterruptedException {
+        // Given
+        final StripedMutex mutex = new StripedMutex();
+
+        // When
+        StripedMutex.lock(mutex.getWorld());
+        boolean doneWhileLocked;
+        try {
+            doneWhileLocked = runLocked(mutex.get(3, -4), 200);
+        } finally {
+            StripedMutex.unlock(mutex.getWorld());
+        }
+
+        // Then
+        assertFalse(doneWhileLocked);
+        assertTrue(runLocked(mutex.get(3, -4), 5000));
+    }
+
+    @Test
+    public void shouldBlockWorldOperationDuringChunkOperation() throws InterruptedException {
+        // Given
+        final StripedMutex mutex = new StripedMutex();
+
+        // When
+        StripedMutex.lock(mutex.get(3, -4));
+        boolean doneWhileLocked;
+        try {
+            doneWhileLocked = runLocked(mutex.getWorld(), 200);
+        } finally {
+            StripedMutex.unlock(mutex.get(3, -4));
+        }
+
+        // Then
+        assertFalse(doneWhileLocked);
+        assertTrue(runLocked(mutex.getWorld(), 5000));
+    }
+
+    @Test
+    public void shouldIgnorePlainMutex() {
+        // Given
+        Object mutex = new Object();
+
+        // When
+        StripedMutex.lock(mutex);
+        StripedMutex.unlock(mutex);
+
+        // Then
+        assertFalse(StripedMutex.isHeldByCurrentThread(mutex));
+    }
+
+    /**
+     * Lock the mutex on a new thread
+     *
+     * @return true if the mutex was locked and released within the timeout
+     */
+    private static boolean runLocked(Object mutex, long timeout) throws InterruptedException {
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread thread = new Thread(() -> {
+            StripedMutex.lock(mutex);
+            try {
+                done.set(true);
+            } finally {
+                StripedMutex.unlock(mutex);
+            }
+        });
+
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(timeout);
+
+        return done.get();
+    }
+}
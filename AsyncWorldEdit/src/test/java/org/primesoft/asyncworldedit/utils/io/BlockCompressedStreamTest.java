@@ -0,0 +1,225 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2020, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.primesoft.asyncworldedit.api.io.SeekOrigin;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class BlockCompressedStreamTest {
+    private final static int BLOCK_SIZE = 1024;
+
+    private File m_file;
+
+    @Before
+    public void init() throws IOException {
+        m_file = File.createTempFile("awe", ".tmp");
+    }
+
+    @After
+    public void cleanup() {
+        m_file.delete();
+    }
+
+    @Test
+    public void shouldReadCompressedData() throws IOException {
+        // Given
+        byte[] data = createData(10 * BLOCK_SIZE + 123);
+        write(data, Deflater.BEST_SPEED);
+
+        // When
+        byte[] result = readAll();
+
+        // Then
+        assertArrayEquals(data, result);
+        assertTrue(m_file.length() < data.length);
+    }
+
+    @Test
+    public void shouldReadUncompressedData() throws IOException {
+        // Given
+        byte[] data = createData(3 * BLOCK_SIZE);
+        write(data, Deflater.NO_COMPRESSION);
+
+        // When
+        byte[] result = readAll();
+
+        // Then
+        assertArrayEquals(data, result);
+    }
+
+    @Test
+    public void shouldReadAppendedBlocks() throws IOException {
+        // Given
+        byte[] data1 = createData(BLOCK_SIZE + 10);
+        byte[] data2 = createData(BLOCK_SIZE / 2);
+        write(data1, Deflater.BEST_SPEED);
+        write(data2, Deflater.BEST_SPEED);
+
+        // When
+        byte[] result = readAll();
+
+        // Then
+        assertEquals(data1.length + data2.length, result.length);
+        assertEquals(data2[0], result[data1.length]);
+        assertEquals(data2[data2.length - 1], result[result.length - 1]);
+    }
+
+    @Test
+    public void shouldSeekBackwards() throws IOException {
+        // Given
+        byte[] data = createData(5 * BLOCK_SIZE);
+        write(data, Deflater.BEST_SPEED);
+
+        try (RandomAccessFile raf = new RandomAccessFile(m_file, "r")) {
+            BlockCompressedInputStream stream = new BlockCompressedInputStream(new ChunkCacheStream(raf), 0);
+
+            for (int pos = data.length - 1; pos >= 0; pos -= 777) {
+                // When
+                stream.seek(pos, SeekOrigin.Begin);
+                byte b = stream.readByte();
+
+                // Then
+                assertEquals(data[pos], b);
+            }
+            stream.close();
+        }
+    }
+
+    @Test
+    public void shouldReadBlockHeadersWhenNeeded() throws IOException {
+        // Given
+        byte[] data = createData(10 * BLOCK_SIZE);
+        write(data, Deflater.BEST_SPEED);
+
+        try (RandomAccessFile raf = new RandomAccessFile(m_file, "r")) {
+            BlockCompressedInputStream stream = new BlockCompressedInputStream(new ChunkCacheStream(raf), 0);
+
+            // When
+            int opened = stream.getIndexedBlocks();
+            byte b = stream.readByte();
+            int afterRead = stream.getIndexedBlocks();
+            long length = stream.length();
+            int afterLength = stream.getIndexedBlocks();
+            stream.close();
+
+            // Then
+            assertEquals(0, opened);
+            assertEquals(data[0], b);
+            assertEquals(1, afterRead);
+            assertEquals(data.length, length);
+            assertTrue(afterLength >= 10);
+        }
+    }
+
+    @Test
+    public void shouldDetectEndOfData() throws IOException {
+        // Given
+        byte[] data = createData(2 * BLOCK_SIZE);
+        write(data, Deflater.BEST_SPEED);
+
+        try (RandomAccessFile raf = new RandomAccessFile(m_file, "r")) {
+            BlockCompressedInputStream stream = new BlockCompressedInputStream(new ChunkCacheStream(raf), 0);
+
+            // When
+            boolean atStart = stream.hasMore();
+            stream.readFully(new byte[data.length]);
+            boolean atEnd = stream.hasMore();
+            int read = stream.read();
+            stream.close();
+
+            // Then
+            assertTrue(atStart);
+            assertFalse(atEnd);
+            assertEquals(-1, read);
+        }
+    }
+
+    private byte[] createData(int size) {
+        byte[] result = new byte[size];
+        Random rnd = new Random(size);
+        for (int i = 0; i < size; i++) {
+            result[i] = (byte) (rnd.nextInt(4) + i / 100);
+        }
+        return result;
+    }
+
+    private void write(byte[] data, int level) throws IOException {
+        try (BlockCompressedOutputStream out = new BlockCompressedOutputStream(
+                new FileOutputStream(m_file, true), BLOCK_SIZE, level)) {
+            out.write(data, 0, 100);
+            for (int i = 100; i < 200; i++) {
+                out.write(data[i]);
+            }
+            out.write(data, 200, data.length - 200);
+        }
+    }
+
+    private byte[] readAll() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(m_file, "r")) {
+            BlockCompressedInputStream stream = new BlockCompressedInputStream(new ChunkCacheStream(raf), 0);
+            byte[] result = new byte[(int) stream.length()];
+            stream.readFully(result);
+            stream.close();
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.utils.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChannelOutputStreamTest {
+
+    private ByteArrayOutputStream m_output;
+    private WritableByteChannel m_channel;
+    private DirectBufferPool m_pool;
+
+    @Before
+    public void init() {
+        m_output = new ByteArrayOutputStream();
+        m_channel = Channels.newChannel(m_output);
+        m_pool = new DirectBufferPool(4, 1);
+    }
+
+    @Test
+    public void shouldWriteDataOnClose() throws Exception {
+        // Given
+        ChannelOutputStream stream = new ChannelOutputStream(m_channel, m_pool);
+
+        // When
+        stream.write(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6);
+        stream.write(7);
+        stream.close();
+
+        // Then
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7}, m_output.toByteArray());
+    }
+
+    @Test
+    public void shouldReuseBufferAfterClose() throws Exception {
+        // Given
+        ByteBuffer buffer = m_pool.acquire();
+        m_pool.release(buffer);
+
+        // When
+        ChannelOutputStream stream = new ChannelOutputStream(m_channel, m_pool);
+        int pooledOpen = m_pool.size();
+        stream.close();
+
+        // Then
+        assertEquals(0, pooledOpen);
+        assertEquals(1, m_pool.size());
+        assertSame(buffer, m_pool.acquire());
+    }
+
+    @Test
+    public void shouldNotPoolMoreBuffersThanLimit() throws Exception {
+        // Given
+        ChannelOutputStream stream1 = new ChannelOutputStream(m_channel, m_pool);
+        ChannelOutputStream stream2 = new ChannelOutputStream(m_channel, m_pool);
+
+        // When
+        stream1.close();
+        stream2.close();
+        stream2.close();
+
+        // Then
+        assertEquals(1, m_pool.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotWriteAfterClose() throws Exception {
+        // Given
+        ChannelOutputStream stream = new ChannelOutputStream(m_channel, m_pool);
+        stream.close();
+
+        // When
+        stream.write(1);
+    }
+}
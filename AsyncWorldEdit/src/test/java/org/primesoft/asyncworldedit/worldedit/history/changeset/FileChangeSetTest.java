@@ -0,0 +1,139 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.history.changeset;
+
+import com.sk89q.worldedit.history.change.Change;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.inner.IAsyncWorldEditCore;
+import org.primesoft.asyncworldedit.api.inner.IInnerSerializerManager;
+import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class FileChangeSetTest {
+
+    private ITaskDispatcher m_dispatcher;
+    private IAsyncWorldEditCore m_core;
+    private Change m_change;
+
+    @Before
+    public void init() {
+        m_dispatcher = Mockito.mock(ITaskDispatcher.class);
+        m_core = Mockito.mock(IAsyncWorldEditCore.class);
+        m_change = Mockito.mock(Change.class);
+
+        Mockito.when(m_core.getTaskDispatcher()).thenReturn(m_dispatcher);
+        Mockito.when(m_core.getInnerChangesetSerializer()).thenReturn(Mockito.mock(IInnerSerializerManager.class));
+    }
+
+    @Test
+    public void shouldPauseEditThreadUntilChangesAreSaved() throws Exception {
+        // Given
+        final FileChangeSet changeSet = new FileChangeSet(m_core, null);
+        final int max = FileChangeSet.getMaxQueued();
+        for (int i = 0; i < max; i++) {
+            changeSet.add(m_change);
+        }
+
+        // When
+        Thread editThread = new Thread(() -> changeSet.add(m_change));
+        editThread.start();
+        editThread.join(300);
+        boolean wasPaused = editThread.isAlive();
+
+        changeSet.save();
+        editThread.join(5000);
+
+        // Then
+        assertTrue(wasPaused);
+        assertFalse(editThread.isAlive());
+        assertEquals(max + 1, changeSet.size());
+    }
+
+    @Test
+    public void shouldNotPauseMainThread() {
+        // Given
+        Mockito.when(m_dispatcher.isMainTask()).thenReturn(true);
+        FileChangeSet changeSet = new FileChangeSet(m_core, null);
+        int max = FileChangeSet.getMaxQueued();
+
+        // When
+        for (int i = 0; i <= max; i++) {
+            changeSet.add(m_change);
+        }
+
+        // Then
+        assertEquals(max + 1, changeSet.size());
+    }
+
+    @Test
+    public void shouldReleaseEditThreadOnClose() throws Exception {
+        // Given
+        final FileChangeSet changeSet = new FileChangeSet(m_core, null);
+        final int max = FileChangeSet.getMaxQueued();
+        for (int i = 0; i < max; i++) {
+            changeSet.add(m_change);
+        }
+
+        Thread editThread = new Thread(() -> changeSet.add(m_change));
+        editThread.start();
+        editThread.join(300);
+
+        // When
+        changeSet.close();
+        editThread.join(5000);
+
+        // Then
+        assertFalse(editThread.isAlive());
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * AsyncWorldEdit a performance improvement plugin for Minecraft WorldEdit plugin.
+ * Copyright (c) 2019, SBPrime <https://github.com/SBPrime/>
+ * Copyright (c) AsyncWorldEdit contributors
+ *
+ * All rights reserved.
+ *
+ * Redistribution in source, use in source and binary forms, with or without
+ * modification, are permitted free of charge provided that the following 
+ * conditions are met:
+ *
+ * 1.  Redistributions of source code must retain the above copyright notice, this
+ *     list of conditions and the following disclaimer.
+ * 2.  Redistributions of source code, with or without modification, in any form
+ *     other then free of charge is not allowed,
+ * 3.  Redistributions of source code, with tools and/or scripts used to build the 
+ *     software is not allowed,
+ * 4.  Redistributions of source code, with information on how to compile the software
+ *     is not allowed,
+ * 5.  Providing information of any sort (excluding information from the software page)
+ *     on how to compile the software is not allowed,
+ * 6.  You are allowed to build the software for your personal use,
+ * 7.  You are allowed to build the software using a non public build server,
+ * 8.  Redistributions in binary form in not allowed.
+ * 9.  The original author is allowed to redistrubute the software in bnary form.
+ * 10. Any derived work based on or containing parts of this software must reproduce
+ *     the above copyright notice, this list of conditions and the following
+ *     disclaimer in the documentation and/or other materials provided with the
+ *     derived work.
+ * 11. The original author of the software is allowed to change the license
+ *     terms or the entire license of the software as he sees fit.
+ * 12. The original author of the software is allowed to sublicense the software
+ *     or its parts using any license terms he sees fit.
+ * 13. By contributing to this project you agree that your contribution falls under this
+ *     license.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.primesoft.asyncworldedit.worldedit.world;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.primesoft.asyncworldedit.api.IChunk;
+import org.primesoft.asyncworldedit.api.IWorld;
+import org.primesoft.asyncworldedit.api.directChunk.IChunkData;
+import org.primesoft.asyncworldedit.api.directChunk.IChunkSection;
+import org.primesoft.asyncworldedit.api.directChunk.IDirectChunkAPI;
+import org.primesoft.asyncworldedit.api.directChunk.IWrappedChunk;
+import org.primesoft.asyncworldedit.api.taskdispatcher.ITaskDispatcher;
+import org.primesoft.asyncworldedit.api.utils.IFunc;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author SBPrime
+ */
+public class ChunkSnapshotCacheTest {
+
+    private final AtomicInteger m_taken = new AtomicInteger();
+
+    private ITaskDispatcher m_dispatcher;
+    private IDirectChunkAPI m_chunkApi;
+    private IWorld m_world;
+
+    @Before
+    public void init() {
+        m_dispatcher = Mockito.mock(ITaskDispatcher.class);
+        m_chunkApi = Mockito.mock(IDirectChunkAPI.class);
+        m_world = Mockito.mock(IWorld.class);
+
+        IChunk chunk = Mockito.mock(IChunk.class);
+        IWrappedChunk wrappedChunk = Mockito.mock(IWrappedChunk.class);
+        IChunkData data = Mockito.mock(IChunkData.class);
+        IChunkSection section = Mockito.mock(IChunkSection.class);
+
+        Mockito.when(m_world.getUUID()).thenReturn(UUID.randomUUID());
+        Mockito.when(m_world.getChunkAt(Mockito.anyInt(), Mockito.anyInt())).thenReturn(chunk);
+        Mockito.when(m_chunkApi.wrapChunk(chunk)).thenReturn(wrappedChunk);
+        Mockito.when(wrappedChunk.getData()).thenReturn(data);
+        Mockito.when(data.getChunkSection(Mockito.anyInt())).thenReturn(section);
+        Mockito.when(m_dispatcher.performSafe(Mockito.any(Object.class), Mockito.any(IFunc.class),
+                Mockito.any(IWorld.class), Mockito.any(BlockVector3.class))).thenAnswer(invocation -> {
+                    m_taken.incrementAndGet();
+                    return ((IFunc<?>) invocation.getArguments()[1]).execute();
+                });
+    }
+
+    @Test
+    public void shouldTakeSnapshotOnce() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(4, m_dispatcher, m_chunkApi, m_world);
+
+        // When
+        ChunkSnapshot first = cache.get(1, -1);
+        ChunkSnapshot second = cache.get(1, -1);
+
+        // Then
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(1, m_taken.get());
+        assertEquals(0, first.getBlockLightLevel(16, 10, -16));
+    }
+
+    @Test
+    public void shouldNotServeDirtyPositions() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(4, m_dispatcher, m_chunkApi, m_world);
+        ChunkSnapshot snapshot = cache.get(1, -1);
+
+        // When
+        cache.markDirty(16, 10, -16);
+
+        // Then
+        assertEquals(-1, snapshot.getBlockLightLevel(16, 10, -16));
+        assertEquals(0, snapshot.getBlockLightLevel(17, 10, -16));
+        assertSame(snapshot, cache.get(1, -1));
+    }
+
+    @Test
+    public void shouldNotSnapshotWrittenChunk() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(4, m_dispatcher, m_chunkApi, m_world);
+
+        // When
+        cache.markDirty(16, 10, -16);
+
+        // Then
+        assertNull(cache.get(1, -1));
+        assertNotNull(cache.get(0, -1));
+        assertEquals(1, m_taken.get());
+    }
+
+    @Test
+    public void shouldDropSnapshotWhenChunkIsChanged() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(4, m_dispatcher, m_chunkApi, m_world);
+        cache.get(1, -1);
+
+        // When
+        cache.markDirty(1, -1);
+
+        // Then
+        assertNull(cache.get(1, -1));
+        assertEquals(0, cache.size());
+        assertEquals(1, m_taken.get());
+    }
+
+    @Test
+    public void shouldEvictOldestSnapshot() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(2, m_dispatcher, m_chunkApi, m_world);
+        ChunkSnapshot oldest = cache.get(0, 0);
+        ChunkSnapshot newest = cache.get(2, 0);
+
+        // When
+        cache.get(1, 0);
+
+        // Then
+        assertEquals(2, cache.size());
+        assertSame(newest, cache.get(2, 0));
+        assertNotSame(oldest, cache.get(0, 0));
+        assertEquals(4, m_taken.get());
+    }
+
+    @Test
+    public void shouldResetOnClear() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(2, m_dispatcher, m_chunkApi, m_world);
+        ChunkSnapshot snapshot = cache.get(0, 0);
+        cache.get(1, 0);
+
+        // When
+        cache.clear();
+
+        // Then
+        assertEquals(0, cache.size());
+        assertNotSame(snapshot, cache.get(0, 0));
+        assertNotNull(cache.get(1, 0));
+        assertNotNull(cache.get(2, 0));
+        assertEquals(2, cache.size());
+        assertEquals(5, m_taken.get());
+    }
+
+    @Test
+    public void shouldNotCacheWhenDisabled() {
+        // Given
+        ChunkSnapshotCache cache = new ChunkSnapshotCache(0, m_dispatcher, m_chunkApi, m_world);
+
+        // When
+        ChunkSnapshot snapshot = cache.get(0, 0);
+
+        // Then
+        assertNull(snapshot);
+        assertEquals(0, cache.size());
+        assertEquals(0, m_taken.get());
+    }
+}